@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Animation;
+import org.eclipse.draw2d.DeferredUpdateManager;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.LayoutAnimator;
+import org.eclipse.draw2d.UpdateManager;
+import org.eclipse.draw2d.XYLayout;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.widgets.Display;
+
+public class AnimationTest extends TestCase {
+
+	private static final Rectangle START = new Rectangle(0, 0, 100, 100);
+	private static final Rectangle END = new Rectangle(200, 0, 100, 100);
+
+	private Display display;
+	private UpdateManager manager;
+	private IFigure root;
+	private RecordingFigure child;
+
+	protected void setUp() throws Exception {
+		display = Display.getDefault();
+		manager = new DeferredUpdateManager() {
+			protected void sendUpdateRequest() {
+				// updates are performed explicitly by the tests
+			}
+		};
+		root = new Figure() {
+			public UpdateManager getUpdateManager() {
+				return manager;
+			}
+		};
+		root.setLayoutManager(new XYLayout());
+		root.addLayoutListener(LayoutAnimator.getDefault());
+		root.setBounds(new Rectangle(0, 0, 1000, 1000));
+		child = new RecordingFigure();
+		root.add(child, START);
+		manager.setRoot(root);
+		manager.performValidation();
+		child.locations.clear();
+	}
+
+	protected void tearDown() throws Exception {
+		Animation.cancel(manager);
+	}
+
+	public void testRunPlaysIntermediateStates() {
+		Animation.markBegin();
+		root.setConstraint(child, END);
+		Animation.run(100);
+
+		assertFalse(Animation.isAnimating());
+		assertEquals(END, child.getBounds());
+		assertTrue(child.locations.size() > 1);
+		assertEquals(20, ((Integer) child.locations.get(0)).intValue());
+	}
+
+	public void testRunAsyncReturnsAfterFirstFrame() {
+		Animation.markBegin();
+		root.setConstraint(child, END);
+		Animation.runAsync(100);
+
+		assertTrue(Animation.isAnimating());
+		assertEquals(20, child.getBounds().x);
+
+		long timeout = System.currentTimeMillis() + 5000;
+		while (Animation.isAnimating()
+				&& System.currentTimeMillis() < timeout)
+			display.readAndDispatch();
+
+		assertFalse(Animation.isAnimating());
+		manager.performValidation();
+		assertEquals(END, child.getBounds());
+	}
+
+	public void testCancel() {
+		Animation.markBegin();
+		root.setConstraint(child, END);
+		Animation.runAsync(1000);
+
+		assertTrue(Animation.cancel(manager));
+		assertFalse(Animation.isAnimating());
+		assertFalse(Animation.cancel(manager));
+		manager.performValidation();
+		assertEquals(END, child.getBounds());
+	}
+
+	public void testRetargetContinuesFromCurrentState() {
+		Animation.markBegin();
+		root.setConstraint(child, END);
+		Animation.runAsync(1000);
+		assertEquals(20, child.getBounds().x);
+
+		Animation.markBegin();
+		root.setConstraint(child, START);
+		Animation.runAsync(1000);
+
+		// the first frame is 10% of the way from the current location
+		assertEquals(18, child.getBounds().x);
+	}
+
+	private static class RecordingFigure extends Figure {
+		List locations = new ArrayList();
+
+		public void setBounds(Rectangle rect) {
+			if (rect.x != bounds.x)
+				locations.add(new Integer(rect.x));
+			super.setBounds(rect);
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.ConnectionLayer;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Polyline;
+import org.eclipse.draw2d.SWTGraphics;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.PointList;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+public class ChildIndexTest extends TestCase {
+
+	private FreeformLayer layer;
+
+	protected void setUp() throws Exception {
+		layer = new FreeformLayer();
+		layer.setBounds(new Rectangle(-2000, -2000, 4000, 4000));
+		layer.setChildIndexEnabled(true);
+	}
+
+	private IFigure addFigure(int x, int y, int w, int h) {
+		Figure figure = new Figure();
+		figure.setBounds(new Rectangle(x, y, w, h));
+		layer.add(figure);
+		return figure;
+	}
+
+	public void testIndexIsDisabledByDefault() {
+		assertFalse(new FreeformLayer().isChildIndexEnabled());
+		assertFalse(new ConnectionLayer().isChildIndexEnabled());
+	}
+
+	public void testFindFigureAt() {
+		IFigure f1 = addFigure(10, 10, 50, 50);
+		IFigure f2 = addFigure(1000, 1000, 50, 50);
+		IFigure f3 = addFigure(-500, -500, 50, 50);
+
+		assertSame(f1, layer.findFigureAt(20, 20));
+		assertSame(f2, layer.findFigureAt(1020, 1020));
+		assertSame(f3, layer.findFigureAt(-480, -480));
+		assertNull(layer.findFigureAt(500, 500));
+		assertSame(f2, layer.findMouseEventTargetAt(1020, 1020));
+	}
+
+	public void testZOrderIsPreserved() {
+		IFigure bottom = addFigure(0, 0, 100, 100);
+		IFigure top = addFigure(50, 50, 100, 100);
+		assertSame(top, layer.findFigureAt(75, 75));
+		assertSame(bottom, layer.findFigureAt(25, 25));
+
+		IFigure inserted = new Figure();
+		inserted.setBounds(new Rectangle(60, 60, 10, 10));
+		layer.add(inserted, 0);
+		assertSame(top, layer.findFigureAt(65, 65));
+
+		layer.add(inserted);
+		assertSame(inserted, layer.findFigureAt(65, 65));
+	}
+
+	public void testIndexFollowsMovesAndRemoval() {
+		IFigure figure = addFigure(0, 0, 50, 50);
+		figure.setBounds(new Rectangle(3000, 3000, 50, 50));
+		assertNull(layer.findFigureAt(25, 25));
+		assertSame(figure, layer.findFigureAt(3025, 3025));
+
+		layer.remove(figure);
+		assertNull(layer.findFigureAt(3025, 3025));
+	}
+
+	public void testIndexFollowsPolylinePoints() {
+		ConnectionLayer connections = new ConnectionLayer();
+		connections.setBounds(new Rectangle(-2000, -2000, 4000, 4000));
+		connections.setChildIndexEnabled(true);
+		Polyline line = new Polyline();
+		line.setEndpoints(new Point(0, 0), new Point(100, 0));
+		connections.add(line);
+		assertSame(line, connections.findFigureAt(50, 0));
+
+		PointList points = new PointList();
+		points.addPoint(1000, 1000);
+		points.addPoint(1100, 1000);
+		line.setPoints(points);
+		assertNull(connections.findFigureAt(50, 0));
+		assertSame(line, connections.findFigureAt(1050, 1000));
+
+		line.setPoint(new Point(1000, 1500), 1);
+		assertNull(connections.findFigureAt(1050, 1000));
+		assertSame(line, connections.findFigureAt(1000, 1400));
+	}
+
+	public void testPolylineTolerance() {
+		ConnectionLayer connections = new ConnectionLayer();
+		connections.setBounds(new Rectangle(-2000, -2000, 4000, 4000));
+		connections.setChildIndexEnabled(true);
+		// next to the boundary between two cells of the index
+		Polyline before = new Polyline();
+		before.setTolerance(10);
+		before.setEndpoints(new Point(0, 250), new Point(100, 250));
+		connections.add(before);
+		Polyline after = new Polyline();
+		after.setEndpoints(new Point(0, 500), new Point(100, 500));
+		connections.add(after);
+		after.setTolerance(10);
+
+		assertSame(before, connections.findFigureAt(50, 259));
+		assertSame(before, connections.findFigureAt(50, 241));
+		assertNull(connections.findFigureAt(50, 262));
+		assertSame(after, connections.findFigureAt(50, 509));
+		assertSame(after, connections.findFigureAt(50, 491));
+
+		after.setTolerance(2);
+		assertNull(connections.findFigureAt(50, 509));
+	}
+
+	public void testChildrenChangedThroughList() {
+		IFigure first = addFigure(0, 0, 50, 50);
+		IFigure second = addFigure(100, 0, 50, 50);
+		// makes the order of the index invalid
+		IFigure third = new Figure();
+		third.setBounds(new Rectangle(200, 0, 50, 50));
+		layer.add(third, 0);
+
+		layer.getChildren().remove(second);
+		assertNull(layer.findFigureAt(125, 25));
+		assertSame(first, layer.findFigureAt(25, 25));
+		assertSame(third, layer.findFigureAt(225, 25));
+
+		Figure added = new Figure();
+		added.setBounds(new Rectangle(300, 0, 50, 50));
+		layer.getChildren().add(added);
+		assertSame(added, layer.findFigureAt(325, 25));
+	}
+
+	public void testLargeChildren() {
+		IFigure large = addFigure(-1500, -1500, 3000, 3000);
+		IFigure small = addFigure(0, 0, 10, 10);
+		assertSame(small, layer.findFigureAt(5, 5));
+		assertSame(large, layer.findFigureAt(1000, -1000));
+	}
+
+	public void testEnableWithExistingChildren() {
+		layer.setChildIndexEnabled(false);
+		IFigure figure = addFigure(500, 500, 10, 10);
+		layer.setChildIndexEnabled(true);
+		assertTrue(layer.isChildIndexEnabled());
+		assertSame(figure, layer.findFigureAt(505, 505));
+		assertTrue(layer.containsPoint(505, 505));
+		assertFalse(layer.containsPoint(0, 0));
+	}
+
+	public void testPaintOnlyIntersectingChildren() {
+		// counts the visits of the children while painting
+		final int[] painted = new int[1];
+		final int[] visited = new int[1];
+		final int[] boundsQueried = new int[1];
+		for (int i = 0; i < 100; i++) {
+			Figure figure = new Figure() {
+				public Rectangle getBounds() {
+					boundsQueried[0]++;
+					return super.getBounds();
+				}
+
+				public boolean isVisible() {
+					visited[0]++;
+					return super.isVisible();
+				}
+
+				public void paint(Graphics graphics) {
+					painted[0]++;
+				}
+			};
+			figure.setBounds(new Rectangle(i * 30, 0, 20, 20));
+			layer.add(figure);
+		}
+		layer.setBounds(new Rectangle(0, 0, 3000, 20));
+		visited[0] = 0;
+		boundsQueried[0] = 0;
+
+		Image image = new Image(Display.getDefault(), 100, 100);
+		GC gc = new GC(image);
+		SWTGraphics graphics = new SWTGraphics(gc);
+		try {
+			graphics.clipRect(new Rectangle(0, 0, 50, 20));
+			layer.paint(graphics);
+			assertEquals(2, painted[0]);
+			// without the index, every child is visited and its bounds are
+			// tested against the clip
+			assertEquals(2, visited[0]);
+			assertTrue(boundsQueried[0] < 20);
+		} finally {
+			graphics.dispose();
+			gc.dispose();
+			image.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.DeferredUpdateManager;
+import org.eclipse.draw2d.DirtyRegionListener;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.UpdateListener;
+import org.eclipse.draw2d.UpdateRegionListener;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+public class DeferredUpdateManagerTest extends TestCase {
+
+	private RecordingUpdateManager manager;
+	private IFigure root;
+
+	protected void setUp() throws Exception {
+		root = new Figure();
+		root.setBounds(new Rectangle(0, 0, 1000, 1000));
+		manager = new RecordingUpdateManager();
+		manager.setRoot(root);
+	}
+
+	public void testDistantRegionsArePaintedSeparately() {
+		manager.addDirtyRegion(root, 0, 0, 10, 10);
+		manager.addDirtyRegion(root, 900, 900, 10, 10);
+		manager.performUpdate();
+
+		assertEquals(2, manager.painted.size());
+		assertTrue(manager.painted.contains(new Rectangle(0, 0, 10, 10)));
+		assertTrue(manager.painted.contains(new Rectangle(900, 900, 10, 10)));
+	}
+
+	public void testOverlappingRegionsAreMerged() {
+		Figure child1 = new Figure();
+		child1.setBounds(new Rectangle(0, 0, 20, 20));
+		root.add(child1);
+		Figure child2 = new Figure();
+		child2.setBounds(new Rectangle(10, 10, 20, 20));
+		root.add(child2);
+
+		manager.addDirtyRegion(child1, child1.getBounds());
+		manager.addDirtyRegion(child2, child2.getBounds());
+		manager.performUpdate();
+
+		assertEquals(1, manager.painted.size());
+		assertEquals(new Rectangle(0, 0, 30, 30), manager.painted.get(0));
+	}
+
+	public void testAdjacentRegionsAreMerged() {
+		manager.addDirtyRegion(root, 0, 0, 10, 10);
+		manager.addDirtyRegion(root, 10, 0, 10, 10);
+		manager.performUpdate();
+
+		assertEquals(1, manager.painted.size());
+		assertEquals(new Rectangle(0, 0, 20, 10), manager.painted.get(0));
+	}
+
+	public void testMaximumDamageRegions() {
+		manager.setMaximumDamageRegions(2);
+		manager.addDirtyRegion(root, 0, 0, 10, 10);
+		manager.addDirtyRegion(root, 20, 0, 10, 10);
+		manager.addDirtyRegion(root, 900, 900, 10, 10);
+		manager.performUpdate();
+
+		assertEquals(2, manager.painted.size());
+		assertTrue(manager.painted.contains(new Rectangle(0, 0, 30, 10)));
+		assertTrue(manager.painted.contains(new Rectangle(900, 900, 10, 10)));
+
+		manager.painted.clear();
+		manager.setMaximumDamageRegions(1);
+		manager.addDirtyRegion(root, 0, 0, 10, 10);
+		manager.addDirtyRegion(root, 900, 900, 10, 10);
+		manager.performUpdate();
+
+		assertEquals(1, manager.painted.size());
+		assertEquals(new Rectangle(0, 0, 910, 910), manager.painted.get(0));
+	}
+
+	public void testRegionsArePassedToListeners() {
+		final Rectangle[][] notified = new Rectangle[1][];
+		final Rectangle[] notifiedDamage = new Rectangle[1];
+		manager.addUpdateListener(new UpdateRegionListener() {
+			public void notifyPainting(Rectangle damage, Map dirtyRegions) {
+				fail("Region aware listener should not be notified without regions");
+			}
+
+			public void notifyPainting(Rectangle damage, Rectangle[] regions,
+					Map dirtyRegions) {
+				notifiedDamage[0] = damage;
+				notified[0] = regions;
+			}
+
+			public void notifyValidating() {
+			}
+		});
+		manager.addDirtyRegion(root, 0, 0, 10, 10);
+		manager.addDirtyRegion(root, 900, 900, 10, 10);
+		manager.performUpdate();
+
+		assertEquals(new Rectangle(0, 0, 910, 910), notifiedDamage[0]);
+		assertEquals(2, notified[0].length);
+	}
+
+	public void testFirePaintingIsOverridable() {
+		final List notified = new ArrayList();
+		manager.addUpdateListener(new UpdateListener() {
+			public void notifyPainting(Rectangle damage, Map dirtyRegions) {
+				notified.add(damage.getCopy());
+			}
+
+			public void notifyValidating() {
+			}
+		});
+		manager.addDirtyRegion(root, 0, 0, 10, 10);
+		manager.addDirtyRegion(root, 900, 900, 10, 10);
+		manager.performUpdate();
+
+		assertEquals(1, manager.fired.size());
+		assertEquals(new Rectangle(0, 0, 910, 910), manager.fired.get(0));
+		assertEquals(manager.fired, notified);
+	}
+
+	public void testDirtyRegionsArePassedToListeners() {
+		IFigure parent = new Figure() {
+			protected boolean useLocalCoordinates() {
+				return true;
+			}
+		};
+		parent.setBounds(new Rectangle(100, 100, 200, 200));
+		root.add(parent);
+		Figure child = new Figure();
+		child.setBounds(new Rectangle(10, 10, 50, 50));
+		parent.add(child);
+
+		final Map local = new HashMap();
+		final Map painted = new HashMap();
+		manager.addUpdateListener(new DirtyRegionListener() {
+			public void notifyDirtyRegion(IFigure figure, Rectangle region) {
+				local.put(figure, region.getCopy());
+			}
+
+			public void notifyPainting(Rectangle damage, Map dirtyRegions) {
+				painted.putAll(dirtyRegions);
+			}
+
+			public void notifyValidating() {
+			}
+		});
+		manager.addDirtyRegion(child, 0, 0, 20, 20);
+		manager.performUpdate();
+
+		// clipped to the bounds of the child, in its coordinates
+		assertEquals(new Rectangle(10, 10, 10, 10), local.get(child));
+		// in the coordinates of the root figure
+		assertEquals(new Rectangle(110, 110, 10, 10), painted.get(child));
+	}
+
+	private static class RecordingUpdateManager extends DeferredUpdateManager {
+		List painted = new ArrayList();
+		List fired = new ArrayList();
+
+		protected void firePainting(Rectangle damage, Map dirtyRegions) {
+			fired.add(damage.getCopy());
+			super.firePainting(damage, dirtyRegions);
+		}
+
+		protected Graphics getGraphics(Rectangle region) {
+			painted.add(region.getCopy());
+			return null;
+		}
+
+		protected void sendUpdateRequest() {
+			// updates are performed explicitly by the tests
+		}
+	}
+
+}
@@ -30,13 +30,17 @@ public class Draw2dTestSuite extends TestSuite {
 	 */
 	public Draw2dTestSuite() {
 		addTest(new TestSuite(ShortestPathRoutingTest.class));
+		addTest(new TestSuite(ShortestPathConnectionRouterTest.class));
 		addTest(new TestSuite(XYLayoutTest.class));
 		addTest(new TestSuite(TextFlowWrapTest.class));
 		addTest(new TestSuite(LocalOptimizerTest.class));
+		addTest(new TestSuite(MinCrossTest.class));
 		addTest(new TestSuite(AdvancedGraphicsTests.class));
 		addTest(new TestSuite(FlowBorderTests.class));
 		addTest(new TestSuite(GraphicsClipping.class));
 		addTest(new TestSuite(PaintDamageEraseTest.class));
+		addTest(new TestSuite(DeferredUpdateManagerTest.class));
+		addTest(new TestSuite(AnimationTest.class));
 		addTest(new TestSuite(LayeredPaneTest.class));
 		addTest(new TestSuite(ConnectionEndPointMoveTest.class));
 		addTest(new TestSuite(ImageUtilitiesTest.class));
@@ -59,6 +63,9 @@ public class Draw2dTestSuite extends TestSuite {
 		addTest(new TestSuite(GeometryTest.class));
 		addTest(new TestSuite(ScalablePolygonShapeTest.class));
 		addTest(new TestSuite(LayerTest.class));
+		addTest(new TestSuite(FreeformLayerTest.class));
+		addTest(new TestSuite(LevelOfDetailTest.class));
+		addTest(new TestSuite(ChildIndexTest.class));
 		addTest(new TestSuite(ShapeTest.class));
 	}
 }
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.FreeformListener;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+public class FreeformLayerTest extends TestCase {
+
+	private FreeformLayer layer;
+	private int notifications;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		layer = new FreeformLayer();
+		layer.addFreeformListener(new FreeformListener() {
+			public void notifyFreeformExtentChanged() {
+				notifications++;
+			}
+		});
+	}
+
+	public void testExtentGrows() {
+		addChild(new Rectangle(0, 0, 10, 10));
+		assertEquals(new Rectangle(0, 0, 10, 10), layer.getFreeformExtent());
+
+		addChild(new Rectangle(-50, 20, 10, 10));
+
+		assertEquals(new Rectangle(-50, 0, 60, 30), layer.getFreeformExtent());
+	}
+
+	public void testExtentShrinksWhenEdgeChildMovesInward() {
+		addChild(new Rectangle(0, 0, 10, 10));
+		IFigure child = addChild(new Rectangle(100, 100, 10, 10));
+		assertEquals(new Rectangle(0, 0, 110, 110), layer.getFreeformExtent());
+
+		child.setBounds(new Rectangle(20, 20, 10, 10));
+
+		assertEquals(new Rectangle(0, 0, 30, 30), layer.getFreeformExtent());
+	}
+
+	public void testExtentKeepsEdgeSharedByChildren() {
+		IFigure child = addChild(new Rectangle(0, 0, 100, 100));
+		addChild(new Rectangle(50, 50, 50, 50));
+
+		child.setBounds(new Rectangle(0, 0, 10, 10));
+
+		assertEquals(new Rectangle(0, 0, 100, 100), layer.getFreeformExtent());
+	}
+
+	public void testExtentAfterRemove() {
+		addChild(new Rectangle(0, 0, 10, 10));
+		IFigure child = addChild(new Rectangle(100, 100, 10, 10));
+		layer.getFreeformExtent();
+
+		layer.remove(child);
+
+		assertEquals(new Rectangle(0, 0, 10, 10), layer.getFreeformExtent());
+	}
+
+	public void testNoNotificationWhenExtentUnchanged() {
+		addChild(new Rectangle(0, 0, 100, 100));
+		IFigure child = addChild(new Rectangle(10, 10, 10, 10));
+		layer.getFreeformExtent();
+		notifications = 0;
+
+		child.setBounds(new Rectangle(20, 20, 10, 10));
+		assertEquals(0, notifications);
+
+		child.setBounds(new Rectangle(200, 20, 10, 10));
+		assertEquals(1, notifications);
+		assertEquals(new Rectangle(0, 0, 210, 100), layer.getFreeformExtent());
+	}
+
+	public void testEmptyChildrenDoNotEnlargeExtent() {
+		addChild(new Rectangle(0, 0, 10, 10));
+		// a horizontal line and an unrouted connection
+		addChild(new Rectangle(50, 100, 200, 0));
+		IFigure child = addChild(new Rectangle(0, 0, 0, 0));
+		assertEquals(new Rectangle(0, 0, 10, 10), layer.getFreeformExtent());
+
+		child.setBounds(new Rectangle(-20, -20, 0, 0));
+		assertEquals(new Rectangle(0, 0, 10, 10), layer.getFreeformExtent());
+
+		child.setBounds(new Rectangle(-20, -20, 5, 5));
+		assertEquals(new Rectangle(-20, -20, 30, 30), layer.getFreeformExtent());
+	}
+
+	public void testExtentOfEmptyChildren() {
+		addChild(new Rectangle(50, 100, 200, 0));
+		addChild(new Rectangle(0, 0, 0, 0));
+
+		assertEquals(new Rectangle(50, 100, 200, 0), layer.getFreeformExtent());
+	}
+
+	public void testNestedFreeformExtent() {
+		FreeformLayer nested = new FreeformLayer();
+		layer.add(nested);
+		IFigure child = new Figure();
+		child.setBounds(new Rectangle(0, 0, 10, 10));
+		nested.add(child);
+		assertEquals(new Rectangle(0, 0, 10, 10), layer.getFreeformExtent());
+
+		child.setBounds(new Rectangle(-10, 0, 10, 10));
+
+		assertEquals(new Rectangle(-10, 0, 10, 10), layer.getFreeformExtent());
+	}
+
+	private IFigure addChild(Rectangle bounds) {
+		IFigure child = new Figure();
+		child.setBounds(bounds);
+		layer.add(child);
+		return child;
+	}
+
+}
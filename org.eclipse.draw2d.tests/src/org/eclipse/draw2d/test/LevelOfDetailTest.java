@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.Label;
+import org.eclipse.draw2d.LevelOfDetail;
+import org.eclipse.draw2d.SWTGraphics;
+import org.eclipse.draw2d.ScaledGraphics;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+public class LevelOfDetailTest extends TestCase {
+
+	private Image image;
+	private GC gc;
+	private SWTGraphics swtGraphics;
+	private ScaledGraphics graphics;
+	private CountingFigure figure;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		image = new Image(Display.getDefault(), 100, 100);
+		gc = new GC(image);
+		swtGraphics = new SWTGraphics(gc);
+		graphics = new ScaledGraphics(swtGraphics);
+		figure = new CountingFigure();
+		figure.setBounds(new Rectangle(0, 0, 50, 50));
+	}
+
+	protected void tearDown() throws Exception {
+		LevelOfDetail.unregister(CountingFigure.class);
+		LevelOfDetail.unregister(ExcludedFigure.class);
+		LevelOfDetail.unregister(Label.class);
+		graphics.dispose();
+		swtGraphics.dispose();
+		gc.dispose();
+		image.dispose();
+		super.tearDown();
+	}
+
+	public void testFullDetailAtThreshold() {
+		RecordingPainter painter = new RecordingPainter();
+		LevelOfDetail.register(CountingFigure.class, 0.5, painter);
+		graphics.scale(0.5);
+
+		figure.paint(graphics);
+
+		assertEquals(1, figure.count);
+		assertTrue(painter.painted.isEmpty());
+	}
+
+	public void testPainterBelowThreshold() {
+		RecordingPainter painter = new RecordingPainter();
+		LevelOfDetail.register(CountingFigure.class, 0.5, painter);
+		graphics.scale(0.25);
+
+		figure.paint(graphics);
+
+		assertEquals(0, figure.count);
+		assertEquals(1, painter.painted.size());
+		assertSame(figure, painter.painted.get(0));
+	}
+
+	public void testLowestThresholdIsUsed() {
+		RecordingPainter coarse = new RecordingPainter();
+		RecordingPainter fine = new RecordingPainter();
+		LevelOfDetail.register(CountingFigure.class, 0.5, fine);
+		LevelOfDetail.register(CountingFigure.class, 0.2, coarse);
+		graphics.scale(0.1);
+
+		figure.paint(graphics);
+
+		assertTrue(fine.painted.isEmpty());
+		assertEquals(1, coarse.painted.size());
+	}
+
+	public void testExcludedSubclassIsPaintedInFull() {
+		RecordingPainter painter = new RecordingPainter();
+		LevelOfDetail.register(CountingFigure.class, 0.5, painter);
+		LevelOfDetail.exclude(ExcludedFigure.class);
+		CountingFigure excluded = new ExcludedFigure();
+		excluded.setBounds(new Rectangle(0, 0, 50, 50));
+		graphics.scale(0.25);
+
+		excluded.paint(graphics);
+		figure.paint(graphics);
+
+		assertEquals(1, excluded.count);
+		assertEquals(1, painter.painted.size());
+		assertSame(figure, painter.painted.get(0));
+	}
+
+	public void testIsExcluded() {
+		assertFalse(LevelOfDetail.isExcluded(ExcludedFigure.class));
+		LevelOfDetail.register(CountingFigure.class, 0.5,
+				new RecordingPainter());
+		assertFalse(LevelOfDetail.isExcluded(ExcludedFigure.class));
+
+		LevelOfDetail.exclude(CountingFigure.class);
+		assertTrue(LevelOfDetail.isExcluded(CountingFigure.class));
+		assertTrue(LevelOfDetail.isExcluded(ExcludedFigure.class));
+		assertFalse(LevelOfDetail.isExcluded(Figure.class));
+
+		LevelOfDetail.unregister(CountingFigure.class);
+		assertFalse(LevelOfDetail.isExcluded(ExcludedFigure.class));
+	}
+
+	public void testLabelTextLegibility() {
+		Label label = new Label("Label");
+		label.setFont(Display.getDefault().getSystemFont());
+		assertTrue(LevelOfDetail.isLegible(label, graphics));
+
+		graphics.scale(0.01);
+		assertFalse(LevelOfDetail.isLegible(label, graphics));
+
+		LevelOfDetail.exclude(Label.class);
+		assertTrue(LevelOfDetail.isLegible(label, graphics));
+	}
+
+	private static class CountingFigure extends Figure {
+		int count;
+
+		protected void paintFigure(Graphics graphics) {
+			count++;
+		}
+	}
+
+	private static class ExcludedFigure extends CountingFigure {
+	}
+
+	private static class RecordingPainter implements LevelOfDetail.Painter {
+		List painted = new ArrayList();
+
+		public void paint(IFigure figure, Graphics graphics) {
+			painted.add(figure);
+		}
+	}
+
+}
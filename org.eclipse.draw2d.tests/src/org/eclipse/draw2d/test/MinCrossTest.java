@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.draw2d.test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.graph.DirectedGraph;
+import org.eclipse.draw2d.graph.DirectedGraphLayout;
+import org.eclipse.draw2d.graph.Edge;
+import org.eclipse.draw2d.graph.Node;
+import org.eclipse.draw2d.graph.Rank;
+
+/**
+ * Tests the ordering of the nodes in their ranks.
+ */
+public class MinCrossTest extends TestCase {
+
+	private DirectedGraph graph;
+
+	public void testCrossingRemoved() {
+		Node a = createNode("a", 0), b = createNode("b", 0);
+		Node c = createNode("c", 1), d = createNode("d", 1);
+		createEdge(a, d);
+		createEdge(b, c);
+
+		createLayout().visit(graph);
+
+		checkNoCrossing(a, b, c, d);
+	}
+
+	public void testCrossingRemovedByBarycenterOrdering() {
+		Node a = createNode("a", 0), b = createNode("b", 0);
+		Node c = createNode("c", 1), d = createNode("d", 1);
+		createEdge(a, d);
+		createEdge(b, c);
+
+		DirectedGraphLayout layout = createLayout();
+		layout.setBarycenterOrdering(true);
+		layout.visit(graph);
+
+		checkNoCrossing(a, b, c, d);
+	}
+
+	public void testPartsPlacedNextToEachOther() {
+		/*
+		 * A X B --> A B X
+		 * |\ | |    |\| |
+		 * C Y D --> C D Y
+		 */
+		Node a = createNode("a", 0), x = createNode("x", 0), b = createNode(
+				"b", 0);
+		Node c = createNode("c", 1), y = createNode("y", 1), d = createNode(
+				"d", 1);
+		createEdge(a, c);
+		createEdge(a, d);
+		createEdge(b, d);
+		createEdge(x, y);
+
+		createLayout().visit(graph);
+
+		checkResults(new Node[][] { new Node[] { a, b, x },
+				new Node[] { c, d, y } });
+	}
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		graph = new DirectedGraph();
+	}
+
+	private void checkNoCrossing(Node a, Node b, Node c, Node d) {
+		Rank top = graph.ranks.getRank(0);
+		Rank bottom = graph.ranks.getRank(1);
+		assertEquals(top.indexOf(a) < top.indexOf(b),
+				bottom.indexOf(d) < bottom.indexOf(c));
+	}
+
+	private void checkResults(Node[][] nodes) {
+		for (int r = 0; r < nodes.length; r++) {
+			Node[] row = nodes[r];
+			Rank rank = graph.ranks.getRank(r);
+			assertEquals(row.length, rank.size());
+			for (int n = 0; n < row.length; n++)
+				assertEquals("Unexpected node encountered at:" + r + "," + n,
+						row[n], rank.getNode(n));
+		}
+	}
+
+	/**
+	 * MinCross is package private, so we use a DirectedGraphLayout which only
+	 * populates the ranks and sorts them.
+	 */
+	private DirectedGraphLayout createLayout() {
+		try {
+			DirectedGraphLayout layout = new DirectedGraphLayout();
+			Field stepsField = DirectedGraphLayout.class
+					.getDeclaredField("steps");
+			stepsField.setAccessible(true);
+			ArrayList steps = (ArrayList) stepsField.get(layout);
+			ArrayList filteredSteps = new ArrayList();
+			for (int i = 0; i < steps.size(); i++) {
+				String name = steps.get(i).getClass().getName();
+				if (name.equals("org.eclipse.draw2d.graph.PopulateRanks")
+						|| name.equals("org.eclipse.draw2d.graph.MinCross"))
+					filteredSteps.add(steps.get(i));
+			}
+			assertEquals(2, filteredSteps.size());
+			stepsField.set(layout, filteredSteps);
+			return layout;
+		} catch (Exception e) {
+			fail(e.getMessage());
+			return null;
+		}
+	}
+
+	private Edge createEdge(Node n1, Node n2) {
+		Edge edge = new Edge(n1, n2);
+		graph.edges.add(edge);
+		return edge;
+	}
+
+	private Node createNode(String label, int rank) {
+		Node node = new Node(label);
+		graph.nodes.add(node);
+		try {
+			Field rankField = Node.class.getDeclaredField("rank");
+			rankField.setAccessible(true);
+			rankField.set(node, new Integer(rank));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+		return node;
+	}
+
+}
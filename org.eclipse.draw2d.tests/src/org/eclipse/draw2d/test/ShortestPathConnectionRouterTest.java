@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.ChopboxAnchor;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.PolylineConnection;
+import org.eclipse.draw2d.ShortestPathConnectionRouter;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.widgets.Display;
+
+public class ShortestPathConnectionRouterTest extends TestCase {
+
+	private PolylineConnection conn;
+	private IFigure obstacle;
+	private IFigure root;
+	private ShortestPathConnectionRouter router;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		root = new Figure();
+		root.setBounds(new Rectangle(0, 0, 400, 400));
+
+		IFigure container = new Figure();
+		container.setBounds(new Rectangle(0, 0, 400, 400));
+		root.add(container);
+
+		IFigure source = new Figure();
+		source.setBounds(new Rectangle(10, 100, 20, 20));
+		container.add(source);
+		IFigure target = new Figure();
+		target.setBounds(new Rectangle(300, 100, 20, 20));
+		container.add(target);
+		obstacle = new Figure();
+		obstacle.setBounds(new Rectangle(150, 50, 20, 120));
+		container.add(obstacle);
+
+		router = new ShortestPathConnectionRouter(container);
+		conn = new PolylineConnection();
+		conn.setSourceAnchor(new ChopboxAnchor(source));
+		conn.setTargetAnchor(new ChopboxAnchor(target));
+		conn.setConnectionRouter(router);
+		root.add(conn);
+	}
+
+	protected void tearDown() throws Exception {
+		router.setAsynchronous(false);
+		super.tearDown();
+	}
+
+	public void testAsynchronousRouting() {
+		router.setAsynchronous(true);
+		root.validate();
+
+		// a straight line until the route arrives
+		assertEquals(2, conn.getPoints().size());
+
+		waitForRoute(true);
+		assertFalse(router.isDirty());
+		Rectangle route = conn.getPoints().getBounds();
+		assertTrue(route.y < obstacle.getBounds().y
+				|| route.bottom() > obstacle.getBounds().bottom());
+	}
+
+	public void testAsynchronousRoutingKeepsLastRoute() {
+		router.setAsynchronous(true);
+		root.validate();
+		waitForRoute(true);
+		int bends = conn.getPoints().size();
+
+		// moving the obstacle away makes the route straight again
+		obstacle.setBounds(new Rectangle(150, 250, 20, 120));
+		root.validate();
+		assertEquals(bends, conn.getPoints().size());
+
+		waitForRoute(false);
+		assertEquals(2, conn.getPoints().size());
+	}
+
+	public void testRoutesAppliedWhileObstaclesKeepMoving() {
+		int threads = countSolverThreads();
+		router.setAsynchronous(true);
+		root.validate();
+
+		Display display = Display.getDefault();
+		long timeout = System.currentTimeMillis() + 10000;
+		int y = 50;
+		while (!isBent() && System.currentTimeMillis() < timeout) {
+			// the obstacle moves before each result is dispatched, so every
+			// solve finishes with a change pending
+			y = y == 50 ? 51 : 50;
+			obstacle.setBounds(new Rectangle(150, y, 20, 120));
+			root.validate();
+			display.readAndDispatch();
+			assertTrue(countSolverThreads() <= threads + 1);
+		}
+		assertTrue(isBent());
+	}
+
+	public void testSynchronousRouting() {
+		assertFalse(router.isAsynchronous());
+		root.validate();
+		assertTrue(isBent());
+	}
+
+	private int countSolverThreads() {
+		Thread[] threads = new Thread[Thread.activeCount() + 10];
+		int count = Thread.enumerate(threads);
+		int solvers = 0;
+		for (int i = 0; i < count; i++)
+			if ("Shortest path routing".equals(threads[i].getName())) //$NON-NLS-1$
+				solvers++;
+		return solvers;
+	}
+
+	private boolean isBent() {
+		return conn.getPoints().size() > 2;
+	}
+
+	private void waitForRoute(boolean bent) {
+		Display display = Display.getDefault();
+		long timeout = System.currentTimeMillis() + 10000;
+		while (isBent() != bent && System.currentTimeMillis() < timeout) {
+			if (!display.readAndDispatch())
+				root.validate();
+		}
+		assertEquals(bent, isBent());
+	}
+
+}
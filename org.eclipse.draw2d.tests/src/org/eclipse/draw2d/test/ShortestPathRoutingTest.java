@@ -10,8 +10,15 @@
  *******************************************************************************/
 package org.eclipse.draw2d.test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 import junit.framework.TestCase;
 
+import org.eclipse.draw2d.geometry.Geometry;
+import org.eclipse.draw2d.geometry.Insets;
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.PointList;
 import org.eclipse.draw2d.geometry.Rectangle;
@@ -180,6 +187,24 @@ public class ShortestPathRoutingTest extends TestCase {
 		// 0);
 	}
 
+	private void doAssertNoObstacleCrossed(PointList path, List obstacles) {
+		assertTrue("Path should have been routed", path.size() > 1);
+		for (int i = 0; i < path.size() - 1; i++) {
+			Point p1 = path.getPoint(i);
+			Point p2 = path.getPoint(i + 1);
+			for (int o = 0; o < obstacles.size(); o++) {
+				Rectangle r = ((Rectangle) obstacles.get(o))
+						.getCropped(new Insets(1));
+				assertFalse("Segment " + p1 + " " + p2 + " crosses " + r,
+						Geometry.linesIntersect(p1.x, p1.y, p2.x, p2.y, r.x,
+								r.y, r.right() - 1, r.bottom() - 1)
+								|| Geometry.linesIntersect(p1.x, p1.y, p2.x,
+										p2.y, r.x, r.bottom() - 1,
+										r.right() - 1, r.y));
+			}
+		}
+	}
+
 	private void doAssertNumPoints(PointList path, int expectedBends) {
 		assertTrue(
 				"Path should have " + expectedBends + " but had "
@@ -241,6 +266,41 @@ public class ShortestPathRoutingTest extends TestCase {
 				pt1.x > r.right() && pt2.x > r.right());
 	}
 
+	private void doAssertRoutes(List paths, int[][] expected) {
+		assertEquals(expected.length, paths.size());
+		for (int i = 0; i < expected.length; i++) {
+			PointList points = ((Path) paths.get(i)).getPoints();
+			assertEquals("Path " + i + " is " + points, expected[i].length,
+					points.size() * 2);
+			for (int j = 0; j < points.size(); j++)
+				assertEquals("Path " + i + " is " + points, new Point(
+						expected[i][2 * j], expected[i][2 * j + 1]), points
+						.getPoint(j));
+		}
+	}
+
+	/**
+	 * Routes the given paths with a new router and checks that the routes are
+	 * the same as those of the current router.
+	 */
+	private void doAssertSameAsNewRouter(List paths, List obstacles) {
+		ShortestPathRouter router = new ShortestPathRouter();
+		for (int i = 0; i < obstacles.size(); i++)
+			router.addObstacle((Rectangle) obstacles.get(i));
+		List newPaths = new ArrayList();
+		for (int i = 0; i < paths.size(); i++) {
+			Path path = (Path) paths.get(i);
+			Path newPath = new Path(path.getStartPoint(), path.getEndPoint());
+			newPaths.add(newPath);
+			router.addPath(newPath);
+		}
+		router.solve();
+		for (int i = 0; i < paths.size(); i++)
+			assertTrue(Arrays.equals(((Path) paths.get(i)).getPoints()
+					.toIntArray(), ((Path) newPaths.get(i)).getPoints()
+					.toIntArray()));
+	}
+
 	private void doSetUp(Point aStartStatic, Point aEndStatic,
 			Point bStartStatic, Point bEndStatic, Point cStartStatic,
 			Point cEndStatic, Point dStartStatic, Point dEndStatic,
@@ -293,6 +353,29 @@ public class ShortestPathRoutingTest extends TestCase {
 		pathA = a.getPoints();
 	}
 
+	/**
+	 * Adds random obstacles and random paths between points outside of them to
+	 * the router, and returns the paths.
+	 */
+	private List doSetUpRandom(long seed, List obstacles) {
+		Random random = new Random(seed);
+		for (int i = 0; i < 12; i++) {
+			Rectangle r = new Rectangle(random.nextInt(700),
+					random.nextInt(500), 20 + random.nextInt(80),
+					20 + random.nextInt(80));
+			obstacles.add(r);
+			routing.addObstacle(r);
+		}
+		List paths = new ArrayList();
+		for (int i = 0; i < 6; i++) {
+			Path path = new Path(randomPoint(random, obstacles), randomPoint(
+					random, obstacles));
+			paths.add(path);
+			routing.addPath(path);
+		}
+		return paths;
+	}
+
 	private void doTestBottomLeftIntersection() {
 		doAssertBelow(pathA.getPoint(1), pathB.getPoint(1), rect);
 		doAssertLeft(pathA.getPoint(1), pathB.getPoint(1), rect);
@@ -419,6 +502,18 @@ public class ShortestPathRoutingTest extends TestCase {
 	/*
 	 * @see TestCase#setUp()
 	 */
+	private Point randomPoint(Random random, List obstacles) {
+		while (true) {
+			Point p = new Point(random.nextInt(800), random.nextInt(600));
+			boolean outside = true;
+			for (int i = 0; i < obstacles.size(); i++)
+				if (((Rectangle) obstacles.get(i)).contains(p))
+					outside = false;
+			if (outside)
+				return p;
+		}
+	}
+
 	protected void setUp() throws Exception {
 		super.setUp();
 		routing = new ShortestPathRouter();
@@ -551,6 +646,25 @@ public class ShortestPathRoutingTest extends TestCase {
 		doAssertPointAbove(pathC.getPoint(1), pathB.getPoint(1));
 	}
 
+	public void testDeltasMoveObstacleFarFromPath() {
+		routing.addObstacle(new Rectangle(100, 100, 50, 50));
+		routing.addObstacle(new Rectangle(1000, 1000, 50, 50));
+		Path a = new Path(new Point(50, 125), new Point(200, 125));
+		routing.addPath(a);
+		routing.solve();
+		doAssertNumPoints(a.getPoints(), 2);
+
+		assertFalse("Moving a distant obstacle should not dirty the path",
+				routing.updateObstacle(new Rectangle(1000, 1000, 50, 50),
+						new Rectangle(1100, 1000, 50, 50)));
+		assertFalse(a.isDirty);
+
+		assertTrue("Moving an obstacle onto the path should dirty it",
+				routing.updateObstacle(new Rectangle(1100, 1000, 50, 50),
+						new Rectangle(160, 100, 20, 50)));
+		assertTrue(a.isDirty);
+	}
+
 	public void testDeltasMoveObstacleIntersection() {
 		doSetUp(deltaAStart, deltaAEnd, deltaBStart, deltaBEnd, deltaRect);
 
@@ -599,6 +713,77 @@ public class ShortestPathRoutingTest extends TestCase {
 		doAssertNoPathsSolved();
 	}
 
+	public void testDeltasRandomLayout() {
+		// the visibility of segments must not be taken from before a change
+		List obstacles = new ArrayList();
+		List paths = doSetUpRandom(4, obstacles);
+		routing.solve();
+		doAssertRoutes(paths, new int[][] {
+			{ 64, 348, 153, 288, 624, 162, 744, 149 },
+			{ 253, 180, 173, 182 },
+			{ 158, 9, 429, 21, 586, 94 },
+			{ 86, 288, 526, 102 },
+			{ 309, 135, 157, 292, 120, 435, 36, 509 },
+			{ 327, 344, 747, 275 } });
+
+		Rectangle added = new Rectangle(300, 200, 120, 90);
+		routing.addObstacle(added);
+		obstacles.add(added);
+		routing.solve();
+		doAssertRoutes(paths, new int[][] {
+			{ 64, 348, 153, 288, 296, 196, 744, 149 },
+			{ 253, 180, 173, 182 },
+			{ 158, 9, 429, 21, 586, 94 },
+			{ 86, 288, 292, 192, 526, 102 },
+			{ 309, 135, 157, 292, 120, 435, 36, 509 },
+			{ 327, 344, 747, 275 } });
+		doAssertSameAsNewRouter(paths, obstacles);
+
+		Rectangle moved = new Rectangle(420, 260, 100, 140);
+		routing.updateObstacle(added, moved);
+		obstacles.set(obstacles.indexOf(added), moved);
+		routing.solve();
+		doAssertRoutes(paths, new int[][] {
+			{ 64, 348, 153, 288, 624, 162, 744, 149 },
+			{ 253, 180, 173, 182 },
+			{ 158, 9, 429, 21, 586, 94 },
+			{ 86, 288, 526, 102 },
+			{ 309, 135, 157, 292, 120, 435, 36, 509 },
+			{ 327, 344, 416, 403, 523, 403, 747, 275 } });
+		doAssertSameAsNewRouter(paths, obstacles);
+
+		routing.removeObstacle(moved);
+		obstacles.remove(moved);
+		routing.solve();
+		doAssertRoutes(paths, new int[][] {
+			{ 64, 348, 153, 288, 624, 162, 744, 149 },
+			{ 253, 180, 173, 182 },
+			{ 158, 9, 429, 21, 586, 94 },
+			{ 86, 288, 526, 102 },
+			{ 309, 135, 157, 292, 120, 435, 36, 509 },
+			{ 327, 344, 747, 275 } });
+		doAssertSameAsNewRouter(paths, obstacles);
+	}
+
+	public void testManyObstacles() {
+		List obstacles = new ArrayList();
+		for (int x = 0; x < 20; x++)
+			for (int y = 0; y < 20; y++) {
+				Rectangle obs = new Rectangle(x * 100 + 20, y * 100 + 30, 60,
+						40);
+				obstacles.add(obs);
+				routing.addObstacle(obs.getCopy());
+			}
+		Path a = new Path(new Point(0, 0), new Point(1995, 1990));
+		Path b = new Path(new Point(10, 1990), new Point(1990, 10));
+		routing.addPath(a);
+		routing.addPath(b);
+		routing.solve();
+
+		doAssertNoObstacleCrossed(a.getPoints(), obstacles);
+		doAssertNoObstacleCrossed(b.getPoints(), obstacles);
+	}
+
 	public void testOffsetShrink() {
 		routing.addObstacle(offsetRectLeft.getCopy());
 		routing.addObstacle(offsetRectRight.getCopy());
@@ -636,6 +821,35 @@ public class ShortestPathRoutingTest extends TestCase {
 		doTestQuadBendMiss(4);
 	}
 
+	public void testRandomLayouts() {
+		// the routes found by the previous search over all vertices
+		int[][][] expected = new int[][][] { new int[][] {
+				{ 100, 557, 115, 555, 252, 333 },
+				{ 476, 255, 136, 145 },
+				{ 558, 229, 504, 284 },
+				{ 400, 151, 286, 483 },
+				{ 308, 514, 265, 128 },
+				{ 259, 316, 615, 58 } }, new int[][] {
+				{ 136, 167, 303, 217, 360, 217, 440, 212, 559, 166 },
+				{ 698, 331, 299, 221, 99, 109 },
+				{ 158, 202, 121, 312, 85, 346, 70, 473 },
+				{ 714, 262, 635, 411, 494, 513 },
+				{ 534, 56, 491, 153, 444, 216, 204, 368, 138, 526 },
+				{ 494, 347, 340, 453, 191, 536 } }, new int[][] {
+				{ 124, 14, 339, 21 },
+				{ 357, 589, 229, 238 },
+				{ 707, 46, 653, 85, 630, 210 },
+				{ 726, 25, 649, 81, 275, 386 },
+				{ 171, 87, 195, 522 },
+				{ 450, 509, 65, 380 } } };
+		for (int i = 0; i < expected.length; i++) {
+			routing = new ShortestPathRouter();
+			List paths = doSetUpRandom(i + 1, new ArrayList());
+			routing.solve();
+			doAssertRoutes(paths, expected[i]);
+		}
+	}
+
 	public void testShortestPathOutsideOval() {
 		routing.addObstacle(ovalRect1.getCopy());
 		routing.addObstacle(ovalRect2.getCopy());
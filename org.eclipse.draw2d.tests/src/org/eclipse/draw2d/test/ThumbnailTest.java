@@ -10,9 +10,13 @@
  *******************************************************************************/
 package org.eclipse.draw2d.test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
 import org.eclipse.draw2d.Ellipse;
+import org.eclipse.draw2d.Figure;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.draw2d.parts.Thumbnail;
@@ -38,6 +42,10 @@ public class ThumbnailTest extends TestCase {
 		public Image getThumbnailImage() {
 			return super.getThumbnailImage();
 		}
+
+		public boolean isDirty() {
+			return super.isDirty();
+		}
 	}
 
 	public void test_Thumbnail() {
@@ -68,4 +76,54 @@ public class ThumbnailTest extends TestCase {
 		assertTrue(img == null);
 	}
 
+	public void test_DirtyRegions() {
+		TestThumbnail thumb = new TestThumbnail();
+		IFigure fig = new Figure();
+		fig.setBounds(new Rectangle(0, 0, 1000, 1000));
+		fig.setFont(Display.getDefault().getSystemFont());
+		IFigure child = new Ellipse();
+		child.setBounds(new Rectangle(100, 100, 50, 50));
+		fig.add(child);
+		thumb.setSource(fig);
+		thumb.setBounds(new Rectangle(0, 0, 100, 100));
+		thumb.getThumbnailImage();
+		waitForUpdate(thumb);
+
+		// a figure which is not contained in the source
+		thumb.notifyDirtyRegion(new Ellipse(), new Rectangle(0, 0, 10, 10));
+		thumb.notifyPainting(null, new HashMap());
+		assertFalse(thumb.isDirty());
+
+		// a region which is outside of the changed figure
+		thumb.notifyDirtyRegion(child, new Rectangle(500, 500, 10, 10));
+		thumb.notifyPainting(null, new HashMap());
+		assertFalse(thumb.isDirty());
+
+		thumb.notifyDirtyRegion(child, new Rectangle(100, 100, 10, 10));
+		thumb.notifyPainting(null, new HashMap());
+		assertTrue(thumb.isDirty());
+		thumb.getThumbnailImage();
+		waitForUpdate(thumb);
+
+		// without the dirty regions of the figures, any change in the source
+		// makes the thumbnail dirty
+		Map dirtyRegions = new HashMap();
+		dirtyRegions.put(new Ellipse(), new Rectangle(0, 0, 10, 10));
+		thumb.notifyPainting(null, dirtyRegions);
+		assertFalse(thumb.isDirty());
+		dirtyRegions.put(child, new Rectangle(500, 500, 10, 10));
+		thumb.notifyPainting(null, dirtyRegions);
+		assertTrue(thumb.isDirty());
+		thumb.getThumbnailImage();
+		waitForUpdate(thumb);
+	}
+
+	private void waitForUpdate(TestThumbnail thumb) {
+		Display display = Display.getDefault();
+		long timeout = System.currentTimeMillis() + 10000;
+		while (thumb.isDirty() && System.currentTimeMillis() < timeout)
+			display.readAndDispatch();
+		assertFalse(thumb.isDirty());
+	}
+
 }
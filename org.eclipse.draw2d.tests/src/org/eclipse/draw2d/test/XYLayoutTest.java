@@ -12,6 +12,8 @@ package org.eclipse.draw2d.test;
 
 import junit.framework.TestCase;
 
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.MarginBorder;
 import org.eclipse.draw2d.RectangleFigure;
 import org.eclipse.draw2d.XYLayout;
 import org.eclipse.draw2d.geometry.Dimension;
@@ -45,6 +47,89 @@ public class XYLayoutTest extends TestCase {
 		assertEquals(150, d.height);
 	}
 
+	public void testOnlyChangedChildrenAreLaidOut() {
+		CountingFigure first = new CountingFigure();
+		CountingFigure second = new CountingFigure();
+		createContents();
+		contents.add(first, new Rectangle(0, 0, 10, 10));
+		contents.add(second, new Rectangle(20, 0, 10, 10));
+		layout.layout(contents);
+		assertEquals(1, first.count);
+		assertEquals(1, second.count);
+
+		contents.setConstraint(second, new Rectangle(40, 0, 10, 10));
+		layout.layout(contents);
+
+		assertEquals(1, first.count);
+		assertEquals(2, second.count);
+		assertEquals(new Rectangle(40, 0, 10, 10), second.getBounds());
+	}
+
+	public void testMovedChildIsLaidOutAgain() {
+		createContents();
+		figure = new RectangleFigure();
+		contents.add(figure, new Rectangle(0, 0, 10, 10));
+		layout.layout(contents);
+
+		figure.setBounds(new Rectangle(5, 5, 10, 10));
+		layout.layout(contents);
+
+		assertEquals(new Rectangle(0, 0, 10, 10), figure.getBounds());
+	}
+
+	public void testInvalidatedChildIsLaidOutAgain() {
+		CountingFigure first = new CountingFigure();
+		CountingFigure second = new CountingFigure();
+		TestXYLayout testLayout = new TestXYLayout();
+		layout = testLayout;
+		contents = new RectangleFigure();
+		contents.setLayoutManager(layout);
+		contents.add(first, new Rectangle(0, 0, 10, 10));
+		contents.add(second, new Rectangle(20, 0, 10, 10));
+		layout.layout(contents);
+
+		testLayout.invalidate(second);
+		layout.layout(contents);
+
+		assertEquals(1, first.count);
+		assertEquals(2, second.count);
+	}
+
+	public void testPreferredSizeChildIsLaidOutAgain() {
+		createContents();
+		figure = new RectangleFigure();
+		figure.setPreferredSize(30, 20);
+		contents.add(figure, new Rectangle(0, 0, -1, -1));
+		layout.layout(contents);
+		assertEquals(new Rectangle(0, 0, 30, 20), figure.getBounds());
+
+		figure.setPreferredSize(50, 20);
+		layout.layout(contents);
+
+		assertEquals(new Rectangle(0, 0, 50, 20), figure.getBounds());
+	}
+
+	public void testAllChildrenAreLaidOutWhenOriginChanges() {
+		CountingFigure first = new CountingFigure();
+		CountingFigure second = new CountingFigure();
+		createContents();
+		contents.add(first, new Rectangle(0, 0, 10, 10));
+		contents.add(second, new Rectangle(20, 0, 10, 10));
+		layout.layout(contents);
+
+		contents.setBorder(new MarginBorder(5));
+		layout.layout(contents);
+
+		assertEquals(new Rectangle(5, 5, 10, 10), first.getBounds());
+		assertEquals(new Rectangle(25, 5, 10, 10), second.getBounds());
+	}
+
+	private void createContents() {
+		layout = new XYLayout();
+		contents = new RectangleFigure();
+		contents.setLayoutManager(layout);
+	}
+
 	/*
 	 * @see TestCase#tearDown()
 	 */
@@ -52,4 +137,19 @@ public class XYLayoutTest extends TestCase {
 		super.tearDown();
 	}
 
+	private static class TestXYLayout extends XYLayout {
+		protected void invalidate(IFigure child) {
+			super.invalidate(child);
+		}
+	}
+
+	private static class CountingFigure extends RectangleFigure {
+		int count;
+
+		public void setBounds(Rectangle rect) {
+			count++;
+			super.setBounds(rect);
+		}
+	}
+
 }
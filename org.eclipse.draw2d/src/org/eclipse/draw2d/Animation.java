@@ -17,6 +17,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.swt.widgets.Display;
+
 /**
  * A utility for coordinating figure animations. During animation, multiple
  * <i>animators</i> are employed to capture the <em>initial</em> and
@@ -37,6 +39,16 @@ import java.util.Set;
  * The run method will force a validation pass to capture the final states, and
  * then commence the animation. The animation is synchronous and the method does
  * not return until the animation has completed.
+ * <P>
+ * Alternatively, {@link #runAsync(int)} captures the final states in the same
+ * way, but returns right away and plays the animation one frame at a time from
+ * the display's timer, so the user interface stays responsive. The frames are
+ * paced at the {@link #setFrameRate(int) frame rate}, and the progress of each
+ * frame follows the elapsed time, so frames are skipped if they take too long
+ * to paint. Animations on different update managers play at the same time. If
+ * another animation is started on the update manager of a running animation,
+ * the running animation is cancelled, and its figures continue from their
+ * current state towards their new final state.
  * 
  * @see LayoutAnimator
  * @since 3.2
@@ -63,84 +75,203 @@ public class Animation {
 		}
 	}
 
-	private static final int DEFAULT_DELAY = 250;
-	private static Set figureAnimators;
-	private static Map finalStates;
-
-	private static Map initialStates;
-	private static final int PLAYBACK = 3;
-	private static float progress;
-	private static final int RECORD_FINAL = 2;
-
-	private static final int RECORD_INITIAL = 1;
-	private static long startTime;
-	private static int state;
-	private static Set toCapture;
-
-	private static UpdateManager updateManager;
-
-	private static void capture() {
-		Iterator keys = figureAnimators.iterator();
-		while (keys.hasNext()) {
-			AnimPair pair = (AnimPair) keys.next();
-			if (toCapture.contains(pair))
-				pair.animator.capture(pair.figure);
-			else
-				keys.remove();
+	/**
+	 * The states of one animation, from its beginning until it has completed
+	 * or has been cancelled. Frames of an asynchronous animation are played
+	 * when it is run by the display's timer.
+	 */
+	private static class Session implements Runnable {
+
+		final Set figureAnimators = new HashSet();
+		final Map finalStates = new HashMap();
+		final Map initialStates = new HashMap();
+		final Set toCapture = new HashSet();
+
+		Display display;
+		int duration;
+		int framesPlayed;
+		float progress;
+		long startTime;
+		int state = RECORD_INITIAL;
+		UpdateManager updateManager;
+
+		private void capture() {
+			Iterator keys = figureAnimators.iterator();
+			while (keys.hasNext()) {
+				AnimPair pair = (AnimPair) keys.next();
+				if (toCapture.contains(pair))
+					pair.animator.capture(pair.figure);
+				else
+					keys.remove();
+			}
 		}
-	}
 
-	static void cleanup() {
-		if (figureAnimators != null) {
+		void cleanup() {
+			if (state == 0)
+				return;
+			if (updateManager != null && playing.get(updateManager) == this)
+				playing.remove(updateManager);
 			Iterator keys = figureAnimators.iterator();
 			while (keys.hasNext()) {
 				AnimPair pair = (AnimPair) keys.next();
 				pair.animator.tearDown(pair.figure);
 			}
-		}
 
-		state = 0;
-		step();
-		// Allow layout to occur normally
-		// updateManager.performUpdate();
-
-		initialStates = null;
-		finalStates = null;
-		figureAnimators = null;
-		updateManager = null;
-		toCapture = null;
-		state = 0;
-	}
+			state = 0;
+			// Allow layout to occur normally
+			step();
+		}
 
-	private static void doRun(int duration) {
-		state = RECORD_FINAL;
-		findUpdateManager();
-		updateManager.performValidation();
-		capture();
-		state = PLAYBACK;
-		progress = 0.1f;
-		startTime = System.currentTimeMillis();
+		private void notifyPlaybackStarting() {
+			Iterator keys = figureAnimators.iterator();
+			while (keys.hasNext()) {
+				AnimPair pair = (AnimPair) keys.next();
+				pair.animator.playbackStarting(pair.figure);
+			}
+		}
 
-		notifyPlaybackStarting();
+		/**
+		 * Plays all frames, waiting between them to keep to the frame rate.
+		 */
+		void play() {
+			while (true) {
+				long frameStart = System.currentTimeMillis();
+				if (!playFrame())
+					return;
+				long delay = frameStart + frameInterval
+						- System.currentTimeMillis();
+				if (delay > 0) {
+					try {
+						Thread.sleep(delay);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
 
-		while (progress != 0) {
-			step();
-			updateManager.performUpdate();
-			if (progress == 1.0)
-				progress = 0;
-			else {
+		/**
+		 * Plays the next frame, at the progress of the elapsed time.
+		 * 
+		 * @return <code>true</code> if more frames follow
+		 */
+		boolean playFrame() {
+			if (state != PLAYBACK)
+				return false;
+			if (framesPlayed++ > 0) {
 				int delta = (int) (System.currentTimeMillis() - startTime);
 				if (delta >= duration)
 					progress = 1f;
 				else
 					progress = 0.1f + 0.9f * delta / duration;
 			}
+			current = this;
+			try {
+				step();
+				updateManager.performUpdate();
+			} finally {
+				current = null;
+			}
+			return progress != 1f;
+		}
+
+		/**
+		 * Plays the next frame of an asynchronous animation, and schedules
+		 * the one after it.
+		 */
+		public void run() {
+			if (state != PLAYBACK)
+				return;
+			long frameStart = System.currentTimeMillis();
+			boolean more = false;
+			try {
+				more = playFrame() && !display.isDisposed();
+			} finally {
+				if (!more)
+					cleanup();
+			}
+			if (more) {
+				long delay = frameStart + frameInterval
+						- System.currentTimeMillis();
+				display.timerExec((int) Math.max(0, delay), this);
+			}
+		}
+
+		/**
+		 * Captures the final states and prepares the playback.
+		 * 
+		 * @return <code>false</code> if there is nothing to animate
+		 */
+		boolean start(int duration) {
+			if (figureAnimators.isEmpty())
+				return false;
+			this.duration = duration;
+			AnimPair pair = (AnimPair) figureAnimators.iterator().next();
+			updateManager = pair.figure.getUpdateManager();
+
+			// the figures of a running animation are invalidated while this
+			// one is still recording, so they continue from their current state
+			Session running = (Session) playing.get(updateManager);
+			if (running != null)
+				running.cleanup();
+
+			state = RECORD_FINAL;
+			updateManager.performValidation();
+			capture();
+			state = PLAYBACK;
+			progress = 0.1f;
+			startTime = System.currentTimeMillis();
+			playing.put(updateManager, this);
+
+			current = this;
+			try {
+				notifyPlaybackStarting();
+			} finally {
+				current = null;
+			}
+			return true;
+		}
+
+		private void step() {
+			Iterator iter = initialStates.keySet().iterator();
+			while (iter.hasNext())
+				((AnimPair) iter.next()).figure.revalidate();
 		}
 	}
 
-	private static void findUpdateManager() {
-		AnimPair pair = (AnimPair) figureAnimators.iterator().next();
-		updateManager = pair.figure.getUpdateManager();
+	private static final int DEFAULT_DELAY = 250;
+	private static final int DEFAULT_FRAME_RATE = 60;
+	private static final int PLAYBACK = 3;
+	private static final int RECORD_FINAL = 2;
+	private static final int RECORD_INITIAL = 1;
+
+	private static Session current;
+	private static int frameInterval = 1000 / DEFAULT_FRAME_RATE;
+	private static final Map playing = new HashMap();
+	private static Session recording;
+
+	/**
+	 * Returns the animation whose states are being recorded or played back.
+	 */
+	private static Session active() {
+		return current != null ? current : recording;
+	}
+
+	/**
+	 * Stops the animation which is playing on the given update manager. The
+	 * figures are laid out in their final state with the next update.
+	 * 
+	 * @param updateManager
+	 *            the update manager
+	 * @return <code>true</code> if an animation was stopped
+	 * @since 3.10
+	 */
+	public static boolean cancel(UpdateManager updateManager) {
+		Session session = (Session) playing.get(updateManager);
+		if (session == null)
+			return false;
+		session.cleanup();
+		return true;
 	}
 
 	/**
@@ -154,7 +285,10 @@ public class Animation {
 	 * @since 3.2
 	 */
 	public static Object getFinalState(Animator animator, IFigure figure) {
-		return finalStates.get(new AnimPair(animator, figure));
+		Session session = active();
+		if (session == null)
+			return null;
+		return session.finalStates.get(new AnimPair(animator, figure));
 	}
 
 	/**
@@ -169,7 +303,10 @@ public class Animation {
 	 * @since 3.2
 	 */
 	public static Object getInitialState(Animator animator, IFigure figure) {
-		return initialStates.get(new AnimPair(animator, figure));
+		Session session = active();
+		if (session == null)
+			return null;
+		return session.initialStates.get(new AnimPair(animator, figure));
 	}
 
 	/**
@@ -179,25 +316,39 @@ public class Animation {
 	 * @since 3.2
 	 */
 	public static float getProgress() {
-		return progress;
+		Session session = active();
+		if (session == null)
+			return 0;
+		return session.progress;
 	}
 
 	static void hookAnimator(IFigure figure, Animator animator) {
 		AnimPair pair = new AnimPair(animator, figure);
-		if (figureAnimators.add(pair))
+		if (recording.figureAnimators.add(pair))
 			animator.init(figure);
 	}
 
 	static void hookNeedsCapture(IFigure figure, Animator animator) {
 		AnimPair pair = new AnimPair(animator, figure);
-		if (figureAnimators.contains(pair))
-			toCapture.add(pair);
+		if (recording.figureAnimators.contains(pair))
+			recording.toCapture.add(pair);
 	}
 
 	static boolean hookPlayback(IFigure figure, Animator animator) {
-		if (toCapture.contains(new AnimPair(animator, figure)))
+		Session session = current;
+		// figures may be validated between the frames of an animation
+		if (session == null)
+			session = (Session) playing.get(figure.getUpdateManager());
+		if (session == null
+				|| !session.toCapture.contains(new AnimPair(animator, figure)))
+			return false;
+		Session previous = current;
+		current = session;
+		try {
 			return animator.playback(figure);
-		return false;
+		} finally {
+			current = previous;
+		}
 	}
 
 	/**
@@ -207,15 +358,15 @@ public class Animation {
 	 * @since 3.2
 	 */
 	public static boolean isAnimating() {
-		return state == PLAYBACK;
+		return current != null || !playing.isEmpty();
 	}
 
 	static boolean isFinalRecording() {
-		return state == RECORD_FINAL;
+		return recording != null && recording.state == RECORD_FINAL;
 	}
 
 	static boolean isInitialRecording() {
-		return state == RECORD_INITIAL;
+		return recording != null && recording.state == RECORD_INITIAL;
 	}
 
 	/**
@@ -226,31 +377,23 @@ public class Animation {
 	 * @since 3.2
 	 */
 	public static boolean markBegin() {
-		if (state == 0) {
-			state = RECORD_INITIAL;
-			initialStates = new HashMap();
-			finalStates = new HashMap();
-			figureAnimators = new HashSet();
-			toCapture = new HashSet();
+		if (recording == null && current == null) {
+			recording = new Session();
 			return true;
 		}
 		return false;
 	}
 
-	private static void notifyPlaybackStarting() {
-		Iterator keys = figureAnimators.iterator();
-		while (keys.hasNext()) {
-			AnimPair pair = (AnimPair) keys.next();
-			pair.animator.playbackStarting(pair.figure);
-		}
-	}
-
 	static void putFinalState(Animator animator, IFigure key, Object state) {
-		finalStates.put(new AnimPair(animator, key), state);
+		Session session = active();
+		if (session != null)
+			session.finalStates.put(new AnimPair(animator, key), state);
 	}
 
 	static void putInitialState(Animator animator, IFigure key, Object state) {
-		initialStates.put(new AnimPair(animator, key), state);
+		Session session = active();
+		if (session != null)
+			session.initialStates.put(new AnimPair(animator, key), state);
 	}
 
 	/**
@@ -271,20 +414,62 @@ public class Animation {
 	 * @since 3.2
 	 */
 	public static void run(int duration) {
-		if (state == 0)
+		Session session = recording;
+		if (session == null)
 			return;
 		try {
-			if (!figureAnimators.isEmpty())
-				doRun(duration);
+			if (session.start(duration))
+				session.play();
 		} finally {
-			cleanup();
+			recording = null;
+			session.cleanup();
 		}
 	}
 
-	private static void step() {
-		Iterator iter = initialStates.keySet().iterator();
-		while (iter.hasNext())
-			((AnimPair) iter.next()).figure.revalidate();
+	/**
+	 * Captures the final states for the animation and then plays the animation
+	 * asynchronously. The first frame is played before this method returns,
+	 * the others are played from the timer of the current display. If there is
+	 * no current display, the animation is played synchronously.
+	 * 
+	 * @param duration
+	 *            the length of animation in milliseconds
+	 * @see #run(int)
+	 * @since 3.10
+	 */
+	public static void runAsync(int duration) {
+		Session session = recording;
+		if (session == null)
+			return;
+		Display display = Display.getCurrent();
+		if (display == null) {
+			run(duration);
+			return;
+		}
+		boolean started = false;
+		try {
+			started = session.start(duration);
+		} finally {
+			recording = null;
+			if (!started)
+				session.cleanup();
+		}
+		if (started) {
+			session.display = display;
+			session.run();
+		}
+	}
+
+	/**
+	 * Sets the number of frames per second at which animations are played.
+	 * The default is 60.
+	 * 
+	 * @param framesPerSecond
+	 *            the frame rate
+	 * @since 3.10
+	 */
+	public static void setFrameRate(int framesPerSecond) {
+		frameInterval = 1000 / Math.max(1, framesPerSecond);
 	}
 
 }
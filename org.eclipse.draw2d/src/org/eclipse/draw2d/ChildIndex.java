@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A uniform grid over the bounds of a figure's children. It is used to find
+ * the children which may contain a point, or which intersect a rectangle,
+ * without visiting every child. Results are always returned in the order of
+ * the host's children, i.e. in painting order.
+ * <P>
+ * The index is kept current by listening to the children's
+ * {@link FigureListener#figureMoved(IFigure)} notifications. Children which
+ * cover too many cells are kept in a separate list which is checked on every
+ * query. If the number of the host's children differs from the number of
+ * indexed children, because children were added or removed through the list
+ * returned by {@link IFigure#getChildren()}, the index is brought up to date
+ * with the list before the next query.
+ */
+class ChildIndex implements FigureListener {
+
+	/**
+	 * The distance by which a child may accept points outside of its bounds.
+	 * The tolerance of a {@link Polyline} is used if it is larger.
+	 */
+	static final int HIT_TOLERANCE = 4;
+
+	private static final int CELL_SIZE = 256;
+	private static final int MAX_CELLS_PER_CHILD = 64;
+
+	private static final Comparator Z_ORDER = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			return ((Entry) o1).order - ((Entry) o2).order;
+		}
+	};
+
+	private static class Entry {
+		final IFigure figure;
+		int order;
+		int stamp;
+		int tolerance;
+		// the indexed cell range, or left == Integer.MAX_VALUE if large
+		int left, top, right, bottom;
+
+		Entry(IFigure figure) {
+			this.figure = figure;
+		}
+
+		boolean isLarge() {
+			return left == Integer.MAX_VALUE;
+		}
+	}
+
+	private final IFigure host;
+	private final Map cells = new HashMap();
+	private final Map entries = new HashMap();
+	private final List largeEntries = new ArrayList();
+	private final Rectangle query = new Rectangle();
+	private int nextOrder;
+	private boolean orderValid = true;
+	private int stamp;
+
+	ChildIndex(IFigure host) {
+		this.host = host;
+		List children = host.getChildren();
+		for (int i = 0; i < children.size(); i++)
+			add((IFigure) children.get(i), -1);
+	}
+
+	/**
+	 * Adds the given child, which has already been added to the host at the
+	 * given index (or -1 for the end).
+	 */
+	void add(IFigure child, int index) {
+		Entry entry = createEntry(child);
+		if (index == -1 || index == host.getChildren().size() - 1)
+			entry.order = nextOrder++;
+		else
+			orderValid = false;
+	}
+
+	void dispose() {
+		List children = host.getChildren();
+		for (int i = 0; i < children.size(); i++)
+			((IFigure) children.get(i)).removeFigureListener(this);
+		cells.clear();
+		entries.clear();
+		largeEntries.clear();
+	}
+
+	/**
+	 * @see FigureListener#figureMoved(IFigure)
+	 */
+	public void figureMoved(IFigure source) {
+		Entry entry = (Entry) entries.get(source);
+		if (entry == null)
+			return;
+		delete(entry);
+		insert(entry);
+	}
+
+	/**
+	 * Returns the children whose bounds, expanded by their tolerance, contain
+	 * the given point, in painting order.
+	 */
+	IFigure[] getChildrenAt(int x, int y) {
+		query.setBounds(x, y, 1, 1);
+		return getChildren(query, true);
+	}
+
+	/**
+	 * Returns the children whose bounds intersect the given rectangle, in
+	 * painting order, or <code>null</code> if the rectangle is so large that
+	 * it is cheaper to visit all children.
+	 */
+	IFigure[] getChildrenIntersecting(Rectangle rect) {
+		long cellCount = ((long) cell(rect.right() - 1) - cell(rect.x) + 1)
+				* ((long) cell(rect.bottom() - 1) - cell(rect.y) + 1);
+		if (cellCount > entries.size())
+			return null;
+		return getChildren(rect, false);
+	}
+
+	/**
+	 * Removes the given child from the index.
+	 */
+	void remove(IFigure child) {
+		Entry entry = (Entry) entries.remove(child);
+		if (entry == null)
+			return;
+		child.removeFigureListener(this);
+		delete(entry);
+	}
+
+	private static int cell(int coordinate) {
+		if (coordinate >= 0)
+			return coordinate / CELL_SIZE;
+		return (coordinate + 1) / CELL_SIZE - 1;
+	}
+
+	private Entry createEntry(IFigure child) {
+		Entry entry = new Entry(child);
+		entries.put(child, entry);
+		insert(entry);
+		child.addFigureListener(this);
+		return entry;
+	}
+
+	private static Long key(int column, int row) {
+		return new Long(((long) column << 32) | (row & 0xFFFFFFFFL));
+	}
+
+	private void delete(Entry entry) {
+		if (entry.isLarge()) {
+			largeEntries.remove(entry);
+			return;
+		}
+		for (int column = entry.left; column <= entry.right; column++)
+			for (int row = entry.top; row <= entry.bottom; row++) {
+				Long key = key(column, row);
+				List cell = (List) cells.get(key);
+				cell.remove(entry);
+				if (cell.isEmpty())
+					cells.remove(key);
+			}
+	}
+
+	/**
+	 * Returns the children which intersect the given rectangle, with their
+	 * bounds expanded by their tolerance if <code>hit</code> is
+	 * <code>true</code>. The cells of a child already include its tolerance.
+	 */
+	private IFigure[] getChildren(Rectangle rect, boolean hit) {
+		validateOrder();
+		stamp++;
+		List result = new ArrayList();
+		int left = cell(rect.x);
+		int right = cell(rect.right() - 1);
+		int top = cell(rect.y);
+		int bottom = cell(rect.bottom() - 1);
+		for (int column = left; column <= right; column++)
+			for (int row = top; row <= bottom; row++) {
+				List cell = (List) cells.get(key(column, row));
+				if (cell != null)
+					collect(cell, rect, hit, result);
+			}
+		collect(largeEntries, rect, hit, result);
+
+		Entry[] found = (Entry[]) result.toArray(new Entry[result.size()]);
+		Arrays.sort(found, Z_ORDER);
+		IFigure[] figures = new IFigure[found.length];
+		for (int i = 0; i < found.length; i++)
+			figures[i] = found[i].figure;
+		return figures;
+	}
+
+	private void collect(List cell, Rectangle rect, boolean hit, List result) {
+		for (int i = 0; i < cell.size(); i++) {
+			Entry entry = (Entry) cell.get(i);
+			if (entry.stamp == stamp)
+				continue;
+			entry.stamp = stamp;
+			int tolerance = hit ? entry.tolerance : 0;
+			Rectangle bounds = entry.figure.getBounds();
+			if (bounds.x - tolerance < rect.right()
+					&& bounds.y - tolerance < rect.bottom()
+					&& bounds.right() + tolerance > rect.x
+					&& bounds.bottom() + tolerance > rect.y)
+				result.add(entry);
+		}
+	}
+
+	private void insert(Entry entry) {
+		entry.tolerance = HIT_TOLERANCE;
+		if (entry.figure instanceof Polyline)
+			entry.tolerance = Math.max(HIT_TOLERANCE, ((Polyline) entry.figure)
+					.getTolerance());
+		Rectangle bounds = entry.figure.getBounds();
+		int left = cell(bounds.x - entry.tolerance);
+		int right = cell(bounds.right() - 1 + entry.tolerance);
+		int top = cell(bounds.y - entry.tolerance);
+		int bottom = cell(bounds.bottom() - 1 + entry.tolerance);
+		if (((long) right - left + 1) * ((long) bottom - top + 1)
+				> MAX_CELLS_PER_CHILD) {
+			entry.left = Integer.MAX_VALUE;
+			largeEntries.add(entry);
+			return;
+		}
+		entry.left = left;
+		entry.right = right;
+		entry.top = top;
+		entry.bottom = bottom;
+		for (int column = left; column <= right; column++)
+			for (int row = top; row <= bottom; row++) {
+				Long key = key(column, row);
+				List cell = (List) cells.get(key);
+				if (cell == null) {
+					cell = new ArrayList(4);
+					cells.put(key, cell);
+				}
+				cell.add(entry);
+			}
+	}
+
+	private void validateOrder() {
+		List children = host.getChildren();
+		if (orderValid && entries.size() == children.size())
+			return;
+		stamp++;
+		for (int i = 0; i < children.size(); i++) {
+			IFigure child = (IFigure) children.get(i);
+			Entry entry = (Entry) entries.get(child);
+			if (entry == null)
+				entry = createEntry(child);
+			entry.order = i;
+			entry.stamp = stamp;
+		}
+		if (entries.size() > children.size()) {
+			Entry[] all = (Entry[]) entries.values().toArray(
+					new Entry[entries.size()]);
+			for (int i = 0; i < all.length; i++)
+				if (all[i].stamp != stamp)
+					remove(all[i].figure);
+		}
+		nextOrder = children.size();
+		orderValid = true;
+	}
+
+}
@@ -25,6 +25,13 @@ import org.eclipse.draw2d.geometry.Rectangle;
 
 /**
  * An UpdateManager that asynchronously updates the affected figures.
+ * <P>
+ * Damage is tracked as a small set of disjoint rectangles rather than a single
+ * union, so that a few small changes which are far apart from each other do
+ * not cause everything in between to be repainted. Two damaged rectangles are
+ * only merged if they overlap, if merging them does not increase the painted
+ * area, or if more than {@link #getMaximumDamageRegions()} rectangles would
+ * otherwise need to be painted.
  */
 public class DeferredUpdateManager extends UpdateManager {
 
@@ -45,7 +52,16 @@ public class DeferredUpdateManager extends UpdateManager {
 		}
 	}
 
+	/**
+	 * The default maximum number of disjoint regions painted per update.
+	 * 
+	 * @since 3.10
+	 */
+	public static final int DEFAULT_MAXIMUM_DAMAGE_REGIONS = 8;
+
 	private Rectangle damage;
+	private List damagedRegions = new ArrayList();
+	private int maximumDamageRegions = DEFAULT_MAXIMUM_DAMAGE_REGIONS;
 	private Map dirtyRegions = new HashMap();
 
 	private GraphicsSource graphicsSource;
@@ -120,6 +136,70 @@ public class DeferredUpdateManager extends UpdateManager {
 		queueWork();
 	}
 
+	/**
+	 * Adds the given rectangle (in root coordinates) to the list of damaged
+	 * regions. Any region which overlaps the rectangle, or which can be merged
+	 * with it without increasing the total painted area, is merged into it.
+	 * If the number of regions then exceeds the maximum, the two regions whose
+	 * union wastes the least area are merged.
+	 * 
+	 * @param rect
+	 *            the damaged rectangle, which may be modified
+	 */
+	private void addDamage(Rectangle rect) {
+		if (rect.isEmpty())
+			return;
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			for (int i = damagedRegions.size() - 1; i >= 0; i--) {
+				Rectangle region = (Rectangle) damagedRegions.get(i);
+				if (region.intersects(rect)
+						|| getMergeCost(region, rect) <= 0) {
+					rect.union(region);
+					damagedRegions.remove(i);
+					merged = true;
+				}
+			}
+		}
+		damagedRegions.add(rect);
+
+		while (damagedRegions.size() > maximumDamageRegions) {
+			int first = 0, second = 1;
+			long minCost = Long.MAX_VALUE;
+			for (int i = 0; i < damagedRegions.size(); i++) {
+				Rectangle r1 = (Rectangle) damagedRegions.get(i);
+				for (int j = i + 1; j < damagedRegions.size(); j++) {
+					long cost = getMergeCost(r1,
+							(Rectangle) damagedRegions.get(j));
+					if (cost < minCost) {
+						minCost = cost;
+						first = i;
+						second = j;
+					}
+				}
+			}
+			Rectangle removed = (Rectangle) damagedRegions.remove(second);
+			Rectangle union = ((Rectangle) damagedRegions.remove(first))
+					.union(removed);
+			// the union may now overlap other regions, so add it again
+			addDamage(union);
+		}
+	}
+
+	/**
+	 * Returns the area which would additionally have to be painted if the two
+	 * given (non-overlapping) rectangles were replaced by their union.
+	 */
+	private static long getMergeCost(Rectangle r1, Rectangle r2) {
+		int x = Math.min(r1.x, r2.x);
+		int y = Math.min(r1.y, r2.y);
+		long width = Math.max(r1.right(), r2.right()) - x;
+		long height = Math.max(r1.bottom(), r2.bottom()) - y;
+		return width * height - (long) r1.width * r1.height - (long) r2.width
+				* r2.height;
+	}
+
 	/**
 	 * Adds the given figure to the update queue. Invalid figures will be
 	 * validated before the damaged regions are repainted.
@@ -134,6 +214,17 @@ public class DeferredUpdateManager extends UpdateManager {
 		invalidFigures.add(f);
 	}
 
+	/**
+	 * Returns the maximum number of disjoint regions that are painted
+	 * separately during a single update.
+	 * 
+	 * @return the maximum number of damage regions
+	 * @since 3.10
+	 */
+	public int getMaximumDamageRegions() {
+		return maximumDamageRegions;
+	}
+
 	/**
 	 * Returns a Graphics object for the given region.
 	 * 
@@ -162,7 +253,8 @@ public class DeferredUpdateManager extends UpdateManager {
 				Rectangle rect = graphics.getClip(new Rectangle());
 				HashMap map = new HashMap();
 				map.put(root, rect);
-				firePainting(rect, map);
+				fireDirtyRegion(root, rect);
+				firePainting(rect, new Rectangle[] { rect }, map);
 			}
 			performValidation();
 			root.paint(graphics);
@@ -265,6 +357,8 @@ public class DeferredUpdateManager extends UpdateManager {
 
 	/**
 	 * Releases the graphics object, which causes the GraphicsSource to flush.
+	 * When several disjoint regions are repaired, this is called once per
+	 * region.
 	 * 
 	 * @param graphics
 	 *            the graphics object
@@ -276,8 +370,11 @@ public class DeferredUpdateManager extends UpdateManager {
 
 	/**
 	 * Repaints the dirty regions on the update queue and calls
-	 * {@link UpdateManager#firePainting(Rectangle, Map)}, unless there are no
-	 * dirty regions.
+	 * {@link UpdateManager#firePainting(Rectangle, Rectangle[], Map)}, unless
+	 * there are no dirty regions. Before the dirty regions are translated to
+	 * the coordinates of the root figure, each is passed to
+	 * {@link UpdateManager#fireDirtyRegion(IFigure, Rectangle)}. The root figure
+	 * is painted once for each of the disjoint damaged regions.
 	 */
 	protected void repairDamage() {
 		Iterator keys = dirtyRegions.keySet().iterator();
@@ -291,6 +388,7 @@ public class DeferredUpdateManager extends UpdateManager {
 			contribution = (Rectangle) dirtyRegions.get(figure);
 			// A figure can't paint beyond its own bounds
 			contribution.intersect(figure.getBounds());
+			fireDirtyRegion(figure, contribution);
 			while (!contribution.isEmpty() && walker != null) {
 				walker.translateToParent(contribution);
 				contribution.intersect(walker.getBounds());
@@ -300,25 +398,39 @@ public class DeferredUpdateManager extends UpdateManager {
 				damage = new Rectangle(contribution);
 			else
 				damage.union(contribution);
+			addDamage(new Rectangle(contribution));
 		}
 
+		Rectangle[] regions = (Rectangle[]) damagedRegions
+				.toArray(new Rectangle[damagedRegions.size()]);
+		damagedRegions.clear();
+
 		if (!dirtyRegions.isEmpty()) {
 			Map oldRegions = dirtyRegions;
 			dirtyRegions = new HashMap();
-			firePainting(damage, oldRegions);
+			firePainting(damage, regions, oldRegions);
 		}
 
 		if (damage != null && !damage.isEmpty()) {
-			// ystem.out.println(damage);
-			Graphics graphics = getGraphics(damage);
-			if (graphics != null) {
-				root.paint(graphics);
-				releaseGraphics(graphics);
-			}
+			if (regions.length == 1)
+				repairDamage(damage);
+			else
+				for (int i = 0; i < regions.length; i++) {
+					damage = regions[i];
+					repairDamage(damage);
+				}
 		}
 		damage = null;
 	}
 
+	private void repairDamage(Rectangle region) {
+		Graphics graphics = getGraphics(region);
+		if (graphics != null) {
+			root.paint(graphics);
+			releaseGraphics(graphics);
+		}
+	}
+
 	/**
 	 * Adds the given runnable and queues an update if an update is not under
 	 * progress.
@@ -342,6 +454,21 @@ public class DeferredUpdateManager extends UpdateManager {
 		graphicsSource = gs;
 	}
 
+	/**
+	 * Sets the maximum number of disjoint regions that are painted separately
+	 * during a single update. A value of <code>1</code> causes all damage to
+	 * be unioned into a single rectangle.
+	 * 
+	 * @param max
+	 *            the maximum number of damage regions, at least 1
+	 * @since 3.10
+	 */
+	public void setMaximumDamageRegions(int max) {
+		if (max < 1)
+			throw new IllegalArgumentException();
+		maximumDamageRegions = max;
+	}
+
 	/**
 	 * Sets the root figure.
 	 * 
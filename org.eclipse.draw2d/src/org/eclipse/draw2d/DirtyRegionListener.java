@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.Map;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * An extension of {@link UpdateListener} for listeners that want to know the
+ * dirty region of each figure in the coordinates of that figure, including
+ * areas which are not visible, for instance because they are scrolled out of
+ * view. Update managers which support it (like the
+ * {@link DeferredUpdateManager}) call
+ * {@link #notifyDirtyRegion(IFigure, Rectangle)} for each dirty figure before
+ * calling {@link UpdateListener#notifyPainting(Rectangle, Map)}, whose dirty
+ * regions remain in the coordinates of the root figure.
+ * 
+ * @since 3.10
+ */
+public interface DirtyRegionListener extends UpdateListener {
+
+	/**
+	 * Notifies the listener that the given region of a figure is about to be
+	 * repainted. The region is in the coordinates of the figure and is only
+	 * clipped to the figure's bounds. It must not be modified.
+	 * 
+	 * @param figure
+	 *            the dirty figure
+	 * @param region
+	 *            the dirty region of the figure
+	 */
+	void notifyDirtyRegion(IFigure figure, Rectangle region);
+
+}
@@ -14,6 +14,7 @@ package org.eclipse.draw2d;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -78,6 +79,7 @@ public class Figure implements IFigure {
 	private EventListenerList eventListeners = new EventListenerList();
 
 	private List children = Collections.EMPTY_LIST;
+	ChildIndex childIndex;
 
 	/**
 	 * This Figure's preferred size.
@@ -154,6 +156,8 @@ public class Figure implements IFigure {
 		else
 			children.add(index, figure);
 		figure.setParent(this);
+		if (childIndex != null)
+			childIndex.add(figure, index);
 
 		if (layoutManager != null)
 			layoutManager.setConstraint(figure, constraint);
@@ -349,10 +353,13 @@ public class Figure implements IFigure {
 
 		x = PRIVATE_POINT.x;
 		y = PRIVATE_POINT.y;
+		List candidates = children;
+		if (childIndex != null)
+			candidates = Arrays.asList(childIndex.getChildrenAt(x, y));
 		IFigure fig;
-		for (int i = children.size(); i > 0;) {
+		for (int i = candidates.size(); i > 0;) {
 			i--;
-			fig = (IFigure) children.get(i);
+			fig = (IFigure) candidates.get(i);
 			if (fig.isVisible()) {
 				fig = fig.findFigureAt(x, y, search);
 				if (fig != null)
@@ -447,10 +454,14 @@ public class Figure implements IFigure {
 		if (!getClientArea(Rectangle.SINGLETON).contains(PRIVATE_POINT))
 			return null;
 
+		List candidates = children;
+		if (childIndex != null)
+			candidates = Arrays.asList(childIndex.getChildrenAt(
+					PRIVATE_POINT.x, PRIVATE_POINT.y));
 		IFigure fig;
-		for (int i = children.size(); i > 0;) {
+		for (int i = candidates.size(); i > 0;) {
 			i--;
-			fig = (IFigure) children.get(i);
+			fig = (IFigure) candidates.get(i);
 			if (fig.isVisible() && fig.isEnabled()) {
 				if (fig.containsPoint(PRIVATE_POINT.x, PRIVATE_POINT.y)) {
 					fig = fig.findMouseEventTargetAt(PRIVATE_POINT.x,
@@ -1000,6 +1011,18 @@ public class Figure implements IFigure {
 		return useLocalCoordinates();
 	}
 
+	/**
+	 * Returns <code>true</code> if this Figure maintains a spatial index over
+	 * the bounds of its children.
+	 * 
+	 * @return whether the children are indexed
+	 * @see #setChildIndexEnabled(boolean)
+	 * @since 3.10
+	 */
+	public boolean isChildIndexEnabled() {
+		return childIndex != null;
+	}
+
 	/**
 	 * @see IFigure#isEnabled()
 	 */
@@ -1097,7 +1120,8 @@ public class Figure implements IFigure {
 	}
 
 	/**
-	 * Paints this Figure and its children.
+	 * Paints this Figure and its children. If a {@link LevelOfDetail} painter
+	 * applies to this Figure at the current scale, only that painter is used.
 	 * 
 	 * @param graphics
 	 *            The Graphics object used for painting
@@ -1112,6 +1136,8 @@ public class Figure implements IFigure {
 			graphics.setForegroundColor(getLocalForegroundColor());
 		if (font != null)
 			graphics.setFont(font);
+		if (LevelOfDetail.paint(this, graphics))
+			return;
 
 		graphics.pushState();
 		try {
@@ -1145,27 +1171,43 @@ public class Figure implements IFigure {
 	 * entered.
 	 * <P>
 	 * This method must leave the Graphics in its original state upon return.
+	 * <P>
+	 * If the children are indexed (see {@link #setChildIndexEnabled(boolean)})
+	 * and no clipping strategy is set, only the children intersecting the
+	 * current clip are visited.
 	 * 
 	 * @param graphics
 	 *            the graphics used to paint
 	 * @since 2.0
 	 */
 	protected void paintChildren(Graphics graphics) {
-		for (int i = 0; i < children.size(); i++) {
-			IFigure child = (IFigure) children.get(i);
+		// the clip is the same for every child, since the state is restored
+		// after each child has painted
+		Rectangle clip = graphics.getClip(new Rectangle());
+		List paintedChildren = children;
+		if (childIndex != null && clippingStrategy == null) {
+			IFigure[] intersecting = childIndex.getChildrenIntersecting(clip);
+			if (intersecting != null)
+				paintedChildren = Arrays.asList(intersecting);
+		}
+		for (int i = 0; i < paintedChildren.size(); i++) {
+			IFigure child = (IFigure) paintedChildren.get(i);
 			if (child.isVisible()) {
-				// determine clipping areas for child
-				Rectangle[] clipping = null;
-				if (clippingStrategy != null) {
-					clipping = clippingStrategy.getClip(child);
-				} else {
+				if (clippingStrategy == null) {
 					// default clipping behaviour is to clip at bounds
-					clipping = new Rectangle[] { child.getBounds() };
+					Rectangle childBounds = child.getBounds();
+					if (intersects(childBounds, clip)) {
+						graphics.clipRect(childBounds);
+						child.paint(graphics);
+						graphics.restoreState();
+					}
+					continue;
 				}
+				// determine clipping areas for child
+				Rectangle[] clipping = clippingStrategy.getClip(child);
 				// child may now paint inside the clipping areas
 				for (int j = 0; j < clipping.length; j++) {
-					if (clipping[j].intersects(graphics
-							.getClip(Rectangle.SINGLETON))) {
+					if (intersects(clipping[j], clip)) {
 						graphics.clipRect(clipping[j]);
 						child.paint(graphics);
 						graphics.restoreState();
@@ -1175,6 +1217,17 @@ public class Figure implements IFigure {
 		}
 	}
 
+	/**
+	 * Same as {@link Rectangle#intersects(Rectangle)}, without allocating the
+	 * intersection.
+	 */
+	private static boolean intersects(Rectangle r1, Rectangle r2) {
+		return Math.max(r1.x, r2.x) < Math.min(r1.x + r1.width, r2.x
+				+ r2.width)
+				&& Math.max(r1.y, r2.y) < Math.min(r1.y + r1.height, r2.y
+						+ r2.height);
+	}
+
 	/**
 	 * Paints this Figure's client area. The client area is typically defined as
 	 * the anything inside the Figure's {@link Border} or {@link Insets}, and by
@@ -1274,6 +1327,8 @@ public class Figure implements IFigure {
 		// incorrect dirty region corrections.
 		figure.erase();
 		figure.setParent(null);
+		if (childIndex != null)
+			childIndex.remove(figure);
 		children.remove(figure);
 		revalidate();
 	}
@@ -1526,6 +1581,41 @@ public class Figure implements IFigure {
 		}
 	}
 
+	/**
+	 * Sets whether this Figure maintains a spatial index over the bounds of its
+	 * children. When enabled, hit-testing (e.g.
+	 * {@link #findFigureAt(int, int, TreeSearch)} and
+	 * {@link #findMouseEventTargetAt(int, int)}) only visits the children near
+	 * the given point instead of all children. This is intended for containers
+	 * with a large number of children, like the layers of a diagram.
+	 * <P>
+	 * The index is disabled by default. It should only be enabled where the
+	 * children are only added, removed and reordered through
+	 * {@link #add(IFigure, Object, int)} and {@link #remove(IFigure)}, not by
+	 * changing the list returned by {@link #getChildren()}.
+	 * <P>
+	 * Indexed children must not accept points further than a few pixels
+	 * outside of their bounds in {@link IFigure#containsPoint(int, int)},
+	 * except for a {@link Polyline}, whose tolerance is taken into account.
+	 * They must call {@link #fireFigureMoved()} whenever their bounds change
+	 * (as {@link #setBounds(Rectangle)} does, and a {@link Polyline} when its
+	 * points or its tolerance change).
+	 * 
+	 * @param enabled
+	 *            <code>true</code> to index the children
+	 * @since 3.10
+	 */
+	public void setChildIndexEnabled(boolean enabled) {
+		if (enabled == (childIndex != null))
+			return;
+		if (enabled)
+			childIndex = new ChildIndex(this);
+		else {
+			childIndex.dispose();
+			childIndex = null;
+		}
+	}
+
 	/**
 	 * Sets the direction of any {@link Orientable} children. Allowable values
 	 * for <code>dir</code> are found in {@link PositionConstants}.
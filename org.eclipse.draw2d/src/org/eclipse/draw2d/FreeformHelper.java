@@ -10,16 +10,65 @@
  *******************************************************************************/
 package org.eclipse.draw2d;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.eclipse.draw2d.geometry.Insets;
 import org.eclipse.draw2d.geometry.Rectangle;
 
+/**
+ * Maintains the freeform extent of a FreeformFigure. The bounds of the
+ * children are kept in four sorted edges, so the extent is updated in
+ * logarithmic time when a single child moves, even if the child defined one of
+ * its edges. The host is only notified when the extent actually changes.
+ * <p>
+ * Like {@link Rectangle#union(Rectangle)}, empty bounds do not contribute to
+ * the extent, unless all children are empty.
+ */
 class FreeformHelper implements FreeformListener {
 
 	class ChildTracker implements FigureListener {
 		public void figureMoved(IFigure source) {
-			invalidate();
+			updateChild(source, source.getBounds());
+		}
+	}
+
+	/**
+	 * The values of one edge of the children's bounds, with the number of
+	 * children at each value.
+	 */
+	private static class Edge {
+		private final TreeMap counts = new TreeMap();
+
+		void add(int value) {
+			Integer key = new Integer(value);
+			Integer count = (Integer) counts.get(key);
+			counts.put(key, new Integer(count == null ? 1
+					: count.intValue() + 1));
+		}
+
+		boolean isEmpty() {
+			return counts.isEmpty();
+		}
+
+		int max() {
+			return ((Integer) counts.lastKey()).intValue();
+		}
+
+		int min() {
+			return ((Integer) counts.firstKey()).intValue();
+		}
+
+		void remove(int value) {
+			Integer key = new Integer(value);
+			int count = ((Integer) counts.get(key)).intValue();
+			if (count == 1)
+				counts.remove(key);
+			else
+				counts.put(key, new Integer(count - 1));
 		}
 	}
 
@@ -27,49 +76,104 @@ class FreeformHelper implements FreeformListener {
 	private Rectangle freeformExtent;
 	private FigureListener figureListener = new ChildTracker();
 
+	// the last known bounds or freeform extent of each child
+	private final Map childExtents = new HashMap();
+	private final List freeformChildren = new ArrayList();
+	private final Edge left = new Edge();
+	private final Edge top = new Edge();
+	private final Edge right = new Edge();
+	private final Edge bottom = new Edge();
+
 	FreeformHelper(FreeformFigure host) {
 		this.host = host;
 	}
 
-	public Rectangle getFreeformExtent() {
-		if (freeformExtent != null)
-			return freeformExtent;
-		Rectangle r;
+	private void addEdges(Rectangle r) {
+		if (r.isEmpty())
+			return;
+		left.add(r.x);
+		top.add(r.y);
+		right.add(r.x + r.width);
+		bottom.add(r.y + r.height);
+	}
+
+	private Rectangle calculateExtent() {
+		Insets insets = host.getInsets();
+		if (childExtents.isEmpty())
+			return new Rectangle(0, 0, insets.getWidth(), insets.getHeight());
+		Rectangle extent;
+		if (left.isEmpty())
+			// all children are empty, so use the first one
+			extent = getFirstChildExtent().getCopy();
+		else {
+			extent = new Rectangle(left.min(), top.min(), 0, 0);
+			extent.width = right.max() - extent.x;
+			extent.height = bottom.max() - extent.y;
+		}
+		host.translateToParent(extent);
+		extent.expand(insets);
+		return extent;
+	}
+
+	/**
+	 * Notifies the host if the extent has changed. If the extent has not been
+	 * calculated since the last notification, the host is notified without
+	 * comparing.
+	 */
+	private void extentChanged() {
+		if (freeformExtent == null) {
+			invalidate();
+			return;
+		}
+		Rectangle extent = calculateExtent();
+		if (extent.equals(freeformExtent))
+			return;
+		freeformExtent = extent;
+		notifyHost();
+	}
+
+	private Rectangle getFirstChildExtent() {
 		List children = host.getChildren();
 		for (int i = 0; i < children.size(); i++) {
-			IFigure child = (IFigure) children.get(i);
-			if (child instanceof FreeformFigure)
-				r = ((FreeformFigure) child).getFreeformExtent();
-			else
-				r = child.getBounds();
-			if (freeformExtent == null)
-				freeformExtent = r.getCopy();
-			else
-				freeformExtent.union(r);
+			Rectangle extent = (Rectangle) childExtents.get(children.get(i));
+			if (extent != null)
+				return extent;
 		}
-		Insets insets = host.getInsets();
+		return (Rectangle) childExtents.values().iterator().next();
+	}
+
+	public Rectangle getFreeformExtent() {
 		if (freeformExtent == null)
-			freeformExtent = new Rectangle(0, 0, insets.getWidth(),
-					insets.getHeight());
-		else {
-			host.translateToParent(freeformExtent);
-			freeformExtent.expand(insets);
-		}
-		// System.out.println("New extent calculated for " + host + " = " +
-		// freeformExtent);
+			freeformExtent = calculateExtent();
 		return freeformExtent;
 	}
 
 	public void hookChild(IFigure child) {
-		invalidate();
-		if (child instanceof FreeformFigure)
-			((FreeformFigure) child).addFreeformListener(this);
-		else
+		if (child instanceof FreeformFigure) {
+			FreeformFigure freeformChild = (FreeformFigure) child;
+			freeformChild.addFreeformListener(this);
+			freeformChildren.add(child);
+			updateChild(child, freeformChild.getFreeformExtent());
+		} else {
 			child.addFigureListener(figureListener);
+			updateChild(child, child.getBounds());
+		}
 	}
 
 	void invalidate() {
 		freeformExtent = null;
+		notifyHost();
+	}
+
+	public void notifyFreeformExtentChanged() {
+		// A childs freeform extent has changed, but it is not known which one
+		for (int i = 0; i < freeformChildren.size(); i++) {
+			FreeformFigure child = (FreeformFigure) freeformChildren.get(i);
+			updateChild(child, child.getFreeformExtent());
+		}
+	}
+
+	private void notifyHost() {
 		host.fireExtentChanged();
 		if (host.getParent() != null)
 			host.getParent().revalidate();
@@ -77,10 +181,13 @@ class FreeformHelper implements FreeformListener {
 			host.revalidate();
 	}
 
-	public void notifyFreeformExtentChanged() {
-		// A childs freeform extent has changed, therefore this extent must be
-		// recalculated
-		invalidate();
+	private void removeEdges(Rectangle r) {
+		if (r.isEmpty())
+			return;
+		left.remove(r.x);
+		top.remove(r.y);
+		right.remove(r.x + r.width);
+		bottom.remove(r.y + r.height);
 	}
 
 	public void setFreeformBounds(Rectangle bounds) {
@@ -96,11 +203,27 @@ class FreeformHelper implements FreeformListener {
 	}
 
 	public void unhookChild(IFigure child) {
-		invalidate();
-		if (child instanceof FreeformFigure)
+		if (child instanceof FreeformFigure) {
 			((FreeformFigure) child).removeFreeformListener(this);
-		else
+			freeformChildren.remove(child);
+		} else
 			child.removeFigureListener(figureListener);
+		Rectangle old = (Rectangle) childExtents.remove(child);
+		if (old != null) {
+			removeEdges(old);
+			extentChanged();
+		}
+	}
+
+	private void updateChild(IFigure child, Rectangle extent) {
+		Rectangle old = (Rectangle) childExtents.get(child);
+		if (extent.equals(old))
+			return;
+		childExtents.put(child, extent.getCopy());
+		if (old != null)
+			removeEdges(old);
+		addEdges(extent);
+		extentChanged();
 	}
 
 }
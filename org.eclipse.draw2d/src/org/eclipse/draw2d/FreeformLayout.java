@@ -88,16 +88,45 @@ public class FreeformLayout extends XYLayout {
 			} else {
 				flags &= ~FLAG__POSITIVE_COORDINATES;
 			}
+			origin = null;
 			invalidate();
 		}
 	}
 
 	/**
-	 * @see org.eclipse.draw2d.AbstractLayout#invalidate()
+	 * Returns whether the given constraint lies on or beyond the edges of the
+	 * current origin, so that changing it may move the origin.
 	 */
-	public void invalidate() {
-		origin = null;
-		super.invalidate();
+	private boolean isAtOrigin(Object constraint) {
+		if (origin == null || !(constraint instanceof Rectangle))
+			return false;
+		Rectangle r = (Rectangle) constraint;
+		return r.x <= -origin.x || r.y <= -origin.y;
+	}
+
+	/**
+	 * @see org.eclipse.draw2d.XYLayout#remove(org.eclipse.draw2d.IFigure)
+	 */
+	public void remove(IFigure figure) {
+		if (isPositiveCoordinates() && isAtOrigin(getConstraint(figure)))
+			origin = null;
+		super.remove(figure);
+	}
+
+	/**
+	 * Resets the origin if the new or the old constraint of the figure may
+	 * move it. Otherwise the origin is kept, so that it is not computed from
+	 * all constraints on each layout.
+	 * 
+	 * @see org.eclipse.draw2d.XYLayout#setConstraint(org.eclipse.draw2d.IFigure,
+	 *      java.lang.Object)
+	 */
+	public void setConstraint(IFigure figure, Object newConstraint) {
+		if (isPositiveCoordinates()) {
+			if (isAtOrigin(getConstraint(figure)) || isAtOrigin(newConstraint))
+				origin = null;
+		}
+		super.setConstraint(figure, newConstraint);
 	}
 
 }
@@ -505,14 +505,16 @@ public class Label extends Figure implements PositionConstants {
 		graphics.translate(bounds.x, bounds.y);
 		if (icon != null)
 			graphics.drawImage(icon, getIconLocation());
-		if (!isEnabled()) {
-			graphics.translate(1, 1);
-			graphics.setForegroundColor(ColorConstants.buttonLightest);
+		if (LevelOfDetail.isLegible(this, graphics)) {
+			if (!isEnabled()) {
+				graphics.translate(1, 1);
+				graphics.setForegroundColor(ColorConstants.buttonLightest);
+				graphics.drawText(getSubStringText(), getTextLocation());
+				graphics.translate(-1, -1);
+				graphics.setForegroundColor(ColorConstants.buttonDarker);
+			}
 			graphics.drawText(getSubStringText(), getTextLocation());
-			graphics.translate(-1, -1);
-			graphics.setForegroundColor(ColorConstants.buttonDarker);
 		}
-		graphics.drawText(getSubStringText(), getTextLocation());
 		graphics.translate(-bounds.x, -bounds.y);
 	}
 
@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.eclipse.draw2d;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.eclipse.draw2d.geometry.Point;
 
 /**
@@ -32,8 +35,11 @@ public class Layer extends Figure {
 		translateFromParent(pt);
 		x = pt.x;
 		y = pt.y;
-		for (int i = 0; i < getChildren().size(); i++) {
-			IFigure child = (IFigure) getChildren().get(i);
+		List children = getChildren();
+		if (childIndex != null)
+			children = Arrays.asList(childIndex.getChildrenAt(x, y));
+		for (int i = 0; i < children.size(); i++) {
+			IFigure child = (IFigure) children.get(i);
 			if (child.containsPoint(x, y))
 				return true;
 		}
@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simplifies the painting of figures which are painted at a small absolute
+ * scale, for example in a diagram which is zoomed out to fit.
+ * <P>
+ * A {@link Painter} can be registered for a figure class together with a scale
+ * threshold. When a figure of that class, or of one of its subclasses, is
+ * painted at an absolute scale below the threshold, the painter paints the
+ * figure instead, and neither the figure itself nor its children or border
+ * are painted. If several painters apply, the one with the lowest threshold is
+ * used. A class can be excluded, in which case neither the painters
+ * registered for its superclasses nor the legibility check apply to it or its
+ * subclasses.
+ * <P>
+ * Independently of any registration, the text of a {@link Label} is not
+ * painted if it would be less than {@link #getMinimumTextHeight()} pixels
+ * high.
+ * <P>
+ * Figures which override {@link Figure#paint(Graphics)} without calling the
+ * inherited method should call {@link #paint(IFigure, Graphics)} themselves.
+ * <P>
+ * The registrations may be changed from any thread. They are copied on each
+ * change, so painting never waits for a lock.
+ *
+ * @since 3.10
+ */
+public final class LevelOfDetail {
+
+	/**
+	 * Paints a figure in less detail.
+	 */
+	public interface Painter {
+		/**
+		 * Paints the given figure. The state of the graphics is restored
+		 * afterwards.
+		 *
+		 * @param figure
+		 *            the figure to paint
+		 * @param graphics
+		 *            the graphics
+		 */
+		void paint(IFigure figure, Graphics graphics);
+	}
+
+	/**
+	 * Fills the bounds of the figure with its background color.
+	 */
+	public static final Painter FILL = new Painter() {
+		public void paint(IFigure figure, Graphics graphics) {
+			graphics.setBackgroundColor(figure.getBackgroundColor());
+			graphics.fillRectangle(figure.getBounds());
+		}
+	};
+
+	/**
+	 * Paints nothing, which hides the figure.
+	 */
+	public static final Painter HIDE = new Painter() {
+		public void paint(IFigure figure, Graphics graphics) {
+		}
+	};
+
+	private static class Threshold {
+		final double scale;
+		final Painter painter;
+
+		Threshold(double scale, Painter painter) {
+			this.scale = scale;
+			this.painter = painter;
+		}
+	}
+
+	private static final Threshold[] EXCLUDED = new Threshold[0];
+	private static final Threshold[] NONE = new Threshold[0];
+
+	// the thresholds of each class in ascending order of their scale; both
+	// maps are replaced instead of being modified
+	private static volatile Map registrations = new HashMap();
+	private static volatile Map resolved = new HashMap();
+	private static volatile double maximumScale;
+	private static volatile int minimumTextHeight = 4;
+
+	private LevelOfDetail() {
+	}
+
+	private static void changed(Map newRegistrations) {
+		double max = 0;
+		Threshold[][] all = (Threshold[][]) newRegistrations.values()
+				.toArray(new Threshold[newRegistrations.size()][]);
+		for (int i = 0; i < all.length; i++)
+			if (all[i].length > 0)
+				max = Math.max(max, all[i][all[i].length - 1].scale);
+		registrations = newRegistrations;
+		resolved = new HashMap();
+		maximumScale = max;
+	}
+
+	/**
+	 * Excludes the given class and its subclasses from the level of detail.
+	 * Painters registered for the class are removed.
+	 *
+	 * @param figureClass
+	 *            the class of figures which are always painted in full detail
+	 */
+	public static synchronized void exclude(Class figureClass) {
+		Map newRegistrations = new HashMap(registrations);
+		newRegistrations.put(figureClass, EXCLUDED);
+		changed(newRegistrations);
+	}
+
+	/**
+	 * Returns the height in pixels below which the text of labels is not
+	 * painted. The default is 4.
+	 *
+	 * @return the minimum text height
+	 */
+	public static int getMinimumTextHeight() {
+		return minimumTextHeight;
+	}
+
+	private static Threshold[] getThresholds(Class figureClass) {
+		Threshold[] thresholds = (Threshold[]) resolved.get(figureClass);
+		if (thresholds == null)
+			thresholds = resolve(figureClass);
+		return thresholds;
+	}
+
+	/**
+	 * Returns whether the given class or one of its superclasses is excluded
+	 * from the level of detail.
+	 *
+	 * @param figureClass
+	 *            the class of figures
+	 * @return <code>true</code> if the class is excluded
+	 */
+	public static boolean isExcluded(Class figureClass) {
+		return getThresholds(figureClass) == EXCLUDED;
+	}
+
+	/**
+	 * Returns whether text in the font of the given figure is legible when
+	 * painted on the given graphics. The text is legible if it is at least
+	 * {@link #getMinimumTextHeight()} pixels high, or if the class of the
+	 * figure is excluded.
+	 *
+	 * @param figure
+	 *            the figure which paints the text
+	 * @param graphics
+	 *            the graphics
+	 * @return <code>true</code> if the text should be painted
+	 */
+	public static boolean isLegible(IFigure figure, Graphics graphics) {
+		double scale = graphics.getAbsoluteScale();
+		if (scale >= 1.0 || minimumTextHeight <= 0)
+			return true;
+		if (isExcluded(figure.getClass()))
+			return true;
+		int height = FigureUtilities.getFontMetrics(figure.getFont())
+				.getHeight();
+		return height * scale >= minimumTextHeight;
+	}
+
+	/**
+	 * Paints the given figure with the painter registered for its scale, if
+	 * any. This is called by {@link Figure#paint(Graphics)}.
+	 *
+	 * @param figure
+	 *            the figure to paint
+	 * @param graphics
+	 *            the graphics
+	 * @return <code>true</code> if the figure was painted, in which case it
+	 *         must not be painted again
+	 */
+	public static boolean paint(IFigure figure, Graphics graphics) {
+		if (maximumScale == 0)
+			return false;
+		double scale = graphics.getAbsoluteScale();
+		if (scale >= maximumScale)
+			return false;
+		Threshold[] thresholds = getThresholds(figure.getClass());
+		for (int i = 0; i < thresholds.length; i++) {
+			if (scale < thresholds[i].scale) {
+				graphics.pushState();
+				try {
+					thresholds[i].painter.paint(figure, graphics);
+				} finally {
+					graphics.popState();
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Registers a painter for figures of the given class and its subclasses
+	 * which are painted at an absolute scale below the given threshold. A
+	 * painter previously registered for the same class and threshold is
+	 * replaced, and an exclusion of the class is lifted.
+	 *
+	 * @param figureClass
+	 *            the class of figures
+	 * @param scale
+	 *            the threshold
+	 * @param painter
+	 *            the painter
+	 */
+	public static synchronized void register(Class figureClass, double scale,
+			Painter painter) {
+		Threshold[] old = (Threshold[]) registrations.get(figureClass);
+		if (old == null)
+			old = NONE;
+		int index = 0;
+		while (index < old.length && old[index].scale < scale)
+			index++;
+		boolean replace = index < old.length && old[index].scale == scale;
+		Threshold[] thresholds = new Threshold[replace ? old.length
+				: old.length + 1];
+		System.arraycopy(old, 0, thresholds, 0, index);
+		thresholds[index] = new Threshold(scale, painter);
+		System.arraycopy(old, replace ? index + 1 : index, thresholds,
+				index + 1, thresholds.length - index - 1);
+		Map newRegistrations = new HashMap(registrations);
+		newRegistrations.put(figureClass, thresholds);
+		changed(newRegistrations);
+	}
+
+	private static synchronized Threshold[] resolve(Class figureClass) {
+		Threshold[] thresholds = NONE;
+		for (Class c = figureClass; c != null; c = c.getSuperclass()) {
+			Threshold[] registered = (Threshold[]) registrations.get(c);
+			if (registered != null) {
+				thresholds = registered;
+				break;
+			}
+		}
+		Map newResolved = new HashMap(resolved);
+		newResolved.put(figureClass, thresholds);
+		resolved = newResolved;
+		return thresholds;
+	}
+
+	/**
+	 * Sets the height in pixels below which the text of labels is not painted.
+	 * A height of 0 paints all text.
+	 *
+	 * @param pixels
+	 *            the minimum text height
+	 */
+	public static void setMinimumTextHeight(int pixels) {
+		minimumTextHeight = pixels;
+	}
+
+	/**
+	 * Removes the painters registered for the given class, or its exclusion.
+	 *
+	 * @param figureClass
+	 *            the class of figures
+	 */
+	public static synchronized void unregister(Class figureClass) {
+		if (registrations.containsKey(figureClass)) {
+			Map newRegistrations = new HashMap(registrations);
+			newRegistrations.remove(figureClass);
+			changed(newRegistrations);
+		}
+	}
+
+}
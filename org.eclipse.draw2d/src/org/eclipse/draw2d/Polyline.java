@@ -24,7 +24,10 @@ import org.eclipse.draw2d.geometry.Rectangle;
  * A polyline's bounds will be calculated automatically based on its PointList.
  * The bounds will be the smallest Rectangle large enough to render the line
  * properly. Children should not be added to a Polyline and will not affect the
- * bounds calculation.
+ * bounds calculation. Since the bounds change with the points, changing the
+ * points notifies the figure listeners that the polyline has moved. So does
+ * changing the tolerance, which extends the area in which points are contained
+ * beyond the bounds.
  */
 public class Polyline extends AbstractPointListShape {
 
@@ -61,6 +64,14 @@ public class Polyline extends AbstractPointListShape {
 	protected void fillShape(Graphics g) {
 	}
 
+	/**
+	 * @see AbstractPointListShape#addPoint(Point)
+	 */
+	public void addPoint(Point pt) {
+		super.addPoint(pt);
+		fireFigureMoved();
+	}
+
 	/**
 	 * @see org.eclipse.draw2d.IFigure#getBounds()
 	 */
@@ -72,6 +83,14 @@ public class Polyline extends AbstractPointListShape {
 		return bounds;
 	}
 
+	/**
+	 * @see AbstractPointListShape#insertPoint(Point, int)
+	 */
+	public void insertPoint(Point pt, int index) {
+		super.insertPoint(pt, index);
+		fireFigureMoved();
+	}
+
 	/**
 	 * @return <code>false</code> because Polyline's aren't filled
 	 */
@@ -100,6 +119,15 @@ public class Polyline extends AbstractPointListShape {
 	public void removeAllPoints() {
 		super.removeAllPoints();
 		bounds = null;
+		fireFigureMoved();
+	}
+
+	/**
+	 * @see AbstractPointListShape#removePoint(int)
+	 */
+	public void removePoint(int index) {
+		super.removePoint(index);
+		fireFigureMoved();
 	}
 
 	/**
@@ -115,6 +143,15 @@ public class Polyline extends AbstractPointListShape {
 		}
 		bounds = null;
 		super.setLineWidthFloat(w);
+		fireFigureMoved();
+	}
+
+	/**
+	 * @see AbstractPointListShape#setPoint(Point, int)
+	 */
+	public void setPoint(Point pt, int index) {
+		super.setPoint(pt, index);
+		fireFigureMoved();
 	}
 
 	/**
@@ -128,6 +165,7 @@ public class Polyline extends AbstractPointListShape {
 	 */
 	public void setPoints(PointList points) {
 		super.setPoints(points);
+		fireFigureMoved();
 		firePropertyChange(Connection.PROPERTY_POINTS, null, points);
 	}
 
@@ -139,6 +177,18 @@ public class Polyline extends AbstractPointListShape {
 	 */
 	public void setTolerance(int tolerance) {
 		this.tolerance = tolerance;
+		fireFigureMoved();
+	}
+
+	/**
+	 * Returns the distance from the line within which points are contained in
+	 * this Polyline.
+	 * 
+	 * @return the tolerance
+	 * @since 3.10
+	 */
+	public int getTolerance() {
+		return tolerance;
 	}
 
 	public void repaint() {
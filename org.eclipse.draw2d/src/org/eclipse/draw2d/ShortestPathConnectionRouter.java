@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.draw2d;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,6 +19,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.PointList;
 import org.eclipse.draw2d.geometry.PrecisionPoint;
@@ -27,6 +31,15 @@ import org.eclipse.draw2d.graph.ShortestPathRouter;
 
 /**
  * Routes multiple connections around the children of a given container figure.
+ * <P>
+ * By default, the connections are routed during validation. When
+ * {@link #setAsynchronous(boolean) asynchronous} routing is enabled, the
+ * routing is instead performed by a background thread, and the new routes are
+ * applied on the display thread once they are available. Until then, each
+ * connection keeps its last route, with its end points following the anchors.
+ * Changes to the obstacles or connections made while the routing is in
+ * progress are applied once it has finished. The routes found are applied
+ * nevertheless, and the routing is then performed again.
  * 
  * @author Whitney Sorenson
  * @author Randy Hudson
@@ -34,6 +47,70 @@ import org.eclipse.draw2d.graph.ShortestPathRouter;
  */
 public final class ShortestPathConnectionRouter extends AbstractRouter {
 
+	/**
+	 * Solves the paths on a background thread which waits for work. While a
+	 * solve is in progress, the thread owns the paths and obstacles, and all
+	 * changes to them are deferred until
+	 * {@link ShortestPathConnectionRouter#solverFinished(List, RuntimeException)}
+	 * is run on the display thread.
+	 */
+	private class Solver extends Thread {
+		private Display display;
+		private boolean stopped;
+
+		Solver() {
+			super("Shortest path routing"); //$NON-NLS-1$
+			setDaemon(true);
+		}
+
+		public void run() {
+			while (true) {
+				Display target;
+				synchronized (this) {
+					while (display == null && !stopped) {
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							// keep waiting until stopped
+						}
+					}
+					if (stopped)
+						return;
+					target = display;
+					display = null;
+				}
+				List paths = null;
+				RuntimeException failure = null;
+				try {
+					paths = algorithm.solve();
+				} catch (RuntimeException e) {
+					failure = e;
+				}
+				final List result = paths;
+				final RuntimeException error = failure;
+				try {
+					target.asyncExec(new Runnable() {
+						public void run() {
+							solverFinished(result, error);
+						}
+					});
+				} catch (SWTException e) {
+					// the display has been disposed
+				}
+			}
+		}
+
+		synchronized void solve(Display target) {
+			display = target;
+			notify();
+		}
+
+		synchronized void stopSolving() {
+			stopped = true;
+			notify();
+		}
+	}
+
 	private class LayoutTracker extends LayoutListener.Stub {
 		public void postLayout(IFigure container) {
 			processLayout();
@@ -58,7 +135,17 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 	private LayoutListener listener = new LayoutTracker();
 
 	private FigureListener figureListener = new FigureListener() {
-		public void figureMoved(IFigure source) {
+		public void figureMoved(final IFigure source) {
+			if (solving) {
+				defer(new Runnable() {
+					public void run() {
+						if (figuresToBounds != null
+								&& figuresToBounds.containsKey(source))
+							figureMoved(source);
+					}
+				});
+				return;
+			}
 			Rectangle newBounds = source.getBounds().getCopy();
 			if (algorithm.updateObstacle(
 					(Rectangle) figuresToBounds.get(source), newBounds)) {
@@ -70,6 +157,10 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 		}
 	};
 	private boolean ignoreInvalidate;
+	private boolean asynchronous;
+	private Solver solver;
+	private boolean solving;
+	private List deferredChanges = new ArrayList();
 
 	/**
 	 * Creates a new shortest path router with the given container. The
@@ -88,9 +179,17 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 		this.container = container;
 	}
 
-	void addChild(IFigure child) {
+	void addChild(final IFigure child) {
 		if (connectionToPaths == null)
 			return;
+		if (solving) {
+			defer(new Runnable() {
+				public void run() {
+					addChild(child);
+				}
+			});
+			return;
+		}
 		if (figuresToBounds.containsKey(child))
 			return;
 		Rectangle bounds = child.getBounds().getCopy();
@@ -220,7 +319,15 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 	/**
 	 * @see ConnectionRouter#remove(Connection)
 	 */
-	public void remove(Connection connection) {
+	public void remove(final Connection connection) {
+		if (solving) {
+			defer(new Runnable() {
+				public void run() {
+					remove(connection);
+				}
+			});
+			return;
+		}
 		staleConnections.remove(connection);
 		constraintMap.remove(connection);
 		if (connectionToPaths == null)
@@ -231,6 +338,7 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 		if (connectionToPaths.isEmpty()) {
 			unhookAll();
 			connectionToPaths = null;
+			stopSolver();
 		} else {
 			// Make sure one of the remaining is revalidated so that we can
 			// re-route again.
@@ -238,9 +346,17 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 		}
 	}
 
-	void removeChild(IFigure child) {
+	void removeChild(final IFigure child) {
 		if (connectionToPaths == null)
 			return;
+		if (solving) {
+			defer(new Runnable() {
+				public void run() {
+					removeChild(child);
+				}
+			});
+			return;
+		}
 		Rectangle bounds = child.getBounds().getCopy();
 		boolean change = algorithm.removeObstacle(bounds);
 		figuresToBounds.remove(child);
@@ -255,36 +371,172 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 	 * @see ConnectionRouter#route(Connection)
 	 */
 	public void route(Connection conn) {
+		if (solving) {
+			// the paths are owned by the solver, so they are routed again once
+			// it has finished
+			keepRoute(conn);
+			return;
+		}
+		if (asynchronous) {
+			Display display = Display.getCurrent();
+			if (display != null) {
+				routeAsynchronously(conn, display);
+				return;
+			}
+		}
 		if (isDirty) {
 			ignoreInvalidate = true;
 			processStaleConnections();
 			isDirty = false;
 			List updated = algorithm.solve();
-			Connection current;
 			for (int i = 0; i < updated.size(); i++) {
 				Path path = (Path) updated.get(i);
-				current = (Connection) path.data;
+				Connection current = (Connection) path.data;
 				current.revalidate();
+				setPoints(current, path.getPoints().getCopy());
+			}
+			ignoreInvalidate = false;
+		}
+	}
+
+	/**
+	 * Starts a background solve if the router is dirty and no solve is in
+	 * progress. Until the new routes are available, the given connection keeps
+	 * its current route, or a straight line if it has never been routed.
+	 */
+	private void routeAsynchronously(Connection conn, Display display) {
+		if (isDirty) {
+			ignoreInvalidate = true;
+			processStaleConnections();
+			isDirty = false;
+			ignoreInvalidate = false;
+			startSolver(display);
+		}
+		keepRoute(conn);
+	}
+
+	/**
+	 * Keeps the current route of the given connection, with its end points
+	 * following the anchors, or sets a straight line if it has never been
+	 * routed.
+	 */
+	private void keepRoute(Connection conn) {
+		boolean wasIgnoring = ignoreInvalidate;
+		ignoreInvalidate = true;
+		try {
+			PointList points = conn.getPoints();
+			if (points.size() < 2) {
+				points = new PointList();
+				Point start = getStartPoint(conn);
+				conn.translateToRelative(start);
+				points.addPoint(start);
+				Point end = getEndPoint(conn);
+				conn.translateToRelative(end);
+				points.addPoint(end);
+				conn.setPoints(points);
+			} else
+				setPoints(conn, points.getCopy());
+		} finally {
+			ignoreInvalidate = wasIgnoring;
+		}
+	}
+
+	/**
+	 * Sets the given points on the connection, after moving the first and last
+	 * point to where the connection's anchors place them.
+	 */
+	private void setPoints(Connection conn, PointList points) {
+		Point ref1, ref2, start, end;
+		ref1 = new PrecisionPoint(points.getPoint(1));
+		ref2 = new PrecisionPoint(points.getPoint(points.size() - 2));
+		conn.translateToAbsolute(ref1);
+		conn.translateToAbsolute(ref2);
+
+		start = conn.getSourceAnchor().getLocation(ref1).getCopy();
+		end = conn.getTargetAnchor().getLocation(ref2).getCopy();
+
+		conn.translateToRelative(start);
+		conn.translateToRelative(end);
+		points.setPoint(start, 0);
+		points.setPoint(end, points.size() - 1);
+
+		conn.setPoints(points);
+	}
+
+	/**
+	 * Hands the paths to the solver, which is started if necessary.
+	 */
+	private void startSolver(Display display) {
+		if (solver == null) {
+			solver = new Solver();
+			solver.start();
+		}
+		solving = true;
+		solver.solve(display);
+	}
 
-				PointList points = path.getPoints().getCopy();
-				Point ref1, ref2, start, end;
-				ref1 = new PrecisionPoint(points.getPoint(1));
-				ref2 = new PrecisionPoint(points.getPoint(points.size() - 2));
-				current.translateToAbsolute(ref1);
-				current.translateToAbsolute(ref2);
+	private void stopSolver() {
+		if (solver != null) {
+			solver.stopSolving();
+			solver = null;
+		}
+	}
 
-				start = current.getSourceAnchor().getLocation(ref1).getCopy();
-				end = current.getTargetAnchor().getLocation(ref2).getCopy();
+	/**
+	 * Called on the display thread when a background solve has finished.
+	 * Replays the changes deferred during the solve, and applies the new
+	 * routes to the connections which are still routed by this router. If
+	 * anything changed in the meantime, the connections are routed again.
+	 */
+	private void solverFinished(List paths, RuntimeException failure) {
+		if (!solving)
+			return;
+		solving = false;
+
+		// the deferred changes may reset the points of the paths
+		Map routes = new HashMap();
+		if (failure == null) {
+			for (int i = 0; i < paths.size(); i++) {
+				Path path = (Path) paths.get(i);
+				if (path.getPoints().size() >= 2)
+					routes.put(path.data, path.getPoints().getCopy());
+			}
+		}
 
-				current.translateToRelative(start);
-				current.translateToRelative(end);
-				points.setPoint(start, 0);
-				points.setPoint(end, points.size() - 1);
+		List changes = deferredChanges;
+		deferredChanges = new ArrayList();
+		for (int i = 0; i < changes.size(); i++)
+			((Runnable) changes.get(i)).run();
 
-				current.setPoints(points);
+		ignoreInvalidate = true;
+		try {
+			Iterator iter = routes.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry entry = (Map.Entry) iter.next();
+				Connection current = (Connection) entry.getKey();
+				if (!containsConnection(current))
+					continue;
+				current.revalidate();
+				setPoints(current, (PointList) entry.getValue());
 			}
+		} finally {
 			ignoreInvalidate = false;
 		}
+
+		if (!asynchronous || connectionToPaths == null)
+			stopSolver();
+		if (failure != null) {
+			isDirty = true;
+			queueSomeRouting();
+			throw failure;
+		}
+		if (isDirty)
+			queueSomeRouting();
+	}
+
+	private void defer(Runnable change) {
+		deferredChanges.add(change);
+		isDirty = true;
 	}
 
 	/**
@@ -294,7 +546,7 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 	 * @since 3.5
 	 */
 	public List getPathsAfterRouting() {
-		if (isDirty) {
+		if (isDirty && !solving) {
 			processStaleConnections();
 			isDirty = false;
 			List all = algorithm.solve();
@@ -325,10 +577,46 @@ public final class ShortestPathConnectionRouter extends AbstractRouter {
 	 *            the connection spacing
 	 * @since 3.2
 	 */
-	public void setSpacing(int spacing) {
+	public void setSpacing(final int spacing) {
+		if (solving) {
+			defer(new Runnable() {
+				public void run() {
+					setSpacing(spacing);
+				}
+			});
+			return;
+		}
 		algorithm.setSpacing(spacing);
 	}
 
+	/**
+	 * Returns whether connections are routed by a background thread.
+	 * 
+	 * @return <code>true</code> if routing is asynchronous
+	 * @see #setAsynchronous(boolean)
+	 * @since 3.10
+	 */
+	public boolean isAsynchronous() {
+		return asynchronous;
+	}
+
+	/**
+	 * Sets whether connections are routed by a background thread. When
+	 * <code>true</code>, validating a connection never waits for the routing
+	 * to finish. The connections keep their last routes until the new routes
+	 * are applied on the display thread. The default value is
+	 * <code>false</code>.
+	 * 
+	 * @param value
+	 *            <code>true</code> to route asynchronously
+	 * @since 3.10
+	 */
+	public void setAsynchronous(boolean value) {
+		asynchronous = value;
+		if (!value && !solving)
+			stopSolver();
+	}
+
 	/**
 	 * @return true if there are connections routed by this router, false
 	 *         otherwise
@@ -36,13 +36,17 @@ import org.eclipse.draw2d.geometry.Rectangle;
  * <P>
  * The second phase is to repaint all damaged areas. The update manager will
  * typically batch, clip, and union, all rectangles and perform a single paint
- * of the overall damaged area.
+ * of the overall damaged area, or of a few disjoint damaged areas if they are
+ * far apart.
  * 
  */
 public abstract class UpdateManager {
 
 	private UpdateListener listeners[] = new UpdateListener[0];
 	private boolean disposed;
+	// the regions being painted, while firePainting(Rectangle, Map) is called
+	// from firePainting(Rectangle, Rectangle[], Map)
+	private Rectangle[] paintingRegions;
 
 	/**
 	 * Adds the dirty region defined by the coordinates on the IFigure
@@ -119,9 +123,30 @@ public abstract class UpdateManager {
 		disposed = true;
 	}
 
+	/**
+	 * Notifies listeners implementing {@link DirtyRegionListener} that the
+	 * given region of a figure is about to be repainted.
+	 * 
+	 * @param figure
+	 *            the dirty figure
+	 * @param region
+	 *            the dirty region, in the coordinates of the figure
+	 * @since 3.10
+	 */
+	protected void fireDirtyRegion(IFigure figure, Rectangle region) {
+		UpdateListener localListeners[] = listeners;
+		for (int i = 0; i < localListeners.length; i++)
+			if (localListeners[i] instanceof DirtyRegionListener)
+				((DirtyRegionListener) localListeners[i]).notifyDirtyRegion(
+						figure, region);
+	}
+
 	/**
 	 * Notifies listeners that painting is about to occur, passing them the
-	 * damaged rectangle and the map of dirty regions.
+	 * damaged rectangle and the map of dirty regions. Listeners implementing
+	 * {@link UpdateRegionListener} are passed the regions given to
+	 * {@link #firePainting(Rectangle, Rectangle[], Map)}, or the damaged
+	 * rectangle as the only region if this method is called directly.
 	 * 
 	 * @param damage
 	 *            the damaged rectangle
@@ -129,9 +154,46 @@ public abstract class UpdateManager {
 	 *            map of dirty regions to figures
 	 */
 	protected void firePainting(Rectangle damage, Map dirtyRegions) {
+		Rectangle[] regions = paintingRegions;
+		if (regions == null)
+			regions = damage == null || damage.isEmpty() ? new Rectangle[0]
+					: new Rectangle[] { damage };
 		UpdateListener localListeners[] = listeners;
-		for (int i = 0; i < localListeners.length; i++)
-			localListeners[i].notifyPainting(damage, dirtyRegions);
+		for (int i = 0; i < localListeners.length; i++) {
+			if (localListeners[i] instanceof UpdateRegionListener)
+				((UpdateRegionListener) localListeners[i]).notifyPainting(
+						damage, regions, dirtyRegions);
+			else
+				localListeners[i].notifyPainting(damage, dirtyRegions);
+		}
+	}
+
+	/**
+	 * Notifies listeners that painting is about to occur, passing them the
+	 * damaged rectangle, the disjoint regions it is made up of and the map of
+	 * dirty regions. Listeners implementing {@link UpdateRegionListener} are
+	 * passed the regions, all other listeners only the damaged rectangle.
+	 * <P>
+	 * The listeners are notified by {@link #firePainting(Rectangle, Map)}, so
+	 * subclasses overriding that method are still called.
+	 * 
+	 * @param damage
+	 *            the damaged rectangle
+	 * @param regions
+	 *            the disjoint regions being repainted
+	 * @param dirtyRegions
+	 *            map of dirty regions to figures
+	 * @since 3.10
+	 */
+	protected void firePainting(Rectangle damage, Rectangle[] regions,
+			Map dirtyRegions) {
+		Rectangle[] oldRegions = paintingRegions;
+		paintingRegions = regions;
+		try {
+			firePainting(damage, dirtyRegions);
+		} finally {
+			paintingRegions = oldRegions;
+		}
 	}
 
 	/**
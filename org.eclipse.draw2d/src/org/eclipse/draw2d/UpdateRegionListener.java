@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d;
+
+import java.util.Map;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * An extension of {@link UpdateListener} for listeners that want to be told
+ * about each of the disjoint regions that are being repainted, rather than
+ * only their union. Update managers which track damage as several rectangles
+ * (like the {@link DeferredUpdateManager}) will call
+ * {@link #notifyPainting(Rectangle, Rectangle[], Map)} instead of
+ * {@link UpdateListener#notifyPainting(Rectangle, Map)} on listeners
+ * implementing this interface.
+ * 
+ * @since 3.10
+ */
+public interface UpdateRegionListener extends UpdateListener {
+
+	/**
+	 * Notifies the listener that the listened to object is painting. The
+	 * damage rectangle is the union of the given regions and may be null or
+	 * empty, just as with {@link UpdateListener#notifyPainting(Rectangle, Map)}
+	 * . The regions are in the coordinates of the root figure and do not
+	 * overlap each other. The array must not be modified.
+	 * 
+	 * @param damage
+	 *            The bounds of the area being painted
+	 * @param regions
+	 *            the rectangles that are actually being painted
+	 * @param dirtyRegions
+	 *            a Map of figures to their dirty regions
+	 */
+	void notifyPainting(Rectangle damage, Rectangle[] regions, Map dirtyRegions);
+
+}
@@ -10,10 +10,14 @@
  *******************************************************************************/
 package org.eclipse.draw2d;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Insets;
@@ -24,12 +28,41 @@ import org.eclipse.draw2d.geometry.Rectangle;
  * This class implements the {@link org.eclipse.draw2d.LayoutManager} interface
  * using the XY Layout algorithm. This lays out the components using the layout
  * constraints as defined by each component.
+ * <P>
+ * Only the children whose constraints have been set, or which have been moved
+ * by someone else, since the previous layout are laid out again, together with
+ * the children whose constraints take their preferred width or height. All
+ * children are laid out when the origin of the container has changed.
+ * Constraints should therefore be changed with
+ * {@link #setConstraint(IFigure, Object)}, rather than modified in place.
  */
 public class XYLayout extends AbstractLayout {
 
 	/** The layout contraints */
 	protected Map constraints = new HashMap();
 
+	/**
+	 * The children which have to be laid out again, or <code>null</code> if all
+	 * children have to be laid out.
+	 */
+	private Set invalidChildren;
+
+	/**
+	 * The children whose constraints take their preferred width or height.
+	 */
+	private final Set preferredSizeChildren = new HashSet();
+
+	private IFigure layoutContainer;
+	private Point layoutOrigin;
+	private boolean layingOut;
+
+	private final FigureListener childTracker = new FigureListener() {
+		public void figureMoved(IFigure source) {
+			if (!layingOut && invalidChildren != null)
+				invalidChildren.add(source);
+		}
+	};
+
 	/**
 	 * Calculates and returns the preferred size of the input figure. Since in
 	 * XYLayout the location of the child should be preserved, the preferred
@@ -85,6 +118,19 @@ public class XYLayout extends AbstractLayout {
 		return parent.getClientArea().getLocation();
 	}
 
+	/**
+	 * Marks the given child to be laid out with the next layout. This is
+	 * called when the constraint of the child is set. Invalidating the child
+	 * figure itself does not call it.
+	 * 
+	 * @see AbstractLayout#invalidate(IFigure)
+	 */
+	protected void invalidate(IFigure child) {
+		super.invalidate(child);
+		if (invalidChildren != null)
+			invalidChildren.add(child);
+	}
+
 	/**
 	 * Implements the algorithm to layout the components of the given container
 	 * figure. Each component is laid out using its own layout constraint
@@ -93,26 +139,46 @@ public class XYLayout extends AbstractLayout {
 	 * @see LayoutManager#layout(IFigure)
 	 */
 	public void layout(IFigure parent) {
-		Iterator children = parent.getChildren().iterator();
 		Point offset = getOrigin(parent);
+		Collection children;
+		if (invalidChildren == null || parent != layoutContainer
+				|| !offset.equals(layoutOrigin)) {
+			children = parent.getChildren();
+		} else {
+			invalidChildren.addAll(preferredSizeChildren);
+			children = new ArrayList(invalidChildren);
+		}
+		// constraints which are set while laying out apply to the next layout
+		invalidChildren = new HashSet();
+		layoutContainer = parent;
+		layoutOrigin = offset.getCopy();
+
+		Iterator iter = children.iterator();
 		IFigure f;
-		while (children.hasNext()) {
-			f = (IFigure) children.next();
-			Rectangle bounds = (Rectangle) getConstraint(f);
-			if (bounds == null)
-				continue;
+		layingOut = true;
+		try {
+			while (iter.hasNext()) {
+				f = (IFigure) iter.next();
+				if (f.getParent() != parent)
+					continue;
+				Rectangle bounds = (Rectangle) getConstraint(f);
+				if (bounds == null)
+					continue;
 
-			if (bounds.width == -1 || bounds.height == -1) {
-				Dimension preferredSize = f.getPreferredSize(bounds.width,
-						bounds.height);
-				bounds = bounds.getCopy();
-				if (bounds.width == -1)
-					bounds.width = preferredSize.width;
-				if (bounds.height == -1)
-					bounds.height = preferredSize.height;
+				if (bounds.width == -1 || bounds.height == -1) {
+					Dimension preferredSize = f.getPreferredSize(bounds.width,
+							bounds.height);
+					bounds = bounds.getCopy();
+					if (bounds.width == -1)
+						bounds.width = preferredSize.width;
+					if (bounds.height == -1)
+						bounds.height = preferredSize.height;
+				}
+				bounds = bounds.getTranslated(offset);
+				f.setBounds(bounds);
 			}
-			bounds = bounds.getTranslated(offset);
-			f.setBounds(bounds);
+		} finally {
+			layingOut = false;
 		}
 	}
 
@@ -121,7 +187,18 @@ public class XYLayout extends AbstractLayout {
 	 */
 	public void remove(IFigure figure) {
 		super.remove(figure);
-		constraints.remove(figure);
+		if (constraints.remove(figure) != null)
+			figure.removeFigureListener(childTracker);
+		preferredSizeChildren.remove(figure);
+		if (invalidChildren != null)
+			invalidChildren.remove(figure);
+	}
+
+	private static boolean usesPreferredSize(Object constraint) {
+		if (!(constraint instanceof Rectangle))
+			return false;
+		Rectangle r = (Rectangle) constraint;
+		return r.width == -1 || r.height == -1;
 	}
 
 	/**
@@ -133,8 +210,14 @@ public class XYLayout extends AbstractLayout {
 	 */
 	public void setConstraint(IFigure figure, Object newConstraint) {
 		super.setConstraint(figure, newConstraint);
-		if (newConstraint != null)
-			constraints.put(figure, newConstraint);
+		if (newConstraint == null)
+			return;
+		if (constraints.put(figure, newConstraint) == null)
+			figure.addFigureListener(childTracker);
+		if (usesPreferredSize(newConstraint))
+			preferredSizeChildren.add(figure);
+		else
+			preferredSizeChildren.remove(figure);
 	}
 
 }
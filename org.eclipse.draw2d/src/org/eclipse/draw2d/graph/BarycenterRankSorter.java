@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.graph;
+
+/**
+ * Sorts Ranks by the plain barycenter heuristic: each node is moved to the
+ * average index of its neighbors in the adjacent rank. The sort values are
+ * kept in primitive arrays and sorted in O(n log n), which is faster than the
+ * default sorter on large graphs, but may leave more crossings. Ranks which
+ * contain constrained or nested nodes are sorted by the default sorter.
+ *
+ * @since 3.10
+ */
+class BarycenterRankSorter extends RankSorter {
+
+	private Node[] nodes = new Node[0];
+	private double[] values = new double[0];
+	private int[] order = new int[0];
+	private int[] buffer = new int[0];
+
+	RankSorter createIndependentSorter() {
+		return new BarycenterRankSorter();
+	}
+
+	/**
+	 * Sorts the given rank by the barycenters of its neighbors in the adjacent
+	 * rank, keeping the order of nodes with the same barycenter.
+	 *
+	 * @return <code>false</code> if the rank must be sorted by the default
+	 *         sorter instead
+	 */
+	private boolean sortByBarycenter(DirectedGraph g, Rank rank, int row,
+			boolean incoming) {
+		int count = rank.count();
+		if (nodes.length < count) {
+			nodes = new Node[count];
+			values = new double[count];
+			order = new int[count];
+			buffer = new int[count];
+		}
+		int adjacentRow = incoming ? row - 1 : row + 1;
+		double scale = (double) g.ranks.getRank(adjacentRow).total
+				/ Math.max(1, rank.total);
+		for (int i = 0; i < count; i++) {
+			Node node = rank.getNode(i);
+			if (node.rowOrder != -1 || node.getParent() != null)
+				return false;
+			EdgeList edges = incoming ? node.incoming : node.outgoing;
+			long sum = 0;
+			int neighbors = 0;
+			for (int e = 0; e < edges.size(); e++) {
+				Edge edge = edges.getEdge(e);
+				Node neighbor = incoming ? edge.source : edge.target;
+				if (neighbor.rank == adjacentRow) {
+					sum += neighbor.index;
+					neighbors++;
+				}
+			}
+			nodes[i] = node;
+			order[i] = i;
+			// nodes without neighbors keep their relative position
+			values[i] = neighbors == 0 ? node.index * scale : (double) sum
+					/ neighbors;
+		}
+		sort(count);
+		for (int i = 0; i < count; i++) {
+			rank.set(i, nodes[order[i]]);
+			nodes[order[i]] = null;
+		}
+		this.g = g;
+		this.rank = rank;
+		this.currentRow = row;
+		postSort();
+		return true;
+	}
+
+	/**
+	 * Sorts the first count entries of the order by their values with a
+	 * bottom-up merge sort, which keeps the order of equal values.
+	 */
+	private void sort(int count) {
+		int[] from = order, to = buffer;
+		for (int width = 1; width < count; width *= 2) {
+			for (int low = 0; low < count; low += 2 * width) {
+				int middle = Math.min(low + width, count);
+				int high = Math.min(low + 2 * width, count);
+				int left = low, right = middle;
+				for (int i = low; i < high; i++) {
+					if (right == high || left < middle
+							&& values[from[left]] <= values[from[right]])
+						to[i] = from[left++];
+					else
+						to[i] = from[right++];
+				}
+			}
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		if (from != order)
+			System.arraycopy(from, 0, order, 0, count);
+	}
+
+	public void sortRankIncoming(DirectedGraph g, Rank rank, int row,
+			double progress) {
+		if (!sortByBarycenter(g, rank, row, true))
+			super.sortRankIncoming(g, rank, row, progress);
+	}
+
+	public void sortRankOutgoing(DirectedGraph g, Rank rank, int row,
+			double progress) {
+		if (!sortByBarycenter(g, rank, row, false))
+			super.sortRankOutgoing(g, rank, row, progress);
+	}
+
+}
@@ -10,9 +10,22 @@
  *******************************************************************************/
 package org.eclipse.draw2d.graph;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Sweeps up and down the ranks rearranging them so as to reduce edge crossings.
- * 
+ * The crossings are counted after each sweep, and the sweeps stop early once
+ * there are none left, or they have not decreased for a while. The ordering
+ * with the fewest crossings is kept.
+ * <P>
+ * If the graph consists of parts which are not connected to each other, and the
+ * sorter supports it, each part is sorted on its own and the parts are placed
+ * next to each other. The parts of large graphs are sorted in parallel.
+ *
  * @author Randy Hudson
  * @since 2.1.2
  */
@@ -20,6 +33,85 @@ class MinCross extends GraphVisitor {
 
 	static final int MAX = 45;
 
+	/**
+	 * The number of sweeps without fewer crossings after which the sweeps
+	 * stop.
+	 */
+	static final int MAX_STALLED = 10;
+
+	/**
+	 * The number of nodes from which the parts of a graph are sorted in
+	 * parallel.
+	 */
+	static final int PARALLEL_THRESHOLD = 1000;
+
+	/**
+	 * Sorts the parts of a graph on as many threads as there are processors.
+	 */
+	private static class PartSolver implements Runnable {
+		private final List parts;
+		private final RankSorter sorter;
+		private int next;
+		private RuntimeException failure;
+
+		PartSolver(List parts, RankSorter sorter) {
+			this.parts = parts;
+			this.sorter = sorter;
+		}
+
+		public void run() {
+			while (true) {
+				DirectedGraph part;
+				synchronized (this) {
+					if (failure != null || next == parts.size())
+						return;
+					part = (DirectedGraph) parts.get(next++);
+				}
+				try {
+					RankSorter partSorter = sorter.createIndependentSorter();
+					partSorter.init(part);
+					solve(part, partSorter);
+				} catch (RuntimeException e) {
+					synchronized (this) {
+						if (failure == null)
+							failure = e;
+					}
+					return;
+				}
+			}
+		}
+
+		void solveAll(int threadCount) {
+			Thread[] threads = new Thread[Math.min(threadCount, parts.size())
+					- 1];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(this,
+						"Rank sorting " + (i + 1)); //$NON-NLS-1$
+				threads[i].setDaemon(true);
+				threads[i].start();
+			}
+			run();
+			boolean interrupted = false;
+			for (int i = 0; i < threads.length; i++) {
+				while (true) {
+					try {
+						threads[i].join();
+						break;
+					} catch (InterruptedException e) {
+						// the other threads are still using the nodes
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			synchronized (this) {
+				if (failure != null)
+					throw failure;
+			}
+		}
+	}
+
 	private DirectedGraph g;
 	private RankSorter sorter = new RankSorter();
 
@@ -37,20 +129,216 @@ class MinCross extends GraphVisitor {
 		this.sorter = sorter;
 	}
 
+	/**
+	 * Switches between the default sorter and the barycenter sorter. Other
+	 * sorters are kept.
+	 *
+	 * @param value
+	 *            <code>true</code> to use the {@link BarycenterRankSorter}
+	 */
+	void setBarycenterOrdering(boolean value) {
+		if (value && sorter.getClass() == RankSorter.class)
+			sorter = new BarycenterRankSorter();
+		else if (!value && sorter instanceof BarycenterRankSorter)
+			sorter = new RankSorter();
+	}
+
+	/**
+	 * Counts the edge crossings between all adjacent ranks in O(E log V). The
+	 * crossings between two ranks are the inversions of the target indices of
+	 * the edges, taken in the order of their sources, which are counted with a
+	 * binary indexed tree over the indices of the lower rank.
+	 *
+	 * @param g
+	 *            the graph, whose node indices must be up to date
+	 * @return the number of crossings
+	 */
+	static long countCrossings(DirectedGraph g) {
+		long crossings = 0;
+		int[] targets = new int[8];
+		int[] tree = new int[0];
+		for (int row = 0; row < g.ranks.size() - 1; row++) {
+			Rank rank = g.ranks.getRank(row);
+			int size = g.ranks.getRank(row + 1).total + 2;
+			if (tree.length < size)
+				tree = new int[size];
+			else
+				Arrays.fill(tree, 0, size, 0);
+			int inserted = 0;
+			for (int n = 0; n < rank.count(); n++) {
+				EdgeList outgoing = rank.getNode(n).outgoing;
+				if (targets.length < outgoing.size())
+					targets = new int[outgoing.size()];
+				int count = 0;
+				for (int i = 0; i < outgoing.size(); i++) {
+					Node target = outgoing.getEdge(i).target;
+					if (target.rank == row + 1)
+						targets[count++] = target.index + 1;
+				}
+				// edges which share their source never cross each other
+				if (count > 1)
+					Arrays.sort(targets, 0, count);
+				for (int i = 0; i < count; i++) {
+					int notGreater = 0;
+					for (int j = targets[i]; j > 0; j -= j & -j)
+						notGreater += tree[j];
+					crossings += inserted - notGreater;
+				}
+				for (int i = 0; i < count; i++) {
+					for (int j = targets[i]; j < size; j += j & -j)
+						tree[j]++;
+					inserted++;
+				}
+			}
+		}
+		return crossings;
+	}
+
+	/**
+	 * Returns the parts of the graph which are not connected to each other,
+	 * each as a graph of its own with the same ranks, in the order in which
+	 * they first appear in the ranks. Returns <code>null</code> if the graph
+	 * is connected or can not be split.
+	 */
+	private List findParts() {
+		if (sorter.createIndependentSorter() == null)
+			return null;
+		for (int i = 0; i < g.nodes.size(); i++)
+			if (g.nodes.getNode(i).rowOrder != -1)
+				return null;
+
+		Map partOf = new HashMap();
+		List parts = new ArrayList();
+		NodeList stack = new NodeList();
+		for (int row = 0; row < g.ranks.size(); row++) {
+			Rank rank = g.ranks.getRank(row);
+			for (int n = 0; n < rank.count(); n++) {
+				Node node = rank.getNode(n);
+				if (partOf.containsKey(node))
+					continue;
+				DirectedGraph part = new DirectedGraph();
+				parts.add(part);
+				partOf.put(node, part);
+				stack.add(node);
+				while (!stack.isEmpty()) {
+					node = (Node) stack.remove(stack.size() - 1);
+					for (int i = 0; i < node.incoming.size(); i++) {
+						Node source = node.incoming.getEdge(i).source;
+						if (!partOf.containsKey(source)) {
+							partOf.put(source, part);
+							stack.add(source);
+						}
+					}
+					for (int i = 0; i < node.outgoing.size(); i++) {
+						Node target = node.outgoing.getEdge(i).target;
+						if (!partOf.containsKey(target)) {
+							partOf.put(target, part);
+							stack.add(target);
+						}
+					}
+				}
+			}
+		}
+		if (parts.size() < 2)
+			return null;
+
+		for (int row = 0; row < g.ranks.size(); row++) {
+			Rank rank = g.ranks.getRank(row);
+			for (int i = 0; i < parts.size(); i++)
+				((DirectedGraph) parts.get(i)).ranks.getRank(row);
+			for (int n = 0; n < rank.count(); n++) {
+				Node node = rank.getNode(n);
+				DirectedGraph part = (DirectedGraph) partOf.get(node);
+				part.ranks.getRank(row).add(node);
+			}
+		}
+		return parts;
+	}
+
+	private static void restoreOrder(DirectedGraph g, Node[][] order) {
+		for (int row = 0; row < order.length; row++) {
+			Rank rank = g.ranks.getRank(row);
+			rank.clear();
+			rank.addAll(Arrays.asList(order[row]));
+			rank.assignIndices();
+		}
+	}
+
+	private static Node[][] saveOrder(DirectedGraph g) {
+		Node[][] order = new Node[g.ranks.size()][];
+		for (int row = 0; row < order.length; row++)
+			order[row] = (Node[]) g.ranks.getRank(row).toArray(
+					new Node[g.ranks.getRank(row).size()]);
+		return order;
+	}
+
 	void solve() {
+		List parts = findParts();
+		if (parts == null) {
+			solve(g, sorter);
+			return;
+		}
+
+		PartSolver solver = new PartSolver(parts, sorter);
+		if (g.nodes.size() < PARALLEL_THRESHOLD)
+			solver.run();
+		else
+			solver.solveAll(Runtime.getRuntime().availableProcessors());
+		if (solver.failure != null)
+			throw solver.failure;
+
+		// place the parts next to each other
+		for (int row = 0; row < g.ranks.size(); row++) {
+			Rank rank = g.ranks.getRank(row);
+			rank.clear();
+			for (int i = 0; i < parts.size(); i++)
+				rank.addAll(((DirectedGraph) parts.get(i)).ranks.getRank(row));
+			rank.assignIndices();
+		}
+	}
+
+	/**
+	 * Sweeps the ranks of the given graph until the crossings stop
+	 * decreasing, and restores the ordering with the fewest crossings.
+	 *
+	 * @param g
+	 *            the graph
+	 * @param sorter
+	 *            the initialized sorter
+	 */
+	static void solve(DirectedGraph g, RankSorter sorter) {
+		long best = countCrossings(g);
+		long crossings = best;
+		Node[][] bestOrder = saveOrder(g);
+		int stalled = 0;
 		Rank rank;
-		for (int loop = 0; loop < MAX; loop++) {
+		for (int loop = 0; loop < MAX && best > 0
+				&& stalled < MAX_STALLED; loop++) {
 			for (int row = 1; row < g.ranks.size(); row++) {
 				rank = g.ranks.getRank(row);
 				sorter.sortRankIncoming(g, rank, row, (double) loop / MAX);
 			}
-			if (loop == MAX - 1)
-				continue;
-			for (int row = g.ranks.size() - 2; row >= 0; row--) {
-				rank = g.ranks.getRank(row);
-				sorter.sortRankOutgoing(g, rank, row, (double) loop / MAX);
+			if (loop != MAX - 1) {
+				for (int row = g.ranks.size() - 2; row >= 0; row--) {
+					rank = g.ranks.getRank(row);
+					sorter.sortRankOutgoing(g, rank, row, (double) loop / MAX);
+				}
+			}
+
+			crossings = countCrossings(g);
+			// small improvements do not count as progress, so that the sweeps
+			// stop once the crossings are only oscillating
+			if (crossings < best - best / 100)
+				stalled = 0;
+			else
+				stalled++;
+			if (crossings < best) {
+				best = crossings;
+				bestOrder = saveOrder(g);
 			}
 		}
+		if (crossings > best)
+			restoreOrder(g, bestOrder);
 	}
 
 	/**
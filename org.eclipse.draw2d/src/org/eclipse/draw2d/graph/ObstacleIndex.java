@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.draw2d.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A uniform grid over the bounds of the obstacles in a
+ * {@link ShortestPathRouter}. It is used to find the obstacles which may be
+ * touched by a segment or a rectangle without testing every obstacle. The
+ * results are candidates only, which the caller must still test, and they are
+ * always returned in the order in which the obstacles were added.
+ *
+ * This class is for internal use only.
+ */
+class ObstacleIndex {
+
+	private static final int CELL_SIZE = 128;
+	private static final int MAX_CELLS_PER_OBSTACLE = 64;
+
+	private static final Comparator ORDER = new Comparator() {
+		public int compare(Object o1, Object o2) {
+			int order1 = ((Entry) o1).order;
+			int order2 = ((Entry) o2).order;
+			return order1 < order2 ? -1 : (order1 == order2 ? 0 : 1);
+		}
+	};
+
+	private static class Entry {
+		final Obstacle obstacle;
+		final int order;
+		int stamp;
+		// the indexed cell range, or left == Integer.MAX_VALUE if large
+		int left, top, right, bottom;
+
+		Entry(Obstacle obstacle, int order) {
+			this.obstacle = obstacle;
+			this.order = order;
+		}
+
+		boolean isLarge() {
+			return left == Integer.MAX_VALUE;
+		}
+	}
+
+	private final Map cells = new HashMap();
+	private final Map entries = new IdentityHashMap();
+	private final List largeEntries = new ArrayList();
+	private final List obstacles;
+	private int nextOrder;
+	private int stamp;
+
+	/**
+	 * Creates an index for the obstacles in the given list. The list must be
+	 * kept in sync with the index by the caller, i.e. obstacles are appended
+	 * to the list when they are added, and removed from it when they are
+	 * removed.
+	 *
+	 * @param obstacles
+	 *            the list of obstacles
+	 */
+	ObstacleIndex(List obstacles) {
+		this.obstacles = obstacles;
+		for (int i = 0; i < obstacles.size(); i++)
+			add((Obstacle) obstacles.get(i));
+	}
+
+	/**
+	 * Adds the given obstacle to the index.
+	 *
+	 * @param obs
+	 *            the obstacle
+	 */
+	void add(Obstacle obs) {
+		Entry entry = new Entry(obs, nextOrder++);
+		entries.put(obs, entry);
+		int left = cell(obs.x);
+		int right = cell(obs.right() - 1);
+		int top = cell(obs.y);
+		int bottom = cell(obs.bottom() - 1);
+		if (((long) right - left + 1) * ((long) bottom - top + 1) > MAX_CELLS_PER_OBSTACLE
+				|| right < left || bottom < top) {
+			entry.left = Integer.MAX_VALUE;
+			largeEntries.add(entry);
+			return;
+		}
+		entry.left = left;
+		entry.right = right;
+		entry.top = top;
+		entry.bottom = bottom;
+		for (int column = left; column <= right; column++)
+			for (int row = top; row <= bottom; row++) {
+				Long key = key(column, row);
+				List cell = (List) cells.get(key);
+				if (cell == null) {
+					cell = new ArrayList(4);
+					cells.put(key, cell);
+				}
+				cell.add(entry);
+			}
+	}
+
+	/**
+	 * Returns the first obstacle, in the order they were added, whose bounds
+	 * are equal to the given rectangle, or <code>null</code>.
+	 *
+	 * @param rect
+	 *            the bounds of the obstacle
+	 * @return the obstacle or <code>null</code>
+	 */
+	Obstacle find(Rectangle rect) {
+		List candidates = getObstacles(rect.x, rect.y, rect.x, rect.y, 0, false);
+		for (int i = 0; i < candidates.size(); i++) {
+			Obstacle obs = (Obstacle) candidates.get(i);
+			if (obs.equals(rect))
+				return obs;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the obstacles which may intersect the given rectangle.
+	 *
+	 * @param rect
+	 *            the rectangle
+	 * @return the candidate obstacles
+	 */
+	List getObstacles(Rectangle rect) {
+		return getObstacles(rect.x, rect.y, rect.right() - 1,
+				rect.bottom() - 1, 0, false);
+	}
+
+	/**
+	 * Returns the obstacles which may be touched by the given segment, when
+	 * the obstacles are expanded on all sides by the given margin.
+	 *
+	 * @param segment
+	 *            the segment
+	 * @param margin
+	 *            the distance by which to expand the obstacles
+	 * @return the candidate obstacles
+	 */
+	List getObstacles(Segment segment, int margin) {
+		return getObstacles(segment.start.x, segment.start.y, segment.end.x,
+				segment.end.y, margin, true);
+	}
+
+	/**
+	 * Removes the given obstacle from the index.
+	 *
+	 * @param obs
+	 *            the obstacle
+	 */
+	void remove(Obstacle obs) {
+		Entry entry = (Entry) entries.remove(obs);
+		if (entry == null)
+			return;
+		if (entry.isLarge()) {
+			largeEntries.remove(entry);
+			return;
+		}
+		for (int column = entry.left; column <= entry.right; column++)
+			for (int row = entry.top; row <= entry.bottom; row++) {
+				Long key = key(column, row);
+				List cell = (List) cells.get(key);
+				cell.remove(entry);
+				if (cell.isEmpty())
+					cells.remove(key);
+			}
+	}
+
+	private static int cell(int coordinate) {
+		if (coordinate >= 0)
+			return coordinate / CELL_SIZE;
+		return (coordinate + 1) / CELL_SIZE - 1;
+	}
+
+	private static Long key(int column, int row) {
+		// scramble the row so that the hash code of the key is not just
+		// column ^ row, which collides along the diagonals
+		return new Long(((long) column << 32)
+				| ((row * 0x9E3779B1) & 0xFFFFFFFFL));
+	}
+
+	private void collect(List cell, int left, int top, int right, int bottom,
+			List result) {
+		for (int i = 0; i < cell.size(); i++) {
+			Entry entry = (Entry) cell.get(i);
+			if (entry.stamp == stamp)
+				continue;
+			entry.stamp = stamp;
+			Obstacle obs = entry.obstacle;
+			if (obs.isEmpty() || obs.x <= right && obs.y <= bottom
+					&& obs.right() - 1 >= left && obs.bottom() - 1 >= top)
+				result.add(entry);
+		}
+	}
+
+	/**
+	 * Returns the obstacles whose bounds, expanded by the margin, may touch the
+	 * line between the given points, or the rectangle spanned by them if
+	 * <code>line</code> is <code>false</code>.
+	 */
+	private List getObstacles(int x1, int y1, int x2, int y2, int margin,
+			boolean line) {
+		int left = Math.min(x1, x2) - margin;
+		int right = Math.max(x1, x2) + margin;
+		int top = Math.min(y1, y2) - margin;
+		int bottom = Math.max(y1, y2) + margin;
+		int firstColumn = cell(left), lastColumn = cell(right);
+		int firstRow = cell(top), lastRow = cell(bottom);
+
+		// visiting the cells would be slower than visiting the obstacles
+		if (((long) lastColumn - firstColumn + 1)
+				* ((long) lastRow - firstRow + 1) > entries.size())
+			return Collections.unmodifiableList(obstacles);
+
+		// only a diagonal line can miss some of the cells in its bounds
+		line &= firstColumn != lastColumn && firstRow != lastRow;
+
+		stamp++;
+		List result = new ArrayList();
+		for (int column = firstColumn; column <= lastColumn; column++)
+			for (int row = firstRow; row <= lastRow; row++) {
+				List cell = (List) cells.get(key(column, row));
+				if (cell == null)
+					continue;
+				if (line
+						&& !crossesCell(x1, y1, x2, y2, column, row, margin))
+					continue;
+				collect(cell, left, top, right, bottom, result);
+			}
+		collect(largeEntries, left, top, right, bottom, result);
+
+		Entry[] found = (Entry[]) result.toArray(new Entry[result.size()]);
+		Arrays.sort(found, ORDER);
+		result.clear();
+		for (int i = 0; i < found.length; i++)
+			result.add(found[i].obstacle);
+		return result;
+	}
+
+	/**
+	 * Returns <code>false</code> if all corners of the given cell, expanded by
+	 * the margin, lie strictly on the same side of the line.
+	 */
+	private static boolean crossesCell(int x1, int y1, int x2, int y2,
+			int column, int row, int margin) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double left = (double) column * CELL_SIZE - margin - x1;
+		double right = (double) (column + 1) * CELL_SIZE + margin - x1;
+		double top = (double) row * CELL_SIZE - margin - y1;
+		double bottom = (double) (row + 1) * CELL_SIZE + margin - y1;
+		double s1 = dx * top - dy * left;
+		double s2 = dx * top - dy * right;
+		double s3 = dx * bottom - dy * left;
+		double s4 = dx * bottom - dy * right;
+		return !(s1 > 0 && s2 > 0 && s3 > 0 && s4 > 0)
+				&& !(s1 < 0 && s2 < 0 && s3 < 0 && s4 < 0);
+	}
+
+}
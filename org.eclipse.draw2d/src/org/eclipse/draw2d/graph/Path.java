@@ -15,11 +15,13 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.draw2d.PositionConstants;
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.PointList;
+import org.eclipse.draw2d.geometry.Rectangle;
 
 /**
  * A Path representation for the ShortestPathRouting. A Path has a start and end
@@ -52,6 +54,105 @@ public class Path {
 
 	}
 
+	/**
+	 * A priority queue of vertices, implemented as a binary heap. A vertex may
+	 * be queued several times with decreasing priorities; stale entries are
+	 * skipped by the caller.
+	 */
+	private static class VertexQueue {
+
+		private Vertex[] vertices = new Vertex[16];
+		private double[] priorities = new double[16];
+		private int size;
+
+		void add(Vertex vertex, double priority) {
+			if (size == vertices.length) {
+				Vertex[] newVertices = new Vertex[size * 2];
+				System.arraycopy(vertices, 0, newVertices, 0, size);
+				vertices = newVertices;
+				double[] newPriorities = new double[size * 2];
+				System.arraycopy(priorities, 0, newPriorities, 0, size);
+				priorities = newPriorities;
+			}
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (priorities[parent] <= priority)
+					break;
+				vertices[i] = vertices[parent];
+				priorities[i] = priorities[parent];
+				i = parent;
+			}
+			vertices[i] = vertex;
+			priorities[i] = priority;
+		}
+
+		void clear() {
+			for (int i = 0; i < size; i++)
+				vertices[i] = null;
+			size = 0;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		Vertex removeFirst() {
+			Vertex first = vertices[0];
+			size--;
+			Vertex last = vertices[size];
+			double priority = priorities[size];
+			vertices[size] = null;
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size)
+					break;
+				if (child + 1 < size
+						&& priorities[child + 1] < priorities[child])
+					child++;
+				if (priority <= priorities[child])
+					break;
+				vertices[i] = vertices[child];
+				priorities[i] = priorities[child];
+				i = child;
+			}
+			if (size > 0) {
+				vertices[i] = last;
+				priorities[i] = priority;
+			}
+			return first;
+		}
+
+	}
+
+	/**
+	 * A key for the visibility cache, identifying a segment by the identity of
+	 * its vertices.
+	 */
+	private static class SegmentKey {
+
+		private final Vertex start, end;
+
+		SegmentKey(Vertex start, Vertex end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof SegmentKey))
+				return false;
+			SegmentKey other = (SegmentKey) obj;
+			return start == other.start && end == other.end;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(start) * 31
+					+ System.identityHashCode(end);
+		}
+
+	}
+
 	private static final Point CURRENT = new Point();
 	private static final double EPSILON = 1.04;
 	private static final Point NEXT = new Point();
@@ -86,6 +187,7 @@ public class Path {
 	List segments;
 
 	private SegmentStack stack;
+	private VertexQueue queue;
 	Vertex start, end;
 	private Path subPath;
 	double threshold;
@@ -103,6 +205,7 @@ public class Path {
 		points = new PointList();
 		visibleVertices = new HashSet();
 		stack = new SegmentStack();
+		queue = new VertexQueue();
 		visibleObstacles = new HashSet();
 		excludedObstacles = new ArrayList();
 	}
@@ -299,19 +402,39 @@ public class Path {
 	 *            an obstacle to exclude from the search
 	 * @param exclude2
 	 *            another obstacle to exclude from the search
-	 * @param allObstacles
-	 *            the list of all obstacles
+	 * @param obstacles
+	 *            the index of all obstacles
+	 * @param visibilityCache
+	 *            the blocking obstacles of the segments between obstacles
+	 *            which have already been tested, or <code>null</code>
 	 */
 	private void addSegment(Segment segment, Obstacle exclude1,
-			Obstacle exclude2, List allObstacles) {
+			Obstacle exclude2, ObstacleIndex obstacles, Map visibilityCache) {
 		if (threshold != 0
 				&& (segment.end.getDistance(end)
 						+ segment.end.getDistance(start) > threshold || segment.start
 						.getDistance(end) + segment.start.getDistance(start) > threshold))
 			return;
 
-		for (int i = 0; i < allObstacles.size(); i++) {
-			Obstacle obs = (Obstacle) allObstacles.get(i);
+		if (visibilityCache != null
+				&& isObstacleSegment(segment, exclude1, exclude2)) {
+			Obstacle obs = findBlockingObstacle(segment, obstacles,
+					visibilityCache);
+			if (obs == null) {
+				linkVertices(segment);
+				return;
+			}
+			if (!obs.exclude) {
+				if (!visibleObstacles.contains(obs))
+					addObstacle(obs);
+				return;
+			}
+			// excluded for this path only, so look further
+		}
+
+		List candidates = obstacles.getObstacles(segment, 0);
+		for (int i = 0; i < candidates.size(); i++) {
+			Obstacle obs = (Obstacle) candidates.get(i);
 
 			if (obs == exclude1 || obs == exclude2 || obs.exclude)
 				continue;
@@ -331,6 +454,55 @@ public class Path {
 		linkVertices(segment);
 	}
 
+	/**
+	 * Returns <code>true</code> if the segment connects the corners of
+	 * obstacles, and the excluded obstacles are exactly those obstacles. The
+	 * visibility of such a segment does not depend on the path.
+	 */
+	private static boolean isObstacleSegment(Segment segment,
+			Obstacle exclude1, Obstacle exclude2) {
+		Obstacle o1 = segment.start.obs;
+		Obstacle o2 = segment.end.obs;
+		return o1 != null && o2 != null
+				&& (exclude1 == null || exclude1 == o1 || exclude1 == o2)
+				&& (exclude2 == null || exclude2 == o1 || exclude2 == o2)
+				&& (o1 == exclude1 || o1 == exclude2)
+				&& (o2 == exclude1 || o2 == exclude2);
+	}
+
+	/**
+	 * Returns the first obstacle (other than the segment's own obstacles)
+	 * which blocks the given segment between obstacle corners, or
+	 * <code>null</code> if there is none. The result is cached, so that paths
+	 * solved after this one can reuse it.
+	 */
+	private static Obstacle findBlockingObstacle(Segment segment,
+			ObstacleIndex obstacles, Map visibilityCache) {
+		SegmentKey key = new SegmentKey(segment.start, segment.end);
+		Object cached = visibilityCache.get(key);
+		if (cached != null)
+			return cached == Boolean.FALSE ? null : (Obstacle) cached;
+		Obstacle result = null;
+		List candidates = obstacles.getObstacles(segment, 0);
+		for (int i = 0; i < candidates.size(); i++) {
+			Obstacle obs = (Obstacle) candidates.get(i);
+			if (obs == segment.start.obs || obs == segment.end.obs)
+				continue;
+			if (segment.intersects(obs.x, obs.y, obs.right() - 1,
+					obs.bottom() - 1)
+					|| segment.intersects(obs.x, obs.bottom() - 1,
+							obs.right() - 1, obs.y)
+					|| obs.containsProper(segment.start)
+					|| obs.containsProper(segment.end)) {
+				result = obs;
+				break;
+			}
+		}
+		visibilityCache.put(key, result == null ? (Object) Boolean.FALSE
+				: result);
+		return result;
+	}
+
 	/**
 	 * Adds the segments between the given obstacles.
 	 * 
@@ -525,17 +697,20 @@ public class Path {
 	/**
 	 * Begins the creation of the visibility graph with the first segment
 	 * 
-	 * @param allObstacles
-	 *            list of all obstacles
+	 * @param obstacles
+	 *            the index of all obstacles
+	 * @param visibilityCache
+	 *            the visibility cache, or <code>null</code>
 	 */
-	private void createVisibilityGraph(List allObstacles) {
+	private void createVisibilityGraph(ObstacleIndex obstacles,
+			Map visibilityCache) {
 		stack.push(null);
 		stack.push(null);
 		stack.push(new Segment(start, end));
 
 		while (!stack.isEmpty())
 			addSegment(stack.pop(), stack.popObstacle(), stack.popObstacle(),
-					allObstacles);
+					obstacles, visibilityCache);
 	}
 
 	/**
@@ -582,14 +757,19 @@ public class Path {
 
 	/**
 	 * Creates the visibility graph and returns whether or not a shortest path
-	 * could be determined.
+	 * could be determined. The visibility of segments between obstacle corners
+	 * is looked up in, and added to, the given cache. The cache may be shared
+	 * by all paths routed around the same obstacles.
 	 * 
-	 * @param allObstacles
-	 *            the list of all obstacles
+	 * @param obstacles
+	 *            the index of all obstacles
+	 * @param visibilityCache
+	 *            a map used to cache segment visibility, or
+	 *            <code>null</code>
 	 * @return true if a shortest path was found
 	 */
-	boolean generateShortestPath(List allObstacles) {
-		createVisibilityGraph(allObstacles);
+	boolean generateShortestPath(ObstacleIndex obstacles, Map visibilityCache) {
+		createVisibilityGraph(obstacles, visibilityCache);
 
 		if (visibleVertices.size() == 0)
 			return false;
@@ -688,50 +868,49 @@ public class Path {
 	}
 
 	/**
-	 * Labels the visibility graph to assist in finding the shortest path
+	 * Labels the visibility graph to assist in finding the shortest path. This
+	 * is an A* search, using the straight line distance to the end as the
+	 * (consistent) estimate of the remaining cost. Labeling stops as soon as
+	 * the end vertex has been reached.
 	 * 
 	 * @return false if there was a gap in the visibility graph
 	 */
 	private boolean labelGraph() {
-		int numPermanentNodes = 1;
-		Vertex vertex = start;
+		Vertex vertex;
 		Vertex neighborVertex = null;
-		vertex.isPermanent = true;
 		double newCost;
-		while (numPermanentNodes != visibleVertices.size()) {
-			List neighbors = vertex.neighbors;
-			if (neighbors == null)
-				return false;
-			// label neighbors if they have a new shortest path
-			for (int i = 0; i < neighbors.size(); i++) {
-				neighborVertex = (Vertex) neighbors.get(i);
-				if (!neighborVertex.isPermanent) {
-					newCost = vertex.cost + vertex.getDistance(neighborVertex);
-					if (neighborVertex.label == null) {
-						neighborVertex.label = vertex;
-						neighborVertex.cost = newCost;
-					} else if (neighborVertex.cost > newCost) {
-						neighborVertex.label = vertex;
-						neighborVertex.cost = newCost;
+		queue.clear();
+		queue.add(start, start.getDistance(end));
+		try {
+			while (!queue.isEmpty()) {
+				vertex = queue.removeFirst();
+				// skip entries which were queued before a cheaper label
+				if (vertex.isPermanent)
+					continue;
+				vertex.isPermanent = true;
+				if (vertex == end)
+					return true;
+				List neighbors = vertex.neighbors;
+				if (neighbors == null)
+					return false;
+				// label neighbors if they have a new shortest path
+				for (int i = 0; i < neighbors.size(); i++) {
+					neighborVertex = (Vertex) neighbors.get(i);
+					if (!neighborVertex.isPermanent) {
+						newCost = vertex.cost
+								+ vertex.getDistance(neighborVertex);
+						if (neighborVertex.label == null
+								|| neighborVertex.cost > newCost) {
+							neighborVertex.label = vertex;
+							neighborVertex.cost = newCost;
+							queue.add(neighborVertex,
+									newCost + neighborVertex.getDistance(end));
+						}
 					}
 				}
 			}
-			// find the next none-permanent, labeled vertex with smallest cost
-			double smallestCost = 0;
-			Vertex tempVertex = null;
-			Iterator v = visibleVertices.iterator();
-			while (v.hasNext()) {
-				tempVertex = (Vertex) v.next();
-				if (!tempVertex.isPermanent
-						&& tempVertex.label != null
-						&& (tempVertex.cost < smallestCost || smallestCost == 0)) {
-					smallestCost = tempVertex.cost;
-					vertex = tempVertex;
-				}
-			}
-			// set the new vertex to permanent.
-			vertex.isPermanent = true;
-			numPermanentNodes++;
+		} finally {
+			queue.clear();
 		}
 		return true;
 	}
@@ -892,6 +1071,14 @@ public class Path {
 		if (excludedObstacles.contains(obs))
 			return false;
 
+		// the obstacle's diagonals must touch the bounds of the points
+		Rectangle bounds = points.getBounds();
+		if (Math.max(obs.x, obs.right() - 1) < bounds.x
+				|| Math.min(obs.x, obs.right() - 1) >= bounds.right()
+				|| Math.max(obs.y, obs.bottom() - 1) < bounds.y
+				|| Math.min(obs.y, obs.bottom() - 1) >= bounds.bottom())
+			return false;
+
 		Segment seg1 = new Segment(obs.topLeft, obs.bottomRight);
 		Segment seg2 = new Segment(obs.topRight, obs.bottomLeft);
 
@@ -53,6 +53,17 @@ class RankSorter {
 		}
 	}
 
+	/**
+	 * Returns a new sorter of the same kind, which can sort a part of the graph
+	 * which is not connected to the rest of it, possibly on another thread.
+	 * Returns <code>null</code> if the ranks can only be sorted as a whole.
+	 *
+	 * @return a new sorter or <code>null</code>
+	 */
+	RankSorter createIndependentSorter() {
+		return getClass() == RankSorter.class ? new RankSorter() : null;
+	}
+
 	double evaluateNodeIncoming() {
 		boolean change = false;
 		EdgeList incoming = node.incoming;
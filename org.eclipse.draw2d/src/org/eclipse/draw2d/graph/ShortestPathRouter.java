@@ -66,6 +66,8 @@ public class ShortestPathRouter {
 
 	private int spacing = 4;
 	private boolean growPassChangedObstacles;
+	private int maxVertexGrowth;
+	private ObstacleIndex obstacleIndex;
 	private List orderedPaths;
 	private Map pathsToChildPaths;
 
@@ -84,6 +86,7 @@ public class ShortestPathRouter {
 		workingPaths = new ArrayList();
 		pathsToChildPaths = new HashMap();
 		userObstacles = new ArrayList();
+		obstacleIndex = new ObstacleIndex(userObstacles);
 	}
 
 	/**
@@ -161,8 +164,9 @@ public class ShortestPathRouter {
 
 		int xDist, yDist;
 
-		for (int o = 0; o < userObstacles.size(); o++) {
-			Obstacle obs = (Obstacle) userObstacles.get(o);
+		List candidates = obstacleIndex.getObstacles(r);
+		for (int o = 0; o < candidates.size(); o++) {
+			Obstacle obs = (Obstacle) candidates.get(o);
 			if (obs != vertex.obs && r.intersects(obs)) {
 				int pos = obs.getPosition(vertex);
 				if (pos == 0)
@@ -329,8 +333,15 @@ public class ShortestPathRouter {
 	 */
 	private void growObstaclesPass() {
 		// grow obstacles
-		for (int i = 0; i < userObstacles.size(); i++)
-			((Obstacle) userObstacles.get(i)).growVertices();
+		maxVertexGrowth = 0;
+		for (int i = 0; i < userObstacles.size(); i++) {
+			Obstacle obs = (Obstacle) userObstacles.get(i);
+			obs.growVertices();
+			updateMaxVertexGrowth(obs.topLeft);
+			updateMaxVertexGrowth(obs.topRight);
+			updateMaxVertexGrowth(obs.bottomLeft);
+			updateMaxVertexGrowth(obs.bottomRight);
+		}
 
 		// go through paths and test segments
 		for (int i = 0; i < workingPaths.size(); i++) {
@@ -369,6 +380,7 @@ public class ShortestPathRouter {
 	 */
 	private boolean internalAddObstacle(Obstacle obs) {
 		userObstacles.add(obs);
+		obstacleIndex.add(obs);
 		return testAndDirtyPaths(obs);
 	}
 
@@ -380,17 +392,9 @@ public class ShortestPathRouter {
 	 * @return the obstacle removed
 	 */
 	private boolean internalRemoveObstacle(Rectangle rect) {
-		Obstacle obs = null;
-		int index = -1;
-		for (int i = 0; i < userObstacles.size(); i++) {
-			obs = (Obstacle) userObstacles.get(i);
-			if (obs.equals(rect)) {
-				index = i;
-				break;
-			}
-		}
-
-		userObstacles.remove(index);
+		Obstacle obs = obstacleIndex.find(rect);
+		userObstacles.remove(obs);
+		obstacleIndex.remove(obs);
 
 		boolean result = false;
 		result |= dirtyPathsOn(obs.bottomLeft);
@@ -715,6 +719,9 @@ public class ShortestPathRouter {
 	 */
 	private int solveDirtyPaths() {
 		int numSolved = 0;
+		// the obstacles do not change while solving, so the visibility of
+		// segments between their corners can be shared by all paths
+		Map visibilityCache = new HashMap();
 
 		for (int i = 0; i < userPaths.size(); i++) {
 			Path path = (Path) userPaths.get(i);
@@ -747,13 +754,15 @@ public class ShortestPathRouter {
 			numSolved++;
 			path.fullReset();
 
-			boolean pathFoundCheck = path.generateShortestPath(userObstacles);
+			boolean pathFoundCheck = path.generateShortestPath(obstacleIndex,
+					visibilityCache);
 			if (!pathFoundCheck || path.end.cost > path.threshold) {
 				// path not found, or path found was too long
 				resetVertices();
 				path.fullReset();
 				path.threshold = 0;
-				pathFoundCheck = path.generateShortestPath(userObstacles);
+				pathFoundCheck = path.generateShortestPath(obstacleIndex,
+						visibilityCache);
 			}
 
 			resetVertices();
@@ -842,8 +851,11 @@ public class ShortestPathRouter {
 	 */
 	private int testOffsetSegmentForIntersections(Segment segment, int index,
 			Path path) {
-		for (int i = 0; i < userObstacles.size(); i++) {
-			Obstacle obs = (Obstacle) userObstacles.get(i);
+		// the corners of the obstacles may have grown beyond their bounds
+		List candidates = obstacleIndex.getObstacles(segment, getSpacing()
+				+ maxVertexGrowth);
+		for (int i = 0; i < candidates.size(); i++) {
+			Obstacle obs = (Obstacle) candidates.get(i);
 
 			if (segment.end.obs == obs || segment.start.obs == obs
 					|| obs.exclude)
@@ -899,6 +911,7 @@ public class ShortestPathRouter {
 				vertex.shrink();
 				checkVertexForIntersections(vertex);
 				vertex.grow();
+				updateMaxVertexGrowth(vertex);
 
 				if (vertex.nearestObstacle != 0)
 					vertex.updateOffset();
@@ -936,6 +949,17 @@ public class ShortestPathRouter {
 		return result;
 	}
 
+	/**
+	 * Updates the maximum distance by which a vertex has grown during the
+	 * current grow pass.
+	 * 
+	 * @param vertex
+	 *            a vertex which may have grown
+	 */
+	private void updateMaxVertexGrowth(Vertex vertex) {
+		maxVertexGrowth = Math.max(maxVertexGrowth, vertex.getGrowth());
+	}
+
 	/**
 	 * Updates the position of an existing obstacle.
 	 * 
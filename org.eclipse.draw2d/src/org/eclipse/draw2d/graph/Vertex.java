@@ -214,6 +214,16 @@ class Vertex extends Point {
 		y = origY;
 	}
 
+	/**
+	 * Returns how far this vertex has been moved from its original position
+	 * in either direction.
+	 * 
+	 * @return the distance this vertex has grown
+	 */
+	int getGrowth() {
+		return Math.max(Math.abs(x - origX), Math.abs(y - origY));
+	}
+
 	/**
 	 * Updates the offset of this vertex based on its shortest distance.
 	 */
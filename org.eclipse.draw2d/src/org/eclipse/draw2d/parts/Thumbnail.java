@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.draw2d.parts;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -19,12 +20,12 @@ import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Display;
 
+import org.eclipse.draw2d.DirtyRegionListener;
 import org.eclipse.draw2d.Figure;
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.SWTGraphics;
 import org.eclipse.draw2d.ScaledGraphics;
-import org.eclipse.draw2d.UpdateListener;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Rectangle;
 
@@ -36,20 +37,29 @@ import org.eclipse.draw2d.geometry.Rectangle;
  * @author Eric Bordeau
  * @author Alexander Nyßen (anyssen)
  */
-public class Thumbnail extends Figure implements UpdateListener {
+public class Thumbnail extends Figure implements DirtyRegionListener {
 
 	/**
 	 * This updates the Thumbnail by breaking the thumbnail {@link Image} into
-	 * several tiles and updating each tile individually.
+	 * several tiles and updating each dirty tile individually. Tiles are
+	 * updated until {@link #TIME_BUDGET} is used up, and the remaining tiles
+	 * are updated in a later {@link Display#asyncExec(Runnable)}.
 	 */
 	class ThumbnailUpdater implements Runnable {
-		private static final int MIN_TILE_SIZE = 256;
+		private static final int MIN_TILE_SIZE = 64;
 		private static final int MAX_NUMBER_OF_TILES = 16;
-		private int currentHTile, currentVTile;
+		/**
+		 * The time in milliseconds for which tiles are updated in one run.
+		 */
+		private static final int TIME_BUDGET = 15;
 		private int hTiles, vTiles;
 		private Dimension tileSize;
-		private Dimension sourceSize; // the source size that was used for the
-										// tileSize computation
+		// the thumbnail size and source rectangle that were used for the tile
+		// computation
+		private Dimension tiledSize;
+		private Rectangle tiledSource;
+		private boolean[] dirtyTiles;
+		private int dirtyTileCount;
 		private boolean isActive = true;
 
 		private boolean isRunning = false;
@@ -73,24 +83,47 @@ public class Thumbnail extends Figure implements UpdateListener {
 				thumbnailImage = null;
 				thumbnailImageSize = null;
 			}
+			dirtyTiles = null;
+			dirtyTileCount = 0;
 		}
 
 		/**
-		 * Returns the current horizontal tile index.
+		 * Returns <code>true</code> if some tiles of the thumbnail
+		 * {@link Image} have not been updated since their area of the source
+		 * figure changed.
 		 * 
-		 * @return current horizontal tile index.
+		 * @return <code>true</code> if there are dirty tiles
 		 */
-		protected int getCurrentHTile() {
-			return currentHTile;
+		boolean hasDirtyTiles() {
+			return dirtyTileCount > 0;
 		}
 
 		/**
-		 * Returns the current vertical tile index.
+		 * Marks the tiles which intersect the given rectangle of the thumbnail
+		 * {@link Image} as dirty. If the tiles do not match the current
+		 * thumbnail size and source rectangle, the whole thumbnail is marked
+		 * dirty instead.
 		 * 
-		 * @return current vertical tile index.
+		 * @param rect
+		 *            the changed area, in thumbnail image coordinates
 		 */
-		protected int getCurrentVTile() {
-			return currentVTile;
+		void invalidate(Rectangle rect) {
+			if (dirtyTiles == null || !isTilingValid()) {
+				setDirty(true);
+				return;
+			}
+			Rectangle area = rect.getIntersection(new Rectangle(0, 0,
+					tiledSize.width, tiledSize.height));
+			if (area.isEmpty())
+				return;
+			int lastH = (area.right() - 1) / tileSize.width;
+			int lastV = (area.bottom() - 1) / tileSize.height;
+			for (int v = area.y / tileSize.height; v <= lastV; v++)
+				for (int h = area.x / tileSize.width; h <= lastH; h++)
+					if (!dirtyTiles[v * hTiles + h]) {
+						dirtyTiles[v * hTiles + h] = true;
+						dirtyTileCount++;
+					}
 		}
 
 		/**
@@ -114,34 +147,40 @@ public class Thumbnail extends Figure implements UpdateListener {
 			return isRunning;
 		}
 
+		private boolean isTilingValid() {
+			return targetSize.equals(tiledSize)
+					&& getSourceRectangle().equals(tiledSource);
+		}
+
 		/**
 		 * Resets the number of vertical and horizontal tiles, as well as the
-		 * tile size and current tile index.
+		 * tile size, and marks all tiles dirty.
 		 */
 		public void resetTileValues() {
-			// Keep track of source size that matches the computed tile size.
-			sourceSize = getSourceRectangle().getSize();
+			// Keep track of the thumbnail size and source rectangle that match
+			// the computed tile size.
+			tiledSize = targetSize.getCopy();
+			tiledSource = getSourceRectangle().getCopy();
 
 			// Compute number of horizontal and vertical tiles and the size of
 			// each tile (while the last tile in horizontal and vertical
 			// direction may be smaller); ensure that all tiles except those on
 			// the bottom and right border will have at least a size of
 			// MIN_TILE_SIZE size and that at most MAX_NUMBER_OF_TILES tiles
-			// will be created.
+			// will be created in each direction.
 			hTiles = Math.min(
-					(int) Math.ceil((float) sourceSize.width
+					(int) Math.ceil((float) tiledSize.width
 							/ (float) MIN_TILE_SIZE), MAX_NUMBER_OF_TILES);
 			vTiles = Math.min(
-					(int) Math.ceil((float) sourceSize.height
+					(int) Math.ceil((float) tiledSize.height
 							/ (float) MIN_TILE_SIZE), MAX_NUMBER_OF_TILES);
-			tileSize = new Dimension((int) Math.ceil((float) sourceSize.width
+			tileSize = new Dimension((int) Math.ceil((float) tiledSize.width
 					/ (float) hTiles),
-					(int) Math.ceil((float) sourceSize.height / (float) vTiles));
+					(int) Math.ceil((float) tiledSize.height / (float) vTiles));
 
-			// Reset the current indices so that the next update will start with
-			// the first tile in horizontal and vertical direction
-			currentHTile = 0;
-			currentVTile = 0;
+			dirtyTiles = new boolean[hTiles * vTiles];
+			Arrays.fill(dirtyTiles, true);
+			dirtyTileCount = dirtyTiles.length;
 		}
 
 		/**
@@ -153,31 +192,59 @@ public class Thumbnail extends Figure implements UpdateListener {
 		}
 
 		/**
-		 * Updates the current tile on the Thumbnail. An area of the source
-		 * Figure is painted to an {@link Image}. That Image is then drawn on
-		 * the Thumbnail. Scaling of the source Image is done inside
-		 * {@link GC#drawImage(Image, int, int, int, int, int, int, int, int)}
-		 * since the source and target sizes are different. The current tile
-		 * indexes are incremented and if more updating is necesary, this
-		 * {@link Runnable} is called again in a
-		 * {@link Display#timerExec(int, Runnable)}. If no more updating is
+		 * Updates the dirty tiles on the Thumbnail, until all tiles are
+		 * updated or {@link #TIME_BUDGET} is used up. If more updating is
+		 * necessary, this {@link Runnable} is called again in a
+		 * {@link Display#asyncExec(Runnable)}. If no more updating is
 		 * required, {@link #stop()} is called.
 		 */
 		public void run() {
 			if (!isActive() || !isRunning() || tileGraphics == null)
 				return;
 
-			int v = getCurrentVTile();
-			int sy1 = v * tileSize.height;
-			int sy2 = Math.min((v + 1) * tileSize.height, sourceSize.height);
+			if (!targetSize.equals(tiledSize)) {
+				restart();
+				return;
+			}
+			if (isDirty || !isTilingValid()) {
+				// the scales changed, or the whole source was damaged
+				setDirty(false);
+				resetTileValues();
+			}
 
-			int h = getCurrentHTile();
-			int sx1 = h * tileSize.width;
-			int sx2 = Math.min((h + 1) * tileSize.width, sourceSize.width);
+			long deadline = System.currentTimeMillis() + TIME_BUDGET;
+			for (int tile = 0; tile < dirtyTiles.length; tile++) {
+				if (!dirtyTiles[tile])
+					continue;
+				dirtyTiles[tile] = false;
+				dirtyTileCount--;
+				updateTile(tile % hTiles, tile / hTiles);
+				if (System.currentTimeMillis() >= deadline)
+					break;
+			}
+
+			if (hasDirtyTiles() || isDirty) {
+				Display.getCurrent().asyncExec(this);
+			} else {
+				stop();
+				repaint();
+			}
+		}
+
+		/**
+		 * Updates a single tile on the Thumbnail. An area of the source Figure
+		 * is painted to an {@link Image}. That Image is then drawn on the
+		 * thumbnail Image.
+		 */
+		private void updateTile(int h, int v) {
+			int tx1 = h * tileSize.width;
+			int tx2 = Math.min(tx1 + tileSize.width, tiledSize.width);
+			int ty1 = v * tileSize.height;
+			int ty2 = Math.min(ty1 + tileSize.height, tiledSize.height);
 
 			tileGraphics.pushState();
 			// clear the background (by filling with the background color)
-			Rectangle rect = new Rectangle(0, 0, sx2 - sx1, sy2 - sy1);
+			Rectangle rect = new Rectangle(0, 0, tx2 - tx1, ty2 - ty1);
 			tileGraphics.fillRectangle(rect);
 
 			// Let the source figure paint into the tile image.
@@ -189,36 +256,15 @@ public class Thumbnail extends Figure implements UpdateListener {
 			// image and copying from it into the thumbnail image, we are safe.
 			org.eclipse.draw2d.geometry.Point p = getSourceRectangle()
 					.getLocation();
-			tileGraphics.translate(-p.x * getScaleX() - sx1, -p.y * getScaleY()
-					- sy1);
+			tileGraphics.translate(-p.x * getScaleX() - tx1, -p.y * getScaleY()
+					- ty1);
 			tileGraphics.scale(getScaleX());
 			sourceFigure.paint(tileGraphics);
 			tileGraphics.popState();
 
 			// Copy the painted tile image into the thumbnail image.
-			thumbnailGC.drawImage(tileImage, 0, 0, sx2 - sx1, sy2 - sy1, sx1,
-					sy1, sx2 - sx1, sy2 - sy1);
-
-			if (getCurrentHTile() < (hTiles - 1))
-				setCurrentHTile(getCurrentHTile() + 1);
-			else {
-				setCurrentHTile(0);
-				if (getCurrentVTile() < (vTiles - 1))
-					setCurrentVTile(getCurrentVTile() + 1);
-				else
-					setCurrentVTile(0);
-			}
-
-			if (getCurrentHTile() != 0 || getCurrentVTile() != 0) {
-				Display.getCurrent().asyncExec(this);
-			} else if (isDirty()) {
-				setDirty(false);
-				Display.getCurrent().asyncExec(this);
-				repaint();
-			} else {
-				stop();
-				repaint();
-			}
+			thumbnailGC.drawImage(tileImage, 0, 0, tx2 - tx1, ty2 - ty1, tx1,
+					ty1, tx2 - tx1, ty2 - ty1);
 		}
 
 		/**
@@ -231,26 +277,6 @@ public class Thumbnail extends Figure implements UpdateListener {
 			isActive = value;
 		}
 
-		/**
-		 * Sets the current horizontal tile index.
-		 * 
-		 * @param count
-		 *            current horizontal tile index
-		 */
-		protected void setCurrentHTile(int count) {
-			currentHTile = count;
-		}
-
-		/**
-		 * Sets the current vertical tile index.
-		 * 
-		 * @param count
-		 *            current vertical tile index
-		 */
-		protected void setCurrentVTile(int count) {
-			currentVTile = count;
-		}
-
 		/**
 		 * Starts this updater. This method initializes all the necessary
 		 * resources and puts this {@link Runnable} on the asynch queue. If this
@@ -262,16 +288,20 @@ public class Thumbnail extends Figure implements UpdateListener {
 				return;
 
 			isRunning = true;
-			setDirty(false);
-
-			resetTileValues();
 
 			if (!targetSize.equals(thumbnailImageSize)) {
 				resetThumbnailImage();
+				setDirty(true);
 			}
 
-			if (targetSize.isEmpty())
+			if (targetSize.isEmpty()) {
+				setDirty(false);
 				return;
+			}
+
+			if (isDirty || dirtyTiles == null || !isTilingValid())
+				resetTileValues();
+			setDirty(false);
 
 			thumbnailGC = new GC(thumbnailImage, SWT.NONE);
 
@@ -292,8 +322,8 @@ public class Thumbnail extends Figure implements UpdateListener {
 				tileGraphics.setBackgroundColor(color);
 			tileGraphics.setFont(sourceFigure.getFont());
 
-			setScales(targetSize.width / (float) sourceSize.width,
-					targetSize.height / (float) sourceSize.height);
+			setScales(targetSize.width / (float) tiledSource.width,
+					targetSize.height / (float) tiledSource.height);
 
 			Display.getCurrent().asyncExec(this);
 		}
@@ -360,6 +390,10 @@ public class Thumbnail extends Figure implements UpdateListener {
 	}
 
 	private boolean isDirty;
+	// whether dirty regions were passed to notifyDirtyRegion() since the last
+	// notifyPainting(), and whether any of them affected the thumbnail
+	private boolean dirtyRegionsNotified;
+	private boolean thumbnailDamaged;
 	private float scaleX;
 	private float scaleY;
 
@@ -509,30 +543,92 @@ public class Thumbnail extends Figure implements UpdateListener {
 	}
 
 	/**
-	 * Returns <code>true</code> if the source figure has changed.
+	 * Returns the area of the thumbnail image which is affected by the given
+	 * dirty region of a figure, or <code>null</code> if the figure is not
+	 * contained in the source figure or the region is not visible in it.
+	 */
+	private Rectangle getThumbnailDamage(IFigure figure, Rectangle dirtyRegion) {
+		Rectangle region = dirtyRegion.getIntersection(figure.getBounds());
+		IFigure walker = figure;
+		while (walker != getSource()) {
+			walker = walker.getParent();
+			if (walker == null || region.isEmpty())
+				return null;
+			walker.translateToParent(region);
+			region.intersect(walker.getBounds());
+		}
+		if (region.isEmpty())
+			return null;
+
+		// map the region the way the tiles are painted, including a pixel for
+		// rounding and antialiasing on each side
+		Rectangle source = getSourceRectangle();
+		int left = (int) Math.floor(region.x * getScaleX() - source.x
+				* getScaleX()) - 1;
+		int top = (int) Math.floor(region.y * getScaleX() - source.y
+				* getScaleY()) - 1;
+		int right = (int) Math.ceil(region.right() * getScaleX() - source.x
+				* getScaleX()) + 1;
+		int bottom = (int) Math.ceil(region.bottom() * getScaleX() - source.y
+				* getScaleY()) + 1;
+		return new Rectangle(left, top, right - left, bottom - top);
+	}
+
+	/**
+	 * Returns <code>true</code> if the source figure has changed since the
+	 * thumbnail image was last updated.
 	 * 
 	 * @return <code>true</code> if the source figure has changed
 	 */
 	protected boolean isDirty() {
-		return isDirty;
+		return isDirty || updater.hasDirtyTiles();
 	}
 
 	/**
+	 * Marks the tiles of the thumbnail image dirty which are affected by the
+	 * dirty region of a figure contained in the source figure, so that only
+	 * those tiles are updated.
+	 * 
+	 * @see org.eclipse.draw2d.DirtyRegionListener#notifyDirtyRegion(IFigure,
+	 *      Rectangle)
+	 * @since 3.10
+	 */
+	public void notifyDirtyRegion(IFigure figure, Rectangle region) {
+		dirtyRegionsNotified = true;
+		Rectangle damage = getThumbnailDamage(figure, region);
+		if (damage != null) {
+			updater.invalidate(damage);
+			thumbnailDamaged = true;
+		}
+	}
+
+	/**
+	 * Repaints the Thumbnail if the dirty regions passed to
+	 * {@link #notifyDirtyRegion(IFigure, Rectangle)} affected it. If the
+	 * update manager does not pass the dirty regions in that way, the whole
+	 * thumbnail is marked dirty when any figure contained in the source figure
+	 * is dirty.
+	 * 
 	 * @see org.eclipse.draw2d.UpdateListener#notifyPainting(Rectangle, Map)
 	 */
 	public void notifyPainting(Rectangle damage, Map dirtyRegions) {
-		Iterator dirtyFigures = dirtyRegions.keySet().iterator();
-		while (dirtyFigures.hasNext()) {
-			IFigure current = (IFigure) dirtyFigures.next();
-			while (current != null) {
-				if (current == getSource()) {
-					setDirty(true);
-					repaint();
-					return;
+		if (!dirtyRegionsNotified) {
+			Iterator dirtyFigures = dirtyRegions.keySet().iterator();
+			while (dirtyFigures.hasNext()) {
+				IFigure current = (IFigure) dirtyFigures.next();
+				while (current != null) {
+					if (current == getSource()) {
+						setDirty(true);
+						repaint();
+						return;
+					}
+					current = current.getParent();
 				}
-				current = current.getParent();
 			}
-		}
+		} else if (thumbnailDamaged)
+			repaint();
+		dirtyRegionsNotified = false;
+		thumbnailDamaged = false;
 	}
 
 	/**
@@ -554,7 +650,8 @@ public class Thumbnail extends Figure implements UpdateListener {
 	}
 
 	/**
-	 * Sets the dirty flag.
+	 * Sets the dirty flag. A dirty Thumbnail updates its whole image the next
+	 * time it is painted.
 	 * 
 	 * @param value
 	 *            The dirty value
@@ -156,6 +156,18 @@ public interface EditPartViewer extends
 	void appendSelection(EditPart editpart);
 	void appendSelection(EditPart editpart, boolean propagate);
 
+	/**
+	 * Begins a batched update of this viewer. Until the matching call to
+	 * {@link #endUpdate()}, refreshes requested with
+	 * {@link #requestRefresh(EditPart)} are collected instead of being
+	 * performed. Each requested EditPart is refreshed only once, when the
+	 * outermost update ends. Updates may be nested.
+	 * 
+	 * @see #runBatched(Runnable)
+	 * @since 3.11
+	 */
+	void beginUpdate();
+
 	/**
 	 * Optionally creates the default {@link org.eclipse.swt.widgets.Control
 	 * Control} using the default style. The Control can also be created
@@ -189,6 +201,15 @@ public interface EditPartViewer extends
 	 */
 	void deselectAll();
 
+	/**
+	 * Ends a batched update begun with {@link #beginUpdate()}. If this ends the
+	 * outermost update, the requested EditParts are refreshed, parents before
+	 * their children.
+	 * 
+	 * @since 3.11
+	 */
+	void endUpdate();
+
 	/**
 	 * Returns <code>null</code> or the <code>EditPart</code> associated with
 	 * the specified location. The location is relative to the client area of
@@ -428,6 +449,15 @@ public interface EditPartViewer extends
 	 */
 	Map getVisualPartMap();
 
+	/**
+	 * Returns <code>true</code> if a {@link #beginUpdate() batched update} is in
+	 * progress.
+	 * 
+	 * @return <code>true</code> if refreshes are currently deferred
+	 * @since 3.11
+	 */
+	boolean isUpdating();
+
 	/**
 	 * Used for accessibility purposes.
 	 * 
@@ -487,6 +517,17 @@ public interface EditPartViewer extends
 	 */
 	void removePropertyChangeListener(PropertyChangeListener listener);
 
+	/**
+	 * Refreshes the given EditPart. During a {@link #beginUpdate() batched
+	 * update}, the refresh is deferred until the update ends, and several
+	 * requests for the same EditPart result in a single refresh.
+	 * 
+	 * @param editpart
+	 *            the EditPart to refresh
+	 * @since 3.11
+	 */
+	void requestRefresh(EditPart editpart);
+
 	/**
 	 * Reveals the given EditPart if it is not visible.
 	 * 
@@ -495,6 +536,16 @@ public interface EditPartViewer extends
 	 */
 	void reveal(EditPart editpart);
 
+	/**
+	 * Runs the given runnable within a {@link #beginUpdate() batched update}.
+	 * The update ends even if the runnable throws an exception.
+	 * 
+	 * @param runnable
+	 *            the runnable to run
+	 * @since 3.11
+	 */
+	void runBatched(Runnable runnable);
+
 	/**
 	 * Replaces the current selection with the specified <code>EditPart</code>.
 	 * That part becomes the primary selection. Fires selection changed to
@@ -23,6 +23,7 @@ import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.StructuredSelection;
 
+import org.eclipse.gef.internal.SelectionList;
 import org.eclipse.gef.ui.parts.AbstractEditPartViewer;
 
 /**
@@ -41,6 +42,8 @@ public class SelectionManager {
 	private EditPart focusPart;
 	private Runnable notifier;
 	private List selection;
+	private ISelection cachedSelection;
+	private int cachedModificationCount;
 	private EditPartViewer viewer;
 
 	/**
@@ -178,7 +181,18 @@ public class SelectionManager {
 	public ISelection getSelection() {
 		if (selection.isEmpty() && viewer.getContents() != null)
 			return new StructuredSelection(viewer.getContents());
-		return new StructuredSelection(selection);
+		if (!(selection instanceof SelectionList))
+			return new StructuredSelection(selection);
+		// the selection is copied only once after each change, no matter how
+		// many listeners ask for it
+		int modificationCount = ((SelectionList) selection)
+				.getModificationCount();
+		if (cachedSelection == null
+				|| cachedModificationCount != modificationCount) {
+			cachedSelection = new StructuredSelection(selection);
+			cachedModificationCount = modificationCount;
+		}
+		return cachedSelection;
 	}
 
 	/**
@@ -234,6 +248,7 @@ public class SelectionManager {
 			Runnable notifier) {
 		this.viewer = viewer;
 		this.selection = selection;
+		cachedSelection = null;
 		this.notifier = notifier;
 
 		hookViewer(viewer);
@@ -295,6 +310,8 @@ public class SelectionManager {
 		// AbstractEditPartViewer#setFocus() should call back setFocus(null)
 		// here, so both focus part values should stay in sync.
 		viewer.setFocus(null);
+		// only change the selected state of parts whose state differs, so
+		// parts which stay selected are not notified
 		for (int i = 0; i < selection.size(); i++) {
 			EditPart part = (EditPart) selection.get(i);
 			if (!hashset.contains(part))
@@ -302,17 +319,13 @@ public class SelectionManager {
 		}
 		selection.clear();
 
-		if (!orderedSelection.isEmpty()) {
-			Iterator itr = orderedSelection.iterator();
-			while (true) {
-				EditPart part = (EditPart) itr.next();
-				selection.add(part);
-				if (!itr.hasNext()) {
-					part.setSelected(EditPart.SELECTED_PRIMARY);
-					break;
-				}
-				part.setSelected(EditPart.SELECTED);
-			}
+		for (Iterator itr = orderedSelection.iterator(); itr.hasNext();) {
+			EditPart part = (EditPart) itr.next();
+			selection.add(part);
+			int value = itr.hasNext() ? EditPart.SELECTED
+					: EditPart.SELECTED_PRIMARY;
+			if (part.getSelected() != value)
+				part.setSelected(value);
 		}
 		if (propagate)
 			fireSelectionChanged();
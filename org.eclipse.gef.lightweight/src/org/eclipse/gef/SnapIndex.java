@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef;
+
+import java.util.Arrays;
+
+/**
+ * A sorted index of snap locations, used by the snap helpers to find the
+ * location closest to a value by binary search instead of scanning all
+ * locations. Each location has an id, which is its index in the array the
+ * helper was given. The result is the same as that of a scan in the order of
+ * the ids which only accepts strictly closer locations: the closest location
+ * wins, and of two equally close locations, the one with the lower id.
+ */
+class SnapIndex {
+
+	private final int[] locations;
+	private final int[] ids;
+
+	/**
+	 * Creates an index of the given locations.
+	 *
+	 * @param locations
+	 *            the locations
+	 * @param ids
+	 *            the id of each location, or <code>null</code> if the ids are
+	 *            the indices of the locations
+	 * @param count
+	 *            the number of locations to use from the arrays
+	 */
+	SnapIndex(int[] locations, int[] ids, int count) {
+		long[] sorted = new long[count];
+		for (int i = 0; i < count; i++)
+			sorted[i] = ((long) locations[i] << 32)
+					| (ids == null ? i : ids[i]);
+		Arrays.sort(sorted);
+
+		// only the lowest id of each location can ever be found
+		int distinct = 0;
+		for (int i = 0; i < count; i++)
+			if (i == 0 || (sorted[i] >> 32) != (sorted[i - 1] >> 32))
+				distinct++;
+		this.locations = new int[distinct];
+		this.ids = new int[distinct];
+		int j = 0;
+		for (int i = 0; i < count; i++) {
+			int location = (int) (sorted[i] >> 32);
+			if (j > 0 && this.locations[j - 1] == location)
+				continue;
+			this.locations[j] = location;
+			this.ids[j++] = (int) sorted[i];
+		}
+	}
+
+	/**
+	 * Returns the id of the location closest to the given value, or
+	 * <code>-1</code> if no location is closer than the threshold.
+	 *
+	 * @param value
+	 *            the value
+	 * @param threshold
+	 *            the exclusive maximum distance
+	 * @return <code>-1</code> or the id of the closest location
+	 */
+	int findClosest(double value, double threshold) {
+		double min = value - threshold;
+		int low = 0, high = locations.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (locations[middle] < min)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		int best = -1;
+		double bestMagnitude = threshold;
+		for (int i = low; i < locations.length
+				&& locations[i] < value + threshold; i++) {
+			double magnitude = Math.abs(value - locations[i]);
+			if (magnitude < bestMagnitude || best != -1
+					&& magnitude == bestMagnitude && ids[i] < ids[best]) {
+				best = i;
+				bestMagnitude = magnitude;
+			}
+		}
+		return best == -1 ? -1 : ids[best];
+	}
+
+}
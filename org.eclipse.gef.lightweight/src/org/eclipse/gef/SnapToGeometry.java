@@ -12,6 +12,7 @@ package org.eclipse.gef;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +39,11 @@ import org.eclipse.gef.requests.GroupRequest;
  * the request is a Clone, then the figures for the parts being cloned will be
  * used as possible snap locations.
  * <P>
+ * The snap locations are computed once and searched by binary search, so the
+ * cost of snapping hardly depends on the number of children. The locations
+ * for both a clone and a move are kept, so switching between them during a
+ * drag does not compute them again.
+ * <P>
  * This helper does not keep up with changes made to the container editpart.
  * Clients should instantiate a new helper each time one is requested and not
  * hold on to instances of the helper.
@@ -157,6 +163,17 @@ public class SnapToGeometry extends SnapToHelper {
 	 */
 	protected Entry cols[];
 
+	/**
+	 * The rows and columns for the other value of {@link #cachedCloneBool}.
+	 */
+	private Entry alternateRows[], alternateCols[];
+
+	/**
+	 * The indices of the snap locations of the entry arrays, by array. Each
+	 * value holds the index of the middle entries and of the side entries.
+	 */
+	private Map snapIndices = new HashMap();
+
 	/**
 	 * The container editpart providing the coordinates and the children to
 	 * which snapping occurs.
@@ -281,43 +298,19 @@ public class SnapToGeometry extends SnapToHelper {
 	 */
 	protected double getCorrectionFor(Entry entries[], Map extendedData,
 			boolean vert, double value, int side) {
-		double resultMag = getThreshold();
-		double result = getThreshold();
-
 		String property;
 		if (side == -1)
 			property = vert ? KEY_WEST_ANCHOR : KEY_NORTH_ANCHOR;
 		else
 			property = vert ? KEY_EAST_ANCHOR : KEY_SOUTH_ANCHOR;
 
-		for (int i = 0; i < entries.length; i++) {
-			Entry entry = entries[i];
-			double magnitude;
-
-			if (entry.type == -1 && side != 0) {
-				magnitude = Math.abs(value - entry.location);
-				if (magnitude < resultMag) {
-					resultMag = magnitude;
-					result = entry.location - value;
-					extendedData.put(property, new Integer(entry.location));
-				}
-			} else if (entry.type == 0 && side == 0) {
-				magnitude = Math.abs(value - entry.location);
-				if (magnitude < resultMag) {
-					resultMag = magnitude;
-					result = entry.location - value;
-					extendedData.put(property, new Integer(entry.location));
-				}
-			} else if (entry.type == 1 && side != 0) {
-				magnitude = Math.abs(value - entry.location);
-				if (magnitude < resultMag) {
-					resultMag = magnitude;
-					result = entry.location - value;
-					extendedData.put(property, new Integer(entry.location));
-				}
-			}
-		}
-		return result;
+		SnapIndex index = getSnapIndex(entries, side == 0);
+		int closest = index.findClosest(value, getThreshold());
+		if (closest == -1)
+			return getThreshold();
+		Entry entry = entries[closest];
+		extendedData.put(property, new Integer(entry.location));
+		return entry.location - value;
 	}
 
 	/**
@@ -336,6 +329,33 @@ public class SnapToGeometry extends SnapToHelper {
 		return fig.getBounds();
 	}
 
+	/**
+	 * Returns the index of either the middle entries or the side entries of the
+	 * given array, creating it when the array is first used. The entries of an
+	 * array must not change once it has been used for snapping.
+	 */
+	private SnapIndex getSnapIndex(Entry entries[], boolean middle) {
+		SnapIndex[] indices = (SnapIndex[]) snapIndices.get(entries);
+		if (indices == null) {
+			indices = new SnapIndex[2];
+			snapIndices.put(entries, indices);
+		}
+		int i = middle ? 0 : 1;
+		if (indices[i] == null) {
+			int[] locations = new int[entries.length];
+			int[] ids = new int[entries.length];
+			int count = 0;
+			for (int j = 0; j < entries.length; j++) {
+				if ((entries[j].type == 0) == middle) {
+					locations[count] = entries[j].location;
+					ids[count++] = j;
+				}
+			}
+			indices[i] = new SnapIndex(locations, ids, count);
+		}
+		return indices[i];
+	}
+
 	/**
 	 * Updates the cached row and column Entries using the provided parts.
 	 * 
@@ -358,6 +378,17 @@ public class SnapToGeometry extends SnapToHelper {
 		}
 	}
 
+	/**
+	 * Computes the rows and columns for either a clone or another request.
+	 */
+	private void computeRowsAndCols(boolean isClone, Request request) {
+		cachedCloneBool = isClone;
+		List exclusionSet = Collections.EMPTY_LIST;
+		if (!isClone && request instanceof GroupRequest)
+			exclusionSet = ((GroupRequest) request).getEditParts();
+		populateRowsAndCols(generateSnapPartsList(exclusionSet));
+	}
+
 	/**
 	 * @see SnapToHelper#snapRectangle(Request, int, PrecisionRectangle,
 	 *      PrecisionRectangle)
@@ -372,12 +403,20 @@ public class SnapToGeometry extends SnapToHelper {
 
 		// Recalculate snapping locations if needed
 		boolean isClone = request.getType().equals(RequestConstants.REQ_CLONE);
-		if (rows == null || cols == null || isClone != cachedCloneBool) {
-			cachedCloneBool = isClone;
-			List exclusionSet = Collections.EMPTY_LIST;
-			if (!isClone && request instanceof GroupRequest)
-				exclusionSet = ((GroupRequest) request).getEditParts();
-			populateRowsAndCols(generateSnapPartsList(exclusionSet));
+		if (rows == null || cols == null) {
+			alternateRows = alternateCols = null;
+			snapIndices.clear();
+			computeRowsAndCols(isClone, request);
+		} else if (isClone != cachedCloneBool) {
+			Entry previousRows[] = rows, previousCols[] = cols;
+			if (alternateRows != null) {
+				rows = alternateRows;
+				cols = alternateCols;
+				cachedCloneBool = isClone;
+			} else
+				computeRowsAndCols(isClone, request);
+			alternateRows = previousRows;
+			alternateCols = previousCols;
 		}
 
 		if ((snapOrientation & HORIZONTAL) != 0) {
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.gef;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.draw2d.geometry.PrecisionRectangle;
@@ -106,6 +107,11 @@ public class SnapToGuides extends SnapToHelper {
 	 */
 	protected int[] horizontalGuides;
 
+	/**
+	 * The sorted indices of the guide arrays, by array.
+	 */
+	private Map guideIndices = new HashMap();
+
 	/**
 	 * Constructs a new snap-to-guides helper using the given container as the
 	 * basis.
@@ -184,7 +190,9 @@ public class SnapToGuides extends SnapToHelper {
 	 * have the guide and attachment point set. The attachment point is
 	 * identified by the <code>side</code> parameter.
 	 * <P>
-	 * The correction's magnitude will be less than getThreshold().
+	 * The correction's magnitude will be less than getThreshold(). The guides
+	 * are searched by binary search, so they must not change once the array
+	 * has been used for snapping.
 	 * 
 	 * @param guides
 	 *            the location of the guides
@@ -200,24 +208,19 @@ public class SnapToGuides extends SnapToHelper {
 	 */
 	protected double getCorrectionFor(int[] guides, double value,
 			Map extendedData, boolean vert, int side) {
-		double resultMag = getThreshold();
-		double result = getThreshold();
-
-		for (int i = 0; i < guides.length; i++) {
-			int offset = guides[i];
-			double magnitude;
-
-			magnitude = Math.abs(value - offset);
-			if (magnitude < resultMag) {
-				extendedData.put(vert ? KEY_VERTICAL_GUIDE
-						: KEY_HORIZONTAL_GUIDE, new Integer(guides[i]));
-				extendedData.put(vert ? KEY_VERTICAL_ANCHOR
-						: KEY_HORIZONTAL_ANCHOR, new Integer(side));
-				resultMag = magnitude;
-				result = offset - value;
-			}
+		SnapIndex index = (SnapIndex) guideIndices.get(guides);
+		if (index == null) {
+			index = new SnapIndex(guides, null, guides.length);
+			guideIndices.put(guides, index);
 		}
-		return result;
+		int closest = index.findClosest(value, getThreshold());
+		if (closest == -1)
+			return getThreshold();
+		extendedData.put(vert ? KEY_VERTICAL_GUIDE : KEY_HORIZONTAL_GUIDE,
+				new Integer(guides[closest]));
+		extendedData.put(vert ? KEY_VERTICAL_ANCHOR : KEY_HORIZONTAL_ANCHOR,
+				new Integer(side));
+		return guides[closest] - value;
 	}
 
 	/**
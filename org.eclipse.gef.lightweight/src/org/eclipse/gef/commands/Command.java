@@ -119,6 +119,40 @@ public abstract class Command {
 		return label;
 	}
 
+	/**
+	 * Returns an estimate of the number of bytes of memory which this Command
+	 * retains in order to be undone and redone, such as copies of model
+	 * objects. The estimate is used by a {@link CommandStack} with a
+	 * {@link CommandStack#setMemoryLimit(long) memory limit}. The default
+	 * implementation returns <code>0</code>, so such Commands are only bounded
+	 * by the undo limit.
+	 * 
+	 * @return the estimated memory usage in bytes
+	 * @since 3.11
+	 */
+	public long getMemoryUsage() {
+		return 0;
+	}
+
+	/**
+	 * Returns a single Command which is equivalent to this Command followed by
+	 * the given Command, or <code>null</code> if they cannot be merged. After
+	 * executing a Command, the {@link CommandStack} offers it to the Command
+	 * on top of its undo stack, and replaces that Command with the result, so
+	 * that for example repeated moves of the same parts are undone in a single
+	 * step. Both Commands have been executed when this method is called. The
+	 * result may be this Command. The stack disposes neither Command when
+	 * they are merged. The default implementation returns <code>null</code>.
+	 * 
+	 * @param command
+	 *            the Command executed after this Command
+	 * @return <code>null</code> or the merged Command
+	 * @since 3.11
+	 */
+	public Command mergeWith(Command command) {
+		return null;
+	}
+
 	/**
 	 * Re-executes the Command. This method should only be called after
 	 * <code>undo()</code> has been called.
@@ -12,6 +12,8 @@ package org.eclipse.gef.commands;
 
 import java.util.ArrayList;
 import java.util.EventObject;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Stack;
 
@@ -26,6 +28,13 @@ import java.util.Stack;
  * the last executed or redone command is different than the command that was at
  * the top of the undo stack when {@link #markSaveLocation()} was last called.
  * Initially, the undo stack is empty, and not dirty.
+ * <P>
+ * The undo stack can be bounded by the number of commands, using
+ * {@link #setUndoLimit(int)}, and by their estimated memory usage, using
+ * {@link #setMemoryLimit(long)}. The oldest commands are disposed when a limit
+ * is exceeded. A newly executed command may also be
+ * {@link Command#mergeWith(Command) merged} with the command on top of the
+ * undo stack.
  * 
  * @author hudsonr
  */
@@ -125,6 +134,20 @@ public class CommandStack {
 	public static final int PRE_MASK = new Integer(PRE_EXECUTE | PRE_UNDO
 			| PRE_REDO | PRE_FLUSH | PRE_MARK_SAVE).intValue();
 
+	/**
+	 * An executed or redone command on the undo stack, with the memory usage
+	 * it reported when it was pushed.
+	 */
+	private static final class UndoEntry {
+		final Command command;
+		final long memoryUsage;
+
+		UndoEntry(Command command) {
+			this.command = command;
+			memoryUsage = command.getMemoryUsage();
+		}
+	}
+
 	private List eventListeners = new ArrayList();
 
 	/**
@@ -139,10 +162,14 @@ public class CommandStack {
 
 	private int saveLocation = 0;
 
-	private Stack undoable = new Stack();
+	private LinkedList undoable = new LinkedList();
+
+	private long undoMemoryUsage = 0;
 
 	private int undoLimit = 0;
 
+	private long memoryLimit = 0;
+
 	/**
 	 * Constructs a new command stack. By default, there is no undo limit, and
 	 * isDirty() will return <code>false</code>.
@@ -191,7 +218,7 @@ public class CommandStack {
 	public boolean canUndo() {
 		if (undoable.size() == 0)
 			return false;
-		return ((Command) undoable.peek()).canUndo();
+		return getUndoCommand().canUndo();
 	}
 
 	/**
@@ -214,6 +241,13 @@ public class CommandStack {
 	 * <P>
 	 * If the command is <code>null</code> or cannot be executed, nothing
 	 * happens.
+	 * <P>
+	 * Unless the stack has been saved since, the executed command is offered
+	 * to the command on top of the undo stack to be
+	 * {@link Command#mergeWith(Command) merged}. Otherwise it is pushed onto
+	 * the undo stack, and the oldest commands are disposed as needed to stay
+	 * within the undo limit. Finally, the oldest commands are disposed while
+	 * the memory limit is exceeded, keeping at least the executed command.
 	 * 
 	 * @param command
 	 *            the Command to execute
@@ -226,23 +260,41 @@ public class CommandStack {
 		notifyListeners(command, PRE_EXECUTE);
 		try {
 			command.execute();
-			if (getUndoLimit() > 0) {
-				while (undoable.size() >= getUndoLimit()) {
-					((Command) undoable.remove(0)).dispose();
-					if (saveLocation > -1)
-						saveLocation--;
-				}
-			}
 			if (saveLocation > undoable.size())
 				saveLocation = -1; // The save point was somewhere in the redo
 									// stack
-			undoable.push(command);
+			Command merged = null;
+			if (!undoable.isEmpty() && saveLocation != undoable.size())
+				merged = getUndoCommand().mergeWith(command);
+			if (merged != null)
+				popUndo();
+			else if (getUndoLimit() > 0) {
+				while (undoable.size() >= getUndoLimit())
+					disposeOldest();
+			}
+			pushUndo(merged != null ? merged : command);
+			if (getMemoryLimit() > 0) {
+				while (undoMemoryUsage > getMemoryLimit()
+						&& undoable.size() > 1)
+					disposeOldest();
+			}
 			notifyListeners();
 		} finally {
 			notifyListeners(command, POST_EXECUTE);
 		}
 	}
 
+	/**
+	 * Disposes the oldest command of the undo stack.
+	 */
+	private void disposeOldest() {
+		UndoEntry entry = (UndoEntry) undoable.removeFirst();
+		undoMemoryUsage -= entry.memoryUsage;
+		entry.command.dispose();
+		if (saveLocation > -1)
+			saveLocation--;
+	}
+
 	/**
 	 * Flushes the entire stack and resets the save location to zero. This
 	 * method might be called when performing "revert to saved".
@@ -263,14 +315,16 @@ public class CommandStack {
 
 	private void flushUndo() {
 		while (!undoable.isEmpty())
-			((Command) undoable.pop()).dispose();
+			popUndo().dispose();
 	}
 
 	/**
 	 * @return an array containing all commands in the order they were executed
 	 */
 	public Object[] getCommands() {
-		List commands = new ArrayList(undoable);
+		List commands = new ArrayList(undoable.size() + redoable.size());
+		for (Iterator iter = undoable.iterator(); iter.hasNext();)
+			commands.add(((UndoEntry) iter.next()).command);
 		for (int i = redoable.size() - 1; i >= 0; i--) {
 			commands.add(redoable.get(i));
 		}
@@ -296,7 +350,20 @@ public class CommandStack {
 	 * @return the top of the <i>undo</i> stack, which may be <code>null</code>
 	 */
 	public Command getUndoCommand() {
-		return undoable.isEmpty() ? null : (Command) undoable.peek();
+		return undoable.isEmpty() ? null
+				: ((UndoEntry) undoable.getLast()).command;
+	}
+
+	/**
+	 * Returns the memory limit. The memory limit is the maximum total
+	 * {@link Command#getMemoryUsage() memory usage} of the commands that the
+	 * User can undo. <code>0</code> is used to indicate no limit.
+	 * 
+	 * @return the memory limit in bytes
+	 * @since 3.11
+	 */
+	public long getMemoryLimit() {
+		return memoryLimit;
 	}
 
 	/**
@@ -362,6 +429,24 @@ public class CommandStack {
 					.stackChanged(event);
 	}
 
+	/**
+	 * Removes the command on top of the undo stack.
+	 */
+	private Command popUndo() {
+		UndoEntry entry = (UndoEntry) undoable.removeLast();
+		undoMemoryUsage -= entry.memoryUsage;
+		return entry.command;
+	}
+
+	/**
+	 * Pushes a command onto the undo stack.
+	 */
+	private void pushUndo(Command command) {
+		UndoEntry entry = new UndoEntry(command);
+		undoable.addLast(entry);
+		undoMemoryUsage += entry.memoryUsage;
+	}
+
 	/**
 	 * Calls redo on the Command at the top of the <i>redo</i> stack, and pushes
 	 * that Command onto the <i>undo</i> stack. This method should only be
@@ -375,7 +460,7 @@ public class CommandStack {
 		notifyListeners(command, PRE_REDO);
 		try {
 			command.redo();
-			undoable.push(command);
+			pushUndo(command);
 			notifyListeners();
 		} finally {
 			notifyListeners(command, POST_REDO);
@@ -404,6 +489,21 @@ public class CommandStack {
 		listeners.remove(listener);
 	}
 
+	/**
+	 * Sets the memory limit. The memory limit is the maximum total
+	 * {@link Command#getMemoryUsage() memory usage} of the commands that the
+	 * User can undo. When it is exceeded after a command has been executed, the
+	 * oldest commands are disposed, but the executed command is always kept.
+	 * <code>0</code> is used to indicate no limit.
+	 * 
+	 * @param memoryLimit
+	 *            the memory limit in bytes
+	 * @since 3.11
+	 */
+	public void setMemoryLimit(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
 	/**
 	 * Sets the undo limit. The undo limit is the maximum number of atomic
 	 * operations that the User can undo. <code>-1</code> is used to indicate no
@@ -425,7 +525,7 @@ public class CommandStack {
 		if (!canUndo())
 			return;
 		// Assert.isTrue(canUndo());
-		Command command = (Command) undoable.pop();
+		Command command = popUndo();
 		notifyListeners(command, PRE_UNDO);
 		try {
 			command.undo();
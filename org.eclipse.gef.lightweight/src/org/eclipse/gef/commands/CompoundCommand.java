@@ -25,11 +25,33 @@ import java.util.List;
  * A CompoundCommand can be {@link #unwrap() unwrapped}. Unwrapping returns the
  * simplest equivalent form of the CompoundCommand. So, if a CompoundCommand
  * contains just one Command, that Command is returned.
+ * <P>
+ * Checking whether a CompoundCommand with many contained Commands can be
+ * executed, undone or redone may be expensive. If
+ * {@link #setCheckCachingEnabled(boolean) enabled}, the results of these
+ * checks are cached until a Command is added, or the CompoundCommand is
+ * executed, undone or redone. The checks of the contained Commands may also be
+ * {@link #setParallelChecksEnabled(boolean) run in parallel}.
  */
 public class CompoundCommand extends Command {
 
+	static final int CAN_EXECUTE = 0;
+	static final int CAN_UNDO = 1;
+	static final int CAN_REDO = 2;
+
+	/**
+	 * Contained Commands are only checked in parallel when there are at least
+	 * this many.
+	 */
+	private static final int PARALLEL_THRESHOLD = 64;
+
 	private List commandList = new ArrayList();
 
+	private boolean checkCachingEnabled;
+	private boolean parallelChecksEnabled;
+	private Boolean[] cachedChecks;
+	private int cachedSize;
+
 	/**
 	 * Constructs an empty CompoundCommand
 	 * 
@@ -55,8 +77,10 @@ public class CompoundCommand extends Command {
 	 *            <code>null</code> or a Command
 	 */
 	public void add(Command command) {
-		if (command != null)
+		if (command != null) {
 			commandList.add(command);
+			invalidateChecks();
+		}
 	}
 
 	/**
@@ -65,47 +89,69 @@ public class CompoundCommand extends Command {
 	 * @since 3.10
 	 */
 	public boolean canRedo() {
-		if (commandList.size() == 0)
-			return false;
-		for (int i = 0; i < commandList.size(); i++) {
-			Command cmd = (Command) commandList.get(i);
-			if (cmd == null)
-				return false;
-			if (!cmd.canRedo())
-				return false;
-		}
-		return true;
+		return check(CAN_REDO);
 	}
 
 	/**
 	 * @see org.eclipse.gef.commands.Command#canExecute()
 	 */
 	public boolean canExecute() {
-		if (commandList.size() == 0)
-			return false;
-		for (int i = 0; i < commandList.size(); i++) {
-			Command cmd = (Command) commandList.get(i);
-			if (cmd == null)
-				return false;
-			if (!cmd.canExecute())
-				return false;
-		}
-		return true;
+		return check(CAN_EXECUTE);
 	}
 
 	/**
 	 * @see org.eclipse.gef.commands.Command#canUndo()
 	 */
 	public boolean canUndo() {
+		return check(CAN_UNDO);
+	}
+
+	/**
+	 * Returns whether the given Command can be executed, undone or redone.
+	 * 
+	 * @param command
+	 *            <code>null</code> or a Command
+	 * @param kind
+	 *            one of {@link #CAN_EXECUTE}, {@link #CAN_UNDO} or
+	 *            {@link #CAN_REDO}
+	 * @return <code>false</code> if the command is <code>null</code> or the
+	 *         check fails
+	 */
+	static boolean check(Command command, int kind) {
+		if (command == null)
+			return false;
+		switch (kind) {
+		case CAN_EXECUTE:
+			return command.canExecute();
+		case CAN_UNDO:
+			return command.canUndo();
+		default:
+			return command.canRedo();
+		}
+	}
+
+	private boolean check(int kind) {
 		if (commandList.size() == 0)
 			return false;
-		for (int i = 0; i < commandList.size(); i++) {
-			Command cmd = (Command) commandList.get(i);
-			if (cmd == null)
-				return false;
-			if (!cmd.canUndo())
-				return false;
+		if (!checkCachingEnabled)
+			return checkCommands(kind);
+		// the size only catches changes to the number of Commands made through
+		// getCommands(); any other change requires invalidateChecks()
+		if (cachedChecks == null || cachedSize != commandList.size()) {
+			cachedChecks = new Boolean[3];
+			cachedSize = commandList.size();
 		}
+		if (cachedChecks[kind] == null)
+			cachedChecks[kind] = Boolean.valueOf(checkCommands(kind));
+		return cachedChecks[kind].booleanValue();
+	}
+
+	private boolean checkCommands(int kind) {
+		if (parallelChecksEnabled && commandList.size() >= PARALLEL_THRESHOLD)
+			return ParallelCommandCheck.check(commandList, kind);
+		for (int i = 0; i < commandList.size(); i++)
+			if (!check((Command) commandList.get(i), kind))
+				return false;
 		return true;
 	}
 
@@ -124,6 +170,7 @@ public class CompoundCommand extends Command {
 	 * the commands that it contains.
 	 */
 	public void execute() {
+		invalidateChecks();
 		for (int i = 0; i < commandList.size(); i++) {
 			Command cmd = (Command) commandList.get(i);
 			cmd.execute();
@@ -161,6 +208,43 @@ public class CompoundCommand extends Command {
 		return ((Command) commandList.get(0)).getLabel();
 	}
 
+	/**
+	 * Returns the sum of the memory usage of the contained Commands.
+	 * 
+	 * @see org.eclipse.gef.commands.Command#getMemoryUsage()
+	 */
+	public long getMemoryUsage() {
+		long usage = 0;
+		for (int i = 0; i < commandList.size(); i++)
+			usage += ((Command) commandList.get(i)).getMemoryUsage();
+		return usage;
+	}
+
+	/**
+	 * Discards the cached results of {@link #canExecute()}, {@link #canUndo()}
+	 * and {@link #canRedo()}. This is done whenever a Command is added, and
+	 * when this CompoundCommand is executed, undone or redone. Clients which
+	 * change the contained Commands in other ways, or whose Commands depend on
+	 * state which may change otherwise, should call this method.
+	 * 
+	 * @see #setCheckCachingEnabled(boolean)
+	 * @since 3.11
+	 */
+	public void invalidateChecks() {
+		cachedChecks = null;
+	}
+
+	/**
+	 * Returns <code>true</code> if the results of the checks are cached.
+	 * 
+	 * @return <code>true</code> if check caching is enabled
+	 * @see #setCheckCachingEnabled(boolean)
+	 * @since 3.11
+	 */
+	public boolean isCheckCachingEnabled() {
+		return checkCachingEnabled;
+	}
+
 	/**
 	 * @return <code>true</code> if the CompoundCommand is empty
 	 */
@@ -168,14 +252,63 @@ public class CompoundCommand extends Command {
 		return commandList.isEmpty();
 	}
 
+	/**
+	 * Returns <code>true</code> if the contained Commands are checked in
+	 * parallel.
+	 * 
+	 * @return <code>true</code> if parallel checks are enabled
+	 * @see #setParallelChecksEnabled(boolean)
+	 * @since 3.11
+	 */
+	public boolean isParallelChecksEnabled() {
+		return parallelChecksEnabled;
+	}
+
 	/**
 	 * @see org.eclipse.gef.commands.Command#redo()
 	 */
 	public void redo() {
+		invalidateChecks();
 		for (int i = 0; i < commandList.size(); i++)
 			((Command) commandList.get(i)).redo();
 	}
 
+	/**
+	 * Sets whether the results of {@link #canExecute()}, {@link #canUndo()} and
+	 * {@link #canRedo()} are cached. This is useful for large CompoundCommands
+	 * which are checked repeatedly, for example to update the enablement of
+	 * actions. The cache is discarded when a Command is added through
+	 * {@link #add(Command)}, and when the number of contained Commands
+	 * changes. Any other change to the List returned by {@link #getCommands()},
+	 * such as replacing a Command, or to the state the contained Commands
+	 * depend on, requires a call to {@link #invalidateChecks()}. The default is
+	 * <code>false</code>.
+	 * 
+	 * @param value
+	 *            <code>true</code> to cache the results of the checks
+	 * @since 3.11
+	 */
+	public void setCheckCachingEnabled(boolean value) {
+		checkCachingEnabled = value;
+		invalidateChecks();
+	}
+
+	/**
+	 * Sets whether large numbers of contained Commands are checked on several
+	 * threads at the same time. This should only be enabled if the
+	 * <code>canExecute()</code>, <code>canUndo()</code> and
+	 * <code>canRedo()</code> methods of all contained Commands are thread-safe,
+	 * and do not need to run on the UI thread. The default is
+	 * <code>false</code>.
+	 * 
+	 * @param value
+	 *            <code>true</code> to check the contained Commands in parallel
+	 * @since 3.11
+	 */
+	public void setParallelChecksEnabled(boolean value) {
+		parallelChecksEnabled = value;
+	}
+
 	/**
 	 * @return the number of contained Commands
 	 */
@@ -187,6 +320,7 @@ public class CompoundCommand extends Command {
 	 * @see org.eclipse.gef.commands.Command#undo()
 	 */
 	public void undo() {
+		invalidateChecks();
 		for (int i = commandList.size() - 1; i >= 0; i--)
 			((Command) commandList.get(i)).undo();
 	}
@@ -46,6 +46,7 @@ public class ForwardUndoCompoundCommand extends CompoundCommand {
 	 * of the commands that it contains. Do it in the same order as applied.
 	 */
 	public void undo() {
+		invalidateChecks();
 		ListIterator itr = getCommands().listIterator();
 		try {
 			while (itr.hasNext()) {
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.commands;
+
+import java.util.List;
+
+/**
+ * Checks whether all Commands of a list can be executed, undone or redone,
+ * using one thread per processor. The list is split into blocks, which are
+ * handed out to whichever thread is free. Once a check fails, the remaining
+ * blocks are skipped. If a check throws an exception, it is rethrown on the
+ * calling thread.
+ */
+class ParallelCommandCheck implements Runnable {
+
+	private static final int BLOCK_SIZE = 16;
+
+	private final Command[] commands;
+	private final int kind;
+
+	private int nextBlock;
+	private boolean failed;
+	private Throwable error;
+
+	private ParallelCommandCheck(Command[] commands, int kind) {
+		this.commands = commands;
+		this.kind = kind;
+	}
+
+	/**
+	 * Returns <code>true</code> if all given Commands pass the given check.
+	 *
+	 * @param commandList
+	 *            the Commands
+	 * @param kind
+	 *            the check, as passed to
+	 *            {@link CompoundCommand#check(Command, int)}
+	 * @return <code>true</code> if all Commands pass the check
+	 */
+	static boolean check(List commandList, int kind) {
+		ParallelCommandCheck check = new ParallelCommandCheck(
+				(Command[]) commandList.toArray(new Command[commandList.size()]),
+				kind);
+		int blocks = (check.commands.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int threadCount = Math.min(blocks, Runtime.getRuntime()
+				.availableProcessors());
+		Thread[] threads = new Thread[threadCount - 1];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(check,
+					"Command Check " + (i + 1)); //$NON-NLS-1$
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		check.run();
+		boolean interrupted = false;
+		for (int i = 0; i < threads.length; i++) {
+			while (true) {
+				try {
+					threads[i].join();
+					break;
+				} catch (InterruptedException e) {
+					// the other threads may still be using the commands
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		synchronized (check) {
+			if (check.error instanceof RuntimeException)
+				throw (RuntimeException) check.error;
+			if (check.error instanceof Error)
+				throw (Error) check.error;
+			return !check.failed;
+		}
+	}
+
+	/**
+	 * Checks blocks of Commands until there are none left, or a check has
+	 * failed.
+	 */
+	public void run() {
+		while (true) {
+			int start;
+			synchronized (this) {
+				start = nextBlock * BLOCK_SIZE;
+				if (failed || start >= commands.length)
+					return;
+				nextBlock++;
+			}
+			int end = Math.min(start + BLOCK_SIZE, commands.length);
+			try {
+				for (int i = start; i < end; i++) {
+					if (!CompoundCommand.check(commands[i], kind)) {
+						synchronized (this) {
+							failed = true;
+						}
+						return;
+					}
+				}
+			} catch (Throwable e) {
+				synchronized (this) {
+					if (error == null)
+						error = e;
+					failed = true;
+				}
+				return;
+			}
+		}
+	}
+
+}
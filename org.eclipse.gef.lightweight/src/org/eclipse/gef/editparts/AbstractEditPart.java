@@ -12,7 +12,6 @@ package org.eclipse.gef.editparts;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -738,61 +737,36 @@ public abstract class AbstractEditPart implements EditPart, RequestConstants,
 	 * of model children returned from {@link #getModelChildren()}. EditParts
 	 * whose models no longer exist are {@link #removeChild(EditPart) removed}.
 	 * New models have their EditParts {@link #createChild(Object) created}.
+	 * Of the remaining EditParts, only those which are not part of the longest
+	 * sequence already in the order of the models are
+	 * {@link #reorderChild(EditPart, int) reordered}.
 	 * <P>
 	 * This method should <em>not</em> be overridden.
 	 * 
 	 * @see #getModelChildren()
 	 */
 	protected void refreshChildren() {
-		int i;
-		EditPart editPart;
-		Object model;
-
-		List children = getChildren();
-		int size = children.size();
-		Map modelToEditPart = Collections.EMPTY_MAP;
-		if (size > 0) {
-			modelToEditPart = new HashMap(size);
-			for (i = 0; i < size; i++) {
-				editPart = (EditPart) children.get(i);
-				modelToEditPart.put(editPart.getModel(), editPart);
+		new ListReconciler() {
+			void addPart(EditPart part, int index) {
+				addChild(part, index);
 			}
-		}
-
-		List modelObjects = getModelChildren();
-		for (i = 0; i < modelObjects.size(); i++) {
-			model = modelObjects.get(i);
 
-			// Do a quick check to see if editPart[i] == model[i]
-			if (i < children.size()
-					&& ((EditPart) children.get(i)).getModel() == model)
-				continue;
+			EditPart createPart(Object model) {
+				return createChild(model);
+			}
 
-			// Look to see if the EditPart is already around but in the
-			// wrong location
-			editPart = (EditPart) modelToEditPart.get(model);
+			List getParts() {
+				return getChildren();
+			}
 
-			if (editPart != null)
-				reorderChild(editPart, i);
-			else {
-				// An EditPart for this model doesn't exist yet. Create and
-				// insert one.
-				editPart = createChild(model);
-				addChild(editPart, i);
+			void removePart(EditPart part) {
+				removeChild(part);
 			}
-		}
 
-		// remove the remaining EditParts
-		size = children.size();
-		if (i < size) {
-			List trash = new ArrayList(size - i);
-			for (; i < size; i++)
-				trash.add(children.get(i));
-			for (i = 0; i < trash.size(); i++) {
-				EditPart ep = (EditPart) trash.get(i);
-				removeChild(ep);
+			void reorderPart(EditPart part, int index) {
+				reorderChild(part, index);
 			}
-		}
+		}.reconcile(getModelChildren());
 	}
 
 	/**
@@ -950,8 +924,9 @@ public abstract class AbstractEditPart implements EditPart, RequestConstants,
 	}
 
 	/**
-	 * Moves a child <code>EditPart</code> into a lower index than it currently
-	 * occupies. This method is called from {@link #refreshChildren()}.
+	 * Moves a child <code>EditPart</code> to the given index. The index is the
+	 * one the child has after it has been removed from its current position.
+	 * This method is called from {@link #refreshChildren()}.
 	 * 
 	 * @param editpart
 	 *            the child being reordered
@@ -12,10 +12,8 @@ package org.eclipse.gef.editparts;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.swt.accessibility.ACC;
 import org.eclipse.swt.accessibility.AccessibleControlEvent;
@@ -663,50 +661,31 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 	 * This method should <em>not</em> be overridden.
 	 */
 	protected void refreshSourceConnections() {
-		int i;
-		ConnectionEditPart editPart;
-		Object model;
-
-		List sourceConnections = getSourceConnections();
-		int size = sourceConnections.size();
-		Map modelToEditPart = Collections.EMPTY_MAP;
-		if (size > 0) {
-			modelToEditPart = new HashMap(size);
-			for (i = 0; i < size; i++) {
-				editPart = (ConnectionEditPart) sourceConnections.get(i);
-				modelToEditPart.put(editPart.getModel(), editPart);
-			}
-		}
-
 		List modelObjects = getModelSourceConnections();
 		if (modelObjects == null) {
 			modelObjects = Collections.EMPTY_LIST;
 		}
-		for (i = 0; i < modelObjects.size(); i++) {
-			model = modelObjects.get(i);
-
-			if (i < sourceConnections.size()
-					&& ((EditPart) sourceConnections.get(i)).getModel() == model)
-				continue;
-
-			editPart = (ConnectionEditPart) modelToEditPart.get(model);
-			if (editPart != null)
-				reorderSourceConnection(editPart, i);
-			else {
-				editPart = createOrFindConnection(model);
-				addSourceConnection(editPart, i);
+		new ListReconciler() {
+			void addPart(EditPart part, int index) {
+				addSourceConnection((ConnectionEditPart) part, index);
 			}
-		}
 
-		// Remove the remaining EditParts
-		size = sourceConnections.size();
-		if (i < size) {
-			List trash = new ArrayList(size - i);
-			for (; i < size; i++)
-				trash.add(sourceConnections.get(i));
-			for (i = 0; i < trash.size(); i++)
-				removeSourceConnection((ConnectionEditPart) trash.get(i));
-		}
+			EditPart createPart(Object model) {
+				return createOrFindConnection(model);
+			}
+
+			List getParts() {
+				return getSourceConnections();
+			}
+
+			void removePart(EditPart part) {
+				removeSourceConnection((ConnectionEditPart) part);
+			}
+
+			void reorderPart(EditPart part, int index) {
+				reorderSourceConnection((ConnectionEditPart) part, index);
+			}
+		}.reconcile(modelObjects);
 	}
 
 	/**
@@ -726,50 +705,31 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 	 * This method should <em>not</em> be overridden.
 	 */
 	protected void refreshTargetConnections() {
-		int i;
-		ConnectionEditPart editPart;
-		Object model;
-
-		List targetConnections = getTargetConnections();
-		int size = targetConnections.size();
-		Map modelToEditPart = Collections.EMPTY_MAP;
-		if (size > 0) {
-			modelToEditPart = new HashMap(size);
-			for (i = 0; i < size; i++) {
-				editPart = (ConnectionEditPart) targetConnections.get(i);
-				modelToEditPart.put(editPart.getModel(), editPart);
-			}
-		}
-
 		List modelObjects = getModelTargetConnections();
 		if (modelObjects == null) {
 			modelObjects = Collections.EMPTY_LIST;
 		}
-		for (i = 0; i < modelObjects.size(); i++) {
-			model = modelObjects.get(i);
-
-			if (i < targetConnections.size()
-					&& ((EditPart) targetConnections.get(i)).getModel() == model)
-				continue;
-
-			editPart = (ConnectionEditPart) modelToEditPart.get(model);
-			if (editPart != null)
-				reorderTargetConnection(editPart, i);
-			else {
-				editPart = createOrFindConnection(model);
-				addTargetConnection(editPart, i);
+		new ListReconciler() {
+			void addPart(EditPart part, int index) {
+				addTargetConnection((ConnectionEditPart) part, index);
 			}
-		}
 
-		// Remove the remaining EditParts
-		size = targetConnections.size();
-		if (i < size) {
-			List trash = new ArrayList(size - i);
-			for (; i < size; i++)
-				trash.add(targetConnections.get(i));
-			for (i = 0; i < trash.size(); i++)
-				removeTargetConnection((ConnectionEditPart) trash.get(i));
-		}
+			EditPart createPart(Object model) {
+				return createOrFindConnection(model);
+			}
+
+			List getParts() {
+				return getTargetConnections();
+			}
+
+			void removePart(EditPart part) {
+				removeTargetConnection((ConnectionEditPart) part);
+			}
+
+			void reorderPart(EditPart part, int index) {
+				reorderTargetConnection((ConnectionEditPart) part, index);
+			}
+		}.reconcile(modelObjects);
 	}
 
 	/**
@@ -880,8 +840,9 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 	}
 
 	/**
-	 * Moves a source <code>ConnectionEditPart</code> into a lower index than it
-	 * currently occupies. This method is called from
+	 * Moves a source <code>ConnectionEditPart</code> to the given index. The
+	 * index is the one the connection has after it has been removed from its
+	 * current position. This method is called from
 	 * {@link #refreshSourceConnections()}.
 	 * 
 	 * @param connection
@@ -896,8 +857,9 @@ public abstract class AbstractGraphicalEditPart extends AbstractEditPart
 	}
 
 	/**
-	 * Moves a target <code>ConnectionEditPart</code> into a lower index than it
-	 * currently occupies. This method is called from
+	 * Moves a target <code>ConnectionEditPart</code> to the given index. The
+	 * index is the one the connection has after it has been removed from its
+	 * current position. This method is called from
 	 * {@link #refreshTargetConnections()}.
 	 * 
 	 * @param connection
@@ -136,15 +136,20 @@ public class FreeformGraphicalRootEditPart extends SimpleRootEditPart implements
 	}
 
 	/**
-	 * Creates a layered pane and the layers that should be printed.
+	 * Creates a layered pane and the layers that should be printed. The
+	 * children of the connection layer, which are added and removed by the
+	 * connection edit parts, are indexed for hit-testing.
 	 * 
 	 * @see org.eclipse.gef.print.PrintGraphicalViewerOperation
+	 * @see org.eclipse.draw2d.Figure#setChildIndexEnabled(boolean)
 	 * @return a new LayeredPane containing the printable layers
 	 */
 	protected LayeredPane createPrintableLayers() {
 		FreeformLayeredPane layeredPane = new FreeformLayeredPane();
 		layeredPane.add(new FreeformLayer(), PRIMARY_LAYER);
-		layeredPane.add(new ConnectionLayer(), CONNECTION_LAYER);
+		ConnectionLayer connectionLayer = new ConnectionLayer();
+		connectionLayer.setChildIndexEnabled(true);
+		layeredPane.add(connectionLayer, CONNECTION_LAYER);
 		return layeredPane;
 	}
 
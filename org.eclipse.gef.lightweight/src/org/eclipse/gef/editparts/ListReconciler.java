@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.editparts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.gef.EditPart;
+
+/**
+ * Brings a list of EditParts in sync with a list of model objects, as needed
+ * for the children and the source and target connections of an EditPart.
+ * <P>
+ * EditParts whose models no longer exist are removed first. Of the remaining
+ * EditParts, the longest subsequence which is already in the order of the
+ * models keeps its place, and only the other EditParts are reordered, so the
+ * number of reorders is minimal. EditParts for new models are created and
+ * added at their final index. A model which occurs several times keeps as
+ * many of its EditParts, matched to its occurrences in order. The indices passed to
+ * {@link #addPart(EditPart, int)} and {@link #reorderPart(EditPart, int)} are
+ * computed without searching the list, so apart from the list operations
+ * themselves, reconciling takes O(n log n) time.
+ */
+abstract class ListReconciler {
+
+	/**
+	 * The indices at which a model occurs, in increasing order, and how many
+	 * of them have been matched to an EditPart.
+	 */
+	private static class Occurrences {
+		int[] targets = new int[1];
+		int count;
+		int matched;
+
+		void add(int target) {
+			if (count == targets.length) {
+				int[] grown = new int[count * 2];
+				System.arraycopy(targets, 0, grown, 0, count);
+				targets = grown;
+			}
+			targets[count++] = target;
+		}
+
+		/**
+		 * Returns the next unmatched index, or -1 if all are matched.
+		 */
+		int match() {
+			if (matched == count)
+				return -1;
+			return targets[matched++];
+		}
+	}
+
+	/**
+	 * Adds an EditPart for a new model at the given index.
+	 */
+	abstract void addPart(EditPart part, int index);
+
+	/**
+	 * Creates or finds the EditPart for a new model.
+	 */
+	abstract EditPart createPart(Object model);
+
+	/**
+	 * Returns the current list of EditParts.
+	 */
+	abstract List getParts();
+
+	/**
+	 * Removes an EditPart whose model no longer exists.
+	 */
+	abstract void removePart(EditPart part);
+
+	/**
+	 * Moves an EditPart to the given index, which is its index after it has
+	 * been removed from the list.
+	 */
+	abstract void reorderPart(EditPart part, int index);
+
+	/**
+	 * Updates the EditParts so that they correspond to the given models, in
+	 * the same order.
+	 *
+	 * @param models
+	 *            the model objects
+	 */
+	void reconcile(List models) {
+		List parts = getParts();
+		if (isInSync(parts, models))
+			return;
+
+		Map modelToOccurrences = new HashMap(models.size());
+		for (int t = 0; t < models.size(); t++) {
+			Object model = models.get(t);
+			Occurrences occurrences = (Occurrences) modelToOccurrences
+					.get(model);
+			if (occurrences == null) {
+				occurrences = new Occurrences();
+				modelToOccurrences.put(model, occurrences);
+			}
+			occurrences.add(t);
+		}
+
+		// keep one EditPart per occurrence of a model, and remove all others
+		EditPart[] byTarget = new EditPart[models.size()];
+		int[] targets = new int[parts.size()];
+		int keptCount = 0;
+		List trash = new ArrayList();
+		for (int i = 0; i < parts.size(); i++) {
+			EditPart part = (EditPart) parts.get(i);
+			Occurrences occurrences = (Occurrences) modelToOccurrences
+					.get(part.getModel());
+			int target = occurrences == null ? -1 : occurrences.match();
+			if (target == -1)
+				trash.add(part);
+			else {
+				byTarget[target] = part;
+				targets[keptCount++] = target;
+			}
+		}
+		for (int i = 0; i < trash.size(); i++)
+			removePart((EditPart) trash.get(i));
+
+		if (keptCount < targets.length) {
+			int[] keptTargets = new int[keptCount];
+			System.arraycopy(targets, 0, keptTargets, 0, keptCount);
+			targets = keptTargets;
+		}
+		boolean[] stable = findLongestIncreasingSubsequence(targets);
+
+		// The rank of a kept EditPart is the number of stable EditParts before
+		// it. Unplaced EditParts are counted per rank, so that the index of
+		// the k-th stable EditPart is k + placed + (unplaced of rank <= k).
+		boolean[] stableTarget = new boolean[models.size()];
+		int[] rankOfTarget = new int[models.size()];
+		int stableCount = 0;
+		for (int i = 0; i < targets.length; i++) {
+			if (stable[i]) {
+				stableTarget[targets[i]] = true;
+				stableCount++;
+			} else
+				rankOfTarget[targets[i]] = stableCount;
+		}
+		int[] unplaced = new int[stableCount + 2];
+		for (int i = 0; i < targets.length; i++)
+			if (!stable[i])
+				add(unplaced, rankOfTarget[targets[i]], 1);
+
+		int nextStable = 0;
+		int placed = 0;
+		for (int t = 0; t < models.size(); t++) {
+			EditPart part = byTarget[t];
+			if (part != null && stableTarget[t]) {
+				nextStable++;
+				continue;
+			}
+			if (part != null) {
+				add(unplaced, rankOfTarget[t], -1);
+				reorderPart(part, nextStable + placed
+						+ sum(unplaced, nextStable));
+			} else
+				addPart(createPart(models.get(t)), nextStable + placed
+						+ sum(unplaced, nextStable));
+			placed++;
+		}
+	}
+
+	/**
+	 * Adds the given value to the count at the given index of a Fenwick tree.
+	 */
+	private static void add(int[] tree, int index, int value) {
+		for (int i = index + 1; i < tree.length; i += i & -i)
+			tree[i] += value;
+	}
+
+	/**
+	 * Returns which values are part of a longest strictly increasing
+	 * subsequence of the given distinct values.
+	 */
+	private static boolean[] findLongestIncreasingSubsequence(int[] values) {
+		boolean[] result = new boolean[values.length];
+		// tails[j] is the index of the smallest last value of an increasing
+		// subsequence of length j + 1
+		int[] tails = new int[values.length];
+		int[] previous = new int[values.length];
+		int length = 0;
+		for (int i = 0; i < values.length; i++) {
+			int low = 0, high = length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (values[tails[middle]] < values[i])
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			previous[i] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = i;
+			if (low == length)
+				length++;
+		}
+		if (length > 0)
+			for (int i = tails[length - 1]; i >= 0; i = previous[i])
+				result[i] = true;
+		return result;
+	}
+
+	private static boolean isInSync(List parts, List models) {
+		if (parts.size() != models.size())
+			return false;
+		for (int i = 0; i < parts.size(); i++)
+			if (((EditPart) parts.get(i)).getModel() != models.get(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns the sum of the counts up to and including the given index of a
+	 * Fenwick tree.
+	 */
+	private static int sum(int[] tree, int index) {
+		int sum = 0;
+		for (int i = Math.min(index + 1, tree.length - 1); i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.editpolicies;
+
+import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.Shape;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A single feedback figure which paints a rectangle for each of several edit
+ * parts. All rectangles are moved and resized by the same delta, so updating
+ * the feedback during a drag only changes the bounds of this figure, no matter
+ * how many rectangles it paints.
+ */
+class AggregateFeedbackFigure extends Shape {
+
+	private final Rectangle[] rectangles;
+	private final Rectangle union;
+	private int dx, dy, dw, dh;
+
+	/**
+	 * Creates the figure for the given rectangles, which are given in the
+	 * coordinates of the figure's parent at the start of the drag.
+	 *
+	 * @param rectangles
+	 *            the rectangles, at least one
+	 */
+	AggregateFeedbackFigure(Rectangle[] rectangles) {
+		this.rectangles = rectangles;
+		union = rectangles[0].getCopy();
+		for (int i = 1; i < rectangles.length; i++)
+			union.union(rectangles[i]);
+		setBounds(union);
+	}
+
+	/**
+	 * @see Shape#fillShape(Graphics)
+	 */
+	protected void fillShape(Graphics graphics) {
+		Rectangle clip = graphics.getClip(new Rectangle());
+		Rectangle r = new Rectangle();
+		for (int i = 0; i < rectangles.length; i++) {
+			getRectangle(i, r);
+			if (r.intersects(clip))
+				graphics.fillRectangle(r);
+		}
+	}
+
+	private void getRectangle(int index, Rectangle r) {
+		Rectangle rect = rectangles[index];
+		r.setBounds(rect.x + dx, rect.y + dy, rect.width + dw, rect.height
+				+ dh);
+	}
+
+	/**
+	 * @see Shape#outlineShape(Graphics)
+	 */
+	protected void outlineShape(Graphics graphics) {
+		float lineInset = Math.max(1.0f, getLineWidthFloat()) / 2.0f;
+		int inset1 = (int) Math.floor(lineInset);
+		int inset2 = (int) Math.ceil(lineInset);
+
+		Rectangle clip = graphics.getClip(new Rectangle());
+		Rectangle r = new Rectangle();
+		for (int i = 0; i < rectangles.length; i++) {
+			getRectangle(i, r);
+			if (!r.intersects(clip))
+				continue;
+			r.x += inset1;
+			r.y += inset1;
+			r.width -= inset1 + inset2;
+			r.height -= inset1 + inset2;
+			graphics.drawRectangle(r);
+		}
+	}
+
+	/**
+	 * Moves and resizes all rectangles by the given amounts, relative to
+	 * their initial bounds.
+	 *
+	 * @param dx
+	 *            the horizontal move delta
+	 * @param dy
+	 *            the vertical move delta
+	 * @param dw
+	 *            the width delta
+	 * @param dh
+	 *            the height delta
+	 */
+	void setDelta(int dx, int dy, int dw, int dh) {
+		if (this.dx == dx && this.dy == dy && this.dw == dw && this.dh == dh)
+			return;
+		this.dx = dx;
+		this.dy = dy;
+		this.dw = dw;
+		this.dh = dh;
+		setBounds(new Rectangle(union.x + dx, union.y + dy, union.width + dw,
+				union.height + dh));
+	}
+
+}
@@ -22,10 +22,13 @@ import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.Locator;
 import org.eclipse.draw2d.PositionConstants;
 import org.eclipse.draw2d.RectangleFigure;
+import org.eclipse.draw2d.geometry.PrecisionDimension;
 import org.eclipse.draw2d.geometry.PrecisionRectangle;
 import org.eclipse.draw2d.geometry.Rectangle;
 
 import org.eclipse.gef.DragTracker;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.EditPolicy;
 import org.eclipse.gef.GraphicalEditPart;
 import org.eclipse.gef.Request;
 import org.eclipse.gef.RequestConstants;
@@ -50,7 +53,9 @@ import org.eclipse.gef.tools.SelectEditPartTracker;
  * selection to be dragged.
  * <P>
  * During feedback, a rectangle filled using XOR and outlined with dashes is
- * drawn. Subclasses can tailor the feedback.
+ * drawn. Subclasses can tailor the feedback. When many edit parts are dragged
+ * together, {@link #setAggregateFeedbackEnabled(boolean) aggregate feedback}
+ * can be enabled to draw the rectangles of all of them with a single figure.
  * 
  * @author hudsonr
  */
@@ -59,6 +64,7 @@ public class NonResizableEditPolicy extends SelectionHandlesEditPolicy {
 	private IFigure focusRect;
 	private IFigure feedback;
 	private boolean isDragAllowed = true;
+	private boolean isAggregateFeedbackEnabled;
 
 	/**
 	 * Creates the figure used for feedback.
@@ -77,6 +83,41 @@ public class NonResizableEditPolicy extends SelectionHandlesEditPolicy {
 		return r;
 	}
 
+	/**
+	 * Creates the figure used for aggregate feedback. It contains a ghost
+	 * rectangle for the initial feedback bounds of each edit part in the
+	 * request whose primary drag policy has aggregate feedback enabled.
+	 * 
+	 * @param request
+	 *            the change bounds request
+	 * @return the new feedback figure
+	 */
+	private IFigure createAggregateDragSourceFeedbackFigure(
+			ChangeBoundsRequest request) {
+		List parts = request.getEditParts();
+		List rectangles = new ArrayList(parts.size());
+		IFigure layer = getFeedbackLayer();
+		for (int i = 0; i < parts.size(); i++) {
+			NonResizableEditPolicy policy = getAggregateFeedbackPolicy((EditPart) parts
+					.get(i));
+			if (policy == null)
+				continue;
+			PrecisionRectangle rect = new PrecisionRectangle(
+					policy.getInitialFeedbackBounds());
+			policy.getHostFigure().translateToAbsolute(rect);
+			layer.translateToRelative(rect);
+			rectangles.add(new Rectangle(rect));
+		}
+		AggregateFeedbackFigure figure = new AggregateFeedbackFigure(
+				(Rectangle[]) rectangles.toArray(new Rectangle[rectangles
+						.size()]));
+		FigureUtilities.makeGhostShape(figure);
+		figure.setLineStyle(Graphics.LINE_DOT);
+		figure.setForegroundColor(ColorConstants.white);
+		addFeedback(figure);
+		return figure;
+	}
+
 	/**
 	 * @see org.eclipse.gef.editpolicies.SelectionHandlesEditPolicy#createSelectionHandles()
 	 */
@@ -221,6 +262,39 @@ public class NonResizableEditPolicy extends SelectionHandlesEditPolicy {
 		return feedback;
 	}
 
+	/**
+	 * Returns the primary drag policy of the given edit part if it shows
+	 * aggregate feedback, or <code>null</code>.
+	 */
+	private static NonResizableEditPolicy getAggregateFeedbackPolicy(
+			EditPart part) {
+		EditPolicy policy = part.getEditPolicy(EditPolicy.PRIMARY_DRAG_ROLE);
+		if (policy instanceof NonResizableEditPolicy
+				&& ((NonResizableEditPolicy) policy)
+						.isAggregateFeedbackEnabled())
+			return (NonResizableEditPolicy) policy;
+		return null;
+	}
+
+	/**
+	 * Returns the policy which shows the aggregate feedback for the given
+	 * request, i.e. the primary drag policy of the first edit part in the
+	 * request which shows aggregate feedback, or <code>null</code>.
+	 */
+	private static NonResizableEditPolicy getAggregateFeedbackOwner(
+			ChangeBoundsRequest request) {
+		List parts = request.getEditParts();
+		if (parts == null)
+			return null;
+		for (int i = 0; i < parts.size(); i++) {
+			NonResizableEditPolicy policy = getAggregateFeedbackPolicy((EditPart) parts
+					.get(i));
+			if (policy != null)
+				return policy;
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the command contribution to an alignment request
 	 * 
@@ -298,6 +372,18 @@ public class NonResizableEditPolicy extends SelectionHandlesEditPolicy {
 		focusRect = null;
 	}
 
+	/**
+	 * Returns <code>true</code> if the drag feedback of this EditPolicy is
+	 * drawn together with that of the other edit parts being dragged.
+	 * 
+	 * @return <code>true</code> if aggregate feedback is enabled
+	 * @see #setAggregateFeedbackEnabled(boolean)
+	 * @since 3.11
+	 */
+	public boolean isAggregateFeedbackEnabled() {
+		return isAggregateFeedbackEnabled;
+	}
+
 	/**
 	 * Returns true if this EditPolicy allows its EditPart to be dragged.
 	 * 
@@ -307,6 +393,28 @@ public class NonResizableEditPolicy extends SelectionHandlesEditPolicy {
 		return isDragAllowed;
 	}
 
+	/**
+	 * Sets whether the drag feedback of this EditPolicy is drawn together with
+	 * that of the other edit parts being dragged. If enabled, the edit parts
+	 * of a change bounds request whose primary drag policies have aggregate
+	 * feedback enabled share a single feedback figure, which is shown by the
+	 * first of them. Instead of one figure per edit part, only that figure is
+	 * updated during the drag.
+	 * <P>
+	 * Aggregate feedback uses the {@link #getInitialFeedbackBounds() initial
+	 * feedback bounds} of the edit parts, but not
+	 * {@link #createDragSourceFeedbackFigure()} or
+	 * {@link #showChangeBoundsFeedback(ChangeBoundsRequest)} of the other edit
+	 * parts, so subclasses which tailor those should not enable it.
+	 * 
+	 * @param value
+	 *            <code>true</code> to enable aggregate feedback
+	 * @since 3.11
+	 */
+	public void setAggregateFeedbackEnabled(boolean value) {
+		isAggregateFeedbackEnabled = value;
+	}
+
 	/**
 	 * Sets the dragability of the EditPolicy to the given value. If the value
 	 * is false, the EditPolicy should not allow its EditPart to be dragged.
@@ -327,6 +435,15 @@ public class NonResizableEditPolicy extends SelectionHandlesEditPolicy {
 	 *            the request
 	 */
 	protected void showChangeBoundsFeedback(ChangeBoundsRequest request) {
+		if (getAggregateFeedbackPolicy(getHost()) == this) {
+			NonResizableEditPolicy owner = getAggregateFeedbackOwner(request);
+			if (owner == this)
+				showAggregateChangeBoundsFeedback(request);
+			// otherwise the owner shows the feedback for this edit part
+			if (owner != null)
+				return;
+		}
+
 		IFigure feedback = getDragSourceFeedbackFigure();
 
 		PrecisionRectangle rect = new PrecisionRectangle(
@@ -340,6 +457,27 @@ public class NonResizableEditPolicy extends SelectionHandlesEditPolicy {
 		feedback.validate();
 	}
 
+	private void showAggregateChangeBoundsFeedback(ChangeBoundsRequest request) {
+		if (!(feedback instanceof AggregateFeedbackFigure)) {
+			if (feedback != null)
+				removeFeedback(feedback);
+			feedback = createAggregateDragSourceFeedbackFigure(request);
+		}
+
+		// all rectangles move and resize by the same delta
+		PrecisionDimension move = new PrecisionDimension(
+				request.getMoveDelta().x, request.getMoveDelta().y);
+		PrecisionDimension resize = new PrecisionDimension(
+				request.getSizeDelta());
+		feedback.translateToRelative(move);
+		feedback.translateToRelative(resize);
+		((AggregateFeedbackFigure) feedback).setDelta(
+				(int) Math.round(move.preciseWidth()),
+				(int) Math.round(move.preciseHeight()),
+				(int) Math.round(resize.preciseWidth()),
+				(int) Math.round(resize.preciseHeight()));
+	}
+
 	/**
 	 * Shows a focus rectangle around the host's figure. The focus rectangle is
 	 * expanded by 5 pixels from the figure's bounds.
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.internal;
+
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A List of distinct elements, used to store the selection of a viewer. The
+ * elements are kept in a linked list and a map from each element to its link,
+ * so appending, removing and finding an element take constant time, no matter
+ * how large the selection is. The first and the last element are found in
+ * constant time as well; finding any other element by its index takes linear
+ * time once after each change.
+ * <P>
+ * Adding an element which is already contained moves it to the end of the
+ * list, so the list never contains an element twice.
+ */
+public class SelectionList extends AbstractList {
+
+	private static class Link {
+		Object element;
+		Link previous, next;
+
+		Link(Object element) {
+			this.element = element;
+		}
+	}
+
+	private final Map links = new HashMap();
+	private Link first, last;
+
+	// the elements by index, or null if they have changed
+	private Object[] elements;
+
+	/**
+	 * Appends the element, or moves it to the end if it is already contained.
+	 *
+	 * @see java.util.List#add(java.lang.Object)
+	 */
+	public boolean add(Object element) {
+		Link link = (Link) links.get(element);
+		if (link == null) {
+			link = new Link(element);
+			links.put(element, link);
+		} else if (link == last) {
+			return true;
+		} else {
+			unlink(link);
+		}
+		link.previous = last;
+		if (last == null)
+			first = link;
+		else
+			last.next = link;
+		last = link;
+		changed();
+		return true;
+	}
+
+	/**
+	 * Inserts the element at the given index. An element which is already
+	 * contained is removed first.
+	 *
+	 * @see java.util.List#add(int, java.lang.Object)
+	 */
+	public void add(int index, Object element) {
+		if (index < 0 || index > size())
+			throw new IndexOutOfBoundsException("Index: " + index); //$NON-NLS-1$
+		if (index == size()) {
+			add(element);
+			return;
+		}
+		Link next = linkAt(index);
+		if (links.get(element) == next)
+			return;
+		remove(element);
+		Link link = new Link(element);
+		links.put(element, link);
+		link.next = next;
+		link.previous = next.previous;
+		if (next.previous == null)
+			first = link;
+		else
+			next.previous.next = link;
+		next.previous = link;
+		changed();
+	}
+
+	private void changed() {
+		elements = null;
+		modCount++;
+	}
+
+	/**
+	 * @see java.util.List#clear()
+	 */
+	public void clear() {
+		if (first == null)
+			return;
+		links.clear();
+		first = last = null;
+		changed();
+	}
+
+	/**
+	 * @see java.util.List#contains(java.lang.Object)
+	 */
+	public boolean contains(Object element) {
+		return links.containsKey(element);
+	}
+
+	private Object[] elements() {
+		if (elements == null) {
+			elements = new Object[size()];
+			int i = 0;
+			for (Link link = first; link != null; link = link.next)
+				elements[i++] = link.element;
+		}
+		return elements;
+	}
+
+	/**
+	 * @see java.util.List#get(int)
+	 */
+	public Object get(int index) {
+		return linkAt(index).element;
+	}
+
+	/**
+	 * Returns a number which changes whenever the list is changed, so clients
+	 * can tell whether anything they derived from the list is still valid.
+	 *
+	 * @return the modification count
+	 */
+	public int getModificationCount() {
+		return modCount;
+	}
+
+	/**
+	 * @see java.util.List#indexOf(java.lang.Object)
+	 */
+	public int indexOf(Object element) {
+		if (!contains(element))
+			return -1;
+		Object[] elements = elements();
+		for (int i = 0; i < elements.length; i++)
+			if (element == null ? elements[i] == null : element
+					.equals(elements[i]))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @see java.util.List#iterator()
+	 */
+	public Iterator iterator() {
+		return new Iterator() {
+			private Link next = first;
+			private Link current;
+			private int expectedModCount = modCount;
+
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			public Object next() {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (next == null)
+					throw new NoSuchElementException();
+				current = next;
+				next = next.next;
+				return current.element;
+			}
+
+			public void remove() {
+				if (current == null)
+					throw new IllegalStateException();
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				SelectionList.this.remove(current.element);
+				current = null;
+				expectedModCount = modCount;
+			}
+		};
+	}
+
+	/**
+	 * @see java.util.List#lastIndexOf(java.lang.Object)
+	 */
+	public int lastIndexOf(Object element) {
+		return indexOf(element);
+	}
+
+	private Link linkAt(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("Index: " + index); //$NON-NLS-1$
+		if (index == size() - 1)
+			return last;
+		if (index == 0)
+			return first;
+		return (Link) links.get(elements()[index]);
+	}
+
+	/**
+	 * @see java.util.List#remove(int)
+	 */
+	public Object remove(int index) {
+		Object element = get(index);
+		remove(element);
+		return element;
+	}
+
+	/**
+	 * @see java.util.List#remove(java.lang.Object)
+	 */
+	public boolean remove(Object element) {
+		Link link = (Link) links.remove(element);
+		if (link == null)
+			return false;
+		unlink(link);
+		changed();
+		return true;
+	}
+
+	/**
+	 * Replaces the element at the given index. An element which is already
+	 * contained elsewhere is removed from its old position.
+	 *
+	 * @see java.util.List#set(int, java.lang.Object)
+	 */
+	public Object set(int index, Object element) {
+		Link link = linkAt(index);
+		Object old = link.element;
+		Link other = (Link) links.get(element);
+		if (other != null && other != link)
+			unlink(other);
+		links.remove(old);
+		link.element = element;
+		links.put(element, link);
+		changed();
+		return old;
+	}
+
+	/**
+	 * @see java.util.List#size()
+	 */
+	public int size() {
+		return links.size();
+	}
+
+	/**
+	 * @see java.util.List#toArray()
+	 */
+	public Object[] toArray() {
+		return (Object[]) elements().clone();
+	}
+
+	private void unlink(Link link) {
+		if (link.previous == null)
+			first = link.next;
+		else
+			link.previous.next = link.next;
+		if (link.next == null)
+			last = link.previous;
+		else
+			link.next.previous = link.previous;
+		link.previous = link.next = null;
+	}
+
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.tools;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A uniform grid over the bounds of a fixed set of items, used to find the
+ * items whose bounds overlap a region without testing every item. Each item is
+ * registered in every cell its bounds overlap. Bounds and regions are treated
+ * as closed, so an item whose bounds only touch a region is found as well.
+ */
+class BoundsIndex {
+
+	/**
+	 * The maximum number of cells in each direction.
+	 */
+	private static final int MAX_CELLS = 256;
+
+	private final Object[] items;
+	private final Rectangle[] bounds;
+
+	private final int originX, originY;
+	private final int cellWidth, cellHeight;
+	private final int columns, rows;
+	private final int[][] cells;
+
+	// the query in which each item was last found
+	private final int[] visited;
+	private int query;
+
+	/**
+	 * Creates an index for the given items.
+	 *
+	 * @param items
+	 *            the items
+	 * @param bounds
+	 *            the bounds of each item, which must not change
+	 */
+	BoundsIndex(Object[] items, Rectangle[] bounds) {
+		this.items = items;
+		this.bounds = bounds;
+		visited = new int[items.length];
+
+		Rectangle extent = new Rectangle();
+		for (int i = 0; i < bounds.length; i++) {
+			if (i == 0)
+				extent.setBounds(bounds[i]);
+			else
+				extent.union(bounds[i]);
+		}
+		originX = extent.x;
+		originY = extent.y;
+		int side = (int) Math.ceil(Math.sqrt(items.length));
+		side = Math.max(1, Math.min(MAX_CELLS, side));
+		cellWidth = Math.max(1, (extent.width + side) / side);
+		cellHeight = Math.max(1, (extent.height + side) / side);
+		columns = Math.max(1, Math.min(side, extent.width / cellWidth + 1));
+		rows = Math.max(1, Math.min(side, extent.height / cellHeight + 1));
+
+		// count the items of each cell first, so each cell is a plain array
+		int[] counts = new int[columns * rows];
+		for (int i = 0; i < bounds.length; i++) {
+			Rectangle b = bounds[i];
+			for (int row = row(b.y); row <= row(b.bottom()); row++)
+				for (int column = column(b.x); column <= column(b.right()); column++)
+					counts[row * columns + column]++;
+		}
+		cells = new int[counts.length][];
+		for (int cell = 0; cell < counts.length; cell++) {
+			cells[cell] = new int[counts[cell]];
+			counts[cell] = 0;
+		}
+		for (int i = 0; i < bounds.length; i++) {
+			Rectangle b = bounds[i];
+			for (int row = row(b.y); row <= row(b.bottom()); row++)
+				for (int column = column(b.x); column <= column(b.right()); column++) {
+					int cell = row * columns + column;
+					cells[cell][counts[cell]++] = i;
+				}
+		}
+	}
+
+	private int column(int x) {
+		return Math.max(0, Math.min(columns - 1, (x - originX) / cellWidth));
+	}
+
+	/**
+	 * Adds each item whose bounds overlap at least one of the given regions to
+	 * the result, only once.
+	 *
+	 * @param regions
+	 *            a list of Rectangles
+	 * @param result
+	 *            the collection to which the items are added
+	 */
+	void findOverlapping(List regions, Collection result) {
+		query++;
+		for (int r = 0; r < regions.size(); r++) {
+			Rectangle region = (Rectangle) regions.get(r);
+			for (int row = row(region.y); row <= row(region.bottom()); row++)
+				for (int column = column(region.x); column <= column(region
+						.right()); column++) {
+					int[] cell = cells[row * columns + column];
+					for (int j = 0; j < cell.length; j++) {
+						int i = cell[j];
+						if (visited[i] != query && overlaps(bounds[i], region)) {
+							visited[i] = query;
+							result.add(items[i]);
+						}
+					}
+				}
+		}
+	}
+
+	private static boolean overlaps(Rectangle a, Rectangle b) {
+		return a.x <= b.right() && b.x <= a.right() && a.y <= b.bottom()
+				&& b.y <= a.bottom();
+	}
+
+	private int row(int y) {
+		return Math.max(0, Math.min(rows - 1, (y - originY) / cellHeight));
+	}
+
+}
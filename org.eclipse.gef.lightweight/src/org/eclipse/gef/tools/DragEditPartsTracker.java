@@ -75,6 +75,12 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 	private SnapToHelper snapToHelper;
 	private PrecisionRectangle sourceRectangle, compoundSrcRect;
 	private boolean cloneActive;
+	private boolean lazyCommandEnabled;
+	// the command computed by updateCurrentCommand() and what it was
+	// computed for
+	private Command cachedCommand;
+	private EditPart cachedCommandTarget;
+	private String cachedCommandType;
 
 	/**
 	 * Constructs a new DragEditPartsTracker with the given source edit part.
@@ -265,6 +271,7 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 		sourceRectangle = null;
 		compoundSrcRect = null;
 		snapToHelper = null;
+		resetCachedCommand();
 	}
 
 	/**
@@ -378,7 +385,7 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 		updateTargetUnderMouse();
 		showTargetFeedback();
 		showSourceFeedback();
-		setCurrentCommand(getCommand());
+		updateCurrentCommand();
 	}
 
 	/**
@@ -409,7 +416,7 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 				updateTargetRequest();
 			showTargetFeedback();
 			showSourceFeedback();
-			setCurrentCommand(getCommand());
+			updateCurrentCommand();
 		}
 		return true;
 	}
@@ -513,6 +520,18 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 		return cloneActive;
 	}
 
+	/**
+	 * Returns <code>true</code> if the command is computed lazily during a
+	 * drag.
+	 * 
+	 * @return <code>true</code> if lazy command computation is enabled
+	 * @see #setLazyCommandEnabled(boolean)
+	 * @since 3.11
+	 */
+	protected boolean isLazyCommandEnabled() {
+		return lazyCommandEnabled;
+	}
+
 	/**
 	 * Returns <code>true</code> if the source edit part is being moved within
 	 * its parent. If the source edit part is being moved to another parent,
@@ -532,12 +551,24 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 	}
 
 	/**
-	 * Calls {@link AbstractTool#executeCurrentCommand()}.
+	 * Calls {@link AbstractTool#executeCurrentCommand()}. If lazy command
+	 * computation is enabled, the current command is computed again first, so
+	 * that it reflects the final location of the drag.
 	 */
 	protected void performDrag() {
+		if (isLazyCommandEnabled()) {
+			resetCachedCommand();
+			setCurrentCommand(getCommand());
+		}
 		executeCurrentCommand();
 	}
 
+	private void resetCachedCommand() {
+		cachedCommand = null;
+		cachedCommandTarget = null;
+		cachedCommandType = null;
+	}
+
 	/**
 	 * If auto scroll (also called auto expose) is being performed, the start
 	 * location moves during the scroll. This method updates that location.
@@ -588,6 +619,29 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 		this.cloneActive = cloneActive;
 	}
 
+	/**
+	 * Enables or disables the lazy computation of the command during a drag.
+	 * By default, {@link #getCommand()} is called on every mouse move, which
+	 * asks every edit part in the {@link AbstractTool#getOperationSet()
+	 * operation set} for a command. If enabled, the command is only computed
+	 * again when the target edit part or the request type changes, which are
+	 * the changes that usually affect whether it can be executed and thus the
+	 * cursor. The command which is executed is always computed when the drag
+	 * ends.
+	 * <P>
+	 * This should only be enabled if the executability of the commands
+	 * returned by the edit parts does not depend on the move delta or
+	 * location of the request, since the cursor may otherwise not reflect it.
+	 * 
+	 * @param value
+	 *            <code>true</code> to compute the command lazily
+	 * @since 3.11
+	 */
+	public void setLazyCommandEnabled(boolean value) {
+		lazyCommandEnabled = value;
+		resetCachedCommand();
+	}
+
 	/**
 	 * Extended to update the current snap-to strategy.
 	 * 
@@ -640,6 +694,26 @@ public class DragEditPartsTracker extends SelectEditPartTracker {
 			captureSourceDimensions();
 	}
 
+	/**
+	 * Sets the current command to the result of {@link #getCommand()}. If lazy
+	 * command computation is enabled, the command is reused as long as the
+	 * target edit part and the request type do not change.
+	 */
+	private void updateCurrentCommand() {
+		if (!isLazyCommandEnabled()) {
+			setCurrentCommand(getCommand());
+			return;
+		}
+		String type = getCommandName();
+		if (cachedCommand == null || cachedCommandTarget != getTargetEditPart()
+				|| !type.equals(cachedCommandType)) {
+			cachedCommand = getCommand();
+			cachedCommandTarget = getTargetEditPart();
+			cachedCommandType = type;
+		}
+		setCurrentCommand(cachedCommand);
+	}
+
 	/**
 	 * Calls {@link #repairStartLocation()} in case auto scroll is being
 	 * performed. Updates the request with the current
@@ -15,6 +15,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.swt.SWT;
@@ -68,6 +69,10 @@ import org.eclipse.gef.util.EditPartUtilities;
  * key is pressed at the beginning of the drag, the enclosed items will have
  * their selection state inverted.
  * 
+ * During a drag, the candidate edit parts are indexed by the absolute bounds of
+ * their figures when the drag starts, and only those in the area by which the
+ * marquee has grown or shrunk since the last update are tested again.
+ * 
  * @author ebordeau
  * @author dlee
  * @author rhudson
@@ -224,6 +229,11 @@ public class MarqueeSelectionTool extends AbstractTool {
 
 	private Request targetRequest;
 
+	private BoundsIndex marqueeIndex;
+	private Rectangle marqueeIndexReference;
+	private Rectangle lastMarqueeRectangle;
+	private Set primarySelectedEditParts;
+
 	/**
 	 * Creates a new MarqueeSelectionTool of default type
 	 * {@link #BEHAVIOR_NODES_CONTAINED}.
@@ -289,6 +299,13 @@ public class MarqueeSelectionTool extends AbstractTool {
 	 * {@link #isMarqueeSelectable(GraphicalEditPart)} and
 	 * {@link #isPrimaryMarqueeSelectedEditPart(GraphicalEditPart)} to decide
 	 * whether the candidate is to be included in the marquee selection.
+	 * <P>
+	 * The candidates which pass {@link #isMarqueeSelectable(GraphicalEditPart)}
+	 * are indexed once per drag. Afterwards, only the candidates whose bounds
+	 * overlap the difference between the current and the previous marquee
+	 * selection rectangle are tested again, as the result can only change for
+	 * them. The index is rebuilt when the figures are scrolled or zoomed, and
+	 * when {@link #invalidateMarqueeSelection()} is called.
 	 * 
 	 * @return A {@link Collection} containing all {@link EditPart}s that should
 	 *         be regarded as being directly affected by the current marquee
@@ -296,6 +313,40 @@ public class MarqueeSelectionTool extends AbstractTool {
 	 * @since 3.7
 	 */
 	private Collection calculatePrimaryMarqueeSelectedEditParts() {
+		Rectangle marqueeSelectionRectangle = getCurrentMarqueeSelectionRectangle();
+		Rectangle reference = getMarqueeIndexReference();
+		if (marqueeIndex == null || !reference.equals(marqueeIndexReference)) {
+			// the figures have been scrolled or zoomed
+			createMarqueeIndex();
+			marqueeIndexReference = reference;
+		}
+
+		List regions = new ArrayList();
+		if (lastMarqueeRectangle == null)
+			regions.add(marqueeSelectionRectangle);
+		else {
+			subtract(marqueeSelectionRectangle, lastMarqueeRectangle, regions);
+			subtract(lastMarqueeRectangle, marqueeSelectionRectangle, regions);
+		}
+		Collection editPartsToProcess = new ArrayList();
+		marqueeIndex.findOverlapping(regions, editPartsToProcess);
+		for (Iterator iterator = editPartsToProcess.iterator(); iterator
+				.hasNext();) {
+			GraphicalEditPart editPart = (GraphicalEditPart) iterator.next();
+			if (isPrimaryMarqueeSelectedEditPart(editPart))
+				primarySelectedEditParts.add(editPart);
+			else
+				primarySelectedEditParts.remove(editPart);
+		}
+		lastMarqueeRectangle = marqueeSelectionRectangle.getCopy();
+		return new ArrayList(primarySelectedEditParts);
+	}
+
+	/**
+	 * Indexes the edit parts which may be marquee selected by the absolute
+	 * bounds of their figures.
+	 */
+	private void createMarqueeIndex() {
 		Collection editPartsToProcess = new HashSet();
 		if (marqueeBehavior != BEHAVIOR_CONNECTIONS_CONTAINED
 				&& marqueeBehavior != BEHAVIOR_CONNECTIONS_TOUCHED) {
@@ -314,18 +365,23 @@ public class MarqueeSelectionTool extends AbstractTool {
 									.getRootEditPart()));
 		}
 
-		// process all edit parts and determine which are affected by the
-		// current marquee selection
-		Collection marqueeSelectedEditParts = new ArrayList();
+		List selectableEditParts = new ArrayList();
+		List bounds = new ArrayList();
 		for (Iterator iterator = editPartsToProcess.iterator(); iterator
 				.hasNext();) {
 			GraphicalEditPart editPart = (GraphicalEditPart) iterator.next();
-			if (isMarqueeSelectable(editPart)
-					&& isPrimaryMarqueeSelectedEditPart(editPart)) {
-				marqueeSelectedEditParts.add(editPart);
+			if (isMarqueeSelectable(editPart)) {
+				IFigure figure = editPart.getFigure();
+				Rectangle r = figure.getBounds().getCopy();
+				figure.translateToAbsolute(r);
+				selectableEditParts.add(editPart);
+				bounds.add(r);
 			}
 		}
-		return marqueeSelectedEditParts;
+		marqueeIndex = new BoundsIndex(selectableEditParts.toArray(),
+				(Rectangle[]) bounds.toArray(new Rectangle[bounds.size()]));
+		lastMarqueeRectangle = null;
+		primarySelectedEditParts = new HashSet();
 	}
 
 	/**
@@ -387,9 +443,17 @@ public class MarqueeSelectionTool extends AbstractTool {
 		}
 		super.deactivate();
 		allChildren.clear();
+		disposeMarqueeIndex();
 		setState(STATE_TERMINAL);
 	}
 
+	private void disposeMarqueeIndex() {
+		marqueeIndex = null;
+		marqueeIndexReference = null;
+		lastMarqueeRectangle = null;
+		primarySelectedEditParts = null;
+	}
+
 	private void eraseMarqueeFeedback() {
 		if (marqueeRectangleFigure != null) {
 			removeFeedback(marqueeRectangleFigure);
@@ -450,6 +514,17 @@ public class MarqueeSelectionTool extends AbstractTool {
 		return marqueeRectangleFigure;
 	}
 
+	/**
+	 * Returns a fixed rectangle of the primary layer in absolute coordinates,
+	 * which changes whenever the figures are scrolled or zoomed.
+	 */
+	private Rectangle getMarqueeIndexReference() {
+		Rectangle reference = new Rectangle(0, 0, 1024, 1024);
+		((GraphicalEditPart) getCurrentViewer().getRootEditPart())
+				.getContentPane().translateToAbsolute(reference);
+		return reference;
+	}
+
 	private Request getTargetRequest() {
 		if (targetRequest == null)
 			targetRequest = createTargetRequest();
@@ -467,6 +542,7 @@ public class MarqueeSelectionTool extends AbstractTool {
 			handleInvalidInput();
 		}
 		if (stateTransition(STATE_INITIAL, STATE_DRAG_IN_PROGRESS)) {
+			disposeMarqueeIndex();
 			if (getCurrentInput().isModKeyDown(SWT.MOD1))
 				setSelectionMode(TOGGLE_MODE);
 			else if (getCurrentInput().isShiftKeyDown())
@@ -484,6 +560,8 @@ public class MarqueeSelectionTool extends AbstractTool {
 		if (stateTransition(STATE_DRAG_IN_PROGRESS, STATE_TERMINAL)) {
 			eraseTargetFeedback();
 			eraseMarqueeFeedback();
+			// figures may have moved during the drag
+			invalidateMarqueeSelection();
 			performMarqueeSelect();
 		}
 		handleFinished();
@@ -541,6 +619,20 @@ public class MarqueeSelectionTool extends AbstractTool {
 		return false;
 	}
 
+	/**
+	 * Discards the edit parts indexed for the current drag, so that the next
+	 * calculation of the marquee selected edit parts tests all candidates
+	 * again. Clients should call this if figures are moved, added or removed
+	 * during the drag, e.g. by a layout, or if the result of
+	 * {@link #isMarqueeSelectable(GraphicalEditPart)} changes. The selection is
+	 * always computed from scratch when the drag ends.
+	 * 
+	 * @since 3.11
+	 */
+	protected void invalidateMarqueeSelection() {
+		disposeMarqueeIndex();
+	}
+
 	/**
 	 * Decides whether the given edit part may potentially be included in the
 	 * current marquee selection.
@@ -567,6 +659,12 @@ public class MarqueeSelectionTool extends AbstractTool {
 	 * selection rectangle ( {@link #getCurrentMarqueeSelectionRectangle()}),
 	 * taking into consideration the current marquee behavior (contained vs.
 	 * touched) that was provided ( {@link #setMarqueeBehavior(int)} ).
+	 * <p>
+	 * During a drag, this is only called again for edit parts whose bounds,
+	 * as indexed when the drag started, overlap the area by which the marquee
+	 * changed. The result must therefore only depend on the marquee and on
+	 * figure bounds which stay fixed during the drag. Otherwise,
+	 * {@link #invalidateMarqueeSelection()} has to be called.
 	 * 
 	 * @param editPart
 	 *            the {@link EditPart} whose state is to be determined
@@ -802,4 +900,31 @@ public class MarqueeSelectionTool extends AbstractTool {
 		}
 	}
 
+	/**
+	 * Adds the parts of rectangle <code>a</code> which lie outside of
+	 * rectangle <code>b</code> to the list, as up to four rectangles. They are
+	 * expanded by one pixel, so that edit parts whose bounds only touch them
+	 * are tested as well.
+	 */
+	private static void subtract(Rectangle a, Rectangle b, List regions) {
+		if (!a.intersects(b)) {
+			regions.add(a.getCopy().expand(1, 1));
+			return;
+		}
+		int top = Math.max(a.y, b.y);
+		int bottom = Math.min(a.bottom(), b.bottom());
+		if (a.y < b.y)
+			regions.add(new Rectangle(a.x, a.y, a.width, b.y - a.y).expand(1,
+					1));
+		if (a.bottom() > b.bottom())
+			regions.add(new Rectangle(a.x, b.bottom(), a.width, a.bottom()
+					- b.bottom()).expand(1, 1));
+		if (a.x < b.x)
+			regions.add(new Rectangle(a.x, top, b.x - a.x, bottom - top)
+					.expand(1, 1));
+		if (a.right() > b.right())
+			regions.add(new Rectangle(b.right(), top, a.right() - b.right(),
+					bottom - top).expand(1, 1));
+	}
+
 }
@@ -16,8 +16,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.DragSource;
@@ -51,6 +55,7 @@ import org.eclipse.gef.EditPartViewer;
 import org.eclipse.gef.KeyHandler;
 import org.eclipse.gef.RootEditPart;
 import org.eclipse.gef.SelectionManager;
+import org.eclipse.gef.internal.SelectionList;
 
 /**
  * The base implementation for EditPartViewer.
@@ -64,9 +69,10 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 	private SelectionManager selectionModel;
 
 	/**
-	 * The raw list of selected editparts.
+	 * The raw list of selected editparts. Appending, removing and finding an
+	 * editpart take constant time.
 	 */
-	protected final List selection = new ArrayList();
+	protected final List selection = new SelectionList();
 
 	/**
 	 * The unmodifiable list of selected editparts.
@@ -110,6 +116,9 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 	private KeyHandler keyHandler;
 	private PropertyChangeSupport changeSupport;
 
+	private int updateDepth;
+	private Set pendingRefreshes = new LinkedHashSet();
+
 	/**
 	 * Constructs the viewer and calls {@link #init()}.
 	 */
@@ -193,6 +202,13 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 		selectionModel.appendSelection(editpart, propagate);
 	}
 
+	/**
+	 * @see EditPartViewer#beginUpdate()
+	 */
+	public void beginUpdate() {
+		updateDepth++;
+	}
+
 	/**
 	 * @see EditPartViewer#createControl(Composite)
 	 */
@@ -218,6 +234,49 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 		selectionModel.deselectAll(propagate);
 	}
 
+	/**
+	 * @see EditPartViewer#endUpdate()
+	 */
+	public void endUpdate() {
+		Assert.isTrue(updateDepth > 0);
+		try {
+			// refreshes requested while flushing are collected for another pass
+			if (updateDepth == 1)
+				while (!pendingRefreshes.isEmpty())
+					flushRefreshes();
+		} finally {
+			updateDepth--;
+			if (updateDepth == 0)
+				pendingRefreshes.clear();
+		}
+	}
+
+	/**
+	 * Refreshes the EditParts requested during a batched update. The branches
+	 * of the EditPart tree which contain requested EditParts are visited from
+	 * the root, so that parents are refreshed before their children, and
+	 * EditParts which have been removed by an earlier refresh are skipped. The
+	 * remaining requested EditParts, such as connections, are refreshed
+	 * afterwards if they are still active.
+	 */
+	private void flushRefreshes() {
+		Set requested = pendingRefreshes;
+		pendingRefreshes = new LinkedHashSet();
+		Set branches = new HashSet();
+		for (Iterator iter = requested.iterator(); iter.hasNext();) {
+			EditPart part = (EditPart) iter.next();
+			while (part != null && branches.add(part))
+				part = part.getParent();
+		}
+		if (getRootEditPart() != null)
+			refreshBranch(getRootEditPart(), requested, branches);
+		for (Iterator iter = requested.iterator(); iter.hasNext();) {
+			EditPart part = (EditPart) iter.next();
+			if (part.isActive())
+				part.refresh();
+		}
+	}
+
 	/**
 	 * Called if and when the <code>Control</code> is disposed. Subclasses may
 	 * extend this method to perform additional cleanup.
@@ -431,6 +490,13 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 		return mapVisualToEditPart;
 	}
 
+	/**
+	 * @see EditPartViewer#isUpdating()
+	 */
+	public boolean isUpdating() {
+		return updateDepth > 0;
+	}
+
 	/**
 	 * Called once the control has been set.
 	 * 
@@ -590,12 +656,49 @@ public abstract class AbstractEditPartViewer implements EditPartViewer {
 		selectionListeners.remove(l);
 	}
 
+	/**
+	 * Refreshes the requested EditParts in the given branch, removing them from
+	 * the requested set.
+	 */
+	private void refreshBranch(EditPart part, Set requested, Set branches) {
+		if (requested.remove(part))
+			part.refresh();
+		List children = part.getChildren();
+		for (int i = 0; i < children.size(); i++) {
+			EditPart child = (EditPart) children.get(i);
+			if (branches.contains(child))
+				refreshBranch(child, requested, branches);
+		}
+	}
+
+	/**
+	 * @see EditPartViewer#requestRefresh(EditPart)
+	 */
+	public void requestRefresh(EditPart editpart) {
+		if (isUpdating())
+			pendingRefreshes.add(editpart);
+		else
+			editpart.refresh();
+	}
+
 	/**
 	 * @see EditPartViewer#reveal(EditPart)
 	 */
 	public void reveal(EditPart part) {
 	}
 
+	/**
+	 * @see EditPartViewer#runBatched(Runnable)
+	 */
+	public void runBatched(Runnable runnable) {
+		beginUpdate();
+		try {
+			runnable.run();
+		} finally {
+			endUpdate();
+		}
+	}
+
 	/**
 	 * @see EditPartViewer#select(EditPart)
 	 */
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.ui.parts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.gef.EditPartViewer;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.gef.commands.CommandStackEvent;
+import org.eclipse.gef.commands.CommandStackEventListener;
+
+/**
+ * Wraps the execution, undo and redo of every command on a
+ * {@link CommandStack} in a {@link EditPartViewer#beginUpdate() batched
+ * update} of one or more viewers. EditParts which request their refreshes
+ * through
+ * {@link EditPartViewer#requestRefresh(org.eclipse.gef.EditPart)
+ * requestRefresh()} are then refreshed once after the command, no matter how
+ * many model changes the command makes.
+ * For example:
+ *
+ * <PRE>
+ * CommandStackUpdateBatcher batcher = new CommandStackUpdateBatcher();
+ * batcher.addViewer(viewer);
+ * getCommandStack().addCommandStackEventListener(batcher);
+ * </PRE>
+ *
+ * @since 3.11
+ */
+public class CommandStackUpdateBatcher implements CommandStackEventListener {
+
+	private static final int PRE_CHANGE = CommandStack.PRE_EXECUTE
+			| CommandStack.PRE_UNDO | CommandStack.PRE_REDO;
+	private static final int POST_CHANGE = CommandStack.POST_EXECUTE
+			| CommandStack.POST_UNDO | CommandStack.POST_REDO;
+
+	private List viewers = new ArrayList();
+
+	/**
+	 * Adds a viewer whose updates are batched. It must not be added while a
+	 * command is being executed, undone or redone.
+	 *
+	 * @param viewer
+	 *            the viewer
+	 */
+	public void addViewer(EditPartViewer viewer) {
+		viewers.add(viewer);
+	}
+
+	/**
+	 * Begins an update of all viewers before a command is executed, undone or
+	 * redone, and ends it afterwards. The command stack notifies the end even
+	 * if the command fails, so the updates are always balanced.
+	 *
+	 * @see CommandStackEventListener#stackChanged(CommandStackEvent)
+	 */
+	public void stackChanged(CommandStackEvent event) {
+		if ((event.getDetail() & PRE_CHANGE) != 0) {
+			for (int i = 0; i < viewers.size(); i++)
+				((EditPartViewer) viewers.get(i)).beginUpdate();
+		} else if ((event.getDetail() & POST_CHANGE) != 0) {
+			for (int i = viewers.size() - 1; i >= 0; i--)
+				((EditPartViewer) viewers.get(i)).endUpdate();
+		}
+	}
+
+	/**
+	 * Removes a viewer. It must not be removed while a command is being
+	 * executed, undone or redone.
+	 *
+	 * @param viewer
+	 *            the viewer to remove
+	 */
+	public void removeViewer(EditPartViewer viewer) {
+		viewers.remove(viewer);
+	}
+
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.commands.Command;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.FreeformGraphicalRootEditPart;
+import org.eclipse.gef.ui.parts.CommandStackUpdateBatcher;
+import org.eclipse.gef.ui.parts.ScrollingGraphicalViewer;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Tests the batched updates of a viewer, in which requested refreshes are
+ * deferred until the outermost update ends, and the
+ * {@link CommandStackUpdateBatcher}, which wraps the commands of a
+ * {@link CommandStack} in such updates.
+ */
+public class BatchedUpdateTest extends TestCase {
+
+	private static class Node {
+		final String name;
+		final List children = new ArrayList();
+
+		Node(String name, Node[] children) {
+			this.name = name;
+			this.children.addAll(Arrays.asList(children));
+		}
+	}
+
+	/**
+	 * Records its refreshes in the shared list.
+	 */
+	private class NodeEditPart extends AbstractGraphicalEditPart {
+		NodeEditPart(Node node) {
+			setModel(node);
+		}
+
+		protected EditPart createChild(Object model) {
+			return new NodeEditPart((Node) model);
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected IFigure createFigure() {
+			if (getParent() == getViewer().getRootEditPart())
+				return new FreeformLayer();
+			return new Figure();
+		}
+
+		protected List getModelChildren() {
+			return ((Node) getModel()).children;
+		}
+
+		public void refresh() {
+			refreshed.add(((Node) getModel()).name);
+			super.refresh();
+		}
+	}
+
+	/**
+	 * Requests refreshes of the given parts, and fails if requested to.
+	 */
+	private class RefreshCommand extends Command {
+		final EditPart[] parts;
+		final boolean fail;
+
+		RefreshCommand(EditPart[] parts, boolean fail) {
+			this.parts = parts;
+			this.fail = fail;
+		}
+
+		public void execute() {
+			requestRefreshes();
+		}
+
+		public void redo() {
+			requestRefreshes();
+		}
+
+		public void undo() {
+			requestRefreshes();
+		}
+
+		private void requestRefreshes() {
+			assertTrue(viewer.isUpdating());
+			for (int i = 0; i < parts.length; i++)
+				viewer.requestRefresh(parts[i]);
+			assertTrue(refreshed.isEmpty());
+			if (fail)
+				throw new IllegalStateException();
+		}
+	}
+
+	private Shell shell;
+	private ScrollingGraphicalViewer viewer;
+	private Node diagramNode, bNode;
+	private EditPart diagram, a, a1, b, b1;
+
+	// the names of the refreshed parts
+	private List refreshed = new ArrayList();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		bNode = new Node("b", new Node[] { new Node("b1", new Node[0]) });
+		diagramNode = new Node("diagram", new Node[] {
+				new Node("a", new Node[] { new Node("a1", new Node[0]) }),
+				bNode });
+
+		shell = new Shell();
+		viewer = new ScrollingGraphicalViewer();
+		viewer.setRootEditPart(new FreeformGraphicalRootEditPart());
+		viewer.createControl(shell);
+		viewer.setContents(new NodeEditPart(diagramNode));
+		diagram = viewer.getContents();
+		a = (EditPart) diagram.getChildren().get(0);
+		a1 = (EditPart) a.getChildren().get(0);
+		b = (EditPart) diagram.getChildren().get(1);
+		b1 = (EditPart) b.getChildren().get(0);
+		refreshed.clear();
+	}
+
+	protected void tearDown() throws Exception {
+		shell.dispose();
+		super.tearDown();
+	}
+
+	public void testRefreshOutsideOfUpdate() {
+		assertFalse(viewer.isUpdating());
+		viewer.requestRefresh(a);
+		viewer.requestRefresh(a);
+		assertRefreshed(new String[] { "a", "a" });
+	}
+
+	public void testRequestsAreDeduplicated() {
+		viewer.beginUpdate();
+		viewer.requestRefresh(b);
+		viewer.requestRefresh(a);
+		viewer.requestRefresh(b);
+		viewer.requestRefresh(a);
+		assertRefreshed(new String[0]);
+		viewer.endUpdate();
+		assertRefreshed(new String[] { "a", "b" });
+	}
+
+	public void testNestedUpdatesFlushAtOutermostEnd() {
+		viewer.beginUpdate();
+		viewer.requestRefresh(a);
+		viewer.beginUpdate();
+		viewer.requestRefresh(b);
+		viewer.requestRefresh(a);
+		viewer.endUpdate();
+		assertTrue(viewer.isUpdating());
+		assertRefreshed(new String[0]);
+
+		viewer.endUpdate();
+		assertFalse(viewer.isUpdating());
+		assertRefreshed(new String[] { "a", "b" });
+	}
+
+	public void testRunBatched() {
+		viewer.runBatched(new Runnable() {
+			public void run() {
+				assertTrue(viewer.isUpdating());
+				viewer.requestRefresh(b);
+				viewer.requestRefresh(b);
+				assertRefreshed(new String[0]);
+			}
+		});
+		assertFalse(viewer.isUpdating());
+		assertRefreshed(new String[] { "b" });
+	}
+
+	public void testFlushInTreeOrder() {
+		viewer.beginUpdate();
+		viewer.requestRefresh(b1);
+		viewer.requestRefresh(a1);
+		viewer.requestRefresh(b);
+		viewer.requestRefresh(diagram);
+		viewer.requestRefresh(a);
+		viewer.endUpdate();
+		assertRefreshed(new String[] { "diagram", "a", "a1", "b", "b1" });
+	}
+
+	public void testRemovedPartsAreSkipped() {
+		viewer.beginUpdate();
+		viewer.requestRefresh(b1);
+		viewer.requestRefresh(b);
+		viewer.requestRefresh(a);
+		viewer.requestRefresh(diagram);
+		// refreshing the diagram removes b and its child
+		diagramNode.children.remove(bNode);
+		viewer.endUpdate();
+		assertRefreshed(new String[] { "diagram", "a" });
+		assertFalse(b.isActive());
+		assertFalse(b1.isActive());
+	}
+
+	public void testCommandStackUpdates() {
+		CommandStack stack = new CommandStack();
+		CommandStackUpdateBatcher batcher = new CommandStackUpdateBatcher();
+		batcher.addViewer(viewer);
+		stack.addCommandStackEventListener(batcher);
+
+		stack.execute(new RefreshCommand(new EditPart[] { b, a, b, a1 },
+				false));
+		assertFalse(viewer.isUpdating());
+		assertRefreshed(new String[] { "a", "a1", "b" });
+
+		stack.undo();
+		assertFalse(viewer.isUpdating());
+		assertRefreshed(new String[] { "a", "a1", "b" });
+
+		stack.redo();
+		assertFalse(viewer.isUpdating());
+		assertRefreshed(new String[] { "a", "a1", "b" });
+
+		// requests outside of commands are not deferred
+		viewer.requestRefresh(b);
+		assertRefreshed(new String[] { "b" });
+	}
+
+	public void testCommandStackUpdatesWithFailingCommand() {
+		CommandStack stack = new CommandStack();
+		CommandStackUpdateBatcher batcher = new CommandStackUpdateBatcher();
+		batcher.addViewer(viewer);
+		stack.addCommandStackEventListener(batcher);
+
+		try {
+			stack.execute(new RefreshCommand(new EditPart[] { b, a, b },
+					true));
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		// the update ends, and the requests made so far are flushed
+		assertFalse(viewer.isUpdating());
+		assertRefreshed(new String[] { "a", "b" });
+		assertFalse(stack.canUndo());
+
+		stack.execute(new RefreshCommand(new EditPart[] { a }, false));
+		assertRefreshed(new String[] { "a" });
+	}
+
+	private void assertRefreshed(String[] names) {
+		assertEquals(Arrays.asList(names), refreshed);
+		refreshed.clear();
+	}
+
+}
@@ -228,4 +228,80 @@ public class CommandStackTest extends TestCase {
 						& CommandStack.POST_MASK);
 
 	}
+
+	public void testMemoryLimit() {
+		CommandStack stack = new CommandStack();
+		stack.setMemoryLimit(100);
+		SizedCommand first = new SizedCommand(40);
+		SizedCommand second = new SizedCommand(40);
+		SizedCommand third = new SizedCommand(40);
+		stack.execute(first);
+		stack.execute(second);
+		Assert.assertEquals(2, stack.getCommands().length);
+
+		// the oldest command is disposed once the limit is exceeded
+		stack.execute(third);
+		Assert.assertEquals(2, stack.getCommands().length);
+		Assert.assertTrue(first.disposed);
+		Assert.assertFalse(second.disposed);
+
+		// the last command is kept, even if it exceeds the limit on its own
+		SizedCommand large = new SizedCommand(500);
+		stack.execute(large);
+		Assert.assertEquals(1, stack.getCommands().length);
+		Assert.assertEquals(large, stack.getUndoCommand());
+		Assert.assertTrue(second.disposed);
+		Assert.assertTrue(third.disposed);
+	}
+
+	public void testMergeCommands() {
+		CommandStack stack = new CommandStack();
+		MoveCommand first = new MoveCommand(1);
+		stack.execute(first);
+		stack.execute(new MoveCommand(2));
+		stack.execute(new MoveCommand(3));
+		Assert.assertEquals(1, stack.getCommands().length);
+		Assert.assertEquals(first, stack.getUndoCommand());
+		Assert.assertEquals(6, first.distance);
+
+		// commands are not merged across the save location
+		stack.markSaveLocation();
+		stack.execute(new MoveCommand(4));
+		Assert.assertEquals(2, stack.getCommands().length);
+		Assert.assertTrue(stack.isDirty());
+		stack.undo();
+		Assert.assertFalse(stack.isDirty());
+	}
+
+	private static class SizedCommand extends Command {
+		private final long size;
+		boolean disposed;
+
+		SizedCommand(long size) {
+			this.size = size;
+		}
+
+		public void dispose() {
+			disposed = true;
+		}
+
+		public long getMemoryUsage() {
+			return size;
+		}
+	}
+
+	private static class MoveCommand extends Command {
+		int distance;
+
+		MoveCommand(int distance) {
+			this.distance = distance;
+		}
+
+		public Command mergeWith(Command command) {
+			if (!(command instanceof MoveCommand))
+				return null;
+			distance += ((MoveCommand) command).distance;
+			return this;
+		}
+	}
 }
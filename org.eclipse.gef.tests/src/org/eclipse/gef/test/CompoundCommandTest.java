@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.gef.commands.Command;
+import org.eclipse.gef.commands.CompoundCommand;
+
+public class CompoundCommandTest extends TestCase {
+
+	public void testCachedChecks() {
+		CompoundCommand compound = new CompoundCommand();
+		compound.setCheckCachingEnabled(true);
+		CountingCommand child = new CountingCommand();
+		compound.add(child);
+
+		assertTrue(compound.canExecute());
+		assertTrue(compound.canExecute());
+		assertEquals(1, child.checks);
+
+		// adding a command discards the cached result
+		CountingCommand other = new CountingCommand();
+		other.executable = false;
+		compound.add(other);
+		assertFalse(compound.canExecute());
+		assertEquals(2, child.checks);
+
+		// so does changing the list directly
+		compound.getCommands().remove(other);
+		assertTrue(compound.canExecute());
+		assertEquals(3, child.checks);
+
+		compound.execute();
+		assertTrue(compound.canExecute());
+		assertEquals(4, child.checks);
+	}
+
+	public void testParallelChecks() {
+		CompoundCommand compound = new CompoundCommand();
+		compound.setParallelChecksEnabled(true);
+		CountingCommand[] children = new CountingCommand[1000];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = new CountingCommand();
+			compound.add(children[i]);
+		}
+		assertTrue(compound.canExecute());
+		for (int i = 0; i < children.length; i++)
+			assertEquals(1, children[i].checks);
+
+		children[700].executable = false;
+		assertFalse(compound.canExecute());
+	}
+
+	public void testParallelChecksRethrow() {
+		CompoundCommand compound = new CompoundCommand();
+		compound.setParallelChecksEnabled(true);
+		for (int i = 0; i < 100; i++)
+			compound.add(new CountingCommand());
+		compound.add(new Command() {
+			public boolean canExecute() {
+				throw new IllegalStateException();
+			}
+		});
+		try {
+			compound.canExecute();
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	private static class CountingCommand extends Command {
+		boolean executable = true;
+		int checks;
+
+		public boolean canExecute() {
+			synchronized (this) {
+				checks++;
+			}
+			return executable;
+		}
+	}
+
+}
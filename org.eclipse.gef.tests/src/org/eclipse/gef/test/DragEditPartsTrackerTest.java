@@ -11,19 +11,36 @@
 
 package org.eclipse.gef.test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FigureCanvas;
+import org.eclipse.draw2d.FreeformLayer;
 import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.RectangleFigure;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.gef.DefaultEditDomain;
 import org.eclipse.gef.EditPart;
+import org.eclipse.gef.Request;
+import org.eclipse.gef.RequestConstants;
+import org.eclipse.gef.commands.Command;
 import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.FreeformGraphicalRootEditPart;
+import org.eclipse.gef.requests.ChangeBoundsRequest;
 import org.eclipse.gef.tools.DragEditPartsTracker;
+import org.eclipse.gef.ui.parts.ScrollingGraphicalViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Shell;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorSite;
 import org.eclipse.ui.IPropertyListener;
@@ -42,9 +59,16 @@ public class DragEditPartsTrackerTest extends TestCase {
 	 * @see TestCase#tearDown()
 	 */
 	protected void tearDown() throws Exception {
+		if (shell != null)
+			shell.dispose();
 		super.tearDown();
 	}
 
+	private Shell shell;
+	private ScrollingGraphicalViewer viewer;
+	private List executed = new ArrayList();
+	private int commandRequests;
+
 	private static class TestGraphicalEditPart extends
 			AbstractGraphicalEditPart {
 
@@ -77,6 +101,94 @@ public class DragEditPartsTrackerTest extends TestCase {
 		}
 	}
 
+	/**
+	 * Remembers the request it was created for and records its execution.
+	 */
+	private class RecordingCommand extends Command {
+		final EditPart host;
+		final String type;
+		final Point moveDelta;
+
+		RecordingCommand(EditPart host, ChangeBoundsRequest request) {
+			this.host = host;
+			type = (String) request.getType();
+			moveDelta = request.getMoveDelta().getCopy();
+		}
+
+		public void execute() {
+			executed.add(this);
+		}
+	}
+
+	/**
+	 * A part of a diagram. The diagram holds containers, which accept moved
+	 * and added nodes, and the nodes can be dragged. The model of each part is
+	 * its name.
+	 */
+	private class DiagramEditPart extends AbstractGraphicalEditPart {
+		final Rectangle bounds;
+		final boolean container;
+		final List children;
+
+		DiagramEditPart(String name, Rectangle bounds, boolean container,
+				DiagramEditPart[] children) {
+			setModel(name);
+			this.bounds = bounds;
+			this.container = container;
+			this.children = Arrays.asList(children);
+		}
+
+		protected EditPart createChild(Object model) {
+			for (int i = 0; i < children.size(); i++) {
+				EditPart child = (EditPart) children.get(i);
+				if (child.getModel() == model)
+					return child;
+			}
+			return null;
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected IFigure createFigure() {
+			if (bounds == null)
+				return new FreeformLayer();
+			IFigure figure = new RectangleFigure();
+			figure.setBounds(bounds);
+			return figure;
+		}
+
+		public Command getCommand(Request request) {
+			Object type = request.getType();
+			if (container ? REQ_ADD.equals(type) : bounds != null
+					&& (REQ_MOVE.equals(type) || REQ_ORPHAN.equals(type))) {
+				commandRequests++;
+				return new RecordingCommand(this, (ChangeBoundsRequest) request);
+			}
+			return null;
+		}
+
+		protected List getModelChildren() {
+			List models = new ArrayList();
+			for (int i = 0; i < children.size(); i++)
+				models.add(((EditPart) children.get(i)).getModel());
+			return models;
+		}
+
+		public EditPart getTargetEditPart(Request request) {
+			if (container
+					&& (REQ_MOVE.equals(request.getType()) || REQ_ADD
+							.equals(request.getType())))
+				return this;
+			return null;
+		}
+
+		public boolean understandsRequest(Request request) {
+			return !container && REQ_MOVE.equals(request.getType());
+		}
+	}
+
 	private class DummyEditorPart implements org.eclipse.ui.IEditorPart {
 
 		public void addPropertyListener(IPropertyListener listener) {
@@ -176,4 +288,109 @@ public class DragEditPartsTrackerTest extends TestCase {
 		dept.deactivate();
 	}
 
+	public void testCommandOnDropWithinContainer() {
+		DiagramEditPart node = createDiagram();
+		DragEditPartsTracker tracker = startDrag(node, 30, 30);
+		drag(tracker, 40, 30);
+		int requests = commandRequests;
+		drag(tracker, 50, 35);
+		drag(tracker, 60, 40);
+		// the target did not change, so the command was not computed again
+		assertEquals(requests, commandRequests);
+		tracker.mouseUp(createMouseEvent(60, 40, 1, SWT.BUTTON1), viewer);
+
+		assertEquals(1, executed.size());
+		RecordingCommand command = (RecordingCommand) executed.get(0);
+		assertSame(node, command.host);
+		assertEquals(RequestConstants.REQ_MOVE, command.type);
+		assertEquals(new Point(30, 10), command.moveDelta);
+	}
+
+	public void testCommandOnDropIntoOtherContainer() {
+		DiagramEditPart node = createDiagram();
+		EditPart other = (EditPart) node.getParent().getParent().getChildren()
+				.get(1);
+		DragEditPartsTracker tracker = startDrag(node, 30, 30);
+		drag(tracker, 40, 30);
+		drag(tracker, 230, 30);
+		int requests = commandRequests;
+		drag(tracker, 240, 35);
+		drag(tracker, 250, 50);
+		assertEquals(requests, commandRequests);
+		tracker.mouseUp(createMouseEvent(250, 50, 1, SWT.BUTTON1), viewer);
+
+		assertEquals(2, executed.size());
+		RecordingCommand orphan = (RecordingCommand) executed.get(0);
+		assertSame(node, orphan.host);
+		assertEquals(RequestConstants.REQ_ORPHAN, orphan.type);
+		assertEquals(new Point(220, 20), orphan.moveDelta);
+		RecordingCommand add = (RecordingCommand) executed.get(1);
+		assertSame(other, add.host);
+		assertEquals(RequestConstants.REQ_ADD, add.type);
+		assertEquals(new Point(220, 20), add.moveDelta);
+	}
+
+	public void testCommandOnDropWithoutDragInProgress() {
+		DiagramEditPart node = createDiagram();
+		DragEditPartsTracker tracker = startDrag(node, 30, 30);
+		// released before the drag threshold is reached
+		drag(tracker, 32, 31);
+		tracker.mouseUp(createMouseEvent(32, 31, 1, SWT.BUTTON1), viewer);
+		assertEquals(0, commandRequests);
+		assertTrue(executed.isEmpty());
+	}
+
+	/**
+	 * Creates a diagram with two containers, side by side, the first of which
+	 * contains a node at (20, 20). The node is returned.
+	 */
+	private DiagramEditPart createDiagram() {
+		DiagramEditPart node = new DiagramEditPart("node", new Rectangle(20,
+				20, 20, 20), false, new DiagramEditPart[0]);
+		DiagramEditPart first = new DiagramEditPart("container 1",
+				new Rectangle(10, 10, 100, 100), true,
+				new DiagramEditPart[] { node });
+		DiagramEditPart second = new DiagramEditPart("container 2",
+				new Rectangle(200, 10, 100, 100), true, new DiagramEditPart[0]);
+		DiagramEditPart diagram = new DiagramEditPart("diagram", null, false,
+				new DiagramEditPart[] { first, second });
+
+		shell = new Shell();
+		viewer = new ScrollingGraphicalViewer();
+		viewer.setRootEditPart(new FreeformGraphicalRootEditPart());
+		viewer.createControl(shell);
+		viewer.getControl().setBounds(0, 0, 400, 300);
+		viewer.setEditDomain(new DefaultEditDomain(new DummyEditorPart()));
+		viewer.setContents(diagram);
+		((FigureCanvas) viewer.getControl()).getLightweightSystem()
+				.getUpdateManager().performValidation();
+		return node;
+	}
+
+	private MouseEvent createMouseEvent(int x, int y, int button,
+			int stateMask) {
+		Event event = new Event();
+		event.widget = viewer.getControl();
+		event.display = viewer.getControl().getDisplay();
+		event.x = x;
+		event.y = y;
+		event.button = button;
+		event.stateMask = stateMask;
+		return new MouseEvent(event);
+	}
+
+	private void drag(DragEditPartsTracker tracker, int x, int y) {
+		tracker.mouseDrag(createMouseEvent(x, y, 0, SWT.BUTTON1), viewer);
+	}
+
+	private DragEditPartsTracker startDrag(EditPart source, int x, int y) {
+		DragEditPartsTracker tracker = new DragEditPartsTracker(source);
+		tracker.setLazyCommandEnabled(true);
+		tracker.setEditDomain(viewer.getEditDomain());
+		tracker.setViewer(viewer);
+		tracker.activate();
+		tracker.mouseDown(createMouseEvent(x, y, 1, 0), viewer);
+		return tracker;
+	}
+
 }
@@ -32,6 +32,14 @@ public class GEFTestSuite extends TestSuite {
 		addTest(new TestSuite(ToolUtilitiesTest.class));
 		addTest(new TestSuite(DragEditPartsTrackerTest.class));
 		addTest(new TestSuite(CommandStackTest.class));
+		addTest(new TestSuite(CompoundCommandTest.class));
+		addTest(new TestSuite(RefreshChildrenTest.class));
+		addTest(new TestSuite(SnapIndexTest.class));
+		addTest(new TestSuite(MarqueeSelectionToolTest.class));
+		addTest(new TestSuite(SelectionListTest.class));
+		addTest(new TestSuite(SelectionManagerTest.class));
+		addTest(new TestSuite(NonResizableEditPolicyTest.class));
+		addTest(new TestSuite(BatchedUpdateTest.class));
 	}
 
 }
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.FigureCanvas;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.RectangleFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.GraphicalEditPart;
+import org.eclipse.gef.Request;
+import org.eclipse.gef.RequestConstants;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.FreeformGraphicalRootEditPart;
+import org.eclipse.gef.tools.MarqueeSelectionTool;
+import org.eclipse.gef.ui.parts.ScrollingGraphicalViewer;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Tests that the marquee selection, which only tests the edit parts in the
+ * area by which the marquee changed, selects the same edit parts as testing
+ * all of them.
+ */
+public class MarqueeSelectionToolTest extends TestCase {
+
+	private static class NodeEditPart extends AbstractGraphicalEditPart {
+		final Rectangle bounds;
+
+		NodeEditPart(Rectangle bounds) {
+			setModel(bounds);
+			this.bounds = bounds;
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected IFigure createFigure() {
+			IFigure figure = new RectangleFigure();
+			figure.setBounds(bounds);
+			return figure;
+		}
+
+		public EditPart getTargetEditPart(Request request) {
+			if (RequestConstants.REQ_SELECTION.equals(request.getType()))
+				return this;
+			return null;
+		}
+	}
+
+	private static class DiagramEditPart extends AbstractGraphicalEditPart {
+		final List nodes;
+
+		DiagramEditPart(List nodes) {
+			setModel(nodes);
+			this.nodes = nodes;
+		}
+
+		protected EditPart createChild(Object model) {
+			return new NodeEditPart((Rectangle) model);
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected IFigure createFigure() {
+			return new FreeformLayer();
+		}
+
+		protected List getModelChildren() {
+			return nodes;
+		}
+	}
+
+	/**
+	 * Uses the marquee set by the test instead of the mouse locations.
+	 */
+	private static class TestMarqueeSelectionTool extends MarqueeSelectionTool {
+		Rectangle marquee;
+		int behavior;
+
+		public Collection calculateMarqueeSelectedEditParts() {
+			return super.calculateMarqueeSelectedEditParts();
+		}
+
+		public void invalidateMarqueeSelection() {
+			super.invalidateMarqueeSelection();
+		}
+
+		protected Rectangle getCurrentMarqueeSelectionRectangle() {
+			return marquee.getCopy();
+		}
+
+		public void setMarqueeBehavior(int type) {
+			super.setMarqueeBehavior(type);
+			behavior = type;
+		}
+	}
+
+	private Shell shell;
+	private ScrollingGraphicalViewer viewer;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		// nodes on a grid of 10 pixels, so the marquee often touches them
+		Random random = new Random(5);
+		List nodes = new ArrayList();
+		for (int i = 0; i < 200; i++)
+			nodes.add(new Rectangle(10 * random.nextInt(40),
+					10 * random.nextInt(30), 10 + 10 * random.nextInt(4),
+					10 + 10 * random.nextInt(4)));
+
+		shell = new Shell();
+		viewer = new ScrollingGraphicalViewer();
+		viewer.setRootEditPart(new FreeformGraphicalRootEditPart());
+		viewer.createControl(shell);
+		viewer.getControl().setBounds(0, 0, 500, 400);
+		viewer.setContents(new DiagramEditPart(nodes));
+		((FigureCanvas) viewer.getControl()).getLightweightSystem()
+				.getUpdateManager().performValidation();
+	}
+
+	protected void tearDown() throws Exception {
+		shell.dispose();
+		super.tearDown();
+	}
+
+	public void testGrowAndShrinkNodesContained() {
+		checkMarquees(MarqueeSelectionTool.BEHAVIOR_NODES_CONTAINED);
+	}
+
+	public void testGrowAndShrinkNodesTouched() {
+		checkMarquees(MarqueeSelectionTool.BEHAVIOR_NODES_TOUCHED);
+	}
+
+	public void testMarqueeTouchingNodeEdges() {
+		TestMarqueeSelectionTool tool = createTool(MarqueeSelectionTool.BEHAVIOR_NODES_CONTAINED);
+		Rectangle[] marquees = new Rectangle[] {
+				new Rectangle(100, 100, 100, 100),
+				new Rectangle(100, 100, 99, 100),
+				new Rectangle(100, 100, 100, 100),
+				new Rectangle(101, 100, 99, 100),
+				new Rectangle(100, 99, 100, 101),
+				new Rectangle(100, 100, 100, 100) };
+		for (int i = 0; i < marquees.length; i++) {
+			tool.marquee = marquees[i];
+			assertEquals(recompute(tool), new HashSet(tool
+					.calculateMarqueeSelectedEditParts()));
+		}
+	}
+
+	public void testInvalidateAfterFiguresMoved() {
+		TestMarqueeSelectionTool tool = createTool(MarqueeSelectionTool.BEHAVIOR_NODES_CONTAINED);
+		tool.marquee = new Rectangle(0, 0, 200, 200);
+		tool.calculateMarqueeSelectedEditParts();
+
+		// move a node into the marquee, outside of the area it changes by
+		GraphicalEditPart node = (GraphicalEditPart) viewer.getContents()
+				.getChildren().get(0);
+		node.getFigure().setBounds(new Rectangle(50, 50, 10, 10));
+		tool.marquee = new Rectangle(0, 0, 210, 210);
+		tool.invalidateMarqueeSelection();
+
+		Collection selected = new HashSet(tool
+				.calculateMarqueeSelectedEditParts());
+		assertTrue(selected.contains(node));
+		assertEquals(recompute(tool), selected);
+	}
+
+	/**
+	 * Grows, shrinks and flips a marquee which starts at a fixed location, as
+	 * during a drag, and compares the selection with that of a new tool.
+	 */
+	private void checkMarquees(int behavior) {
+		Random random = new Random(behavior);
+		TestMarqueeSelectionTool tool = createTool(behavior);
+		int x = 200, y = 150;
+		int width = 0, height = 0;
+		for (int i = 0; i < 300; i++) {
+			// small steps grow or shrink the marquee, larger ones flip it
+			int step = i % 10 == 0 ? 150 : 20;
+			width += random.nextInt(2 * step + 1) - step;
+			height += random.nextInt(2 * step + 1) - step;
+			tool.marquee = new Rectangle(x, y, 0, 0).union(x + width, y
+					+ height);
+			Collection selected = new HashSet(tool
+					.calculateMarqueeSelectedEditParts());
+			assertEquals(recompute(tool), selected);
+		}
+	}
+
+	private TestMarqueeSelectionTool createTool(int behavior) {
+		TestMarqueeSelectionTool tool = new TestMarqueeSelectionTool();
+		tool.setMarqueeBehavior(behavior);
+		tool.setViewer(viewer);
+		return tool;
+	}
+
+	/**
+	 * Computes the selection for the marquee of the given tool from scratch.
+	 */
+	private Collection recompute(TestMarqueeSelectionTool tool) {
+		TestMarqueeSelectionTool fresh = new TestMarqueeSelectionTool();
+		fresh.marquee = tool.marquee;
+		fresh.setMarqueeBehavior(tool.behavior);
+		fresh.setViewer(viewer);
+		return new HashSet(fresh.calculateMarqueeSelectedEditParts());
+	}
+
+}
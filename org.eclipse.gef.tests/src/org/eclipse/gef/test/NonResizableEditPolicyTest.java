@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.RectangleFigure;
+import org.eclipse.draw2d.geometry.Point;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.EditPolicy;
+import org.eclipse.gef.LayerConstants;
+import org.eclipse.gef.RequestConstants;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.FreeformGraphicalRootEditPart;
+import org.eclipse.gef.editparts.LayerManager;
+import org.eclipse.gef.editpolicies.NonResizableEditPolicy;
+import org.eclipse.gef.requests.ChangeBoundsRequest;
+import org.eclipse.gef.ui.parts.ScrollingGraphicalViewer;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Tests the drag feedback of the {@link NonResizableEditPolicy}, in particular
+ * the aggregate feedback shared by the edit parts being dragged.
+ */
+public class NonResizableEditPolicyTest extends TestCase {
+
+	private static class NodeEditPart extends AbstractGraphicalEditPart {
+		NodeEditPart(Rectangle bounds) {
+			setModel(bounds);
+		}
+
+		protected void createEditPolicies() {
+			installEditPolicy(EditPolicy.PRIMARY_DRAG_ROLE,
+					new NonResizableEditPolicy());
+		}
+
+		protected IFigure createFigure() {
+			IFigure figure = new RectangleFigure();
+			figure.setBounds((Rectangle) getModel());
+			return figure;
+		}
+	}
+
+	private static class DiagramEditPart extends AbstractGraphicalEditPart {
+		DiagramEditPart(List nodes) {
+			setModel(nodes);
+		}
+
+		protected EditPart createChild(Object model) {
+			return new NodeEditPart((Rectangle) model);
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected IFigure createFigure() {
+			return new FreeformLayer();
+		}
+
+		protected List getModelChildren() {
+			return (List) getModel();
+		}
+	}
+
+	private Shell shell;
+	private List parts;
+	private IFigure feedbackLayer;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		shell = new Shell();
+		ScrollingGraphicalViewer viewer = new ScrollingGraphicalViewer();
+		viewer.setRootEditPart(new FreeformGraphicalRootEditPart());
+		viewer.createControl(shell);
+		viewer.setContents(new DiagramEditPart(Arrays.asList(new Object[] {
+				new Rectangle(10, 10, 20, 20), new Rectangle(100, 40, 30, 10),
+				new Rectangle(50, 200, 10, 10) })));
+		parts = viewer.getContents().getChildren();
+		feedbackLayer = LayerManager.Helper.find(viewer.getContents())
+				.getLayer(LayerConstants.FEEDBACK_LAYER);
+	}
+
+	protected void tearDown() throws Exception {
+		shell.dispose();
+		super.tearDown();
+	}
+
+	public void testOneFigurePerPart() {
+		ChangeBoundsRequest request = createRequest(parts);
+		showFeedback(request, 5, 5);
+		assertEquals(parts.size(), feedbackLayer.getChildren().size());
+		eraseFeedback(request);
+		assertTrue(feedbackLayer.getChildren().isEmpty());
+	}
+
+	public void testAggregateFeedbackIsShared() {
+		for (int i = 0; i < parts.size(); i++)
+			getPolicy(i).setAggregateFeedbackEnabled(true);
+		ChangeBoundsRequest request = createRequest(parts);
+
+		showFeedback(request, 5, 7);
+		assertEquals(1, feedbackLayer.getChildren().size());
+		IFigure figure = (IFigure) feedbackLayer.getChildren().get(0);
+		// the union of the bounds of the parts, moved by the delta
+		assertEquals(new Rectangle(15, 17, 120, 200), figure.getBounds());
+
+		// the same figure is moved on the next drag event
+		showFeedback(request, -3, 2);
+		assertEquals(1, feedbackLayer.getChildren().size());
+		assertSame(figure, feedbackLayer.getChildren().get(0));
+		assertEquals(new Rectangle(7, 12, 120, 200), figure.getBounds());
+
+		eraseFeedback(request);
+		assertTrue(feedbackLayer.getChildren().isEmpty());
+
+		// the next drag creates a new figure
+		showFeedback(request, 1, 1);
+		assertEquals(1, feedbackLayer.getChildren().size());
+		assertNotSame(figure, feedbackLayer.getChildren().get(0));
+		eraseFeedback(request);
+		assertTrue(feedbackLayer.getChildren().isEmpty());
+	}
+
+	public void testAggregateFeedbackOfSomeParts() {
+		getPolicy(1).setAggregateFeedbackEnabled(true);
+		getPolicy(2).setAggregateFeedbackEnabled(true);
+		ChangeBoundsRequest request = createRequest(parts);
+
+		// the first part shows its own figure, the others share one
+		showFeedback(request, 0, 10);
+		assertEquals(2, feedbackLayer.getChildren().size());
+		List bounds = new ArrayList();
+		for (int i = 0; i < 2; i++)
+			bounds.add(((IFigure) feedbackLayer.getChildren().get(i))
+					.getBounds());
+		assertTrue(bounds.contains(new Rectangle(10, 20, 20, 20)));
+		assertTrue(bounds.contains(new Rectangle(50, 50, 80, 170)));
+
+		eraseFeedback(request);
+		assertTrue(feedbackLayer.getChildren().isEmpty());
+	}
+
+	public void testAggregateFeedbackOfOnePart() {
+		getPolicy(0).setAggregateFeedbackEnabled(true);
+		getPolicy(1).setAggregateFeedbackEnabled(true);
+		// only the second part is dragged
+		ChangeBoundsRequest request = createRequest(parts.subList(1, 2));
+		request.setMoveDelta(new Point(2, 3));
+		getPolicy(1).showSourceFeedback(request);
+		assertEquals(1, feedbackLayer.getChildren().size());
+		assertEquals(new Rectangle(102, 43, 30, 10),
+				((IFigure) feedbackLayer.getChildren().get(0)).getBounds());
+		getPolicy(1).eraseSourceFeedback(request);
+		assertTrue(feedbackLayer.getChildren().isEmpty());
+	}
+
+	private ChangeBoundsRequest createRequest(List dragged) {
+		ChangeBoundsRequest request = new ChangeBoundsRequest(
+				RequestConstants.REQ_MOVE);
+		request.setEditParts(dragged);
+		return request;
+	}
+
+	private void eraseFeedback(ChangeBoundsRequest request) {
+		for (int i = 0; i < parts.size(); i++)
+			getPolicy(i).eraseSourceFeedback(request);
+	}
+
+	private NonResizableEditPolicy getPolicy(int index) {
+		return (NonResizableEditPolicy) ((EditPart) parts.get(index))
+				.getEditPolicy(EditPolicy.PRIMARY_DRAG_ROLE);
+	}
+
+	/**
+	 * Shows the feedback of all parts for the given move delta, as the drag
+	 * tracker does.
+	 */
+	private void showFeedback(ChangeBoundsRequest request, int dx, int dy) {
+		request.setMoveDelta(new Point(dx, dy));
+		for (int i = 0; i < parts.size(); i++)
+			getPolicy(i).showSourceFeedback(request);
+	}
+
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.GraphicalEditPart;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+
+/**
+ * Tests how {@link AbstractGraphicalEditPart#refresh()} brings the children
+ * in sync with the model children.
+ */
+public class RefreshChildrenTest extends TestCase {
+
+	private static class TestEditPart extends AbstractGraphicalEditPart {
+
+		List modelChildren = new ArrayList();
+		int created;
+		int reordered;
+
+		TestEditPart(Object model) {
+			setModel(model);
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected EditPart createChild(Object model) {
+			created++;
+			return new TestEditPart(model);
+		}
+
+		protected IFigure createFigure() {
+			return new Figure();
+		}
+
+		protected List getModelChildren() {
+			return modelChildren;
+		}
+
+		protected void register() {
+			// do nothing
+		}
+
+		protected void reorderChild(EditPart editpart, int index) {
+			reordered++;
+			super.reorderChild(editpart, index);
+		}
+
+		protected void unregister() {
+			// do nothing
+		}
+	}
+
+	private TestEditPart parent;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		parent = new TestEditPart("parent");
+	}
+
+	public void testInsertion() {
+		List parts = refresh(new Object[] { "a", "b", "c" });
+		List updated = refresh(new Object[] { "x", "a", "b", "y", "c", "z" });
+		assertReused(parts, updated);
+		assertEquals(3, parent.created);
+		assertEquals(0, parent.reordered);
+	}
+
+	public void testRemoval() {
+		List parts = refresh(new Object[] { "a", "b", "c", "d", "e" });
+		List updated = refresh(new Object[] { "b", "d" });
+		assertReused(parts, updated);
+		assertEquals(0, parent.created);
+		assertEquals(0, parent.reordered);
+	}
+
+	public void testReversal() {
+		List parts = refresh(new Object[] { "a", "b", "c", "d", "e" });
+		List updated = refresh(new Object[] { "e", "d", "c", "b", "a" });
+		assertReused(parts, updated);
+		assertEquals(0, parent.created);
+		assertEquals(4, parent.reordered);
+	}
+
+	public void testRotation() {
+		List parts = refresh(new Object[] { "a", "b", "c", "d", "e" });
+		List updated = refresh(new Object[] { "b", "c", "d", "e", "a" });
+		assertReused(parts, updated);
+		assertEquals(0, parent.created);
+		assertEquals(1, parent.reordered);
+
+		updated = refresh(new Object[] { "a", "b", "c", "d", "e" });
+		assertEquals(parts, updated);
+		assertEquals(1, parent.reordered);
+	}
+
+	public void testMixedChanges() {
+		List parts = refresh(new Object[] { "a", "b", "c", "d", "e", "f" });
+		List updated = refresh(new Object[] { "f", "x", "b", "a", "d", "y" });
+		assertReused(parts, updated);
+		assertEquals(2, parent.created);
+	}
+
+	public void testDuplicates() {
+		List parts = refresh(new Object[] { "a", "b", "a", "c", "a" });
+		assertEquals(5, parts.size());
+		assertEquals(3, countDistinct(parts, "a"));
+
+		// refreshing the same models keeps all EditParts
+		List updated = refresh(new Object[] { "a", "b", "a", "c", "a" });
+		assertEquals(parts, updated);
+		assertEquals(0, parent.created);
+
+		// the EditParts of a duplicate are reused in their order
+		updated = refresh(new Object[] { "b", "a", "c", "a" });
+		assertEquals(0, parent.created);
+		assertSame(parts.get(1), updated.get(0));
+		assertSame(parts.get(0), updated.get(1));
+		assertSame(parts.get(3), updated.get(2));
+		assertSame(parts.get(2), updated.get(3));
+
+		updated = refresh(new Object[] { "a", "a", "a", "b", "a" });
+		assertEquals(2, parent.created);
+		assertEquals(4, countDistinct(updated, "a"));
+	}
+
+	private void assertReused(List oldParts, List newParts) {
+		for (int i = 0; i < newParts.size(); i++) {
+			EditPart part = (EditPart) newParts.get(i);
+			for (int j = 0; j < oldParts.size(); j++) {
+				EditPart old = (EditPart) oldParts.get(j);
+				if (old.getModel().equals(part.getModel()))
+					assertSame(old, part);
+			}
+		}
+	}
+
+	private int countDistinct(List parts, Object model) {
+		List found = new ArrayList();
+		for (int i = 0; i < parts.size(); i++) {
+			EditPart part = (EditPart) parts.get(i);
+			if (part.getModel().equals(model) && !found.contains(part))
+				found.add(part);
+		}
+		return found.size();
+	}
+
+	/**
+	 * Refreshes the parent for the given models, checks that its children and
+	 * their figures are in the order of the models, and returns the children.
+	 * The counts of the parent are reset before the refresh.
+	 */
+	private List refresh(Object[] models) {
+		parent.modelChildren = Arrays.asList(models);
+		parent.created = 0;
+		parent.reordered = 0;
+		parent.refresh();
+
+		List children = parent.getChildren();
+		List figures = parent.getFigure().getChildren();
+		assertEquals(models.length, children.size());
+		assertEquals(models.length, figures.size());
+		for (int i = 0; i < models.length; i++) {
+			GraphicalEditPart child = (GraphicalEditPart) children.get(i);
+			assertEquals(models[i], child.getModel());
+			assertSame(child.getFigure(), figures.get(i));
+		}
+		return new ArrayList(children);
+	}
+
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.gef.internal.SelectionList;
+
+/**
+ * Tests the {@link SelectionList}, which keeps the selection of a viewer,
+ * against an ArrayList to which an element is only added after removing it.
+ */
+public class SelectionListTest extends TestCase {
+
+	private SelectionList list;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		list = new SelectionList();
+	}
+
+	public void testAddMovesToEnd() {
+		list.add("a");
+		list.add("b");
+		list.add("c");
+		list.add("a");
+		assertEquals(Arrays.asList(new Object[] { "b", "c", "a" }), list);
+		assertEquals("a", list.get(2));
+		assertEquals(2, list.indexOf("a"));
+		assertTrue(list.contains("b"));
+		assertFalse(list.contains("d"));
+	}
+
+	public void testModificationCount() {
+		int count = list.getModificationCount();
+		list.add("a");
+		assertTrue(count != (count = list.getModificationCount()));
+		list.add("b");
+		assertTrue(count != (count = list.getModificationCount()));
+
+		// appending the last element again does not change the list
+		list.add("b");
+		assertEquals(count, list.getModificationCount());
+
+		// making another element the last one does
+		list.add("a");
+		assertTrue(count != (count = list.getModificationCount()));
+		list.remove("a");
+		assertTrue(count != (count = list.getModificationCount()));
+		list.remove("x");
+		assertEquals(count, list.getModificationCount());
+		list.clear();
+		assertTrue(count != (count = list.getModificationCount()));
+		list.clear();
+		assertEquals(count, list.getModificationCount());
+	}
+
+	public void testIterator() {
+		list.addAll(Arrays.asList(new Object[] { "a", "b", "c", "d" }));
+		for (Iterator iterator = list.iterator(); iterator.hasNext();) {
+			Object element = iterator.next();
+			if ("b".equals(element) || "d".equals(element))
+				iterator.remove();
+		}
+		assertEquals(Arrays.asList(new Object[] { "a", "c" }), list);
+
+		Iterator iterator = list.iterator();
+		iterator.next();
+		list.add("e");
+		try {
+			iterator.next();
+			fail();
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	public void testSameAsArrayList() {
+		Random random = new Random(3);
+		List expected = new ArrayList();
+		for (int i = 0; i < 20000; i++) {
+			Integer element = new Integer(random.nextInt(20));
+			int count = list.getModificationCount();
+			List before = new ArrayList(expected);
+			switch (random.nextInt(8)) {
+			case 0:
+			case 1:
+			case 2:
+				expected.remove(element);
+				expected.add(element);
+				list.add(element);
+				break;
+			case 3:
+				// the element is moved before the one at the index
+				int index = random.nextInt(expected.size() + 1);
+				if (index == expected.size()) {
+					expected.remove(element);
+					expected.add(element);
+				} else if (!element.equals(expected.get(index))) {
+					Object next = expected.get(index);
+					expected.remove(element);
+					expected.add(expected.indexOf(next), element);
+				}
+				list.add(index, element);
+				break;
+			case 4:
+			case 5:
+				assertEquals(expected.remove(element), list.remove(element));
+				break;
+			case 6:
+				if (expected.isEmpty())
+					break;
+				index = random.nextInt(expected.size());
+				int other = expected.indexOf(element);
+				expected.set(index, element);
+				if (other != -1 && other != index)
+					expected.remove(other);
+				list.set(index, element);
+				break;
+			default:
+				if (random.nextInt(20) == 0) {
+					expected.clear();
+					list.clear();
+				}
+			}
+			assertEquals(expected, list);
+			assertEquals(expected, new ArrayList(list));
+			assertEquals(expected, Arrays.asList(list.toArray()));
+			for (int j = 0; j < 20; j++) {
+				Integer e = new Integer(j);
+				assertEquals(expected.contains(e), list.contains(e));
+				assertEquals(expected.indexOf(e), list.indexOf(e));
+			}
+			// a cached copy must never be taken for the current list
+			if (!before.equals(expected))
+				assertTrue(count != list.getModificationCount());
+		}
+	}
+
+}
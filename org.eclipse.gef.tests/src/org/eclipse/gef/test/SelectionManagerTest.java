@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.FreeformLayer;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.EditPartListener;
+import org.eclipse.gef.editparts.AbstractGraphicalEditPart;
+import org.eclipse.gef.editparts.FreeformGraphicalRootEditPart;
+import org.eclipse.gef.ui.parts.ScrollingGraphicalViewer;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.ISelectionChangedListener;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.SelectionChangedEvent;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Tests the selection of a viewer as managed by its
+ * {@link org.eclipse.gef.SelectionManager}: the selection events, the
+ * selected state of the edit parts, and the selection returned by the
+ * viewer, which is only copied again after a change.
+ */
+public class SelectionManagerTest extends TestCase {
+
+	private static class NodeEditPart extends AbstractGraphicalEditPart {
+		NodeEditPart(String name) {
+			setModel(name);
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected IFigure createFigure() {
+			IFigure figure = new Figure();
+			figure.setBounds(new Rectangle(0, 0, 10, 10));
+			return figure;
+		}
+	}
+
+	private static class DiagramEditPart extends AbstractGraphicalEditPart {
+		final List children;
+
+		DiagramEditPart(List children) {
+			setModel("diagram");
+			this.children = children;
+		}
+
+		protected EditPart createChild(Object model) {
+			return new NodeEditPart((String) model);
+		}
+
+		protected void createEditPolicies() {
+			// do nothing
+		}
+
+		protected IFigure createFigure() {
+			return new FreeformLayer();
+		}
+
+		protected List getModelChildren() {
+			return children;
+		}
+	}
+
+	private Shell shell;
+	private ScrollingGraphicalViewer viewer;
+	private EditPart a, b, c, d;
+
+	// the selections of the events, and the changes of the selected states
+	private List events = new ArrayList();
+	private List stateChanges = new ArrayList();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		shell = new Shell();
+		viewer = new ScrollingGraphicalViewer();
+		viewer.setRootEditPart(new FreeformGraphicalRootEditPart());
+		viewer.createControl(shell);
+		viewer.setContents(new DiagramEditPart(Arrays.asList(new Object[] {
+				"a", "b", "c", "d" })));
+		List children = viewer.getContents().getChildren();
+		a = (EditPart) children.get(0);
+		b = (EditPart) children.get(1);
+		c = (EditPart) children.get(2);
+		d = (EditPart) children.get(3);
+
+		viewer.addSelectionChangedListener(new ISelectionChangedListener() {
+			public void selectionChanged(SelectionChangedEvent event) {
+				events.add(((IStructuredSelection) event.getSelection())
+						.toList());
+			}
+		});
+		EditPartListener listener = new EditPartListener.Stub() {
+			public void selectedStateChanged(EditPart part) {
+				stateChanges.add(part.getModel() + "=" + part.getSelected());
+			}
+		};
+		for (int i = 0; i < children.size(); i++)
+			((EditPart) children.get(i)).addEditPartListener(listener);
+	}
+
+	protected void tearDown() throws Exception {
+		shell.dispose();
+		super.tearDown();
+	}
+
+	public void testAppendAndDeselect() {
+		viewer.select(a);
+		assertEvent(new EditPart[] { a });
+		assertStateChanges(new String[] { "a=2" });
+
+		viewer.appendSelection(b);
+		viewer.appendSelection(c);
+		assertEquals(2, events.size());
+		assertEvent(new EditPart[] { a, b, c });
+		assertStateChanges(new String[] { "a=1", "b=2", "b=1", "c=2" });
+
+		// appending a selected part makes it the primary selection
+		viewer.appendSelection(a);
+		assertEvent(new EditPart[] { b, c, a });
+		assertStateChanges(new String[] { "c=1", "a=2" });
+		assertSelectedStates(new int[] { EditPart.SELECTED_PRIMARY,
+				EditPart.SELECTED, EditPart.SELECTED, EditPart.SELECTED_NONE });
+
+		// deselecting the primary selection makes the last one primary
+		viewer.deselect(a);
+		assertEvent(new EditPart[] { b, c });
+		assertStateChanges(new String[] { "a=0", "c=2" });
+
+		viewer.deselect(b);
+		assertEvent(new EditPart[] { c });
+		assertStateChanges(new String[] { "b=0" });
+
+		viewer.deselectAll();
+		assertEvent(new EditPart[0]);
+		assertStateChanges(new String[] { "c=0" });
+		assertEquals(new StructuredSelection(viewer.getContents()), viewer
+				.getSelection());
+	}
+
+	public void testSetSelection() {
+		viewer.setSelection(new StructuredSelection(new Object[] { a, b, c }));
+		assertEvent(new EditPart[] { a, b, c });
+		assertStateChanges(new String[] { "a=1", "b=1", "c=2" });
+
+		// only the parts whose state changes are notified
+		viewer.setSelection(new StructuredSelection(new Object[] { c, b, d }));
+		assertEvent(new EditPart[] { c, b, d });
+		assertStateChanges(new String[] { "a=0", "c=1", "d=2" });
+		assertSelectedStates(new int[] { EditPart.SELECTED_NONE,
+				EditPart.SELECTED, EditPart.SELECTED, EditPart.SELECTED_PRIMARY });
+
+		// the same selection still fires an event
+		viewer.setSelection(new StructuredSelection(new Object[] { c, b, d }));
+		assertEvent(new EditPart[] { c, b, d });
+		assertStateChanges(new String[0]);
+
+		viewer.setSelection(StructuredSelection.EMPTY);
+		assertEvent(new EditPart[0]);
+		assertStateChanges(new String[] { "c=0", "b=0", "d=0" });
+	}
+
+	public void testSelectionIsCopiedOnlyAfterChange() {
+		viewer.select(a);
+		ISelection selection = viewer.getSelection();
+		assertSame(selection, viewer.getSelection());
+		assertEquals(Arrays.asList(new Object[] { a }),
+				((IStructuredSelection) selection).toList());
+
+		viewer.appendSelection(b);
+		selection = assertChanged(selection, new EditPart[] { a, b });
+		assertSame(selection, viewer.getSelection());
+
+		// the primary selection changes the order
+		viewer.appendSelection(a);
+		selection = assertChanged(selection, new EditPart[] { b, a });
+
+		viewer.deselect(b);
+		selection = assertChanged(selection, new EditPart[] { a });
+
+		viewer.setSelection(new StructuredSelection(new Object[] { c, d }));
+		selection = assertChanged(selection, new EditPart[] { c, d });
+
+		viewer.select(d);
+		selection = assertChanged(selection, new EditPart[] { d });
+
+		viewer.deselectAll();
+		assertEquals(new StructuredSelection(viewer.getContents()), viewer
+				.getSelection());
+		viewer.select(d);
+		assertChanged(selection, new EditPart[] { d });
+	}
+
+	/**
+	 * Asserts that the selection of the viewer is a new one with the given
+	 * parts, which is also the selection of the last event, and returns it.
+	 */
+	private ISelection assertChanged(ISelection old, EditPart[] parts) {
+		ISelection selection = viewer.getSelection();
+		assertNotSame(old, selection);
+		assertEquals(Arrays.asList(parts), ((IStructuredSelection) selection)
+				.toList());
+		assertEquals(Arrays.asList(parts), events.get(events.size() - 1));
+		return selection;
+	}
+
+	/**
+	 * Asserts that the last event has the given parts, or the contents if
+	 * there are none, and that the selected parts of the viewer are the same,
+	 * with the last one as primary.
+	 */
+	private void assertEvent(EditPart[] parts) {
+		assertFalse(events.isEmpty());
+		List expected = Arrays.asList(parts);
+		if (parts.length == 0)
+			assertEquals(Arrays.asList(new Object[] { viewer.getContents() }),
+					events.get(events.size() - 1));
+		else
+			assertEquals(expected, events.get(events.size() - 1));
+		assertEquals(expected, viewer.getSelectedEditParts());
+		for (int i = 0; i < parts.length; i++)
+			assertEquals(i == parts.length - 1 ? EditPart.SELECTED_PRIMARY
+					: EditPart.SELECTED, parts[i].getSelected());
+		events.clear();
+	}
+
+	private void assertSelectedStates(int[] states) {
+		assertEquals(states[0], a.getSelected());
+		assertEquals(states[1], b.getSelected());
+		assertEquals(states[2], c.getSelected());
+		assertEquals(states[3], d.getSelected());
+	}
+
+	private void assertStateChanges(String[] changes) {
+		assertEquals(Arrays.asList(changes), stateChanges);
+		stateChanges.clear();
+	}
+
+}
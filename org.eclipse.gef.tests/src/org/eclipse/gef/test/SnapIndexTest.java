@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.gef.test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that the index of snap locations finds the same location as the
+ * linear scan which the snap helpers used before. The index is package
+ * private, so it is used through reflection.
+ */
+public class SnapIndexTest extends TestCase {
+
+	private Object index;
+
+	private int[] locations;
+
+	private int[] ids;
+
+	public void testSameAsLinearScan() throws Exception {
+		Random random = new Random(17);
+		for (int run = 0; run < 200; run++) {
+			int count = random.nextInt(30);
+			locations = new int[count];
+			for (int i = 0; i < count; i++)
+				locations[i] = random.nextInt(60) - 30;
+			createIndex(run % 2 == 0);
+			for (int i = 0; i < 100; i++) {
+				// halves and integers give ties and hit the threshold
+				double value = (random.nextInt(160) - 80) / 2.0;
+				double threshold = random.nextInt(12) / 2.0;
+				assertEquals(scan(value, threshold),
+						findClosest(value, threshold));
+			}
+		}
+	}
+
+	public void testTiesFavorLowestId() throws Exception {
+		locations = new int[] { 11, 10 };
+		createIndex(false);
+		assertEquals(0, findClosest(10.5, 5));
+		assertEquals(1, findClosest(10.4, 5));
+
+		locations = new int[] { 10, 11 };
+		createIndex(false);
+		assertEquals(0, findClosest(10.5, 5));
+
+		locations = new int[] { 20, 0, 20, 10, 0 };
+		createIndex(false);
+		assertEquals(0, findClosest(20, 5));
+		assertEquals(1, findClosest(0, 5));
+		assertEquals(1, findClosest(5, 6));
+		assertEquals(0, findClosest(15, 6));
+
+		ids = new int[] { 7, 3, 5, 9, 1 };
+		index = newIndex(locations, ids, locations.length);
+		assertEquals(5, findClosest(20, 5));
+		assertEquals(1, findClosest(0, 5));
+		assertEquals(1, findClosest(5, 6));
+		assertEquals(5, findClosest(15, 6));
+	}
+
+	public void testThresholdIsExclusive() throws Exception {
+		locations = new int[] { -10, 0, 10 };
+		createIndex(false);
+		assertEquals(-1, findClosest(5, 5));
+		assertEquals(1, findClosest(4.9, 5));
+		assertEquals(2, findClosest(5.1, 5));
+		assertEquals(-1, findClosest(15, 5));
+		assertEquals(2, findClosest(14.9, 5));
+		assertEquals(-1, findClosest(-15, 5));
+		assertEquals(0, findClosest(-14.9, 5));
+		assertEquals(-1, findClosest(0, 0));
+	}
+
+	public void testCount() throws Exception {
+		locations = new int[] { 0, 10, 20 };
+		index = newIndex(locations, null, 2);
+		assertEquals(1, findClosest(12, 5));
+		assertEquals(-1, findClosest(20, 5));
+
+		index = newIndex(locations, null, 0);
+		assertEquals(-1, findClosest(0, 5));
+	}
+
+	/**
+	 * Creates the index of all locations. If <code>sparse</code>, the ids are
+	 * increasing but not contiguous, as for the entries of one type in
+	 * SnapToGeometry.
+	 */
+	private void createIndex(boolean sparse) throws Exception {
+		ids = null;
+		if (sparse) {
+			ids = new int[locations.length];
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = 3 * i + 1;
+		}
+		index = newIndex(locations, ids, locations.length);
+	}
+
+	private int findClosest(double value, double threshold) throws Exception {
+		Method method = index.getClass().getDeclaredMethod("findClosest",
+				new Class[] { double.class, double.class });
+		method.setAccessible(true);
+		return ((Integer) method.invoke(index, new Object[] {
+				new Double(value), new Double(threshold) })).intValue();
+	}
+
+	private Object newIndex(int[] locations, int[] ids, int count)
+			throws Exception {
+		Class indexClass = Class.forName("org.eclipse.gef.SnapIndex");
+		Constructor constructor = indexClass.getDeclaredConstructor(new Class[] {
+				int[].class, int[].class, int.class });
+		constructor.setAccessible(true);
+		return constructor.newInstance(new Object[] { locations, ids,
+				new Integer(count) });
+	}
+
+	/**
+	 * The linear scan of the snap helpers, which only accepts strictly closer
+	 * locations.
+	 */
+	private int scan(double value, double threshold) {
+		int result = -1;
+		double resultMag = threshold;
+		for (int i = 0; i < locations.length; i++) {
+			double magnitude = Math.abs(value - locations[i]);
+			if (magnitude < resultMag) {
+				resultMag = magnitude;
+				result = i;
+			}
+		}
+		if (result == -1)
+			return -1;
+		return ids == null ? result : ids[result];
+	}
+
+}
@@ -12,10 +12,12 @@ package org.eclipse.zest.core.viewers.internal;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.eclipse.draw2d.IFigure;
@@ -64,6 +66,15 @@ public abstract class AbstractStructuredGraphViewer extends
 	private HashMap nodesMap = new HashMap();
 	private HashMap connectionsMap = new HashMap();
 
+	/**
+	 * The nodes and connections of the previous build which have not been
+	 * reused yet, while the graph is being rebuilt. Otherwise
+	 * <code>null</code>.
+	 */
+	private HashMap oldNodesMap;
+	private HashMap oldConnectionsMap;
+	private Set oldTopLevelNodes;
+
 	/**
 	 * The constraint adapters
 	 */
@@ -242,7 +253,11 @@ public abstract class AbstractStructuredGraphViewer extends
 	GraphNode addGraphModelContainer(Object element) {
 		GraphNode node = this.getGraphModelNode(element);
 		if (node == null) {
-			node = new GraphContainer((Graph) getControl(), SWT.NONE);
+			node = reuseGraphModelNode(element, getGraphControl(),
+					GraphContainer.class);
+			if (node == null) {
+				node = new GraphContainer((Graph) getControl(), SWT.NONE);
+			}
 			this.nodesMap.put(element, node);
 			node.setData(element);
 		}
@@ -252,7 +267,10 @@ public abstract class AbstractStructuredGraphViewer extends
 	GraphNode addGraphModelNode(IContainer container, Object element) {
 		GraphNode node = this.getGraphModelNode(element);
 		if (node == null) {
-			node = new GraphNode(container, SWT.NONE);
+			node = reuseGraphModelNode(element, container, GraphNode.class);
+			if (node == null) {
+				node = new GraphNode(container, SWT.NONE);
+			}
 			this.nodesMap.put(element, node);
 			node.setData(element);
 		}
@@ -263,11 +281,20 @@ public abstract class AbstractStructuredGraphViewer extends
 		GraphNode node = this.getGraphModelNode(element);
 		if (node == null) {
 			if (figure != null) {
-				node = new CGraphNode((Graph) getControl(), SWT.NONE, figure);
+				node = reuseGraphModelNode(element, getGraphControl(),
+						CGraphNode.class);
+				if (node == null) {
+					node = new CGraphNode((Graph) getControl(), SWT.NONE,
+							figure);
+				}
 				this.nodesMap.put(element, node);
 				node.setData(element);
 			} else {
-				node = new GraphNode((Graph) getControl(), SWT.NONE);
+				node = reuseGraphModelNode(element, getGraphControl(),
+						GraphNode.class);
+				if (node == null) {
+					node = new GraphNode((Graph) getControl(), SWT.NONE);
+				}
 				this.nodesMap.put(element, node);
 				node.setData(element);
 			}
@@ -279,8 +306,11 @@ public abstract class AbstractStructuredGraphViewer extends
 			GraphNode target) {
 		GraphConnection connection = this.getGraphModelConnection(element);
 		if (connection == null) {
-			connection = new GraphConnection((Graph) getControl(), SWT.NONE,
-					source, target);
+			connection = reuseGraphModelConnection(element, source, target);
+			if (connection == null) {
+				connection = new GraphConnection((Graph) getControl(),
+						SWT.NONE, source, target);
+			}
 			this.connectionsMap.put(element, connection);
 			connection.setData(element);
 		}
@@ -288,6 +318,107 @@ public abstract class AbstractStructuredGraphViewer extends
 
 	}
 
+	/**
+	 * Starts rebuilding the graph on top of the existing one. Until
+	 * {@link #finishRebuild()} is called, the add methods reuse the node or
+	 * connection which the element had before, if it is of the same kind and
+	 * in the same place, so that it keeps its figure, location and selection.
+	 */
+	void startRebuild() {
+		oldNodesMap = nodesMap;
+		oldConnectionsMap = connectionsMap;
+		oldTopLevelNodes = new HashSet(getGraphControl().getNodes());
+		nodesMap = new HashMap();
+		connectionsMap = new HashMap();
+	}
+
+	/**
+	 * Disposes the nodes and connections of the elements which were not built
+	 * again since {@link #startRebuild()}.
+	 */
+	void finishRebuild() {
+		Map nodes = oldNodesMap;
+		Map connections = oldConnectionsMap;
+		oldNodesMap = null;
+		oldConnectionsMap = null;
+		oldTopLevelNodes = null;
+
+		List selection = getGraphControl().getSelection();
+		for (Iterator i = connections.values().iterator(); i.hasNext();) {
+			GraphConnection connection = (GraphConnection) i.next();
+			if (!connection.isDisposed()) {
+				connection.dispose();
+			}
+			selection.remove(connection);
+		}
+		for (Iterator i = nodes.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			GraphNode oldNode = (GraphNode) entry.getValue();
+			if (oldNode.isDisposed()) {
+				continue;
+			}
+			// the element may have a new node of a different kind, which
+			// should stay where the old one was
+			GraphNode newNode = (GraphNode) nodesMap.get(entry.getKey());
+			if (newNode != null) {
+				newNode.setLocation(oldNode.getLocation().x,
+						oldNode.getLocation().y);
+				if (oldNode.isSizeFixed()) {
+					newNode.setSize(oldNode.getSize().width,
+							oldNode.getSize().height);
+				}
+			}
+			oldNode.dispose();
+		}
+		// connections of disposed nodes are disposed with them
+		for (Iterator i = connectionsMap.values().iterator(); i.hasNext();) {
+			if (((GraphConnection) i.next()).isDisposed()) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns the node which the element had before the graph was rebuilt,
+	 * if it is of the given class and in the given container.
+	 */
+	private GraphNode reuseGraphModelNode(Object element, IContainer container,
+			Class type) {
+		if (oldNodesMap == null) {
+			return null;
+		}
+		GraphNode node = (GraphNode) oldNodesMap.get(element);
+		if (node == null || node.isDisposed() || node.getClass() != type) {
+			return null;
+		}
+		if (container == getGraphControl() ? !oldTopLevelNodes.contains(node)
+				: !container.getNodes().contains(node)) {
+			return null;
+		}
+		oldNodesMap.remove(element);
+		return node;
+	}
+
+	/**
+	 * Returns the connection which the element had before the graph was
+	 * rebuilt, if it connects the same nodes.
+	 */
+	private GraphConnection reuseGraphModelConnection(Object element,
+			GraphNode source, GraphNode target) {
+		if (oldConnectionsMap == null) {
+			return null;
+		}
+		GraphConnection connection = (GraphConnection) oldConnectionsMap
+				.get(element);
+		if (connection == null || connection.isDisposed()
+				|| connection.getSource() != source
+				|| connection.getDestination() != target) {
+			return null;
+		}
+		oldConnectionsMap.remove(element);
+		return connection;
+	}
+
 	GraphConnection getGraphModelConnection(Object obj) {
 		return (GraphConnection) this.connectionsMap.get(obj);
 	}
@@ -10,11 +10,9 @@
 package org.eclipse.zest.core.viewers.internal;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.jface.viewers.IBaseLabelProvider;
@@ -44,6 +42,7 @@ public abstract class AbstractStylingModelFactory implements
 	private int connectionStyle;
 	private int nodeStyle;
 	private List /* ConstraintAdapater */constraintAdapters = new ArrayList();
+	private boolean rebuilding;
 
 	/**
 	 * 
@@ -173,7 +172,7 @@ public abstract class AbstractStylingModelFactory implements
 		if (oldConnection != null) {
 			if (sn != oldConnection.getSource()
 					|| dn != oldConnection.getDestination()) {
-				viewer.removeGraphModelConnection(oldConnection);
+				viewer.removeGraphModelConnection(element);
 			} else {
 				styleItem(oldConnection);
 				return oldConnection;
@@ -305,48 +304,16 @@ public abstract class AbstractStylingModelFactory implements
 	 * refreshGraph(org.eclipse.zest.core.internal.graphmodel.GraphModel)
 	 */
 	public void refreshGraph(Graph graph) {
-		// with this kind of graph, it is just as easy and cost-effective to
-		// rebuild the whole thing.
-
-		Map oldMap = viewer.getNodesMap();
-		HashMap nodesMap = new HashMap();
-		// have to copy the Map data accross so that it doesn't get overwritten
-		for (Iterator keys = oldMap.keySet().iterator(); keys.hasNext();) {
-			Object key = keys.next();
-			nodesMap.put(key, oldMap.get(key));
-		}
-		clearGraph(graph);
-		doBuildGraph(graph);
-		// update the positions on the new nodes to match the old ones.
-		GraphNode[] nodes = getNodesArray(graph);
-		// save a little time, go with the smallest list as the primary list
-		if (nodes.length < nodesMap.keySet().size()) {
-			for (int i = 0; i < nodes.length; i++) {
-				GraphNode oldNode = (GraphNode) nodesMap
-						.get(nodes[i].getData());
-				if (oldNode != null) {
-					nodes[i].setLocation(oldNode.getLocation().x,
-							oldNode.getLocation().y);
-					if (oldNode.isSizeFixed()) {
-						nodes[i].setSize(oldNode.getSize().width,
-								oldNode.getSize().height);
-					}
-				}
-			}
-		} else {
-			for (Iterator i = nodesMap.keySet().iterator(); i.hasNext();) {
-				Object key = i.next();
-				GraphNode node = viewer.getGraphModelNode(key);
-				if (node != null) {
-					GraphNode oldNode = (GraphNode) nodesMap.get(key);
-					node.setLocation(oldNode.getLocation().x,
-							oldNode.getLocation().y);
-					if (oldNode.isSizeFixed()) {
-						node.setSize(oldNode.getSize().width,
-								oldNode.getSize().height);
-					}
-				}
-			}
+		// build the graph again on top of the existing one, so that only the
+		// items of added or removed elements are created or disposed, and the
+		// others keep their figures, positions and selection.
+		viewer.startRebuild();
+		rebuilding = true;
+		try {
+			doBuildGraph(graph);
+		} finally {
+			rebuilding = false;
+			viewer.finishRebuild();
 		}
 	}
 
@@ -370,11 +337,15 @@ public abstract class AbstractStylingModelFactory implements
 	/**
 	 * Builds the graph model from the viewer's content provider. There is no
 	 * guarantee that the model will be cleared before this method is called.
+	 * When the graph is refreshed, the model is not cleared, and the existing
+	 * items are reused for the elements which are created again.
 	 * 
 	 * @param graph
 	 */
 	protected void doBuildGraph(Graph model) {
-		clearGraph(model);
+		if (!rebuilding) {
+			clearGraph(model);
+		}
 		model.setConnectionStyle(getConnectionStyle());
 		model.setNodeStyle(getNodeStyle());
 		model.setConstraintAdapters(getConstraintAdapters());
@@ -23,6 +23,7 @@ import org.eclipse.draw2d.FreeformLayout;
 import org.eclipse.draw2d.FreeformViewport;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.LayoutAnimator;
+import org.eclipse.draw2d.LevelOfDetail;
 import org.eclipse.draw2d.MouseMotionListener;
 import org.eclipse.draw2d.PolylineConnection;
 import org.eclipse.draw2d.SWTEventDispatcher;
@@ -48,6 +49,7 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Item;
 import org.eclipse.zest.core.widgets.internal.ContainerFigure;
+import org.eclipse.zest.core.widgets.internal.GraphLabel;
 import org.eclipse.zest.core.widgets.internal.RevealListener;
 import org.eclipse.zest.core.widgets.internal.ZestRootLayer;
 import org.eclipse.zest.layouts.InvalidLayoutConfiguration;
@@ -112,6 +114,8 @@ public class Graph extends FigureCanvas implements IContainer {
 
 	private boolean hasPendingLayoutRequest;
 
+	private static boolean levelOfDetailRegistered;
+
 	/**
 	 * Constructor for a Graph. This widget represents the root of the graph,
 	 * and can contain graph items such as graph nodes and graph connections.
@@ -171,6 +175,7 @@ public class Graph extends FigureCanvas implements IContainer {
 					}
 				});
 
+		registerLevelOfDetail();
 		this.setContents(createLayers());
 		DragSupport dragSupport = new DragSupport(this);
 		this.getLightweightSystem().getRootFigure()
@@ -1140,7 +1145,7 @@ public class Graph extends FigureCanvas implements IContainer {
 			layoutAlgorithm.applyLayout(nodesToLayout, connectionsToLayout, 0,
 					0, d.width, d.height, false, false);
 			if ((nodeStyle & ZestStyles.NODES_NO_LAYOUT_ANIMATION) == 0) {
-				Animation.run(ANIMATION_TIME);
+				Animation.runAsync(ANIMATION_TIME);
 			}
 			getLightweightSystem().getUpdateManager().performUpdate();
 
@@ -1185,6 +1190,21 @@ public class Graph extends FigureCanvas implements IContainer {
 		}
 	}
 
+	/**
+	 * Registers the level of detail of the Zest figures the first time a graph
+	 * is created. Nodes are painted as plain rectangles once their text is
+	 * hidden, unless clients have excluded them.
+	 */
+	private static synchronized void registerLevelOfDetail() {
+		if (levelOfDetailRegistered) {
+			return;
+		}
+		levelOfDetailRegistered = true;
+		if (!LevelOfDetail.isExcluded(GraphLabel.class)) {
+			LevelOfDetail.register(GraphLabel.class, 0.30, LevelOfDetail.FILL);
+		}
+	}
+
 	private ScalableFigure createLayers() {
 		rootlayer = new ScalableFreeformLayeredPane();
 		rootlayer.setLayoutManager(new FreeformLayout());
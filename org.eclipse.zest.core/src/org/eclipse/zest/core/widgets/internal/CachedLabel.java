@@ -13,8 +13,8 @@ import org.eclipse.draw2d.Animation;
 import org.eclipse.draw2d.ColorConstants;
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.Label;
+import org.eclipse.draw2d.LevelOfDetail;
 import org.eclipse.draw2d.SWTGraphics;
-import org.eclipse.draw2d.ScaledGraphics;
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.swt.graphics.Color;
@@ -150,10 +150,8 @@ public abstract class CachedLabel extends Label {
 	static Rectangle tempRect = new Rectangle();
 
 	protected void paintFigure(Graphics graphics) {
-		if (graphics.getClass() == ScaledGraphics.class) {
-			if (((ScaledGraphics) graphics).getAbsoluteScale() < 0.30) {
-				return;
-			}
+		if (!LevelOfDetail.isLegible(this, graphics)) {
+			return;
 		}
 		if (!cacheLabel) {
 			if (isOpaque()) {
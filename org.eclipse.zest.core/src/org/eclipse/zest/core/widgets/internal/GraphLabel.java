@@ -12,6 +12,7 @@ package org.eclipse.zest.core.widgets.internal;
 import org.eclipse.draw2d.ColorConstants;
 import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.LevelOfDetail;
 import org.eclipse.draw2d.MarginBorder;
 import org.eclipse.draw2d.ScaledGraphics;
 import org.eclipse.draw2d.StackLayout;
@@ -143,6 +144,10 @@ public class GraphLabel extends CachedLabel {
 	 * @see org.eclipse.draw2d.Label#paintFigure(org.eclipse.draw2d.Graphics)
 	 */
 	public void paint(Graphics graphics) {
+		if (LevelOfDetail.paint(this, graphics)) {
+			return;
+		}
+
 		int blue = getBackgroundColor().getBlue();
 		blue = (int) (blue - (blue * 0.20));
 		blue = blue > 0 ? blue : 0;
@@ -905,21 +905,52 @@ public abstract class AbstractLayoutAlgorithm implements LayoutAlgorithm, Stoppa
 	private DisplayIndependentDimension getMinimumDistance(InternalNode[] entitiesToLayout) {
 		DisplayIndependentDimension horAndVertdistance = new DisplayIndependentDimension(Double.MAX_VALUE, Double.MAX_VALUE);
 		double minDistance = Double.MAX_VALUE; // the minimum distance between all the nodes
-		//TODO: Very Slow!
+
+		// visit the nodes from left to right, so that only the nodes which
+		// are horizontally closer than the closest pair so far need to be
+		// compared. Nodes without a location can never be the closest.
+		final double[] xs = new double[entitiesToLayout.length];
+		double[] ys = new double[entitiesToLayout.length];
+		Integer[] order = new Integer[entitiesToLayout.length];
+		int count = 0;
 		for (int i = 0; i < entitiesToLayout.length; i++) {
-			InternalNode layoutEntity1 = entitiesToLayout[i];
-			double x1 = layoutEntity1.getInternalX();
-			double y1 = layoutEntity1.getInternalY();
-			for (int j = i + 1; j < entitiesToLayout.length; j++) {
-				InternalNode layoutEntity2 = entitiesToLayout[j];
-				double x2 = layoutEntity2.getInternalX();
-				double y2 = layoutEntity2.getInternalY();
-				double distanceX = Math.abs(x1 - x2);
-				double distanceY = Math.abs(y1 - y2);
+			xs[i] = entitiesToLayout[i].getInternalX();
+			ys[i] = entitiesToLayout[i].getInternalY();
+			if (!Double.isNaN(xs[i]) && !Double.isNaN(ys[i])) {
+				order[count++] = new Integer(i);
+			}
+		}
+		Arrays.sort(order, 0, count, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				double x1 = xs[((Integer) o1).intValue()];
+				double x2 = xs[((Integer) o2).intValue()];
+				return x1 < x2 ? -1 : (x1 > x2 ? 1 : 0);
+			}
+		});
+
+		// the closest pair so far, as (lower index, higher index); among
+		// equally close pairs the lowest one wins
+		int first = -1;
+		int second = -1;
+		for (int a = 0; a < count; a++) {
+			int i = order[a].intValue();
+			for (int b = a + 1; b < count; b++) {
+				int j = order[b].intValue();
+				double distanceX = Math.abs(xs[i] - xs[j]);
+				// the nodes to the right are even further away, allowing a
+				// little for the rounding of the distance below
+				if (distanceX > minDistance * 1.000001 && distanceX > 1e-150) {
+					break;
+				}
+				double distanceY = Math.abs(ys[i] - ys[j]);
 				double distance = Math.sqrt(Math.pow(distanceX, 2) + Math.pow(distanceY, 2));
 
-				if (distance < minDistance) {
+				int lower = Math.min(i, j);
+				int higher = Math.max(i, j);
+				if (distance < minDistance || (distance == minDistance && (lower < first || (lower == first && higher < second)))) {
 					minDistance = distance;
+					first = lower;
+					second = higher;
 					horAndVertdistance.width = distanceX;
 					horAndVertdistance.height = distanceY;
 				}
@@ -22,12 +22,82 @@ import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
  */
 public abstract class ContinuousLayoutAlgorithm extends AbstractLayoutAlgorithm {
 
+	/**
+	 * A computation which is split into blocks that can be computed
+	 * independently of each other, on different threads.
+	 * 
+	 * @see ContinuousLayoutAlgorithm#runInParallel(int, ParallelTask)
+	 */
+	protected interface ParallelTask {
+
+		/**
+		 * Computes the given block.
+		 * 
+		 * @param block
+		 *            the index of the block, from 0 to the number of blocks - 1
+		 */
+		void run(int block);
+	}
+
 	double x, y, widht, height;
 
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	private WorkerPool workers;
+
 	public ContinuousLayoutAlgorithm(int styles) {
 		super(styles);
 	}
 
+	/**
+	 * Sets the number of threads used to compute an iteration, including the
+	 * thread which runs the layout. The result of the layout does not depend
+	 * on it. The default is the number of available processors.
+	 * 
+	 * @param threads
+	 *            the number of threads, values less than 1 are treated as 1
+	 */
+	public void setThreadCount(int threads) {
+		threadCount = Math.max(1, threads);
+	}
+
+	/**
+	 * Returns the number of threads used to compute an iteration.
+	 * 
+	 * @return the number of threads
+	 * @see #setThreadCount(int)
+	 */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	/**
+	 * Computes all blocks of the given task, on up to
+	 * {@link #getThreadCount()} threads, and returns when they are done. The
+	 * blocks may be computed in any order and at the same time, so a task
+	 * which must give the same result every time should split its work into
+	 * a fixed number of blocks, each of which only writes its own data. This
+	 * method may only be called from
+	 * {@link #computeOneIteration(InternalNode[], InternalRelationship[], double, double, double, double)}.
+	 * 
+	 * @param blocks
+	 *            the number of blocks
+	 * @param task
+	 *            the task
+	 */
+	protected void runInParallel(int blocks, ParallelTask task) {
+		if (threadCount > 1 && blocks > 1) {
+			if (workers == null) {
+				workers = new WorkerPool(threadCount);
+			}
+			workers.run(blocks, task);
+		} else {
+			for (int i = 0; i < blocks; i++) {
+				task.run(i);
+			}
+		}
+	}
+
 	/**
 	 * The logic to determine if a layout should continue running or not
 	 */
@@ -75,6 +145,17 @@ public abstract class ContinuousLayoutAlgorithm extends AbstractLayoutAlgorithm
 
 		this.setBounds(x, y, width, height);
 
+		try {
+			runIterations(entitiesToLayout, relationshipsToConsider);
+		} finally {
+			if (workers != null) {
+				workers.dispose();
+				workers = null;
+			}
+		}
+	}
+
+	private void runIterations(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
 		while (continueRunning()) {
 			// check for entities and relationships to add or remove 
 			entitiesToLayout = updateEntities(entitiesToLayout);
@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.layouts.algorithms;
+
+/**
+ * A Barnes-Hut quadtree over a set of points, used to approximate the sum of
+ * an inverse square repulsion from all points in O(log n) per point instead of
+ * O(n). A cell which is far enough away, relative to its size, is treated as a
+ * single point with the number of points it contains as its mass, placed at
+ * their centre.
+ * <p>
+ * The tree is stored in arrays and can be rebuilt for new positions without
+ * allocating, as long as the number of points does not grow. Once built, it
+ * may be queried from several threads at the same time.
+ */
+class QuadTree {
+
+	/**
+	 * Cells are not split beyond this depth, so that coincident points end up
+	 * in the same leaf instead of being split forever.
+	 */
+	private static final int MAX_DEPTH = 32;
+
+	private static final int NONE = -1;
+
+	/**
+	 * Every cell on the way down leaves at most three siblings on the stack.
+	 */
+	private static final int STACK_SIZE = 3 * MAX_DEPTH + 4;
+
+	private final double theta;
+
+	// per cell
+	private double[] cellX, cellY, cellSize;
+	private double[] massX, massY;
+	private int[] mass;
+	private int[] firstChild;
+	private int[] firstPoint;
+	private int cellCount;
+
+	// per point, the next point in the same leaf
+	private int[] nextPoint;
+
+	/**
+	 * Creates a tree which treats a cell as a single point once the ratio of
+	 * its size to its distance is below <code>theta</code>.
+	 *
+	 * @param theta
+	 *            the opening angle, 0 for the exact sum
+	 */
+	QuadTree(double theta) {
+		this.theta = theta;
+	}
+
+	/**
+	 * Rebuilds this tree for the given positions.
+	 *
+	 * @param x
+	 *            the x coordinates
+	 * @param y
+	 *            the y coordinates
+	 * @param count
+	 *            the number of points to use from the arrays
+	 */
+	void build(double[] x, double[] y, int count) {
+		ensureCapacity(count);
+		cellCount = 0;
+		if (count == 0)
+			return;
+
+		double minX = x[0], minY = y[0], maxX = x[0], maxY = y[0];
+		for (int i = 1; i < count; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		double size = Math.max(maxX - minX, maxY - minY);
+		if (size > 0 && !Double.isInfinite(size))
+			// keep the largest coordinates inside the root
+			size *= 1.0001;
+		else
+			size = 1;
+		newCell(minX, minY, size);
+
+		for (int i = 0; i < count; i++)
+			insert(i, x, y);
+		computeCentres(x, y);
+	}
+
+	/**
+	 * Adds the repulsion <code>gravitation / distance<sup>2</sup></code> from
+	 * every other point to the given point, directed away from those points.
+	 *
+	 * @param point
+	 *            the index of the point
+	 * @param x
+	 *            the x coordinates
+	 * @param y
+	 *            the y coordinates
+	 * @param gravitation
+	 *            the strength of the repulsion
+	 * @param minDistance
+	 *            the smallest distance considered between two points
+	 * @param force
+	 *            an array of length 2 to which the x and y components are
+	 *            added
+	 */
+	void addRepulsion(int point, double[] x, double[] y, double gravitation, double minDistance, double[] force) {
+		if (cellCount == 0)
+			return;
+		double px = x[point];
+		double py = y[point];
+		double fx = 0, fy = 0;
+		int[] stack = new int[STACK_SIZE];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int cell = stack[--top];
+			if (firstChild[cell] == NONE) {
+				// a leaf, so use its points directly
+				for (int other = firstPoint[cell]; other != NONE; other = nextPoint[other]) {
+					if (other == point)
+						continue;
+					double dx = px - x[other];
+					double dy = py - y[other];
+					double distance = Math.max(minDistance, Math.sqrt(dx * dx + dy * dy));
+					double f = gravitation / (distance * distance);
+					fx += f * dx / distance;
+					fy += f * dy / distance;
+				}
+				continue;
+			}
+			double dx = px - massX[cell];
+			double dy = py - massY[cell];
+			double distance = Math.sqrt(dx * dx + dy * dy);
+			if (cellSize[cell] < theta * distance && !contains(cell, px, py)) {
+				distance = Math.max(minDistance, distance);
+				double f = gravitation * mass[cell] / (distance * distance);
+				fx += f * dx / distance;
+				fy += f * dy / distance;
+			} else {
+				for (int child = firstChild[cell]; child < firstChild[cell] + 4; child++)
+					if (mass[child] > 0)
+						stack[top++] = child;
+			}
+		}
+		force[0] += fx;
+		force[1] += fy;
+	}
+
+	private boolean contains(int cell, double px, double py) {
+		return px >= cellX[cell] && py >= cellY[cell] && px < cellX[cell] + cellSize[cell] && py < cellY[cell] + cellSize[cell];
+	}
+
+	private void computeCentres(double[] x, double[] y) {
+		// children are always created after their parent, so visiting the
+		// cells backwards completes every child before its parent
+		for (int cell = cellCount - 1; cell >= 0; cell--) {
+			double sumX = 0, sumY = 0;
+			int count = 0;
+			if (firstChild[cell] == NONE) {
+				for (int p = firstPoint[cell]; p != NONE; p = nextPoint[p]) {
+					sumX += x[p];
+					sumY += y[p];
+					count++;
+				}
+			} else {
+				for (int child = firstChild[cell]; child < firstChild[cell] + 4; child++) {
+					sumX += massX[child] * mass[child];
+					sumY += massY[child] * mass[child];
+					count += mass[child];
+				}
+			}
+			mass[cell] = count;
+			if (count > 0) {
+				massX[cell] = sumX / count;
+				massY[cell] = sumY / count;
+			}
+		}
+	}
+
+	private void ensureCapacity(int count) {
+		if (nextPoint == null || nextPoint.length < count)
+			nextPoint = new int[count];
+		// enough for evenly spread points, newCell() grows the arrays otherwise
+		int cells = Math.max(16, count * 2 + 1);
+		if (cellX == null || cellX.length < cells)
+			resize(cells);
+	}
+
+	private void insert(int point, double[] x, double[] y) {
+		double px = x[point];
+		double py = y[point];
+		int cell = 0;
+		int depth = 0;
+		while (true) {
+			if (firstChild[cell] != NONE) {
+				cell = firstChild[cell] + quadrant(cell, px, py);
+				depth++;
+				continue;
+			}
+			if (firstPoint[cell] == NONE || depth >= MAX_DEPTH) {
+				nextPoint[point] = firstPoint[cell];
+				firstPoint[cell] = point;
+				return;
+			}
+			// split the leaf and move its points down
+			int points = firstPoint[cell];
+			firstPoint[cell] = NONE;
+			double half = cellSize[cell] / 2;
+			double cx = cellX[cell], cy = cellY[cell];
+			int first = newCell(cx, cy, half);
+			newCell(cx + half, cy, half);
+			newCell(cx, cy + half, half);
+			newCell(cx + half, cy + half, half);
+			firstChild[cell] = first;
+			while (points != NONE) {
+				int next = nextPoint[points];
+				int child = first + quadrant(cell, x[points], y[points]);
+				nextPoint[points] = firstPoint[child];
+				firstPoint[child] = points;
+				points = next;
+			}
+		}
+	}
+
+	private int newCell(double x, double y, double size) {
+		if (cellCount == cellX.length)
+			resize(cellX.length * 2);
+		int cell = cellCount++;
+		cellX[cell] = x;
+		cellY[cell] = y;
+		cellSize[cell] = size;
+		mass[cell] = 0;
+		firstChild[cell] = NONE;
+		firstPoint[cell] = NONE;
+		return cell;
+	}
+
+	private int quadrant(int cell, double px, double py) {
+		double half = cellSize[cell] / 2;
+		int quadrant = 0;
+		if (px >= cellX[cell] + half)
+			quadrant |= 1;
+		if (py >= cellY[cell] + half)
+			quadrant |= 2;
+		return quadrant;
+	}
+
+	private void resize(int cells) {
+		cellX = grow(cellX, cells);
+		cellY = grow(cellY, cells);
+		cellSize = grow(cellSize, cells);
+		massX = grow(massX, cells);
+		massY = grow(massY, cells);
+		mass = grow(mass, cells);
+		firstChild = grow(firstChild, cells);
+		firstPoint = grow(firstPoint, cells);
+	}
+
+	private static double[] grow(double[] array, int length) {
+		double[] result = new double[length];
+		if (array != null)
+			System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static int[] grow(int[] array, int length) {
+		int[] result = new int[length];
+		if (array != null)
+			System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+}
@@ -9,6 +9,8 @@
  *******************************************************************************/
 package org.eclipse.zest.layouts.algorithms;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -134,22 +136,34 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 	private static double sprGravitation = DEFAULT_SPRING_GRAVITATION;
 
 	/**
-	 * The largest movement of all vertices that has occured in the most recent
-	 * iteration.
+	 * The ratio of the size of a group of nodes to its distance below which the
+	 * group is treated as a single node, when the forces are approximated.
 	 */
-	private double largestMovement = 0;
+	private static final double APPROXIMATION_THETA = 0.8d;
 
 	/**
-	 * Maps a src and dest object to the number of relations between them. Key
-	 * is src.toString() + dest.toString(), value is an Integer
+	 * The number of nodes from which the forces are computed in
+	 * {@link #PARALLEL_BLOCKS} blocks, which may run on different threads.
 	 */
-	private Map srcDestToNumRelsMap;
+	private static final int PARALLEL_THRESHOLD = 1000;
 
 	/**
-	 * Maps a src and dest object to the average weight of the relations between
-	 * them. Key is src.toString() + dest.toString(), value is a Double
+	 * The number of blocks the force computation is split into. It is fixed,
+	 * rather than based on the number of threads, so that the result is the
+	 * same on every machine.
 	 */
-	private Map srcDestToRelsAvgWeightMap;
+	private static final int PARALLEL_BLOCKS = 32;
+
+	/**
+	 * The largest movement of all vertices that has occured in the most recent
+	 * iteration.
+	 */
+	private double largestMovement = 0;
+
+	/**
+	 * Whether the repulsion between unrelated nodes is approximated.
+	 */
+	private boolean approximateForces;
 
 	/**
 	 * Maps a relationship type to a weight. Key is a string, value is a Double
@@ -158,9 +172,28 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 
 	private int iteration;
 
-	private int[][] srcDestToNumRels;
+	/**
+	 * The relations between the nodes, in compressed sparse row form. The
+	 * nodes related to node i, which come after it, are
+	 * relationTargets[relationStart[i]] to
+	 * relationTargets[relationStart[i + 1] - 1], in increasing order.
+	 */
+	private int[] relationStart;
 
-	private double[][] srcDestToRelsAvgWeight;
+	private int[] relationTargets;
+
+	/**
+	 * The number of relations between two related nodes, counted once in
+	 * each direction.
+	 */
+	private int[] relationCounts;
+
+	/**
+	 * The average weight of the relations between two related nodes.
+	 */
+	private double[] relationAvgWeights;
+
+	private QuadTree quadTree;
 
 	private double[] tempLocationsX;
 
@@ -172,6 +205,20 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 
 	private boolean[] anchors;
 
+	/**
+	 * Whether no node is given more than once, which the parallel force
+	 * computation relies on.
+	 */
+	private boolean distinctEntities;
+
+	/**
+	 * The forces from the nodes in each block on the nodes after them, see
+	 * {@link #computeForcesInParallel(InternalNode[])}.
+	 */
+	private double[][] blockForcesX;
+
+	private double[][] blockForcesY;
+
 	private DisplayIndependentRectangle bounds = null;
 
 	Date date = null;
@@ -181,8 +228,6 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 	 */
 	public SpringLayoutAlgorithm(int styles) {
 		super(styles);
-		srcDestToNumRelsMap = new HashMap();
-		srcDestToRelsAvgWeightMap = new HashMap();
 		date = new Date();
 	}
 
@@ -343,6 +388,33 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		return (weight == null) ? 1 : weight.doubleValue();
 	}
 
+	/**
+	 * Sets whether the repulsion between unrelated nodes is approximated
+	 * using a Barnes-Hut quadtree. Each iteration then takes O(n log n + e)
+	 * time for n nodes and e relations, instead of O(n<sup>2</sup>), which
+	 * makes large graphs practical. The repulsion from a distant group of
+	 * nodes is computed as if they were a single node at their centre. The
+	 * attraction between related nodes is always computed exactly, using
+	 * the strain, length and gravitation values. The default is
+	 * <code>false</code>.
+	 * 
+	 * @param approximate
+	 *            <code>true</code> to approximate the forces
+	 */
+	public void setApproximateForces(boolean approximate) {
+		approximateForces = approximate;
+	}
+
+	/**
+	 * Returns whether the repulsion between unrelated nodes is approximated.
+	 * 
+	 * @return <code>true</code> if the forces are approximated
+	 * @see #setApproximateForces(boolean)
+	 */
+	public boolean isApproximateForces() {
+		return approximateForces;
+	}
+
 	/**
 	 * Sets the default conditions.
 	 */
@@ -365,9 +437,14 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		forcesX = null;
 		forcesY = null;
 		anchors = null;
+		blockForcesX = null;
+		blockForcesY = null;
+		relationStart = null;
+		relationTargets = null;
+		relationCounts = null;
+		relationAvgWeights = null;
+		quadTree = null;
 		setDefaultConditions();
-		srcDestToNumRelsMap = new HashMap();
-		srcDestToRelsAvgWeightMap = new HashMap();
 		relTypeToWeightMap = new HashMap();
 	}
 
@@ -388,13 +465,9 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		for (int i = 0; i < entitiesToLayout.length; i++) {
 			anchors[i] = DEFAULT_ANCHOR;
 		}
-		for (int i = 0; i < relationshipsToConsider.length; i++) {
-			InternalRelationship layoutRelationship = relationshipsToConsider[i];
-			addRelation(layoutRelationship);
-		}
 
 		// do the calculations
-		preCompute(entitiesToLayout);
+		preCompute(entitiesToLayout, relationshipsToConsider);
 		startTime = date.getTime();
 	}
 
@@ -402,58 +475,10 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		reset(entitiesToLayout);
 	}
 
-	/**
-	 * Adds a simple relation between two nodes to the relation repository.
-	 * 
-	 * @param layoutRelationship
-	 *            The simple relation to be added
-	 * @throws java.lang.NullPointerExcetption
-	 *             If <code>sr</code> is null
-	 * @see SimpleRelation
-	 */
-	private void addRelation(InternalRelationship layoutRelationship) {
-		if (layoutRelationship == null) {
-			throw new IllegalArgumentException("The arguments can not be null!");
-		} else {
-			double weight = layoutRelationship.getWeight();
-			weight = (weight <= 0 ? 0.1 : weight);
-			String key1 = layoutRelationship.getSource().toString() + layoutRelationship.getDestination().toString();
-			String key2 = layoutRelationship.getDestination().toString() + layoutRelationship.getSource().toString();
-			String[] keys = { key1, key2 };
-			for (int i = 0; i < keys.length; i++) {
-				String key = keys[i];
-				Integer count = (Integer) srcDestToNumRelsMap.get(key);
-				Double avgWeight = (Double) srcDestToRelsAvgWeightMap.get(key);
-				if (count == null) {
-					count = new Integer(1);
-					avgWeight = new Double(weight);
-				} else {
-					int newCount = count.intValue() + 1;
-					double newAverage = (avgWeight.doubleValue() * count.doubleValue() + weight) / newCount;
-					avgWeight = new Double(newAverage);
-					count = new Integer(newCount);
-				}
-				srcDestToNumRelsMap.put(key, count);
-				srcDestToRelsAvgWeightMap.put(key, avgWeight);
-			}
-		}
-	}
-
-	private void preCompute(InternalNode[] entitiesToLayout) {
+	private void preCompute(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
 		// count number of relationships between all nodes and the average
 		// weight between them
-		srcDestToNumRels = new int[entitiesToLayout.length][entitiesToLayout.length];
-		srcDestToRelsAvgWeight = new double[entitiesToLayout.length][entitiesToLayout.length];
-
-		for (int i = 0; i < entitiesToLayout.length - 1; i++) {
-			InternalNode layoutEntity1 = entitiesToLayout[i];
-			for (int j = i + 1; j < entitiesToLayout.length; j++) {
-				InternalNode layoutEntity2 = entitiesToLayout[j];
-				srcDestToNumRels[i][j] = numRelations(layoutEntity1, layoutEntity2);
-				srcDestToNumRels[i][j] += numRelations(layoutEntity2, layoutEntity1);
-				srcDestToRelsAvgWeight[i][j] = avgWeight(layoutEntity1, layoutEntity2);
-			}
-		}
+		buildRelations(entitiesToLayout, relationshipsToConsider);
 
 		if (sprRandom)
 			placeRandomly(entitiesToLayout); // put vertices in random places
@@ -464,6 +489,79 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		largestMovement = Double.MAX_VALUE;
 	}
 
+	/**
+	 * Builds the sparse relation arrays. Each pair of related nodes is stored
+	 * once, under the node which comes first.
+	 */
+	private void buildRelations(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
+		Map nodeToIndex = new HashMap();
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			nodeToIndex.put(entitiesToLayout[i], new Integer(i));
+		}
+		distinctEntities = nodeToIndex.size() == entitiesToLayout.length;
+
+		// the related pairs as (first, second, weight), in the order given
+		final int[] firsts = new int[relationshipsToConsider.length];
+		final int[] seconds = new int[relationshipsToConsider.length];
+		double[] weights = new double[relationshipsToConsider.length];
+		Integer[] order = new Integer[relationshipsToConsider.length];
+		int pairs = 0;
+		for (int i = 0; i < relationshipsToConsider.length; i++) {
+			InternalRelationship layoutRelationship = relationshipsToConsider[i];
+			if (layoutRelationship == null) {
+				throw new IllegalArgumentException("The arguments can not be null!");
+			}
+			Integer source = (Integer) nodeToIndex.get(layoutRelationship.getSource());
+			Integer destination = (Integer) nodeToIndex.get(layoutRelationship.getDestination());
+			if (source == null || destination == null || source.equals(destination)) {
+				continue;
+			}
+			double weight = layoutRelationship.getWeight();
+			firsts[pairs] = Math.min(source.intValue(), destination.intValue());
+			seconds[pairs] = Math.max(source.intValue(), destination.intValue());
+			weights[pairs] = (weight <= 0 ? 0.1 : weight);
+			order[pairs] = new Integer(pairs);
+			pairs++;
+		}
+
+		// group the relations between the same nodes, keeping their order
+		Arrays.sort(order, 0, pairs, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				int i1 = ((Integer) o1).intValue();
+				int i2 = ((Integer) o2).intValue();
+				if (firsts[i1] != firsts[i2]) {
+					return firsts[i1] < firsts[i2] ? -1 : 1;
+				}
+				return seconds[i1] < seconds[i2] ? -1 : (seconds[i1] == seconds[i2] ? 0 : 1);
+			}
+		});
+
+		relationStart = new int[entitiesToLayout.length + 1];
+		relationTargets = new int[pairs];
+		relationCounts = new int[pairs];
+		relationAvgWeights = new double[pairs];
+		int count = 0;
+		for (int k = 0; k < pairs; k++) {
+			int pair = order[k].intValue();
+			int last = count - 1;
+			if (count > 0 && firsts[order[k - 1].intValue()] == firsts[pair] && relationTargets[last] == seconds[pair]) {
+				// each relation is counted once in each direction
+				int relations = relationCounts[last] / 2;
+				relationAvgWeights[last] = (relationAvgWeights[last] * relations + weights[pair]) / (relations + 1);
+				relationCounts[last] += 2;
+			} else {
+				relationStart[firsts[pair] + 1]++;
+				relationTargets[count] = seconds[pair];
+				relationCounts[count] = 2;
+				relationAvgWeights[count] = weights[pair];
+				count++;
+			}
+		}
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			relationStart[i + 1] += relationStart[i];
+		}
+	}
+
 	// TODO: This is a complete Clone! (and not in a good way)
 	protected DisplayIndependentRectangle getLayoutBoundsTemp(InternalNode[] entitiesToLayout, boolean includeNodeSize) {
 		double rightSide = Double.MIN_VALUE;
@@ -615,70 +713,188 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 			forcesY[i] = 0.0;
 		}
 
-		// TODO: Again really really slow!
-
-		for (int i = 0; i < entitiesToLayout.length - 1; i++) {
-			InternalNode sourceEntity = entitiesToLayout[i];
-
-			double srcLocationX = tempLocationsX[i];
-			double srcLocationY = tempLocationsY[i];
-			double fx = forcesX[i]; // force in x direction
-			double fy = forcesY[i]; // force in y direction
-
-			for (int j = i + 1; j < entitiesToLayout.length; j++) {
-				InternalNode destinationEntity = entitiesToLayout[j];
-
-				if (!destinationEntity.equals(sourceEntity)) {
-					double destLocationX = tempLocationsX[j];
-					double destLocationY = tempLocationsY[j];
-					double dx = srcLocationX - destLocationX;
-					double dy = srcLocationY - destLocationY;
-					double distance = Math.sqrt(dx * dx + dy * dy);
-					double distance_sq = distance * distance;
-					// make sure distance and distance squared not too small
-					distance = Math.max(MIN_DISTANCE, distance);
-
-					// If there are relationships between srcObj and destObj
-					// then decrease force on srcObj (a pull) in direction of destObj
-					// If no relation between srcObj and destObj then increase
-					// force on srcObj (a push) from direction of destObj.
-					int numRels = srcDestToNumRels[i][j];
-					double avgWeight = srcDestToRelsAvgWeight[i][j];
-					if (numRels > 0) {
-						// nodes are pulled towards each other
-						double f = sprStrain * Math.log(distance / sprLength) * numRels * avgWeight;
-
-						fx = fx - (f * dx / distance);
-						fy = fy - (f * dy / distance);
-
-					} else {
-						// nodes are repelled from each other
-						//double f = Math.min(100, sprGravitation / (distance*distance));
-						double f = sprGravitation / (distance_sq);
-						fx = fx + (f * dx / distance);
-						fy = fy + (f * dy / distance);
-					}
-
-					// According to Newton, "for every action, there is an equal
-					// and opposite reaction."
-					// so give the dest an opposite force
-					forcesX[j] = forcesX[j] - fx;
-					forcesY[j] = forcesY[j] - fy;
+		if (approximateForces) {
+			computeApproximateForces(entitiesToLayout);
+		} else if (entitiesToLayout.length >= PARALLEL_THRESHOLD && distinctEntities) {
+			computeForcesInParallel(entitiesToLayout);
+		} else {
+			for (int i = 0; i < entitiesToLayout.length - 1; i++) {
+				computeForces(entitiesToLayout, i, forcesX[i], forcesY[i], forcesX, forcesY);
+			}
+		}
+	}
+
+	/**
+	 * Computes the forces between the given node and the nodes after it. The
+	 * force on the node is added to the given starting force, and stored in
+	 * forcesX and forcesY. After each of the other nodes, the force so far is
+	 * subtracted from that node in destForcesX and destForcesY.
+	 */
+	private void computeForces(InternalNode[] entitiesToLayout, int i, double fx, double fy, double[] destForcesX, double[] destForcesY) {
+		InternalNode sourceEntity = entitiesToLayout[i];
+
+		double srcLocationX = tempLocationsX[i];
+		double srcLocationY = tempLocationsY[i];
+
+		// the next node related to the source, see relationStart
+		int relation = relationStart[i];
+		int lastRelation = relationStart[i + 1];
+
+		for (int j = i + 1; j < entitiesToLayout.length; j++) {
+			InternalNode destinationEntity = entitiesToLayout[j];
+
+			int numRels = 0;
+			double avgWeight = 1;
+			if (relation < lastRelation && relationTargets[relation] == j) {
+				numRels = relationCounts[relation];
+				avgWeight = relationAvgWeights[relation];
+				relation++;
+			}
+
+			if (!destinationEntity.equals(sourceEntity)) {
+				double destLocationX = tempLocationsX[j];
+				double destLocationY = tempLocationsY[j];
+				double dx = srcLocationX - destLocationX;
+				double dy = srcLocationY - destLocationY;
+				double distance = Math.sqrt(dx * dx + dy * dy);
+				double distance_sq = distance * distance;
+				// make sure distance and distance squared not too small
+				distance = Math.max(MIN_DISTANCE, distance);
+
+				// If there are relationships between srcObj and destObj
+				// then decrease force on srcObj (a pull) in direction of destObj
+				// If no relation between srcObj and destObj then increase
+				// force on srcObj (a push) from direction of destObj.
+				if (numRels > 0) {
+					// nodes are pulled towards each other
+					double f = sprStrain * Math.log(distance / sprLength) * numRels * avgWeight;
+
+					fx = fx - (f * dx / distance);
+					fy = fy - (f * dy / distance);
+
+				} else {
+					// nodes are repelled from each other
+					//double f = Math.min(100, sprGravitation / (distance*distance));
+					double f = sprGravitation / (distance_sq);
+					fx = fx + (f * dx / distance);
+					fy = fy + (f * dy / distance);
+				}
+
+				// According to Newton, "for every action, there is an equal
+				// and opposite reaction."
+				// so give the dest an opposite force
+				destForcesX[j] = destForcesX[j] - fx;
+				destForcesY[j] = destForcesY[j] - fy;
+			}
+		}
+
+		/*
+		 * //make sure forces aren't too big if (fx > 0 ) fx = Math.min(fx,
+		 * 10*sprMove); else fx = Math.max(fx, -10*sprMove); if (fy > 0) fy =
+		 * Math.min(fy, 10*sprMove); else fy = Math.max(fy, -10*sprMove);
+		 */
+		forcesX[i] = fx;
+		forcesY[i] = fy;
+	}
+
+	/**
+	 * Computes the same forces as the sequential loop over the nodes, split
+	 * into {@link #PARALLEL_BLOCKS} blocks which can run at the same time.
+	 * <p>
+	 * In that loop, node j receives the force on each earlier node i so far,
+	 * which is the force node i started with plus the forces from nodes i + 1
+	 * to j. The blocks take every PARALLEL_BLOCKS-th node and sum the second
+	 * part, starting from zero, into their own arrays. The starting forces
+	 * only depend on the earlier nodes, so they are then added up in node
+	 * order. The blocks are always the same and are summed in the same
+	 * order, so the result does not depend on the number of threads.
+	 */
+	private void computeForcesInParallel(final InternalNode[] entitiesToLayout) {
+		final int n = entitiesToLayout.length;
+		if (blockForcesX == null || blockForcesX[0].length != n) {
+			blockForcesX = new double[PARALLEL_BLOCKS][n];
+			blockForcesY = new double[PARALLEL_BLOCKS][n];
+		}
+		runInParallel(PARALLEL_BLOCKS, new ParallelTask() {
+			public void run(int block) {
+				double[] destForcesX = blockForcesX[block];
+				double[] destForcesY = blockForcesY[block];
+				Arrays.fill(destForcesX, 0);
+				Arrays.fill(destForcesY, 0);
+				for (int i = block; i < n - 1; i += PARALLEL_BLOCKS) {
+					computeForces(entitiesToLayout, i, 0, 0, destForcesX, destForcesY);
 				}
 			}
+		});
+
+		// the sum of the starting forces of the nodes so far
+		double startX = 0;
+		double startY = 0;
+		for (int j = 0; j < n; j++) {
+			double fx = 0;
+			double fy = 0;
+			for (int block = 0; block < PARALLEL_BLOCKS; block++) {
+				fx += blockForcesX[block][j];
+				fy += blockForcesY[block][j];
+			}
+			fx -= startX;
+			fy -= startY;
+			startX += fx;
+			startY += fy;
+			if (j < n - 1) {
+				// the force from the nodes after j, computed by its block
+				fx += forcesX[j];
+				fy += forcesY[j];
+			}
+			forcesX[j] = fx;
+			forcesY[j] = fy;
+		}
+	}
 
-			/*
-			 * //make sure forces aren't too big if (fx > 0 ) fx = Math.min(fx,
-			 * 10*sprMove); else fx = Math.max(fx, -10*sprMove); if (fy > 0) fy =
-			 * Math.min(fy, 10*sprMove); else fy = Math.max(fy, -10*sprMove);
-			 */
-			forcesX[i] = fx;
-			forcesY[i] = fy;
-			// Remove the src object from the list of destinations since
-			// we've already calculated the force from it on all other
-			// objects.
-			// dests.remove(srcObj);
+	/**
+	 * Computes the forces like {@link #computeForces(InternalNode[])}, but
+	 * approximates the repulsion between unrelated nodes with a quadtree, and
+	 * applies the force between each pair of nodes to both of them. The
+	 * repulsion on each node only depends on the tree, so it is computed in
+	 * parallel for large graphs.
+	 */
+	private void computeApproximateForces(InternalNode[] entitiesToLayout) {
+		if (quadTree == null) {
+			quadTree = new QuadTree(APPROXIMATION_THETA);
+		}
+		quadTree.build(tempLocationsX, tempLocationsY, entitiesToLayout.length);
+
+		// every node repels every other node ...
+		final int n = entitiesToLayout.length;
+		final int blocks = n >= PARALLEL_THRESHOLD ? PARALLEL_BLOCKS : 1;
+		runInParallel(blocks, new ParallelTask() {
+			public void run(int block) {
+				double[] force = new double[2];
+				int last = (int) ((long) n * (block + 1) / blocks);
+				for (int i = (int) ((long) n * block / blocks); i < last; i++) {
+					force[0] = 0;
+					force[1] = 0;
+					quadTree.addRepulsion(i, tempLocationsX, tempLocationsY, sprGravitation, MIN_DISTANCE, force);
+					forcesX[i] = force[0];
+					forcesY[i] = force[1];
+				}
+			}
+		});
 
+		// ... except related nodes, which are pulled towards each other instead
+		for (int i = 0; i < entitiesToLayout.length; i++) {
+			for (int relation = relationStart[i]; relation < relationStart[i + 1]; relation++) {
+				int j = relationTargets[relation];
+				double dx = tempLocationsX[i] - tempLocationsX[j];
+				double dy = tempLocationsY[i] - tempLocationsY[j];
+				double distance = Math.max(MIN_DISTANCE, Math.sqrt(dx * dx + dy * dy));
+				double repulsion = sprGravitation / (distance * distance);
+				double f = sprStrain * Math.log(distance / sprLength) * relationCounts[relation] * relationAvgWeights[relation] + repulsion;
+				forcesX[i] -= f * dx / distance;
+				forcesY[i] -= f * dy / distance;
+				forcesX[j] += f * dx / distance;
+				forcesY[j] += f * dy / distance;
+			}
 		}
 	}
 
@@ -756,38 +972,6 @@ public class SpringLayoutAlgorithm extends ContinuousLayoutAlgorithm {
 		}
 	}
 
-	/**
-	 * Examines the number of specified relation between the <code>src</code>
-	 * and the <code>dest</code> that exist in this
-	 * SpringLayoutAlgorithm's relation repository.
-	 * 
-	 * @param src
-	 *            The source part of the relaton to be examined.
-	 * @param dest
-	 *            The destination part of the relation to be examined.
-	 * @return The number of relations between src and dest.
-	 */
-	private int numRelations(Object src, Object dest) {
-		String key = src.toString() + dest.toString();
-		Integer count = (Integer) srcDestToNumRelsMap.get(key);
-		int intCount = (count == null) ? 0 : count.intValue();
-		return intCount;
-	}
-
-	/**
-	 * Returns the average weight between a src and dest object.
-	 * 
-	 * @param src
-	 * @param dest
-	 * @return The average weight between the given src and dest nodes
-	 */
-	private double avgWeight(Object src, Object dest) {
-		String key = src.toString() + dest.toString();
-		Double avgWeight = (Double) srcDestToRelsAvgWeightMap.get(key);
-		double doubleWeight = (avgWeight == null) ? 1 : avgWeight.doubleValue();
-		return doubleWeight;
-	}
-
 	protected boolean isValidConfiguration(boolean asynchronous, boolean continueous) {
 		if (asynchronous && continueous)
 			return true;
@@ -11,25 +11,24 @@ package org.eclipse.zest.layouts.algorithms;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.eclipse.zest.layouts.LayoutStyles;
 import org.eclipse.zest.layouts.dataStructures.DisplayIndependentRectangle;
 import org.eclipse.zest.layouts.dataStructures.InternalNode;
 import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
-import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
 
 /**
  * The TreeLayoutAlgorithm class implements a simple algorithm to
  * arrange graph nodes in a layered vertical tree-like layout. 
  * 
- * This is by no means an efficiently coded algorithm.
+ * The relationships are indexed by their source once per layout, and
+ * the forest is built and traversed iteratively, so the layout of a tree
+ * takes linear time and deep trees do not overflow the stack.
  *
  * @version  2.0
  * @author   Casey Best and Rob Lintern (version 1.0 by Jingwei Wu)
@@ -39,11 +38,25 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 	private final static double DEFAULT_WEIGHT = 0;
 	private final static boolean DEFAULT_MARKED = false;
 
-	private final static boolean AS_DESTINATION = false;
-	private final static boolean AS_SOURCE = true;
+	private final static int NO_NODE = -1;
+	private final static int UNKNOWN_NODE = -2;
 
-	private final static int NUM_DESCENDENTS_INDEX = 0;
-	private final static int NUM_LEVELS_INDEX = 1;
+	/**
+	 * A node on the stack of an iterative depth first traversal.
+	 */
+	private static class Frame {
+		final int node;
+		final int[] children;
+		final double weight;
+		int next;
+		int count;
+
+		Frame(int node, int[] children, double weight) {
+			this.node = node;
+			this.children = children;
+			this.weight = weight;
+		}
+	}
 
 	private ArrayList treeRoots;
 
@@ -53,11 +66,26 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 	private double boundsHeight;
 	private DisplayIndependentRectangle layoutBounds = null;
 
-	private List[] parentLists;
-	private List[] childrenLists;
+	private Map nodeIndices;
+	private int[][] successors;
+	private int[] firstPredecessors;
+	private Map unknownPredecessors;
+	private int[] descendentCounts;
+
+	private int[][] childrenLists;
+	private int[] childCounts;
+	private int[] parentCounts;
+	private int[] leafCounts;
+	private boolean isForest;
 	private double[] weights;
 	private boolean[] markedArr;
 
+	// the traversal in which each node was last seen
+	private int[] visited;
+	private int visit;
+	private int[] placed;
+	private int placement;
+
 	/////////////////////////////////////////////////////////////////////////
 	/////                        Constructors                           /////
 	/////////////////////////////////////////////////////////////////////////
@@ -111,16 +139,20 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 		// Filter unwanted entities and relationships
 		//super.applyLayout (entitiesToLayout, relationshipsToConsider, boundsX, boundsY, boundsWidth, boundsHeight);
 
-		parentLists = new List[entitiesToLayout.length];
-		childrenLists = new List[entitiesToLayout.length];
+		childrenLists = new int[entitiesToLayout.length][];
+		childCounts = new int[entitiesToLayout.length];
+		parentCounts = new int[entitiesToLayout.length];
 		weights = new double[entitiesToLayout.length];
 		markedArr = new boolean[entitiesToLayout.length];
 		for (int i = 0; i < entitiesToLayout.length; i++) {
-			parentLists[i] = new ArrayList();
-			childrenLists[i] = new ArrayList();
+			childrenLists[i] = new int[0];
 			weights[i] = DEFAULT_WEIGHT;
 			markedArr[i] = DEFAULT_MARKED;
 		}
+		visited = new int[entitiesToLayout.length];
+		visit = 0;
+		placed = new int[entitiesToLayout.length];
+		placement = 0;
 
 		this.boundsHeight = height;
 		this.boundsWidth = width;
@@ -138,7 +170,8 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 
 			//List roots = new ArrayList();
 			treeRoots = new ArrayList();
-			buildForest(treeRoots, entitiesToLayout, relationshipsToConsider);
+			buildIndex(entitiesToLayout, relationshipsToConsider);
+			buildForest(treeRoots, entitiesToLayout);
 			fireProgressEvent(2, totalProgress);
 			computePositions(treeRoots, entitiesToLayout);
 			fireProgressEvent(3, totalProgress);
@@ -149,6 +182,12 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 
 	protected void postLayoutAlgorithm(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider) {
 		updateLayoutLocations(entitiesToLayout);
+		nodeIndices = null;
+		successors = null;
+		firstPredecessors = null;
+		unknownPredecessors = null;
+		descendentCounts = null;
+		leafCounts = null;
 		fireProgressEvent(4, 4);
 	}
 
@@ -159,128 +198,139 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 		return treeRoots;
 	}
 
+	/////////////////////////////////////////////////////////////////////////
+	/////                        Private Methods                        /////
+	/////////////////////////////////////////////////////////////////////////
+
 	/**
-	 * Finds all the relationships in which the node <code>obj<code>
-	 * plays the specified <code>role</code>.
-	 * @param entity The node that concerns the relations to be found.
-	 * @param role The role played by the <code>obj</code>. Its type
-	 * must be of <code>ACTOR_ROLE</code> or <code>ACTEE_ROLE</code>.
-	 * @see SimpleRelationship
+	 * Indexes the relationships by their endpoints, so that the successors of
+	 * an entity, in the order of the relationships, and the source of the first
+	 * relationship to an entity are found without searching the relationships.
 	 */
-	private Collection findRelationships(Object entity, boolean objectAsSource, InternalRelationship[] relationshipsToConsider) {
-		Collection foundRels = new ArrayList();
-		for (int i = 0; i < relationshipsToConsider.length; i++) {
-			InternalRelationship rel = relationshipsToConsider[i];
-			if (objectAsSource && rel.getSource().equals(entity)) {
-				foundRels.add(rel);
-			} else if (!objectAsSource && rel.getDestination().equals(entity)) {
-				foundRels.add(rel);
+	private void buildIndex(InternalNode[] entities, InternalRelationship[] relationships) {
+		nodeIndices = new HashMap(entities.length * 2);
+		for (int i = entities.length - 1; i >= 0; i--) {
+			nodeIndices.put(entities[i], new Integer(i));
+		}
+
+		int[] sources = new int[relationships.length];
+		int[] destinations = new int[relationships.length];
+		int[] counts = new int[entities.length];
+		firstPredecessors = new int[entities.length];
+		Arrays.fill(firstPredecessors, NO_NODE);
+		unknownPredecessors = new HashMap();
+		for (int r = 0; r < relationships.length; r++) {
+			InternalRelationship rel = relationships[r];
+			Integer source = (Integer) nodeIndices.get(rel.getSource());
+			Integer destination = (Integer) nodeIndices.get(rel.getDestination());
+			if (destination != null && firstPredecessors[destination.intValue()] == NO_NODE) {
+				if (source == null) {
+					firstPredecessors[destination.intValue()] = UNKNOWN_NODE;
+					unknownPredecessors.put(destination, rel.getSource());
+				} else {
+					firstPredecessors[destination.intValue()] = source.intValue();
+				}
+			}
+			if (source == null) {
+				// never reached from the entities
+				sources[r] = NO_NODE;
+				continue;
+			}
+			if (destination == null) {
+				throw new RuntimeException("Couldn't find index of internal node: " + rel.getDestination());
 			}
+			sources[r] = source.intValue();
+			destinations[r] = destination.intValue();
+			counts[sources[r]]++;
 		}
-		return foundRels;
-	}
 
-	/**
-	 * Finds the relation that has the lowest index in the relation
-	 * repository in which the node <code>obj<code> plays the specified
-	 * <code>role</code>.
-	 * @param obj The node that concerns the relations to be found.
-	 * @param role The role played by the <code>obj</code>. Its type must
-	 * be of <code>ACTOR_ROLE</code> or <code>ACTEE_ROLE</code>.
-	 * @see SimpleRelationship
-	 * @see SimpleRelationship#ACTOR_ROLE
-	 * @see SimpleRelationship#ACTEE_ROLE
-	 */
-	private InternalRelationship findRelationship(Object entity, boolean objectAsSource, InternalRelationship[] relationshipsToConsider) {
-		InternalRelationship relationship = null;
-		for (int i = 0; i < relationshipsToConsider.length && relationship == null; i++) {
-			InternalRelationship possibleRel = relationshipsToConsider[i];
-			if (objectAsSource && possibleRel.getSource().equals(entity)) {
-				relationship = possibleRel;
-			} else if (!objectAsSource && possibleRel.getDestination().equals(entity)) {
-				relationship = possibleRel;
+		successors = new int[entities.length][];
+		for (int i = 0; i < entities.length; i++) {
+			successors[i] = new int[counts[i]];
+			counts[i] = 0;
+		}
+		for (int r = 0; r < relationships.length; r++) {
+			if (sources[r] != NO_NODE) {
+				successors[sources[r]][counts[sources[r]]++] = destinations[r];
 			}
 		}
-		return relationship;
+		computeDescendentCounts();
 	}
 
-	/////////////////////////////////////////////////////////////////////////
-	/////                        Private Methods                        /////
-	/////////////////////////////////////////////////////////////////////////
-
 	/**
 	 * Builds the tree forest that is used to calculate positions
-	 * for each node in this TreeLayoutAlgorithm.
+	 * for each node in this TreeLayoutAlgorithm. All entities
+	 * will be placed somewhere in the forest. 
 	 */
-	private void buildForest(List roots, InternalNode[] entities, InternalRelationship[] relationships) {
-		List unplacedEntities = new ArrayList(Arrays.asList(entities));
-		buildForestRecursively(roots, unplacedEntities, entities, relationships);
+	private void buildForest(List roots, InternalNode[] entities) {
+		for (int i = 0; i < entities.length; i++) {
+			if (markedArr[i]) {
+				continue;
+			}
+			// find the root of the first unplaced entity, and build this root's tree
+			int root = findRoot(i);
+			buildTree(root, entities);
+			roots.add(entities[root]);
+		}
+		for (int i = 0; i < entities.length; i++) {
+			if (childCounts[i] < childrenLists[i].length) {
+				int[] children = new int[childCounts[i]];
+				System.arraycopy(childrenLists[i], 0, children, 0, children.length);
+				childrenLists[i] = children;
+			}
+		}
 	}
 
 	/**
-	 * Builds the forest recursively. All entities
-	 * will be placed somewhere in the forest. 
+	 * Finds the root node that can be treated as the root of a tree, by
+	 * following the first relationship to each node until a node without
+	 * one, or a node which has been seen already, is reached.
 	 */
-	private void buildForestRecursively(List roots, List unplacedEntities, InternalNode[] entities, InternalRelationship[] relationships) {
-		if (unplacedEntities.size() == 0) {
-			return; // no more entities to place
-		}
-
-		// get the first entity in the list of unplaced entities, find its root, and build this root's tree
-		InternalNode layoutEntity = (InternalNode) unplacedEntities.get(0);
-		InternalNode rootEntity = findRootObjectRecursive(layoutEntity, new HashSet(), relationships);
-		int rootEntityIndex = indexOfInternalNode(entities, rootEntity);
-		buildTreeRecursively(rootEntity, rootEntityIndex, 0, entities, relationships);
-		roots.add(rootEntity);
-
-		// now see which nodes are left to be placed in a tree somewhere
-		List unmarkedCopy = new ArrayList(unplacedEntities);
-		for (Iterator iter = unmarkedCopy.iterator(); iter.hasNext();) {
-			InternalNode tmpEntity = (InternalNode) iter.next();
-			int tmpEntityIndex = indexOfInternalNode(entities, tmpEntity);
-			boolean isMarked = markedArr[tmpEntityIndex];
-			if (isMarked) {
-				unplacedEntities.remove(tmpEntity);
+	private int findRoot(int i) {
+		visit++;
+		int current = i;
+		while (true) {
+			int parent = firstPredecessors[current];
+			if (parent == NO_NODE) {
+				return current;
+			}
+			if (parent == UNKNOWN_NODE) {
+				throw new RuntimeException("Couldn't find index of internal node: " + unknownPredecessors.get(new Integer(current)));
 			}
+			if (visited[parent] == visit) {
+				return current;
+			}
+			visited[parent] = visit;
+			current = parent;
 		}
-		buildForestRecursively(roots, unplacedEntities, entities, relationships);
 	}
 
 	/**
-	 * Finds the root node that can be treated as the root of a tree.
-	 * The found root node should be one of the unmarked nodes.
+	 * Builds a tree of the passed in entity.
+	 * The entity will pass a weight value to all of its children.
 	 */
-	private InternalNode findRootObjectRecursive(InternalNode currentEntity, Set seenAlready, InternalRelationship[] relationshipsToConsider) {
-		InternalNode rootEntity = null;
-		InternalRelationship rel = findRelationship(currentEntity, AS_DESTINATION, relationshipsToConsider);
-		if (rel == null) {
-			rootEntity = currentEntity;
-		} else {
-			InternalNode parentEntity = rel.getSource();
-			if (!seenAlready.contains(parentEntity)) {
-				seenAlready.add(parentEntity);
-				rootEntity = findRootObjectRecursive(parentEntity, seenAlready, relationshipsToConsider);
+	private void buildTree(int root, InternalNode[] entities) {
+		List stack = new ArrayList();
+		enterTree(root, 0, stack, entities);
+		while (!stack.isEmpty()) {
+			Frame frame = (Frame) stack.get(stack.size() - 1);
+			if (frame.next == frame.children.length) {
+				stack.remove(stack.size() - 1);
 			} else {
-				rootEntity = currentEntity;
+				enterTree(frame.children[frame.next++], frame.weight + 1, stack, entities);
 			}
 		}
-		return rootEntity;
 	}
 
 	/**
-	 * Builds a tree of the passed in entity.
-	 * The entity will pass a weight value to all of its children recursively.
+	 * Adds the entity to the tree, and pushes it to the stack if its children
+	 * have to be visited.
 	 */
-	private void buildTreeRecursively(InternalNode layoutEntity, int i, double weight, InternalNode[] entities, final InternalRelationship[] relationships) {
-		// No need to do further computation!
-		if (layoutEntity == null) {
-			return;
-		}
-
+	private void enterTree(int i, double weight, List stack, InternalNode[] entities) {
 		// A marked entity means that it has been added to the
 		// forest, and its weight value needs to be modified.		
 		if (markedArr[i]) {
-			modifyWeightRecursively(layoutEntity, i, weight, new HashSet(), entities, relationships);
+			modifyWeight(i, weight);
 			return; //No need to do further computation.
 		}
 
@@ -288,139 +338,202 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 		markedArr[i] = true;
 		weights[i] = weight;
 
-		// collect the children of this entity and put them in order
-		Collection rels = findRelationships(layoutEntity, AS_SOURCE, relationships);
-		List children = new ArrayList();
-		for (Iterator iter = rels.iterator(); iter.hasNext();) {
-			InternalRelationship layoutRel = (InternalRelationship) iter.next();
-			InternalNode childEntity = layoutRel.getDestination();
-			children.add(childEntity);
+		int[] children = sortChildren(i, entities);
+
+		// map children to this parent, and vice versa
+		visit++;
+		for (int c = 0; c < children.length; c++) {
+			int child = children[c];
+			if (visited[child] != visit) {
+				visited[child] = visit;
+				if (childCounts[i] == childrenLists[i].length) {
+					int[] grown = new int[children.length];
+					System.arraycopy(childrenLists[i], 0, grown, 0, childCounts[i]);
+					childrenLists[i] = grown;
+				}
+				childrenLists[i][childCounts[i]++] = child;
+				parentCounts[child]++;
+			}
 		}
 
+		stack.add(new Frame(i, children, weight));
+	}
+
+	/**
+	 * Collects the children of this entity and puts them in order.
+	 */
+	private int[] sortChildren(int i, InternalNode[] entities) {
+		final int[] children = successors[i];
+		if (children.length < 2) {
+			return children;
+		}
+		int[] sorted = new int[children.length];
 		if (comparator != null) {
-			Collections.sort(children, comparator);
+			List nodes = new ArrayList(children.length);
+			for (int c = 0; c < children.length; c++) {
+				nodes.add(entities[children[c]]);
+			}
+			Collections.sort(nodes, comparator);
+			for (int c = 0; c < sorted.length; c++) {
+				sorted[c] = ((Integer) nodeIndices.get(nodes.get(c))).intValue();
+			}
 		} else {
-			// sort the children by level, then by number of descendents, then by number of children
-			// TODO: SLOW
-			Collections.sort(children, new Comparator() {
+			// sort the children by number of descendents, keeping the order of equal ones
+			Integer[] order = new Integer[children.length];
+			for (int c = 0; c < children.length; c++) {
+				getNumDescendents(children[c]);
+				order[c] = new Integer(c);
+			}
+			Arrays.sort(order, new Comparator() {
 				public int compare(Object o1, Object o2) {
-					InternalNode node1 = (InternalNode) o1;
-					InternalNode node2 = (InternalNode) o2;
-					int[] numDescendentsAndLevel1 = new int[2];
-					int[] numDescendentsAndLevel2 = new int[2];
-					int level1 = numDescendentsAndLevel1[NUM_LEVELS_INDEX];
-					int level2 = numDescendentsAndLevel2[NUM_LEVELS_INDEX];
-					if (level1 == level2) {
-						getNumDescendentsAndLevel(node1, relationships, numDescendentsAndLevel1);
-						getNumDescendentsAndLevel(node2, relationships, numDescendentsAndLevel2);
-						int numDescendents1 = numDescendentsAndLevel1[NUM_DESCENDENTS_INDEX];
-						int numDescendents2 = numDescendentsAndLevel2[NUM_DESCENDENTS_INDEX];
-						if (numDescendents1 == numDescendents2) {
-							int numChildren1 = getNumChildren(node1, relationships);
-							int numChildren2 = getNumChildren(node1, relationships);
-							return numChildren2 - numChildren1;
-						} else {
-							return numDescendents2 - numDescendents1;
-						}
-					} else {
-						return level2 - level1;
-					}
-					//return getNumChildren(node2, relationships) - getNumChildren(node1, relationships);
+					int numDescendents1 = descendentCounts[children[((Integer) o1).intValue()]];
+					int numDescendents2 = descendentCounts[children[((Integer) o2).intValue()]];
+					return numDescendents2 - numDescendents1;
 				}
 			});
+			for (int c = 0; c < sorted.length; c++) {
+				sorted[c] = children[order[c].intValue()];
+			}
 		}
+		return sorted;
+	}
 
-		// map children to this parent, and vice versa
-		for (Iterator iter = children.iterator(); iter.hasNext();) {
-			InternalNode childEntity = (InternalNode) iter.next();
-			int childEntityIndex = indexOfInternalNode(entities, childEntity);
-			if (!childrenLists[i].contains(childEntity)) {
-				childrenLists[i].add(childEntity);
-			}
-			if (!parentLists[childEntityIndex].contains(layoutEntity)) {
-				parentLists[childEntityIndex].add(layoutEntity);
+	/**
+	 * Counts the relationships from the nodes which are reachable from each
+	 * node, wherever the reachable nodes form a tree. These counts add up
+	 * from the leaves, so they take linear time. The other counts are left to
+	 * {@link #getNumDescendents(int)}.
+	 */
+	private void computeDescendentCounts() {
+		int n = successors.length;
+		descendentCounts = new int[n];
+		Arrays.fill(descendentCounts, -1);
+		int[] indegrees = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int c = 0; c < successors[i].length; c++) {
+				indegrees[successors[i][c]]++;
 			}
 		}
-
-		for (Iterator iter = children.iterator(); iter.hasNext();) {
-			InternalNode childEntity = (InternalNode) iter.next();
-			int childEntityIndex = indexOfInternalNode(entities, childEntity);
-			buildTreeRecursively(childEntity, childEntityIndex, weight + 1, entities, relationships);
+		// 0 = not visited yet, 1 = on the stack, 2 = done
+		byte[] states = new byte[n];
+		int[] stack = new int[n];
+		int[] next = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (states[i] != 0) {
+				continue;
+			}
+			int size = 0;
+			stack[size++] = i;
+			states[i] = 1;
+			while (size > 0) {
+				int node = stack[size - 1];
+				if (next[node] < successors[node].length) {
+					int child = successors[node][next[node]++];
+					if (states[child] == 0) {
+						states[child] = 1;
+						stack[size++] = child;
+					}
+					continue;
+				}
+				size--;
+				states[node] = 2;
+				int count = successors[node].length;
+				for (int c = 0; c < successors[node].length && count >= 0; c++) {
+					int child = successors[node][c];
+					if (states[child] != 2 || indegrees[child] != 1 || descendentCounts[child] < 0) {
+						count = -1;
+					} else {
+						count += descendentCounts[child];
+					}
+				}
+				descendentCounts[node] = count;
+			}
 		}
 	}
 
-	private int getNumChildren(InternalNode layoutEntity, InternalRelationship[] relationships) {
-		return findRelationships(layoutEntity, AS_SOURCE, relationships).size();
-	}
-
-	private void getNumDescendentsAndLevel(InternalNode layoutEntity, InternalRelationship[] relationships, int[] numDescendentsAndLevel) {
-		getNumDescendentsAndLevelRecursive(layoutEntity, relationships, new HashSet(), numDescendentsAndLevel, 0);
-	}
-
-	private void getNumDescendentsAndLevelRecursive(InternalNode layoutEntity, InternalRelationship[] relationships, Set seenAlready, int[] numDescendentsAndLevel, int currentLevel) {
-		if (seenAlready.contains(layoutEntity)) {
-			return;
-		}
-		seenAlready.add(layoutEntity);
-		numDescendentsAndLevel[NUM_LEVELS_INDEX] = Math.max(numDescendentsAndLevel[NUM_LEVELS_INDEX], currentLevel);
-		Collection rels = findRelationships(layoutEntity, AS_SOURCE, relationships);
-		for (Iterator iter = rels.iterator(); iter.hasNext();) {
-			InternalRelationship layoutRel = (InternalRelationship) iter.next();
-			InternalNode childEntity = layoutRel.getDestination();
-			numDescendentsAndLevel[NUM_DESCENDENTS_INDEX]++;
-			getNumDescendentsAndLevelRecursive(childEntity, relationships, seenAlready, numDescendentsAndLevel, currentLevel + 1);
-
+	/**
+	 * Returns the number of relationships from the nodes which are reachable
+	 * from the given node, including itself.
+	 */
+	private int getNumDescendents(int i) {
+		if (descendentCounts[i] < 0) {
+			visit++;
+			int[] stack = new int[successors.length];
+			int size = 0;
+			int count = 0;
+			stack[size++] = i;
+			visited[i] = visit;
+			while (size > 0) {
+				int node = stack[--size];
+				count += successors[node].length;
+				for (int c = 0; c < successors[node].length; c++) {
+					int child = successors[node][c];
+					if (visited[child] != visit) {
+						visited[child] = visit;
+						stack[size++] = child;
+					}
+				}
+			}
+			descendentCounts[i] = count;
 		}
+		return descendentCounts[i];
 	}
 
 	/**
-	 * Modifies the weight value of the marked node recursively.
+	 * Modifies the weight value of the marked node and its descendents.
 	 */
-	private void modifyWeightRecursively(InternalNode layoutEntity, int i, double weight, Set descendentsSeenSoFar, InternalNode[] entities, InternalRelationship[] relationships) {
-		// No need to do further computation!
-		if (layoutEntity == null) {
-			return;
+	private void modifyWeight(int i, double weight) {
+		visit++;
+		List stack = new ArrayList();
+		enterModification(i, weight, stack);
+		while (!stack.isEmpty()) {
+			Frame frame = (Frame) stack.get(stack.size() - 1);
+			if (frame.next == frame.children.length) {
+				stack.remove(stack.size() - 1);
+			} else {
+				enterModification(frame.children[frame.next++], frame.weight + 1, stack);
+			}
 		}
+	}
 
-		if (descendentsSeenSoFar.contains(layoutEntity)) {
+	private void enterModification(int i, double weight, List stack) {
+		if (visited[i] == visit) {
 			return; //No need to do further computation.
 		}
-
-		descendentsSeenSoFar.add(layoutEntity);
+		visited[i] = visit;
 		// No need to do further computation!
 		if (weight < weights[i]) {
 			return;
 		}
-
 		weights[i] = weight;
-		Collection rels = findRelationships(layoutEntity, AS_SOURCE, relationships);
-
-		for (Iterator iter = rels.iterator(); iter.hasNext();) {
-			InternalRelationship tmpRel = (InternalRelationship) iter.next();
-			InternalNode tmpEntity = tmpRel.getDestination();
-			int tmpEntityIndex = indexOfInternalNode(entities, tmpEntity);
-			modifyWeightRecursively(tmpEntity, tmpEntityIndex, weight + 1, descendentsSeenSoFar, entities, relationships);
-		}
+		stack.add(new Frame(i, successors[i], weight));
 	}
 
 	/**
 	 * Gets the maxium weight of a tree in the forest of this TreeLayoutAlgorithm.
 	 */
-	private double getMaxiumWeightRecursive(InternalNode layoutEntity, int i, Set seenAlready, InternalNode[] entities) {
-		double result = 0;
-		if (seenAlready.contains(layoutEntity)) {
-			return result;
+	private double getMaxiumWeight(int root) {
+		visit++;
+		visited[root] = visit;
+		if (childrenLists[root].length == 0) {
+			return weights[root];
 		}
-		seenAlready.add(layoutEntity);
-		List children = childrenLists[i];
-		if (children.isEmpty()) {
-			result = weights[i];
-		} else {
-			//TODO: SLOW
-			for (Iterator iter = children.iterator(); iter.hasNext();) {
-				InternalNode childEntity = (InternalNode) iter.next();
-				int childEntityIndex = indexOfInternalNode(entities, childEntity);
-				result = Math.max(result, getMaxiumWeightRecursive(childEntity, childEntityIndex, seenAlready, entities));
+		double result = 0;
+		int[] stack = new int[childrenLists.length];
+		int size = 0;
+		stack[size++] = root;
+		while (size > 0) {
+			int[] children = childrenLists[stack[--size]];
+			for (int c = 0; c < children.length; c++) {
+				int child = children[c];
+				if (visited[child] != visit) {
+					visited[child] = visit;
+					if (childrenLists[child].length == 0) {
+						result = Math.max(result, weights[child]);
+					} else {
+						stack[size++] = child;
+					}
+				}
 			}
 		}
 		return result;
@@ -436,13 +549,22 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 			return;
 		}
 
+		// in a forest, the leaves of each subtree are only counted once
+		leafCounts = new int[entities.length];
+		isForest = true;
+		for (int i = 0; i < entities.length && isForest; i++) {
+			isForest = parentCounts[i] <= 1;
+		}
+		for (int i = 0; i < roots.size() && isForest; i++) {
+			isForest = parentCounts[indexOf(roots.get(i))] == 0;
+		}
+
 		int totalLeafCount = 0;
 		double maxWeight = 0;
 		for (int i = 0; i < roots.size(); i++) {
-			InternalNode rootEntity = (InternalNode) roots.get(i);
-			int rootEntityIndex = indexOfInternalNode(entities, rootEntity);
-			totalLeafCount = totalLeafCount + getNumberOfLeaves(rootEntity, rootEntityIndex, entities);
-			maxWeight = Math.max(maxWeight, getMaxiumWeightRecursive(rootEntity, rootEntityIndex, new HashSet(), entities) + 1.0);
+			int rootEntityIndex = indexOf(roots.get(i));
+			totalLeafCount = totalLeafCount + getNumberOfLeaves(rootEntityIndex);
+			maxWeight = Math.max(maxWeight, getMaxiumWeight(rootEntityIndex) + 1.0);
 		}
 
 		double width = 1.0 / totalLeafCount;
@@ -450,105 +572,90 @@ public class TreeLayoutAlgorithm extends AbstractLayoutAlgorithm {
 
 		int leafCountSoFar = 0;
 
-		//TODO: SLOW!
 		for (int i = 0; i < roots.size(); i++) {
-			InternalNode rootEntity = (InternalNode) roots.get(i);
-			int rootEntityIndex = indexOfInternalNode(entities, rootEntity);
-			computePositionRecursively(rootEntity, rootEntityIndex, leafCountSoFar, width, height, new HashSet(), entities);
-			leafCountSoFar = leafCountSoFar + getNumberOfLeaves(rootEntity, rootEntityIndex, entities);
+			int rootEntityIndex = indexOf(roots.get(i));
+			computePositions(rootEntityIndex, leafCountSoFar, width, height, entities);
+			leafCountSoFar = leafCountSoFar + getNumberOfLeaves(rootEntityIndex);
 		}
 	}
 
 	/**
-	 * Computes positions recursively until the leaf nodes are reached.
+	 * Computes positions of a tree until the leaf nodes are reached.
 	 */
-	private void computePositionRecursively(InternalNode layoutEntity, int i, int relativePosition, double width, double height, Set seenAlready, InternalNode[] entities) {
-		if (seenAlready.contains(layoutEntity)) {
+	private void computePositions(int root, int relativePosition, double width, double height, InternalNode[] entities) {
+		placement++;
+		List stack = new ArrayList();
+		enterPosition(root, relativePosition, width, height, stack, entities);
+		while (!stack.isEmpty()) {
+			Frame frame = (Frame) stack.get(stack.size() - 1);
+			if (frame.next == frame.children.length) {
+				stack.remove(stack.size() - 1);
+			} else {
+				int child = frame.children[frame.next++];
+				enterPosition(child, (int) frame.weight + frame.count, width, height, stack, entities);
+				frame.count = frame.count + getNumberOfLeaves(child);
+			}
+		}
+	}
+
+	private void enterPosition(int i, int relativePosition, double width, double height, List stack, InternalNode[] entities) {
+		if (placed[i] == placement) {
 			return;
 		}
-		seenAlready.add(layoutEntity);
-		double level = getLevel(layoutEntity, i, entities);
-		int breadth = getNumberOfLeaves(layoutEntity, i, entities);
+		placed[i] = placement;
+		int breadth = getNumberOfLeaves(i);
 		double absHPosition = relativePosition + breadth / 2.0;
-		double absVPosition = (level + 0.5);
+		double absVPosition = (weights[i] + 0.5);
 
 		double posx = absHPosition * width;
 		double posy = absVPosition * height;
-		double weight = weights[i];
-		posy = posy + height * (weight - level);
-		layoutEntity.setInternalLocation(posx, posy);
-
-		int relativeCount = 0;
-		List children = childrenLists[i];
-		//TODO: Slow
-		for (Iterator iter = children.iterator(); iter.hasNext();) {
-			InternalNode childEntity = (InternalNode) iter.next();
-			int childEntityIndex = indexOfInternalNode(entities, childEntity);
-			computePositionRecursively(childEntity, childEntityIndex, relativePosition + relativeCount, width, height, seenAlready, entities);
-			relativeCount = relativeCount + getNumberOfLeaves(childEntity, childEntityIndex, entities);
-		}
-	}
+		entities[i].setInternalLocation(posx, posy);
 
-	private int getNumberOfLeaves(InternalNode layoutEntity, int i, InternalNode[] entities) {
-		return getNumberOfLeavesRecursive(layoutEntity, i, new HashSet(), entities);
+		stack.add(new Frame(i, childrenLists[i], relativePosition));
 	}
 
-	private int getNumberOfLeavesRecursive(InternalNode layoutEntity, int i, Set seen, InternalNode[] entities) {
+	/**
+	 * Returns the number of leaves below the given node. A child which is
+	 * reached a second time, through a cycle or a shared descendent, counts the
+	 * leaves of its parent as one.
+	 */
+	private int getNumberOfLeaves(int i) {
+		if (leafCounts[i] > 0) {
+			return leafCounts[i];
+		}
+		visit++;
+		List stack = new ArrayList();
+		stack.add(new Frame(i, childrenLists[i], 0));
 		int numLeaves = 0;
-		List children = childrenLists[i];
-		if (children.size() == 0) {
-			numLeaves = 1;
-		} else {
-			//TODO: SLOW!
-			for (Iterator iter = children.iterator(); iter.hasNext();) {
-				InternalNode childEntity = (InternalNode) iter.next();
-				if (!seen.contains(childEntity)) {
-					seen.add(childEntity);
-					int childEntityIndex = indexOfInternalNode(entities, childEntity);
-					numLeaves += getNumberOfLeavesRecursive(childEntity, childEntityIndex, seen, entities);
+		while (!stack.isEmpty()) {
+			Frame frame = (Frame) stack.get(stack.size() - 1);
+			if (frame.next < frame.children.length) {
+				int child = frame.children[frame.next++];
+				if (isForest && leafCounts[child] > 0) {
+					frame.count += leafCounts[child];
+				} else if (visited[child] != visit) {
+					visited[child] = visit;
+					stack.add(new Frame(child, childrenLists[child], 0));
 				} else {
-					numLeaves = 1;
+					frame.count = 1;
 				}
+				continue;
+			}
+			stack.remove(stack.size() - 1);
+			numLeaves = frame.children.length == 0 ? 1 : frame.count;
+			if (isForest) {
+				leafCounts[frame.node] = numLeaves;
+			}
+			if (!stack.isEmpty()) {
+				((Frame) stack.get(stack.size() - 1)).count += numLeaves;
 			}
 		}
+		leafCounts[i] = numLeaves;
 		return numLeaves;
 	}
 
-	private int getLevel(InternalNode layoutEntity, int i, InternalNode[] entities) {
-		return getLevelRecursive(layoutEntity, i, new HashSet(), entities);
-	}
-
-	private int getLevelRecursive(InternalNode layoutEntity, int i, Set seen, InternalNode[] entities) {
-		if (seen.contains(layoutEntity)) {
-			return 0;
-		}
-		seen.add(layoutEntity);
-		List parents = parentLists[i];
-		int maxParentLevel = 0;
-		for (Iterator iter = parents.iterator(); iter.hasNext();) {
-			InternalNode parentEntity = (InternalNode) iter.next();
-			int parentEntityIndex = indexOfInternalNode(entities, parentEntity);
-			int parentLevel = getLevelRecursive(parentEntity, parentEntityIndex, seen, entities) + 1;
-			maxParentLevel = Math.max(maxParentLevel, parentLevel);
-		}
-		return maxParentLevel;
-	}
-
-	/**
-	 * Note: Use this as little as possible!
-	 * TODO limit the use of this method 
-	 * @param nodes
-	 * @param nodeToFind
-	 * @return
-	 */
-	private int indexOfInternalNode(InternalNode[] nodes, InternalNode nodeToFind) {
-		for (int i = 0; i < nodes.length; i++) {
-			InternalNode node = nodes[i];
-			if (node.equals(nodeToFind)) {
-				return i;
-			}
-		}
-		throw new RuntimeException("Couldn't find index of internal node: " + nodeToFind);
+	private int indexOf(Object entity) {
+		return ((Integer) nodeIndices.get(entity)).intValue();
 	}
 
 	protected boolean isValidConfiguration(boolean asynchronous, boolean continueous) {
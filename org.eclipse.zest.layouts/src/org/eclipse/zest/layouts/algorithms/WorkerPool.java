@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.layouts.algorithms;
+
+/**
+ * A fixed set of daemon threads which compute the blocks of a
+ * {@link ContinuousLayoutAlgorithm.ParallelTask} together with the calling
+ * thread. Blocks are handed out in increasing order to whichever thread is
+ * free, so a task must not depend on which thread computes a block, or on the
+ * order in which the blocks complete.
+ */
+class WorkerPool {
+
+	private final Thread[] workers;
+
+	private ContinuousLayoutAlgorithm.ParallelTask task;
+	private int blockCount;
+	private int nextBlock;
+	private int pendingBlocks;
+	private int generation;
+	private Throwable failure;
+	private boolean disposed;
+
+	/**
+	 * Creates a pool which computes tasks on the given number of threads,
+	 * including the thread which calls {@link #run(int, ContinuousLayoutAlgorithm.ParallelTask)}.
+	 *
+	 * @param threadCount
+	 *            the number of threads, at least 2
+	 */
+	WorkerPool(int threadCount) {
+		workers = new Thread[threadCount - 1];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(new Runnable() {
+				public void run() {
+					waitForWork();
+				}
+			}, "Zest Layout Worker " + (i + 1));
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Stops the threads of this pool once they are idle.
+	 */
+	synchronized void dispose() {
+		disposed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Computes all blocks of the given task and returns when they are done.
+	 * If a block fails, the first failure is rethrown once all other blocks
+	 * are done.
+	 *
+	 * @param blocks
+	 *            the number of blocks
+	 * @param parallelTask
+	 *            the task
+	 */
+	void run(int blocks, ContinuousLayoutAlgorithm.ParallelTask parallelTask) {
+		synchronized (this) {
+			task = parallelTask;
+			blockCount = blocks;
+			nextBlock = 0;
+			pendingBlocks = blocks;
+			failure = null;
+			generation++;
+			notifyAll();
+		}
+		work();
+		Throwable error;
+		synchronized (this) {
+			boolean interrupted = false;
+			// the workers may still be using the task's data, so keep waiting
+			while (pendingBlocks > 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			task = null;
+			error = failure;
+			failure = null;
+		}
+		if (error instanceof RuntimeException) {
+			throw (RuntimeException) error;
+		} else if (error instanceof Error) {
+			throw (Error) error;
+		} else if (error != null) {
+			throw new RuntimeException(error.toString());
+		}
+	}
+
+	private void waitForWork() {
+		int seen = 0;
+		while (true) {
+			synchronized (this) {
+				while (!disposed && generation == seen) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// keep waiting until disposed
+					}
+				}
+				if (disposed) {
+					return;
+				}
+				seen = generation;
+			}
+			work();
+		}
+	}
+
+	/**
+	 * Computes blocks of the current task until there are none left.
+	 */
+	private void work() {
+		while (true) {
+			ContinuousLayoutAlgorithm.ParallelTask current;
+			int block;
+			synchronized (this) {
+				if (nextBlock >= blockCount) {
+					return;
+				}
+				current = task;
+				block = nextBlock++;
+			}
+			try {
+				current.run(block);
+			} catch (Throwable e) {
+				synchronized (this) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			} finally {
+				synchronized (this) {
+					pendingBlocks--;
+					if (pendingBlocks == 0) {
+						notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+}
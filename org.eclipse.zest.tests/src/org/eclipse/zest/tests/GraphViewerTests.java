@@ -9,6 +9,7 @@
 package org.eclipse.zest.tests;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.Assert;
@@ -18,6 +19,7 @@ import org.eclipse.jface.util.DelegatingDragAdapter;
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
+import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.dnd.DND;
 import org.eclipse.swt.dnd.DropTarget;
@@ -25,7 +27,9 @@ import org.eclipse.swt.dnd.TextTransfer;
 import org.eclipse.swt.dnd.Transfer;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.zest.core.viewers.EntityConnectionData;
 import org.eclipse.zest.core.viewers.GraphViewer;
+import org.eclipse.zest.core.viewers.IGraphEntityContentProvider;
 import org.eclipse.zest.core.widgets.Graph;
 import org.eclipse.zest.core.widgets.GraphConnection;
 import org.eclipse.zest.core.widgets.GraphItem;
@@ -111,4 +115,63 @@ public class GraphViewerTests extends TestCase {
 		assertFalse("Post selection listeners should be notified",
 				selected.isEmpty());
 	}
+
+	/**
+	 * Assert that a refresh only replaces the items of the elements which
+	 * changed, and keeps the other items with their location and selection.
+	 */
+	public void testRefreshKeepsUnchangedItems() {
+		EntityContentProvider content = new EntityContentProvider();
+		content.entities.addAll(Arrays.asList(new String[] { "1", "2", "3" }));
+		viewer.setContentProvider(content);
+		viewer.setInput(new Object());
+		GraphNode node1 = (GraphNode) viewer.findGraphItem("1");
+		GraphNode node3 = (GraphNode) viewer.findGraphItem("3");
+		GraphConnection connection = (GraphConnection) viewer
+				.findGraphItem(new EntityConnectionData("1", "2"));
+		node1.setLocation(100, 50);
+		viewer.setSelection(new StructuredSelection("1"));
+
+		content.entities.remove("3");
+		content.entities.add("4");
+		viewer.refresh();
+
+		assertSame(node1, viewer.findGraphItem("1"));
+		assertSame(connection, viewer.findGraphItem(new EntityConnectionData(
+				"1", "2")));
+		assertEquals(100, node1.getLocation().x);
+		assertEquals(50, node1.getLocation().y);
+		assertTrue(node3.isDisposed());
+		assertNull(viewer.findGraphItem("3"));
+		assertNull(viewer.findGraphItem(new EntityConnectionData("2", "3")));
+		assertNotNull(viewer.findGraphItem("4"));
+		assertEquals(3, viewer.getGraphControl().getNodes().size());
+		assertEquals(new StructuredSelection("1"), viewer.getSelection());
+	}
+
+	/**
+	 * Content provider which connects each entity to the next one.
+	 */
+	private class EntityContentProvider implements IGraphEntityContentProvider {
+
+		List entities = new ArrayList();
+
+		public Object[] getElements(Object inputElement) {
+			return entities.toArray();
+		}
+
+		public Object[] getConnectedTo(Object entity) {
+			int index = entities.indexOf(entity);
+			if (index == -1 || index == entities.size() - 1) {
+				return new Object[0];
+			}
+			return new Object[] { entities.get(index + 1) };
+		}
+
+		public void dispose() {
+		}
+
+		public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		}
+	}
 }
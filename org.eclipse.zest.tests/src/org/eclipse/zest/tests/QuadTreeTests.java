@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the quadtree which approximates the repulsion in the spring layout.
+ * The tree is package private, so it is used through reflection.
+ */
+public class QuadTreeTests extends TestCase {
+
+	private static final double GRAVITATION = 1;
+
+	private static final double MIN_DISTANCE = 0.001;
+
+	private Object tree;
+
+	private Method build;
+
+	private Method addRepulsion;
+
+	private double[] x;
+
+	private double[] y;
+
+	public void testNoApproximationGivesExactSum() throws Exception {
+		createPoints(200, 1);
+		createTree(0);
+		build.invoke(tree, new Object[] { x, y, new Integer(x.length) });
+		for (int i = 0; i < x.length; i++) {
+			double[] expected = exactRepulsion(i);
+			double[] actual = repulsion(i);
+			assertEquals(expected[0], actual[0], 1e-9 * Math.abs(expected[0]) + 1e-9);
+			assertEquals(expected[1], actual[1], 1e-9 * Math.abs(expected[1]) + 1e-9);
+		}
+	}
+
+	public void testApproximationIsClose() throws Exception {
+		createPoints(500, 2);
+		createTree(0.8);
+		build.invoke(tree, new Object[] { x, y, new Integer(x.length) });
+		double error = 0, total = 0;
+		for (int i = 0; i < x.length; i++) {
+			double[] expected = exactRepulsion(i);
+			double[] actual = repulsion(i);
+			error += Math.abs(expected[0] - actual[0]) + Math.abs(expected[1] - actual[1]);
+			total += Math.abs(expected[0]) + Math.abs(expected[1]);
+		}
+		assertTrue("relative error " + error / total, error < 0.1 * total);
+	}
+
+	public void testCoincidentPoints() throws Exception {
+		// the coincident points can not be separated, so they end up in one
+		// leaf at the maximum depth
+		createPoints(40, 3);
+		for (int i = 0; i < 30; i++) {
+			x[i] = 0.25;
+			y[i] = 0.75;
+		}
+		double[] thetas = new double[] { 0, 0.8 };
+		for (int t = 0; t < thetas.length; t++) {
+			createTree(thetas[t]);
+			build.invoke(tree, new Object[] { x, y, new Integer(x.length) });
+			for (int i = 0; i < x.length; i++) {
+				double[] expected = exactRepulsion(i);
+				double[] actual = repulsion(i);
+				if (thetas[t] == 0) {
+					assertEquals(expected[0], actual[0], 1e-9 * Math.abs(expected[0]) + 1e-9);
+					assertEquals(expected[1], actual[1], 1e-9 * Math.abs(expected[1]) + 1e-9);
+				} else {
+					assertEquals(expected[0], actual[0], 0.1 * Math.abs(expected[0]) + 1e-6);
+					assertEquals(expected[1], actual[1], 0.1 * Math.abs(expected[1]) + 1e-6);
+				}
+			}
+		}
+	}
+
+	public void testRebuildWithFewerPoints() throws Exception {
+		createPoints(100, 4);
+		createTree(0);
+		build.invoke(tree, new Object[] { x, y, new Integer(x.length) });
+		build.invoke(tree, new Object[] { x, y, new Integer(10) });
+		double[] actual = repulsion(0);
+		double[] expected = new double[2];
+		for (int j = 1; j < 10; j++)
+			addExactRepulsion(0, j, expected);
+		assertEquals(expected[0], actual[0], 1e-9 * Math.abs(expected[0]) + 1e-9);
+		assertEquals(expected[1], actual[1], 1e-9 * Math.abs(expected[1]) + 1e-9);
+	}
+
+	private void createPoints(int count, long seed) {
+		Random random = new Random(seed);
+		x = new double[count];
+		y = new double[count];
+		for (int i = 0; i < count; i++) {
+			x[i] = random.nextDouble();
+			y[i] = random.nextDouble();
+		}
+	}
+
+	private void createTree(double theta) throws Exception {
+		Class treeClass = Class.forName("org.eclipse.zest.layouts.algorithms.QuadTree");
+		Constructor constructor = treeClass.getDeclaredConstructor(new Class[] { double.class });
+		constructor.setAccessible(true);
+		tree = constructor.newInstance(new Object[] { new Double(theta) });
+		build = treeClass.getDeclaredMethod("build", new Class[] { double[].class, double[].class, int.class });
+		build.setAccessible(true);
+		addRepulsion = treeClass.getDeclaredMethod("addRepulsion", new Class[] { int.class, double[].class, double[].class, double.class, double.class, double[].class });
+		addRepulsion.setAccessible(true);
+	}
+
+	private double[] repulsion(int point) throws Exception {
+		double[] force = new double[2];
+		addRepulsion.invoke(tree, new Object[] { new Integer(point), x, y, new Double(GRAVITATION), new Double(MIN_DISTANCE), force });
+		return force;
+	}
+
+	private double[] exactRepulsion(int point) {
+		double[] force = new double[2];
+		for (int j = 0; j < x.length; j++)
+			if (j != point)
+				addExactRepulsion(point, j, force);
+		return force;
+	}
+
+	private void addExactRepulsion(int point, int other, double[] force) {
+		double dx = x[point] - x[other];
+		double dy = y[point] - y[other];
+		double distance = Math.max(MIN_DISTANCE, Math.sqrt(dx * dx + dy * dy));
+		double f = GRAVITATION / (distance * distance);
+		force[0] += f * dx / distance;
+		force[1] += f * dy / distance;
+	}
+
+}
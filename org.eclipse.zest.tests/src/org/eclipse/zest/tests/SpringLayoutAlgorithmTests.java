@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.SpringLayoutAlgorithm;
+import org.eclipse.zest.layouts.dataStructures.InternalNode;
+import org.eclipse.zest.layouts.dataStructures.InternalRelationship;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+
+/**
+ * Tests for the {@link SpringLayoutAlgorithm} class.
+ */
+public class SpringLayoutAlgorithmTests extends TestCase {
+
+	private static final int[][] EDGES = new int[][] { { 0, 1 }, { 0, 2 }, { 1, 3 }, { 1, 4 }, { 2, 5 }, { 2, 6 }, { 6, 7 }, { 3, 8 }, { 8, 9 }, { 4, 9 }, { 10, 11 }, { 0, 1 } };
+
+	/**
+	 * The positions computed for {@link #EDGES} by the implementation which
+	 * kept the relations in dense matrices.
+	 */
+	private static final double[][] PREVIOUS_POSITIONS = new double[][] { { 39.129058165075655, 150.19800937790373 }, { 58.760969003769624, 93.3398495080413 }, { 45.784040492795484, 213.2072366271283 }, { 85.59003437046236, 25.0 }, { 63.210899153611784, 63.25742994306514 }, { 25.0, 255.87675667416903 }, { 88.7167664700358, 249.97772199942773 }, { 112.63555751722926, 269.16918858747704 }, { 119.75614994599357, 28.610702537979677 }, { 94.42740178848842, 76.56104000056979 }, { 442.7401753818131, 450.93406434801904 }, { 450.93406434801904, 399.92445505114637 } };
+
+	private SimpleNode[] nodes;
+
+	private LayoutRelationship[] relationships;
+
+	protected void setUp() throws Exception {
+		Random random = new Random(7);
+		nodes = new SimpleNode[12];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new SimpleNode("n" + i, random.nextInt(500), random.nextInt(500), 10, 10);
+		}
+		relationships = new LayoutRelationship[EDGES.length];
+		for (int i = 0; i < EDGES.length; i++) {
+			relationships[i] = new SimpleRelationship(nodes[EDGES[i][0]], nodes[EDGES[i][1]], false);
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		// the settings are shared by all instances
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm();
+		algorithm.setRandom(SpringLayoutAlgorithm.DEFAULT_SPRING_RANDOM);
+		algorithm.setIterations(SpringLayoutAlgorithm.DEFAULT_SPRING_ITERATIONS);
+	}
+
+	public void testSamePositionsAsBefore() throws Exception {
+		SpringLayoutAlgorithm algorithm = createAlgorithm();
+		algorithm.applyLayout(nodes, relationships, 0, 0, 500, 500, false, false);
+		for (int i = 0; i < nodes.length; i++) {
+			assertEquals(PREVIOUS_POSITIONS[i][0], nodes[i].getXInLayout(), 1e-9);
+			assertEquals(PREVIOUS_POSITIONS[i][1], nodes[i].getYInLayout(), 1e-9);
+		}
+	}
+
+	public void testApproximateForces() throws Exception {
+		SpringLayoutAlgorithm algorithm = createAlgorithm();
+		algorithm.setApproximateForces(true);
+		algorithm.applyLayout(nodes, relationships, 0, 0, 500, 500, false, false);
+		for (int i = 0; i < nodes.length; i++) {
+			assertTrue(nodes[i].getXInLayout() >= 0 && nodes[i].getXInLayout() <= 500);
+			assertTrue(nodes[i].getYInLayout() >= 0 && nodes[i].getYInLayout() <= 500);
+		}
+		// related nodes stay closer than unrelated ones
+		assertTrue(distance(10, 11) < distance(0, 10));
+	}
+
+	public void testSamePositionsOnAnyNumberOfThreads() throws Exception {
+		// large enough for the forces to be computed in parallel
+		double[][] positions = new double[2][];
+		for (int run = 0; run < positions.length; run++) {
+			createLargeGraph();
+			SpringLayoutAlgorithm algorithm = createAlgorithm();
+			algorithm.setIterations(5);
+			algorithm.setThreadCount(run == 0 ? 1 : 4);
+			algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false, false);
+			positions[run] = new double[2 * nodes.length];
+			for (int i = 0; i < nodes.length; i++) {
+				positions[run][2 * i] = nodes[i].getXInLayout();
+				positions[run][2 * i + 1] = nodes[i].getYInLayout();
+			}
+		}
+		for (int i = 0; i < positions[0].length; i++) {
+			assertEquals(positions[0][i], positions[1][i], 0);
+		}
+		assertNoWorkers();
+	}
+
+	public void testApproximateForcesOnAnyNumberOfThreads() throws Exception {
+		double[][] positions = new double[2][];
+		for (int run = 0; run < positions.length; run++) {
+			createLargeGraph();
+			SpringLayoutAlgorithm algorithm = createAlgorithm();
+			algorithm.setIterations(5);
+			algorithm.setThreadCount(run == 0 ? 1 : 4);
+			algorithm.setApproximateForces(true);
+			algorithm.applyLayout(nodes, relationships, 0, 0, 1000, 1000, false, false);
+			positions[run] = new double[2 * nodes.length];
+			for (int i = 0; i < nodes.length; i++) {
+				positions[run][2 * i] = nodes[i].getXInLayout();
+				positions[run][2 * i + 1] = nodes[i].getYInLayout();
+			}
+		}
+		for (int i = 0; i < positions[0].length; i++) {
+			assertEquals(positions[0][i], positions[1][i], 0);
+		}
+		assertNoWorkers();
+	}
+
+	public void testFailureInBlockIsRethrown() throws Exception {
+		final RuntimeException failure = new IllegalStateException();
+		final int[] completed = new int[1];
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING) {
+			protected void computeOneIteration(InternalNode[] entitiesToLayout, InternalRelationship[] relationshipsToConsider, double x, double y, double width, double height) {
+				runInParallel(16, new ParallelTask() {
+					public void run(int block) {
+						if (block == 5) {
+							throw failure;
+						}
+						synchronized (completed) {
+							completed[0]++;
+						}
+					}
+				});
+			}
+		};
+		algorithm.setThreadCount(4);
+		try {
+			algorithm.applyLayout(nodes, relationships, 0, 0, 500, 500, false, false);
+			fail();
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+		// the other blocks are done before the failure is rethrown
+		assertEquals(15, completed[0]);
+		assertNoWorkers();
+	}
+
+	private void assertNoWorkers() throws InterruptedException {
+		Thread[] threads = new Thread[Thread.activeCount() + 10];
+		int count = Thread.enumerate(threads);
+		for (int i = 0; i < count; i++) {
+			if (threads[i].getName().startsWith("Zest Layout Worker")) {
+				threads[i].join(5000);
+				assertFalse(threads[i].isAlive());
+			}
+		}
+	}
+
+	private void createLargeGraph() {
+		Random random = new Random(11);
+		nodes = new SimpleNode[1200];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new SimpleNode("n" + i, random.nextInt(1000), random.nextInt(1000), 10, 10);
+		}
+		List list = new ArrayList();
+		for (int i = 1; i < nodes.length; i++) {
+			list.add(new SimpleRelationship(nodes[random.nextInt(i)], nodes[i], false));
+		}
+		relationships = (LayoutRelationship[]) list.toArray(new LayoutRelationship[list.size()]);
+	}
+
+	private SpringLayoutAlgorithm createAlgorithm() {
+		SpringLayoutAlgorithm algorithm = new SpringLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING);
+		algorithm.setRandom(false);
+		algorithm.setIterations(200);
+		return algorithm;
+	}
+
+	private double distance(int i, int j) {
+		double dx = nodes[i].getXInLayout() - nodes[j].getXInLayout();
+		double dy = nodes[i].getYInLayout() - nodes[j].getYInLayout();
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+}
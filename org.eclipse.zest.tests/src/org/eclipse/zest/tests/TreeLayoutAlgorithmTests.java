@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2010 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.zest.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.zest.layouts.LayoutRelationship;
+import org.eclipse.zest.layouts.LayoutStyles;
+import org.eclipse.zest.layouts.algorithms.TreeLayoutAlgorithm;
+import org.eclipse.zest.layouts.exampleStructures.SimpleNode;
+import org.eclipse.zest.layouts.exampleStructures.SimpleRelationship;
+
+/**
+ * Tests for the {@link TreeLayoutAlgorithm} class. The expected positions
+ * were computed by the recursive implementation.
+ */
+public class TreeLayoutAlgorithmTests extends TestCase {
+
+	private SimpleNode[] nodes;
+
+	public void testForest() throws Exception {
+		// two trees and a node without relationships
+		layout(9, new int[][] { { 0, 1 }, { 0, 2 }, { 1, 3 }, { 1, 4 }, { 2, 5 }, { 6, 7 }, { 6, 8 } });
+		assertPositions(new double[][] { { 100.4166666666667, 15.000000000000004 }, { 61.875000000000014, 127.50000000000006 }, { 177.50000000000006, 127.50000000000006 }, { 23.333333333333332, 240.0 }, { 100.4166666666667, 240.0 }, { 177.50000000000006, 240.0 }, { 293.12500000000006, 15.000000000000004 }, { 254.58333333333343, 127.50000000000006 }, { 331.6666666666667, 127.50000000000006 } });
+	}
+
+	public void testCycleAndSharedDescendant() throws Exception {
+		layout(7, new int[][] { { 0, 1 }, { 1, 2 }, { 2, 0 }, { 2, 3 }, { 0, 4 }, { 4, 3 }, { 3, 5 }, { 5, 6 } });
+		assertPositions(new double[][] { { 23.333333333333332, 127.5 }, { 23.333333333333332, 183.75 }, { 23.333333333333332, 240.0 }, { 331.6666666666667, 127.50000000000006 }, { 331.6666666666667, 15.000000000000004 }, { 331.6666666666667, 183.75000000000003 }, { 331.6666666666667, 240.0 } });
+	}
+
+	public void testDeepChain() throws Exception {
+		// deep enough to overflow the stack when walked recursively
+		int[][] edges = new int[4999][];
+		for (int i = 0; i < edges.length; i++) {
+			edges[i] = new int[] { i, i + 1 };
+		}
+		layout(5000, edges);
+		for (int i = 1; i < nodes.length; i++) {
+			assertEquals(nodes[0].getXInLayout(), nodes[i].getXInLayout(), 1e-9);
+			assertTrue(nodes[i].getYInLayout() > nodes[i - 1].getYInLayout());
+		}
+	}
+
+	private void layout(int count, int[][] edges) throws Exception {
+		nodes = new SimpleNode[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = new SimpleNode("n" + i, 0, 0, 10, 10);
+		}
+		LayoutRelationship[] relationships = new LayoutRelationship[edges.length];
+		for (int i = 0; i < edges.length; i++) {
+			relationships[i] = new SimpleRelationship(nodes[edges[i][0]], nodes[edges[i][1]], false);
+		}
+		new TreeLayoutAlgorithm(LayoutStyles.NO_LAYOUT_NODE_RESIZING).applyLayout(nodes, relationships, 0, 0, 400, 300, false, false);
+	}
+
+	private void assertPositions(double[][] expected) {
+		for (int i = 0; i < nodes.length; i++) {
+			assertEquals(expected[i][0], nodes[i].getXInLayout(), 1e-9);
+			assertEquals(expected[i][1], nodes[i].getYInLayout(), 1e-9);
+		}
+	}
+
+}
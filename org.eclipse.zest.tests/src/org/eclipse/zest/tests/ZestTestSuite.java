@@ -28,5 +28,8 @@ public class ZestTestSuite extends TestSuite {
 		addTest(new TestSuite(GraphTests.class));
 		addTest(new TestSuite(GraphSelectionTests.class));
 		addTest(new TestSuite(GraphViewerTests.class));
+		addTest(new TestSuite(QuadTreeTests.class));
+		addTest(new TestSuite(SpringLayoutAlgorithmTests.class));
+		addTest(new TestSuite(TreeLayoutAlgorithmTests.class));
 	}
 }